@@ -8,7 +8,7 @@ rem set PATH=%JAVA_HOME%\bin
 rem run
 cd ..
 echo 
-start javaw -jar "lib/${pom.build.finalName}.jar"
+start javaw --add-modules jdk.incubator.vector -jar "lib/${pom.build.finalName}.jar"
 IF ERRORLEVEL 2 goto noJavaw
 goto end
 
@@ -34,5 +34,5 @@
 
 # run
 cd ..
-java -jar "lib/${pom.build.finalName}.jar"
+java --add-modules jdk.incubator.vector -jar "lib/${pom.build.finalName}.jar"
 cd bin
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Density matrix of a mixed state of n qubits (2^n x 2^n).
+ * <p>
+ * The cell (i, j) is stored at the flat index i 2^n + j, so the row index bits are the high bits
+ * and the column index bits are the low bits of the flat index.
+ * A k-qubit gate is so applied as U rho U<sup>&dagger;</sup> by the gate kernels
+ * without forming the full operator: U to the row bits (qubit + n) and conj(U) to the column bits (qubit),
+ * in O(4^n 2^k).
+ * The diagonal operators (as the qubit projectors) and the permutations are applied cell by cell in O(4^n).
+ * </p>
+ */
+public class DensityMatrix extends Matrix {
+
+    /**
+     * Returns the density matrix of the pure state |ket&gt;&lt;ket|
+     *
+     * @param ket the ket
+     */
+    public static DensityMatrix create(Matrix ket) {
+        int n = ket.numRows();
+        if (ket.numCols() != 1 || Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException(format("Expected ket with power of 2 states (%dx%d)",
+                    n, ket.numCols()));
+        }
+        double[] kReal = ket.real();
+        double[] kIm = ket.im();
+        double[] real = new double[n * n];
+        double[] im = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // psi_i conj(psi_j)
+                real[i * n + j] = kReal[i] * kReal[j] + kIm[i] * kIm[j];
+                im[i * n + j] = kIm[i] * kReal[j] - kReal[i] * kIm[j];
+            }
+        }
+        return new DensityMatrix(n, real, im);
+    }
+
+    /**
+     * Returns the density matrix of the square matrix (the ket is converted to pure state density matrix)
+     *
+     * @param matrix the matrix
+     */
+    public static DensityMatrix of(Matrix matrix) {
+        if (matrix instanceof DensityMatrix rho) {
+            return rho;
+        }
+        if (matrix.numCols() == 1) {
+            return create(matrix);
+        }
+        int n = matrix.numRows();
+        if (matrix.numCols() != n || Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException(format("Expected square matrix with power of 2 size (%dx%d)",
+                    n, matrix.numCols()));
+        }
+        return new DensityMatrix(n, matrix.real(), matrix.im());
+    }
+
+    /**
+     * Returns the size of the square operator with power of 2 size
+     *
+     * @param operator the operator
+     */
+    private static int validateOperator(Matrix operator) {
+        int m = operator.numRows();
+        if (operator.numCols() != m || Integer.bitCount(m) != 1) {
+            throw new IllegalArgumentException(format("Expected square operator with power of 2 size (%dx%d)",
+                    m, operator.numCols()));
+        }
+        return m;
+    }
+
+    private final int numQubits;
+
+    /**
+     * Creates the density matrix
+     *
+     * @param size the number of states
+     * @param real the real parts
+     * @param im   the imaginary parts
+     */
+    protected DensityMatrix(int size, double[] real, double[] im) {
+        super(size, size, real, im);
+        this.numQubits = Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Returns the density matrix transformed by the gate (U rho U<sup>&dagger;</sup>)
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     */
+    public DensityMatrix apply(Matrix gate, int... qubits) {
+        GateKernels.validateQubits(numQubits, qubits);
+        int size = numRows();
+        int[] rowQubits = new int[qubits.length];
+        for (int i = 0; i < qubits.length; i++) {
+            rowQubits[i] = qubits[i] + numQubits;
+        }
+        double[] real = new double[size * size];
+        double[] im = new double[size * size];
+        GateKernels.apply(real, im, real(), im(), size * size, 1, gate, rowQubits);
+        GateKernels.apply(real, im, real, im, size * size, 1, gate.conj(), qubits);
+        return new DensityMatrix(size, real, im);
+    }
+
+    /**
+     * Returns the density matrix transformed by the operator (U rho U<sup>&dagger;</sup>).
+     * The operators smaller than the density matrix are extended by identity on the higher qubits,
+     * the density matrix smaller than the operator is extended by |0&gt;&lt;0| on the higher qubits
+     *
+     * @param operator the square operator
+     */
+    public DensityMatrix apply(Matrix operator) {
+        int m = validateOperator(operator);
+        if (m > numRows()) {
+            return extendsStates(m).apply(operator);
+        }
+        int size = numRows();
+        if (operator instanceof GateMatrix gate) {
+            return apply(gate.gate(), gate.qubits());
+        }
+        if (operator instanceof KroneckerMatrix kron
+                && kron.left() instanceof DiagonalMatrix left && left.isIdentity()) {
+            // I x B: B applied to the low qubits
+            Matrix right = kron.right();
+            if (Integer.bitCount(right.numRows()) == 1) {
+                int[] qubits = new int[Integer.numberOfTrailingZeros(right.numRows())];
+                Arrays.setAll(qubits, i -> i);
+                return apply(right, qubits);
+            }
+        }
+        double[] real = real();
+        double[] im = im();
+        double[] dReal = new double[size * size];
+        double[] dIm = new double[size * size];
+        int mask = m - 1;
+        if (operator instanceof DiagonalMatrix diag) {
+            // rho'(i, j) = d(i) rho(i, j) conj(d(j))
+            double[] diagReal = diag.diagReal();
+            double[] diagIm = diag.diagIm();
+            for (int i = 0; i < size; i++) {
+                double ar = diagReal[i & mask];
+                double ai = diagIm[i & mask];
+                if (ar == 0 && ai == 0) {
+                    continue;
+                }
+                for (int j = 0; j < size; j++) {
+                    double br = diagReal[j & mask];
+                    double bi = -diagIm[j & mask];
+                    int idx = i * size + j;
+                    double abr = ar * br - ai * bi;
+                    double abi = ar * bi + ai * br;
+                    dReal[idx] = abr * real[idx] - abi * im[idx];
+                    dIm[idx] = abr * im[idx] + abi * real[idx];
+                }
+            }
+            return new DensityMatrix(size, dReal, dIm);
+        }
+        if (operator instanceof PermutationMatrix perm) {
+            // rho'(p(i), p(j)) = rho(i, j)
+            int[] mapping = perm.mapping();
+            int[] full = new int[size];
+            for (int i = 0; i < size; i++) {
+                full[i] = (i & ~mask) | mapping[i & mask];
+            }
+            for (int i = 0; i < size; i++) {
+                int pi = full[i] * size;
+                for (int j = 0; j < size; j++) {
+                    dReal[pi + full[j]] = real[i * size + j];
+                    dIm[pi + full[j]] = im[i * size + j];
+                }
+            }
+            return new DensityMatrix(size, dReal, dIm);
+        }
+        Matrix op = operator.extendsCrossSquare(size);
+        return of(op.mul(this).mul(op.dagger()));
+    }
+
+    /**
+     * Returns the expectation value of the observable (Tr(O rho)).
+     * The observables smaller than the density matrix are extended by identity on the higher qubits,
+     * the density matrix smaller than the observable is extended by |0&gt;&lt;0| on the higher qubits
+     *
+     * @param observable the observable
+     */
+    public Complex expectation(Matrix observable) {
+        int m = validateOperator(observable);
+        if (m > numRows()) {
+            return extendsStates(m).expectation(observable);
+        }
+        int size = numRows();
+        double[] real = real();
+        double[] im = im();
+        double accReal = 0;
+        double accIm = 0;
+        if (observable instanceof DiagonalMatrix diag) {
+            double[] diagReal = diag.diagReal();
+            double[] diagIm = diag.diagIm();
+            int mask = m - 1;
+            for (int i = 0; i < size; i++) {
+                int idx = i * size + i;
+                accReal += diagReal[i & mask] * real[idx] - diagIm[i & mask] * im[idx];
+                accIm += diagReal[i & mask] * im[idx] + diagIm[i & mask] * real[idx];
+            }
+            return new Complex(accReal, accIm);
+        }
+        // Tr(O rho) = sum O(i, j) rho(j, i) over the non zero cells of O
+        SparseMatrix sparse = observable.extendsCrossSquare(size).sparse();
+        int[] offsets = sparse.rowOffsets();
+        int[] cols = sparse.colIndices();
+        double[] nzReal = sparse.nonZeroReal();
+        double[] nzIm = sparse.nonZeroIm();
+        for (int i = 0; i < size; i++) {
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                int idx = cols[k] * size + i;
+                accReal += nzReal[k] * real[idx] - nzIm[k] * im[idx];
+                accIm += nzReal[k] * im[idx] + nzIm[k] * real[idx];
+            }
+        }
+        return new Complex(accReal, accIm);
+    }
+
+    /**
+     * Returns the density matrix extended to the number of states (rho x |0&gt;&lt;0| on the added higher qubits)
+     * as the kets are extended by zero states
+     *
+     * @param size the number of states (power of 2)
+     */
+    public DensityMatrix extendsStates(int size) {
+        int n = numRows();
+        if (size <= n) {
+            return this;
+        }
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(format("Expected power of 2 size (%d)", size));
+        }
+        double[] real = real();
+        double[] im = im();
+        double[] dReal = new double[size * size];
+        double[] dIm = new double[size * size];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(real, i * n, dReal, i * size, n);
+            System.arraycopy(im, i * n, dIm, i * size, n);
+        }
+        return new DensityMatrix(size, dReal, dIm);
+    }
+
+    /**
+     * Returns the density matrix after the non selective projective measurement of the qubit
+     * (the coherences between the states with different qubit values are removed)
+     *
+     * @param qubit the qubit index
+     */
+    public DensityMatrix measure(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        int size = numRows();
+        double[] real = real().clone();
+        double[] im = im().clone();
+        int bit = 1 << qubit;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (((i ^ j) & bit) != 0) {
+                    real[i * size + j] = 0;
+                    im[i * size + j] = 0;
+                }
+            }
+        }
+        return new DensityMatrix(size, real, im);
+    }
+
+    /**
+     * Returns the number of qubits
+     */
+    public int numQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Returns the reduced density matrix tracing out the given qubits
+     *
+     * @param qubits the traced out qubits
+     */
+    public DensityMatrix partialTrace(int... qubits) {
+        GateKernels.validateQubits(numQubits, qubits);
+        int size = numRows();
+        int[] sorted = Arrays.stream(qubits).sorted().toArray();
+        int[] offsets = GateKernels.stateOffsets(qubits);
+        int m = size >> qubits.length;
+        double[] real = real();
+        double[] im = im();
+        double[] dReal = new double[m * m];
+        double[] dIm = new double[m * m];
+        for (int a = 0; a < m; a++) {
+            int ra = GateKernels.insertZeroBits(a, sorted);
+            for (int b = 0; b < m; b++) {
+                int rb = GateKernels.insertZeroBits(b, sorted);
+                double accReal = 0;
+                double accIm = 0;
+                for (int offset : offsets) {
+                    int idx = (ra | offset) * size + (rb | offset);
+                    accReal += real[idx];
+                    accIm += im[idx];
+                }
+                dReal[a * m + b] = accReal;
+                dIm[a * m + b] = accIm;
+            }
+        }
+        return new DensityMatrix(m, dReal, dIm);
+    }
+
+    /**
+     * Returns the purity of the state (Tr(rho<sup>2</sup>), 1 for pure states)
+     */
+    public double purity() {
+        // rho is hermitian: Tr(rho rho) = sum |rho(i, j)|^2
+        return VectorUtils.normSquare(real(), im());
+    }
+
+    /**
+     * Returns the probability of qubit at 1 state
+     *
+     * @param qubit the qubit index
+     */
+    public double qubitProbability(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        int size = numRows();
+        double[] real = real();
+        double result = 0;
+        for (int i = 1 << qubit; i < size; i = (i + 1) | (1 << qubit)) {
+            result += real[i * size + i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the trace of the density matrix
+     */
+    public Complex trace() {
+        int size = numRows();
+        double[] real = real();
+        double[] im = im();
+        double accReal = 0;
+        double accIm = 0;
+        for (int i = 0; i < size; i++) {
+            accReal += real[i * size + i];
+            accIm += im[i * size + i];
+        }
+        return new Complex(accReal, accIm);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.mmarini.LazyValue;
+
+import java.util.stream.IntStream;
+
+import static java.lang.Math.sqrt;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Diagonal operator stored only by the diagonal cells.
+ * <p>
+ * The products by kets and diagonal matrices are computed element by element
+ * and the products by dense matrices scale the rows or columns,
+ * the sparse and dense cells are materialised only on demand.
+ * </p>
+ */
+public class DiagonalMatrix extends Matrix {
+
+    /**
+     * Returns the diagonal operator
+     *
+     * @param real the real parts of diagonal
+     * @param im   the imaginary parts of diagonal
+     */
+    public static DiagonalMatrix create(double[] real, double[] im) {
+        requireNonNull(real);
+        requireNonNull(im);
+        if (real.length != im.length) {
+            throw new IllegalArgumentException(format("Expected %d imaginary parts (%d)", real.length, im.length));
+        }
+        return new DiagonalMatrix(real, im);
+    }
+
+    /**
+     * Returns the diagonal operator
+     *
+     * @param cells the diagonal cells
+     */
+    public static DiagonalMatrix create(Complex... cells) {
+        requireNonNull(cells);
+        double[] real = new double[cells.length];
+        double[] im = new double[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            real[i] = cells[i].real();
+            im[i] = cells[i].im();
+        }
+        return new DiagonalMatrix(real, im);
+    }
+
+    /**
+     * Returns the diagonal operator of a diagonal gate applied to the given qubits
+     *
+     * @param gate   the diagonal gate (2^k x 2^k)
+     * @param qubits the qubit indices of gate internal bits
+     */
+    public static DiagonalMatrix createGate(DiagonalMatrix gate, int... qubits) {
+        int size = GateMatrix.operatorSize(gate, qubits);
+        double[] real = new double[size];
+        double[] im = new double[size];
+        for (int i = 0; i < size; i++) {
+            int s = GateKernels.gateState(i, qubits);
+            real[i] = gate.diagReal[s];
+            im[i] = gate.diagIm[s];
+        }
+        return new DiagonalMatrix(real, im);
+    }
+
+    /**
+     * Returns the projector diagonal operator of the states with masked bits equal to value
+     *
+     * @param size  the number of states
+     * @param mask  the bit mask
+     * @param value the masked value
+     */
+    static DiagonalMatrix projector(int size, int mask, int value) {
+        double[] real = new double[size];
+        for (int i = 0; i < size; i++) {
+            if ((i & mask) == value) {
+                real[i] = 1;
+            }
+        }
+        return new DiagonalMatrix(real, new double[size]);
+    }
+
+    private final double[] diagReal;
+    private final double[] diagIm;
+    private final LazyValue<SparseMatrix> sparse;
+
+    /**
+     * Creates the diagonal operator
+     *
+     * @param diagReal the real parts of diagonal
+     * @param diagIm   the imaginary parts of diagonal
+     */
+    protected DiagonalMatrix(double[] diagReal, double[] diagIm) {
+        super(diagReal.length, diagReal.length, null, null);
+        this.diagReal = diagReal;
+        this.diagIm = diagIm;
+        this.sparse = new LazyValue<>(this::createSparse);
+    }
+
+    @Override
+    public Complex at(int row, int col) {
+        index(row, col);
+        return row == col ? new Complex(diagReal[row], diagIm[row]) : Complex.zero();
+    }
+
+    @Override
+    public DiagonalMatrix conj() {
+        return new DiagonalMatrix(diagReal, VectorUtils.neg(diagIm));
+    }
+
+    /**
+     * Returns the sparse matrix of operator
+     */
+    private SparseMatrix createSparse() {
+        int n = diagReal.length;
+        int[] indices = IntStream.range(0, n).toArray();
+        return SparseMatrix.create(n, n, indices, indices, diagReal, diagIm);
+    }
+
+    @Override
+    public DiagonalMatrix dagger() {
+        return conj();
+    }
+
+    /**
+     * Returns the imaginary parts of diagonal
+     */
+    public double[] diagIm() {
+        return diagIm;
+    }
+
+    /**
+     * Returns the real parts of diagonal
+     */
+    public double[] diagReal() {
+        return diagReal;
+    }
+
+    @Override
+    public Matrix extendsCrossSquare(int n) {
+        int size = numRows();
+        if (n <= size || n % size != 0) {
+            return super.extendsCrossSquare(n);
+        }
+        // identity(q) x this
+        double[] real = new double[n];
+        double[] im = new double[n];
+        for (int base = 0; base < n; base += size) {
+            System.arraycopy(diagReal, 0, real, base, size);
+            System.arraycopy(diagIm, 0, im, base, size);
+        }
+        return new DiagonalMatrix(real, im);
+    }
+
+    @Override
+    public double[] im() {
+        return sparse.get().im();
+    }
+
+    /**
+     * Returns true if the matrix is the identity
+     */
+    boolean isIdentity() {
+        for (int i = 0; i < diagReal.length; i++) {
+            if (diagReal[i] != 1 || diagIm[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    boolean isDense() {
+        return false;
+    }
+
+    @Override
+    public DiagonalMatrix mul(double scale) {
+        return new DiagonalMatrix(VectorUtils.mul(diagReal, scale), VectorUtils.mul(diagIm, scale));
+    }
+
+    @Override
+    public DiagonalMatrix mul(Complex scale) {
+        int n = diagReal.length;
+        double[] real = new double[n];
+        double[] im = new double[n];
+        VectorUtils.mul(real, im, 0, diagReal, diagIm, 0, scale.real(), scale.im(), n);
+        return new DiagonalMatrix(real, im);
+    }
+
+    @Override
+    public DiagonalMatrix neg() {
+        return new DiagonalMatrix(VectorUtils.neg(diagReal), VectorUtils.neg(diagIm));
+    }
+
+    @Override
+    public DiagonalMatrix normalise() {
+        return mul(1 / sqrt(VectorUtils.normSquare(diagReal, diagIm)));
+    }
+
+    @Override
+    public double[] real() {
+        return sparse.get().real();
+    }
+
+    @Override
+    SparseMatrix sparse() {
+        return sparse.get();
+    }
+
+    @Override
+    public DiagonalMatrix transpose() {
+        return this;
+    }
+
+    @Override
+    Matrix unsafeLeftMul(Matrix left) {
+        if (!left.isDense()) {
+            return left.sparse().mulSparse(sparse.get());
+        }
+        // Scale the columns: result[i, j] = left[i, j] * d[j]
+        int n = left.numRows();
+        int m = numCols();
+        double[] srcReal = left.real();
+        double[] srcIm = left.im();
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            int offset = i * m;
+            for (int j = 0; j < m; j++) {
+                double ar = srcReal[offset + j];
+                double ai = srcIm[offset + j];
+                real[offset + j] = ar * diagReal[j] - ai * diagIm[j];
+                im[offset + j] = ar * diagIm[j] + ai * diagReal[j];
+            }
+        }
+        return new Matrix(n, m, real, im);
+    }
+
+    @Override
+    Matrix unsafeMul(Matrix right) {
+        if (right instanceof DiagonalMatrix d) {
+            // Element by element product of diagonals
+            int n = diagReal.length;
+            double[] real = new double[n];
+            double[] im = new double[n];
+            for (int i = 0; i < n; i++) {
+                real[i] = diagReal[i] * d.diagReal[i] - diagIm[i] * d.diagIm[i];
+                im[i] = diagReal[i] * d.diagIm[i] + diagIm[i] * d.diagReal[i];
+            }
+            return new DiagonalMatrix(real, im);
+        }
+        if (!right.isDense()) {
+            return sparse.get().mulSparse(right.sparse());
+        }
+        // Scale the rows: result[i, j] = d[i] * right[i, j]
+        int n = numRows();
+        int m = right.numCols();
+        double[] srcReal = right.real();
+        double[] srcIm = right.im();
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            double dr = diagReal[i];
+            double di = diagIm[i];
+            int offset = i * m;
+            for (int j = 0; j < m; j++) {
+                double br = srcReal[offset + j];
+                double bi = srcIm[offset + j];
+                real[offset + j] = dr * br - di * bi;
+                im[offset + j] = dr * bi + di * br;
+            }
+        }
+        return new Matrix(n, m, real, im);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import static java.lang.String.format;
+
+/**
+ * Double precision state vector.
+ * <p>
+ * The operators that cannot be applied in place (permutations, sparse and dense operators)
+ * write the result in a back buffer that is then swapped with the current cells.
+ * </p>
+ */
+public class DoubleStateVector implements StateVector {
+    private final int size;
+    private double[] real;
+    private double[] im;
+    private double[] backReal;
+    private double[] backIm;
+
+    /**
+     * Creates the state vector
+     *
+     * @param real the real parts
+     * @param im   the imaginary parts
+     */
+    protected DoubleStateVector(double[] real, double[] im) {
+        this.size = real.length;
+        this.real = real;
+        this.im = im;
+    }
+
+    /**
+     * Returns the state vector of the ket (the cells are copied)
+     *
+     * @param ket the ket
+     */
+    public static DoubleStateVector create(Matrix ket) {
+        if (ket.numCols() != 1) {
+            throw new IllegalArgumentException(format("Expected ket (%dx%d)", ket.numRows(), ket.numCols()));
+        }
+        return new DoubleStateVector(ket.real().clone(), ket.im().clone());
+    }
+
+    /**
+     * Returns the state vector owning the cells of the ket (the cells are not copied).
+     * The ket must be a private copy that is not used after the call
+     *
+     * @param ket the ket
+     */
+    static DoubleStateVector wrap(Matrix ket) {
+        if (ket.numCols() != 1) {
+            throw new IllegalArgumentException(format("Expected ket (%dx%d)", ket.numRows(), ket.numCols()));
+        }
+        return new DoubleStateVector(ket.real(), ket.im());
+    }
+
+    /**
+     * Allocates the back buffer if not yet allocated
+     */
+    private void allocateBack() {
+        if (backReal == null) {
+            backReal = new double[size];
+            backIm = new double[size];
+        }
+    }
+
+    @Override
+    public DoubleStateVector apply(Matrix gate, int... qubits) {
+        validate();
+        GateKernels.apply(real, im, real, im, size, 1, gate, qubits);
+        return this;
+    }
+
+    @Override
+    public DoubleStateVector apply(Matrix operator) {
+        validate();
+        if (operator.numRows() != size || operator.numCols() != size) {
+            throw new IllegalArgumentException(format("Expected operator %dx%d (%dx%d)",
+                    size, size, operator.numRows(), operator.numCols()));
+        }
+        if (operator instanceof GateMatrix gate) {
+            GateKernels.apply(real, im, real, im, size, 1, gate.gate(), gate.qubits());
+        } else if (operator instanceof DiagonalMatrix diag) {
+            double[] dReal = diag.diagReal();
+            double[] dIm = diag.diagIm();
+            for (int i = 0; i < size; i++) {
+                double re = real[i];
+                double ii = im[i];
+                real[i] = dReal[i] * re - dIm[i] * ii;
+                im[i] = dReal[i] * ii + dIm[i] * re;
+            }
+        } else if (operator instanceof PermutationMatrix perm) {
+            int[] mapping = perm.mapping();
+            allocateBack();
+            for (int j = 0; j < size; j++) {
+                backReal[mapping[j]] = real[j];
+                backIm[mapping[j]] = im[j];
+            }
+            swap();
+        } else if (operator instanceof KroneckerMatrix kron
+                && kron.left() instanceof DiagonalMatrix diag && diag.isIdentity()) {
+            // I x B: B applied to each block
+            Matrix block = kron.right();
+            allocateBack();
+            for (int offset = 0; offset < size; offset += block.numRows()) {
+                mulBlock(block, offset);
+            }
+            swap();
+        } else if (operator.isDense()) {
+            allocateBack();
+            MulKernels.mul(backReal, backIm, 0, size, 1,
+                    operator.real(), operator.im(), 0, size,
+                    real, im, 0, 1);
+            swap();
+        } else {
+            SparseMatrix sparse = operator.sparse();
+            int[] offsets = sparse.rowOffsets();
+            int[] cols = sparse.colIndices();
+            double[] nzReal = sparse.nonZeroReal();
+            double[] nzIm = sparse.nonZeroIm();
+            allocateBack();
+            for (int i = 0; i < size; i++) {
+                double accReal = 0;
+                double accIm = 0;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int j = cols[k];
+                    accReal += nzReal[k] * real[j] - nzIm[k] * im[j];
+                    accIm += nzReal[k] * im[j] + nzIm[k] * real[j];
+                }
+                backReal[i] = accReal;
+                backIm[i] = accIm;
+            }
+            swap();
+        }
+        return this;
+    }
+
+    @Override
+    public Complex at(int state) {
+        validate();
+        return new Complex(real[state], im[state]);
+    }
+
+    @Override
+    public DoubleStateVector mul(Complex scale) {
+        validate();
+        VectorUtils.mul(real, im, 0, real, im, 0, scale.real(), scale.im(), size);
+        return this;
+    }
+
+    /**
+     * Writes the product of the block operator by the state block into the back buffer
+     *
+     * @param block  the block operator
+     * @param offset the block offset
+     */
+    private void mulBlock(Matrix block, int offset) {
+        int m = block.numRows();
+        MulKernels.mul(backReal, backIm, offset, m, 1,
+                block.real(), block.im(), 0, m,
+                real, im, offset, 1);
+    }
+
+    @Override
+    public double normSquare() {
+        validate();
+        return VectorUtils.normSquare(real, im);
+    }
+
+    @Override
+    public Precision precision() {
+        return Precision.DOUBLE;
+    }
+
+    @Override
+    public double[] probabilities() {
+        validate();
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = real[i] * real[i] + im[i] * im[i];
+        }
+        return result;
+    }
+
+    @Override
+    public Matrix release() {
+        validate();
+        Matrix result = new Matrix(size, 1, real, im);
+        real = im = backReal = backIm = null;
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Swaps the current cells with the back buffer
+     */
+    private void swap() {
+        double[] tmp = real;
+        real = backReal;
+        backReal = tmp;
+        tmp = im;
+        im = backIm;
+        backIm = tmp;
+    }
+
+    @Override
+    public Matrix toMatrix() {
+        validate();
+        return new Matrix(size, 1, real.clone(), im.clone());
+    }
+
+    /**
+     * Validates the state vector is not released
+     */
+    private void validate() {
+        if (real == null) {
+            throw new IllegalStateException("State vector released");
+        }
+    }
+}
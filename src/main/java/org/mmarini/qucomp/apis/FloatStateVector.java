@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Single precision state vector.
+ * <p>
+ * The amplitudes are stored as float, the kernels load them in double, compute and accumulate
+ * in double and round only the stored results.
+ * The operators that cannot be applied in place (permutations, sparse and dense operators)
+ * write the result in a back buffer that is then swapped with the current cells.
+ * </p>
+ */
+public class FloatStateVector implements StateVector {
+    private final int size;
+    private final GateKernels.Amplitudes amplitudes;
+    private float[] real;
+    private float[] im;
+    private float[] backReal;
+    private float[] backIm;
+
+    /**
+     * Creates the state vector
+     *
+     * @param real the real parts
+     * @param im   the imaginary parts
+     */
+    protected FloatStateVector(float[] real, float[] im) {
+        this.size = real.length;
+        this.real = real;
+        this.im = im;
+        this.amplitudes = new GateKernels.Amplitudes() {
+            @Override
+            public double im(long state) {
+                return FloatStateVector.this.im[(int) state];
+            }
+
+            @Override
+            public double real(long state) {
+                return FloatStateVector.this.real[(int) state];
+            }
+
+            @Override
+            public void set(long state, double real, double im) {
+                FloatStateVector.this.real[(int) state] = (float) real;
+                FloatStateVector.this.im[(int) state] = (float) im;
+            }
+        };
+    }
+
+    /**
+     * Returns the state vector of the ket (the cells are rounded to single precision)
+     *
+     * @param ket the ket
+     */
+    public static FloatStateVector create(Matrix ket) {
+        if (ket.numCols() != 1) {
+            throw new IllegalArgumentException(format("Expected ket (%dx%d)", ket.numRows(), ket.numCols()));
+        }
+        return new FloatStateVector(toFloat(ket.real()), toFloat(ket.im()));
+    }
+
+    /**
+     * Returns the double precision copy of values
+     *
+     * @param values the values
+     */
+    private static double[] toDouble(float[] values) {
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the single precision copy of values
+     *
+     * @param values the values
+     */
+    private static float[] toFloat(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Allocates the back buffer if not yet allocated
+     */
+    private void allocateBack() {
+        if (backReal == null) {
+            backReal = new float[size];
+            backIm = new float[size];
+        }
+    }
+
+    @Override
+    public FloatStateVector apply(Matrix gate, int... qubits) {
+        validate();
+        int m = 1 << qubits.length;
+        if (gate.numRows() != m || gate.numCols() != m) {
+            throw new IllegalArgumentException(format("Expected gate %dx%d (%dx%d)",
+                    m, m, gate.numRows(), gate.numCols()));
+        }
+        GateKernels.validateQubits(Integer.numberOfTrailingZeros(size), qubits);
+        long numGroups = size >> qubits.length;
+        if (qubits.length == 1) {
+            GateKernels.apply1(amplitudes, gate.real(), gate.im(), qubits[0], 0, numGroups);
+        } else {
+            GateKernels.applyK(amplitudes, gate.real(), gate.im(), GateKernels.longStateOffsets(qubits),
+                    Arrays.stream(qubits).sorted().toArray(), 0, numGroups);
+        }
+        return this;
+    }
+
+    @Override
+    public FloatStateVector apply(Matrix operator) {
+        validate();
+        if (operator.numRows() != size || operator.numCols() != size) {
+            throw new IllegalArgumentException(format("Expected operator %dx%d (%dx%d)",
+                    size, size, operator.numRows(), operator.numCols()));
+        }
+        if (operator instanceof GateMatrix gate) {
+            apply(gate.gate(), gate.qubits());
+        } else if (operator instanceof DiagonalMatrix diag) {
+            double[] dReal = diag.diagReal();
+            double[] dIm = diag.diagIm();
+            for (int i = 0; i < size; i++) {
+                double re = real[i];
+                double ii = im[i];
+                real[i] = (float) (dReal[i] * re - dIm[i] * ii);
+                im[i] = (float) (dReal[i] * ii + dIm[i] * re);
+            }
+        } else if (operator instanceof PermutationMatrix perm) {
+            int[] mapping = perm.mapping();
+            allocateBack();
+            for (int j = 0; j < size; j++) {
+                backReal[mapping[j]] = real[j];
+                backIm[mapping[j]] = im[j];
+            }
+            swap();
+        } else if (operator instanceof KroneckerMatrix kron
+                && kron.left() instanceof DiagonalMatrix diag && diag.isIdentity()) {
+            // I x B: B applied to each block
+            Matrix block = kron.right();
+            allocateBack();
+            for (int offset = 0; offset < size; offset += block.numRows()) {
+                mulBlock(block.real(), block.im(), block.numRows(), offset);
+            }
+            swap();
+        } else if (operator.isDense()) {
+            allocateBack();
+            mulBlock(operator.real(), operator.im(), size, 0);
+            swap();
+        } else {
+            SparseMatrix sparse = operator.sparse();
+            int[] offsets = sparse.rowOffsets();
+            int[] cols = sparse.colIndices();
+            double[] nzReal = sparse.nonZeroReal();
+            double[] nzIm = sparse.nonZeroIm();
+            allocateBack();
+            for (int i = 0; i < size; i++) {
+                double accReal = 0;
+                double accIm = 0;
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    int j = cols[k];
+                    accReal += nzReal[k] * real[j] - nzIm[k] * im[j];
+                    accIm += nzReal[k] * im[j] + nzIm[k] * real[j];
+                }
+                backReal[i] = (float) accReal;
+                backIm[i] = (float) accIm;
+            }
+            swap();
+        }
+        return this;
+    }
+
+    @Override
+    public Complex at(int state) {
+        validate();
+        return new Complex(real[state], im[state]);
+    }
+
+    @Override
+    public FloatStateVector mul(Complex scale) {
+        validate();
+        double sr = scale.real();
+        double si = scale.im();
+        for (int i = 0; i < size; i++) {
+            double re = real[i];
+            double ii = im[i];
+            real[i] = (float) (sr * re - si * ii);
+            im[i] = (float) (sr * ii + si * re);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the product of the dense block operator by the state block into the back buffer
+     *
+     * @param bReal  the block real parts
+     * @param bIm    the block imaginary parts
+     * @param m      the block size
+     * @param offset the block offset
+     */
+    private void mulBlock(double[] bReal, double[] bIm, int m, int offset) {
+        for (int i = 0; i < m; i++) {
+            double accReal = 0;
+            double accIm = 0;
+            int bi = i * m;
+            for (int j = 0; j < m; j++) {
+                double br = bReal[bi + j];
+                double bim = bIm[bi + j];
+                double sr = real[offset + j];
+                double si = im[offset + j];
+                accReal += br * sr - bim * si;
+                accIm += br * si + bim * sr;
+            }
+            backReal[offset + i] = (float) accReal;
+            backIm[offset + i] = (float) accIm;
+        }
+    }
+
+    @Override
+    public double normSquare() {
+        validate();
+        double result = 0;
+        for (int i = 0; i < size; i++) {
+            double re = real[i];
+            double ii = im[i];
+            result += re * re + ii * ii;
+        }
+        return result;
+    }
+
+    @Override
+    public Precision precision() {
+        return Precision.FLOAT;
+    }
+
+    @Override
+    public double[] probabilities() {
+        validate();
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            double re = real[i];
+            double ii = im[i];
+            result[i] = re * re + ii * ii;
+        }
+        return result;
+    }
+
+    @Override
+    public Matrix release() {
+        validate();
+        Matrix result = new Matrix(size, 1, toDouble(real), toDouble(im));
+        real = im = backReal = backIm = null;
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Swaps the current cells with the back buffer
+     */
+    private void swap() {
+        float[] tmp = real;
+        real = backReal;
+        backReal = tmp;
+        tmp = im;
+        im = backIm;
+        backIm = tmp;
+    }
+
+    @Override
+    public Matrix toMatrix() {
+        validate();
+        return new Matrix(size, 1, toDouble(real), toDouble(im));
+    }
+
+    /**
+     * Validates the state vector is not released
+     */
+    private void validate() {
+        if (real == null) {
+            throw new IllegalStateException("State vector released");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded cache of the dense gate operators.
+ * <p>
+ * The operators of dense gates (H(i), X(i), Y(i) ...) are keyed by the base gate and the qubit indices.
+ * The cached operators are shared by the callers, so the sparse and dense views that they materialise lazily
+ * are computed once for each operator.
+ * The permutation and diagonal operators are built directly and are not cached.
+ * The least recently used operators are evicted when the retained size of cached operators
+ * (with all the views materialised) exceeds the maximum bytes.
+ * The maximum bytes are set by the system property <code>qucomp.gateCacheBytes</code> (default 64MB, 0 disables the cache).
+ * </p>
+ */
+public class GateCache {
+    public static final String MAX_BYTES_PROPERTY = "qucomp.gateCacheBytes";
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    private static final GateCache instance = new GateCache(Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+    /**
+     * Returns the upper bound of retained bytes of the gate operator with the sparse and dense views materialised
+     *
+     * @param operator the operator
+     */
+    static long byteSize(GateMatrix operator) {
+        long size = operator.numRows();
+        long gateSize = operator.gate().numRows();
+        long nonZero = size * gateSize;
+        long gateBytes = 2L * Double.BYTES * gateSize * gateSize + (long) Integer.BYTES * operator.qubits().length;
+        long sparseBytes = (2L * Double.BYTES + Integer.BYTES) * nonZero + Integer.BYTES * (size + 1);
+        long denseBytes = 2L * Double.BYTES * size * size;
+        return gateBytes + sparseBytes + denseBytes;
+    }
+
+    /**
+     * Returns the shared gate cache
+     */
+    public static GateCache instance() {
+        return instance;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates the cache
+     *
+     * @param maxBytes the maximum bytes of cached operators
+     */
+    public GateCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException(format("Expected non negative max bytes (%d)", maxBytes));
+        }
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the retained bytes of cached operators
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Removes all the cached operators and resets the counters
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = hits = misses = 0;
+    }
+
+    /**
+     * Evicts the least recently used operators while the cached bytes exceed the maximum bytes
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= iter.next().getValue().bytes;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Returns the gate operator from the cache or created if not cached
+     *
+     * @param gate   the base gate (2^k x 2^k)
+     * @param qubits the qubit indices of gate internal bits
+     */
+    public GateMatrix get(Matrix gate, int... qubits) {
+        Key key = new Key(requireNonNull(gate), requireNonNull(qubits).clone());
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.operator;
+            }
+            misses++;
+        }
+        // Creates outside the lock, concurrent misses of the same key create equivalent operators
+        GateMatrix operator = GateMatrix.create(gate, qubits.clone());
+        long size = byteSize(operator);
+        if (size <= maxBytes) {
+            synchronized (this) {
+                Entry old = entries.put(key, new Entry(operator, size));
+                bytes += size - (old != null ? old.bytes : 0);
+                evict();
+            }
+        }
+        return operator;
+    }
+
+    /**
+     * Returns the number of cache hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the maximum bytes of cached operators
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of cache misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of cached operators
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Cached operator with its retained bytes
+     *
+     * @param operator the operator
+     * @param bytes    the retained bytes
+     */
+    private record Entry(GateMatrix operator, long bytes) {
+    }
+
+    /**
+     * Cache key (the base gate is compared by identity)
+     *
+     * @param gate   the base gate
+     * @param qubits the qubit indices
+     */
+    private record Key(Matrix gate, int[] qubits) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key
+                    && gate == key.gate
+                    && Arrays.equals(qubits, key.qubits);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(gate) * 31 + Arrays.hashCode(qubits);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Fuses runs of consecutive small gates into single dense gates.
+ * <p>
+ * Each gate applied to a state vector costs a full sweep over the states,
+ * so the consecutive gates acting on up to k qubits overall are merged into one 2^k x 2^k gate
+ * (the product of the gates embedded in the union of their qubits)
+ * and the state is swept once for each fused gate.
+ * The gates on more than k qubits and the operators that are not gates break the runs and are kept unchanged.
+ * </p>
+ * <p>
+ * The maximum number of qubits of fused gates is set by the system property <code>qucomp.fusionQubits</code>
+ * (default 4, 0 disables the fusion) or by {@link #setMaxQubits(int)}.
+ * </p>
+ */
+public class GateFusion {
+    public static final String MAX_QUBITS_PROPERTY = "qucomp.fusionQubits";
+    public static final int DEFAULT_MAX_QUBITS = 4;
+    public static final int MAX_QUBITS = 10;
+    private static volatile int maxQubits = validateMaxQubits(Integer.getInteger(MAX_QUBITS_PROPERTY, DEFAULT_MAX_QUBITS));
+
+    /**
+     * Returns the embedding of the gate in the given number of qubits as real and imaginary parts
+     *
+     * @param gate      the gate
+     * @param positions the positions of the gate internal bits
+     * @param numQubits the number of qubits
+     */
+    private static double[][] embed(Matrix gate, int[] positions, int numQubits) {
+        int m = 1 << numQubits;
+        double[] real = new double[m * m];
+        double[] im = new double[m * m];
+        for (int i = 0; i < m; i++) {
+            real[i * m + i] = 1;
+        }
+        GateKernels.apply(real, im, real, im, m, m, gate, positions);
+        return new double[][]{real, im};
+    }
+
+    /**
+     * Returns the matrix extended by identity on the new high qubits (I x matrix) as real and imaginary parts
+     *
+     * @param matrix the real and imaginary parts of matrix
+     * @param m      the matrix size
+     * @param n      the extended size
+     */
+    private static double[][] extend(double[][] matrix, int m, int n) {
+        double[] real = new double[n * n];
+        double[] im = new double[n * n];
+        for (int offset = 0; offset < n; offset += m) {
+            for (int i = 0; i < m; i++) {
+                System.arraycopy(matrix[0], i * m, real, (offset + i) * n + offset, m);
+                System.arraycopy(matrix[1], i * m, im, (offset + i) * n + offset, m);
+            }
+        }
+        return new double[][]{real, im};
+    }
+
+    /**
+     * Returns the list of gates with the runs of consecutive gates fused (default maximum number of qubits)
+     *
+     * @param gates the gates in application order
+     */
+    public static List<QuGate> fuse(List<QuGate> gates) {
+        return fuse(gates, maxQubits);
+    }
+
+    /**
+     * Returns the list of gates with the runs of consecutive gates fused
+     *
+     * @param gates     the gates in application order
+     * @param maxQubits the maximum number of qubits of fused gates
+     */
+    public static List<QuGate> fuse(List<QuGate> gates, int maxQubits) {
+        return fuse(gates, QuGate::gate, QuGate::indices, QuGate::fused, maxQubits);
+    }
+
+    /**
+     * Returns the fused items
+     *
+     * @param items     the items in application order
+     * @param gateOf    the function returning the gate matrix of item or null if the item is not a gate
+     * @param qubitsOf  the function returning the qubit indices of item
+     * @param factory   the function returning the item of fused gate and qubits
+     * @param maxQubits the maximum number of qubits of fused gates
+     * @param <T>       the item type
+     */
+    private static <T> List<T> fuse(List<T> items, Function<T, Matrix> gateOf, Function<T, int[]> qubitsOf,
+                                    BiFunction<Matrix, int[], T> factory, int maxQubits) {
+        validateMaxQubits(maxQubits);
+        if (maxQubits == 0) {
+            return items;
+        }
+        List<T> result = new ArrayList<>();
+        T first = null;
+        int[] qubits = null;
+        double[][] fused = null;
+        for (T item : items) {
+            Matrix gate = gateOf.apply(item);
+            int[] itemQubits = gate != null ? qubitsOf.apply(item) : null;
+            int[] union = first != null && gate != null ? union(qubits, itemQubits) : null;
+            if (union != null && union.length <= maxQubits) {
+                // Merges the gate into the current run
+                if (fused == null) {
+                    fused = embed(gateOf.apply(first), positions(qubitsOf.apply(first), union), union.length);
+                } else if (union.length > qubits.length) {
+                    fused = extend(fused, 1 << qubits.length, 1 << union.length);
+                }
+                int m = 1 << union.length;
+                GateKernels.apply(fused[0], fused[1], fused[0], fused[1], m, m, gate, positions(itemQubits, union));
+                qubits = union;
+                continue;
+            }
+            // Flushes the current run
+            if (first != null) {
+                result.add(fused != null
+                        ? factory.apply(new Matrix(1 << qubits.length, 1 << qubits.length, fused[0], fused[1]), qubits)
+                        : first);
+                first = null;
+                fused = null;
+            }
+            if (gate != null && itemQubits.length <= maxQubits) {
+                first = item;
+                qubits = itemQubits;
+            } else {
+                result.add(item);
+            }
+        }
+        if (first != null) {
+            result.add(fused != null
+                    ? factory.apply(new Matrix(1 << qubits.length, 1 << qubits.length, fused[0], fused[1]), qubits)
+                    : first);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the list of operators with the runs of consecutive gate operators ({@link GateMatrix}) fused
+     * (default maximum number of qubits)
+     *
+     * @param operators the operators in application order
+     */
+    public static List<Matrix> fuseOperators(List<Matrix> operators) {
+        return fuseOperators(operators, maxQubits);
+    }
+
+    /**
+     * Returns the list of operators with the runs of consecutive gate operators ({@link GateMatrix}) fused.
+     * The fused operators have the size of the first operator of the run extended to cover the fused qubits
+     *
+     * @param operators the operators in application order
+     * @param maxQubits the maximum number of qubits of fused gates
+     */
+    public static List<Matrix> fuseOperators(List<Matrix> operators, int maxQubits) {
+        return fuse(operators,
+                op -> op instanceof GateMatrix gate ? gate.gate() : null,
+                op -> ((GateMatrix) op).qubits(),
+                GateMatrix::create,
+                maxQubits);
+    }
+
+    /**
+     * Returns the maximum number of qubits of fused gates
+     */
+    public static int maxQubits() {
+        return maxQubits;
+    }
+
+    /**
+     * Returns the positions of qubits in the union of qubits
+     *
+     * @param qubits the qubits
+     * @param union  the union of qubits
+     */
+    private static int[] positions(int[] qubits, int[] union) {
+        int[] result = new int[qubits.length];
+        for (int i = 0; i < qubits.length; i++) {
+            for (int j = 0; j < union.length; j++) {
+                if (union[j] == qubits[i]) {
+                    result[i] = j;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the maximum number of qubits of fused gates (0 disables the fusion)
+     *
+     * @param maxQubits the maximum number of qubits
+     */
+    public static void setMaxQubits(int maxQubits) {
+        GateFusion.maxQubits = validateMaxQubits(maxQubits);
+    }
+
+    /**
+     * Returns the union of qubits preserving the order (the new qubits are appended)
+     *
+     * @param qubits the qubits
+     * @param others the other qubits
+     */
+    private static int[] union(int[] qubits, int[] others) {
+        int[] result = Arrays.copyOf(qubits, qubits.length + others.length);
+        int n = qubits.length;
+        for (int q : others) {
+            boolean found = false;
+            for (int i = 0; i < qubits.length; i++) {
+                if (qubits[i] == q) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                result[n++] = q;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Returns the validated maximum number of qubits
+     *
+     * @param maxQubits the maximum number of qubits
+     */
+    private static int validateMaxQubits(int maxQubits) {
+        if (maxQubits < 0 || maxQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException(format("Expected max qubits in range 0-%d (%d)", MAX_QUBITS, maxQubits));
+        }
+        return maxQubits;
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Applies small k-qubit gates directly to the rows of a state matrix.
+ * <p>
+ * The gate is a 2^k x 2^k matrix whose i-th internal bit is mapped to the qubits[i] state bit.
+ * Each group of 2^k rows differing only by the gate qubits is transformed by the gate, so the cost is
+ * O(2^n 2^k) per column instead of the O(4^n) of the extended operator product.
+ * </p>
+ * <p>
+ * The state vectors that do not store the amplitudes in double arrays (single precision, off heap)
+ * share the kernels on long state indices through the {@link Amplitudes} accessor.
+ * </p>
+ */
+public interface GateKernels {
+
+    /**
+     * Applies the gate to the source rows and stores the result in the destination (dst may be src)
+     *
+     * @param dReal   the destination real parts
+     * @param dIm     the destination imaginary parts
+     * @param sReal   the source real parts
+     * @param sIm     the source imaginary parts
+     * @param numRows the number of rows (multiple of 2^(max qubit + 1))
+     * @param numCols the number of columns
+     * @param gate    the gate matrix (2^k x 2^k)
+     * @param qubits  the qubit indices of the gate internal bits
+     */
+    static void apply(double[] dReal, double[] dIm, double[] sReal, double[] sIm,
+                      int numRows, int numCols, Matrix gate, int... qubits) {
+        int m = 1 << qubits.length;
+        if (gate.numRows() != m || gate.numCols() != m) {
+            throw new IllegalArgumentException(format("Expected gate %dx%d (%dx%d)",
+                    m, m, gate.numRows(), gate.numCols()));
+        }
+        validateQubits(Integer.numberOfTrailingZeros(numRows), qubits);
+        if (qubits.length == 1) {
+            apply1(dReal, dIm, sReal, sIm, numRows, numCols, gate.real(), gate.im(), qubits[0]);
+        } else {
+            applyK(dReal, dIm, sReal, sIm, numRows, numCols, gate.real(), gate.im(), qubits);
+        }
+    }
+
+    /**
+     * Applies a single qubit gate by strided index pairs
+     *
+     * @param dReal   the destination real parts
+     * @param dIm     the destination imaginary parts
+     * @param sReal   the source real parts
+     * @param sIm     the source imaginary parts
+     * @param numRows the number of rows
+     * @param numCols the number of columns
+     * @param gReal   the gate real parts (2 x 2)
+     * @param gIm     the gate imaginary parts (2 x 2)
+     * @param qubit   the qubit index
+     */
+    private static void apply1(double[] dReal, double[] dIm, double[] sReal, double[] sIm,
+                               int numRows, int numCols, double[] gReal, double[] gIm, int qubit) {
+        double g00r = gReal[0];
+        double g00i = gIm[0];
+        double g01r = gReal[1];
+        double g01i = gIm[1];
+        double g10r = gReal[2];
+        double g10i = gIm[2];
+        double g11r = gReal[3];
+        double g11i = gIm[3];
+        int stride = 1 << qubit;
+        if (Simd.ENABLED) {
+            // The rows base ... base + stride - 1 are a contiguous run paired with the next run
+            int run = stride * numCols;
+            for (int base = 0; base < numRows; base += stride << 1) {
+                int offset0 = base * numCols;
+                SimdKernels.apply1(dReal, dIm, sReal, sIm, offset0, offset0 + run, run, gReal, gIm);
+            }
+            return;
+        }
+        for (int base = 0; base < numRows; base += stride << 1) {
+            for (int i = base; i < base + stride; i++) {
+                int i0 = i * numCols;
+                int i1 = (i + stride) * numCols;
+                for (int j = 0; j < numCols; j++) {
+                    double a0r = sReal[i0 + j];
+                    double a0i = sIm[i0 + j];
+                    double a1r = sReal[i1 + j];
+                    double a1i = sIm[i1 + j];
+                    dReal[i0 + j] = g00r * a0r - g00i * a0i + g01r * a1r - g01i * a1i;
+                    dIm[i0 + j] = g00r * a0i + g00i * a0r + g01r * a1i + g01i * a1r;
+                    dReal[i1 + j] = g10r * a0r - g10i * a0i + g11r * a1r - g11i * a1i;
+                    dIm[i1 + j] = g10r * a0i + g10i * a0r + g11r * a1i + g11i * a1r;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a single qubit gate to the groups of amplitude pairs (in place).
+     * The group g is the pair of states with g bits split around the qubit position
+     *
+     * @param amplitudes the amplitudes
+     * @param gReal      the gate real parts (2 x 2)
+     * @param gIm        the gate imaginary parts (2 x 2)
+     * @param qubit      the qubit index
+     * @param from       the first group
+     * @param to         the last group (exclusive)
+     */
+    static void apply1(Amplitudes amplitudes, double[] gReal, double[] gIm, int qubit, long from, long to) {
+        double g00r = gReal[0];
+        double g00i = gIm[0];
+        double g01r = gReal[1];
+        double g01i = gIm[1];
+        double g10r = gReal[2];
+        double g10i = gIm[2];
+        double g11r = gReal[3];
+        double g11i = gIm[3];
+        long stride = 1L << qubit;
+        long lowMask = stride - 1;
+        for (long g = from; g < to; g++) {
+            long i0 = ((g & ~lowMask) << 1) | (g & lowMask);
+            long i1 = i0 | stride;
+            double a0r = amplitudes.real(i0);
+            double a0i = amplitudes.im(i0);
+            double a1r = amplitudes.real(i1);
+            double a1i = amplitudes.im(i1);
+            amplitudes.set(i0, g00r * a0r - g00i * a0i + g01r * a1r - g01i * a1i,
+                    g00r * a0i + g00i * a0r + g01r * a1i + g01i * a1r);
+            amplitudes.set(i1, g10r * a0r - g10i * a0i + g11r * a1r - g11i * a1i,
+                    g10r * a0i + g10i * a0r + g11r * a1i + g11i * a1r);
+        }
+    }
+
+    /**
+     * Applies a k qubits gate to the groups of 2^k amplitudes (in place).
+     * The group g is the set of states with g bits spread around the qubit positions
+     *
+     * @param amplitudes the amplitudes
+     * @param gReal      the gate real parts (2^k x 2^k)
+     * @param gIm        the gate imaginary parts (2^k x 2^k)
+     * @param offsets    the state offsets of gate internal states ({@link #longStateOffsets(int...)})
+     * @param sorted     the ascending sorted qubit indices
+     * @param from       the first group
+     * @param to         the last group (exclusive)
+     */
+    static void applyK(Amplitudes amplitudes, double[] gReal, double[] gIm, long[] offsets, int[] sorted,
+                       long from, long to) {
+        int m = offsets.length;
+        double[] inReal = new double[m];
+        double[] inIm = new double[m];
+        for (long g = from; g < to; g++) {
+            long base = insertZeroBits(g, sorted);
+            for (int s = 0; s < m; s++) {
+                inReal[s] = amplitudes.real(base + offsets[s]);
+                inIm[s] = amplitudes.im(base + offsets[s]);
+            }
+            for (int r = 0; r < m; r++) {
+                double accReal = 0;
+                double accIm = 0;
+                int gi = r * m;
+                for (int s = 0; s < m; s++) {
+                    double gr = gReal[gi + s];
+                    double gim = gIm[gi + s];
+                    if (gr != 0 || gim != 0) {
+                        accReal += gr * inReal[s] - gim * inIm[s];
+                        accIm += gr * inIm[s] + gim * inReal[s];
+                    }
+                }
+                amplitudes.set(base + offsets[r], accReal, accIm);
+            }
+        }
+    }
+
+    /**
+     * Applies a k qubits gate by groups of 2^k rows (quads, octets, ...)
+     *
+     * @param dReal   the destination real parts
+     * @param dIm     the destination imaginary parts
+     * @param sReal   the source real parts
+     * @param sIm     the source imaginary parts
+     * @param numRows the number of rows
+     * @param numCols the number of columns
+     * @param gReal   the gate real parts (2^k x 2^k)
+     * @param gIm     the gate imaginary parts (2^k x 2^k)
+     * @param qubits  the qubit indices
+     */
+    private static void applyK(double[] dReal, double[] dIm, double[] sReal, double[] sIm,
+                               int numRows, int numCols, double[] gReal, double[] gIm, int[] qubits) {
+        int m = 1 << qubits.length;
+        int[] offsets = stateOffsets(qubits);
+        int[] sorted = Arrays.stream(qubits).sorted().toArray();
+        int numGroups = numRows >> qubits.length;
+        int[] rows = new int[m];
+        double[] inReal = new double[m];
+        double[] inIm = new double[m];
+        for (int g = 0; g < numGroups; g++) {
+            int base = insertZeroBits(g, sorted);
+            for (int s = 0; s < m; s++) {
+                rows[s] = (base + offsets[s]) * numCols;
+            }
+            for (int j = 0; j < numCols; j++) {
+                for (int s = 0; s < m; s++) {
+                    inReal[s] = sReal[rows[s] + j];
+                    inIm[s] = sIm[rows[s] + j];
+                }
+                for (int r = 0; r < m; r++) {
+                    double accReal = 0;
+                    double accIm = 0;
+                    int gi = r * m;
+                    for (int s = 0; s < m; s++) {
+                        double gr = gReal[gi + s];
+                        double gim = gIm[gi + s];
+                        if (gr != 0 || gim != 0) {
+                            accReal += gr * inReal[s] - gim * inIm[s];
+                            accIm += gr * inIm[s] + gim * inReal[s];
+                        }
+                    }
+                    dReal[rows[r] + j] = accReal;
+                    dIm[rows[r] + j] = accIm;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the gate internal state of the given state
+     *
+     * @param state  the state
+     * @param qubits the qubit indices of gate internal bits
+     */
+    static int gateState(int state, int... qubits) {
+        int result = 0;
+        for (int i = 0; i < qubits.length; i++) {
+            result |= ((state >>> qubits[i]) & 1) << i;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value with zero bits inserted at the given positions
+     *
+     * @param value     the value
+     * @param positions the ascending sorted bit positions
+     */
+    static int insertZeroBits(int value, int... positions) {
+        return (int) insertZeroBits((long) value, positions);
+    }
+
+    /**
+     * Returns the value with zero bits inserted at the given positions
+     *
+     * @param value     the value
+     * @param positions the ascending sorted bit positions
+     */
+    static long insertZeroBits(long value, int... positions) {
+        for (int p : positions) {
+            long low = value & ((1L << p) - 1);
+            value = ((value >>> p) << (p + 1)) | low;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the long state offsets of each gate internal state
+     * <pre>
+     *     offsets[s] = sum of 2^qubits[i] for each i-th bit set in s
+     * </pre>
+     *
+     * @param qubits the qubit indices
+     */
+    static long[] longStateOffsets(int... qubits) {
+        int m = 1 << qubits.length;
+        long[] offsets = new long[m];
+        for (int s = 1; s < m; s++) {
+            int i = Integer.numberOfTrailingZeros(s);
+            offsets[s] = offsets[s & (s - 1)] | (1L << qubits[i]);
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the mask of qubits
+     *
+     * @param qubits the qubit indices
+     */
+    static int qubitsMask(int... qubits) {
+        int mask = 0;
+        for (int q : qubits) {
+            mask |= 1 << q;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the state offsets of each gate internal state
+     * <pre>
+     *     offsets[s] = sum of 2^qubits[i] for each i-th bit set in s
+     * </pre>
+     *
+     * @param qubits the qubit indices
+     */
+    static int[] stateOffsets(int... qubits) {
+        return Arrays.stream(longStateOffsets(qubits)).mapToInt(offset -> (int) offset).toArray();
+    }
+
+    /**
+     * Validates the gate qubits are different each other and in range of the state qubits
+     *
+     * @param numQubits the number of state qubits
+     * @param qubits    the qubit indices
+     */
+    static void validateQubits(int numQubits, int... qubits) {
+        // Pairwise check: the gates have few qubits, the states (tableaux, MPS) may have more than 64
+        for (int i = 0; i < qubits.length; i++) {
+            if (qubits[i] < 0 || qubits[i] >= numQubits) {
+                throw new IllegalArgumentException(format("Expected qubit in range 0-%d (%d)",
+                        numQubits - 1, qubits[i]));
+            }
+            for (int j = i + 1; j < qubits.length; j++) {
+                if (qubits[i] == qubits[j]) {
+                    throw new IllegalArgumentException(format("Expected all different indices %s",
+                            Arrays.toString(qubits)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Accesses the amplitudes of a state vector by long state index
+     */
+    interface Amplitudes {
+        /**
+         * Returns the imaginary part of the amplitude
+         *
+         * @param state the state
+         */
+        double im(long state);
+
+        /**
+         * Returns the real part of the amplitude
+         *
+         * @param state the state
+         */
+        double real(long state);
+
+        /**
+         * Sets the amplitude of the state
+         *
+         * @param state the state
+         * @param real  the real part
+         * @param im    the imaginary part
+         */
+        void set(long state, double real, double im);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.mmarini.LazyValue;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Operator of a small k-qubit gate applied to a subset of qubits.
+ * <p>
+ * The full 2^n x 2^n matrix is materialised only on demand,
+ * the products by kets or matrices are computed by the gate kernels.
+ * </p>
+ */
+public class GateMatrix extends Matrix {
+
+    /**
+     * Returns the gate operator
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of gate internal bits
+     */
+    public static GateMatrix create(Matrix gate, int... qubits) {
+        return new GateMatrix(operatorSize(gate, qubits), gate, qubits);
+    }
+
+    /**
+     * Returns the size of operator validating the gate and the qubit indices
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of gate internal bits
+     */
+    static int operatorSize(Matrix gate, int... qubits) {
+        requireNonNull(gate);
+        requireNonNull(qubits);
+        validateQubits(qubits);
+        int m = 1 << qubits.length;
+        if (gate.numRows() != m || gate.numCols() != m) {
+            throw new IllegalArgumentException(format("Expected gate %dx%d (%dx%d)",
+                    m, m, gate.numRows(), gate.numCols()));
+        }
+        int numBits = Arrays.stream(qubits).max().orElse(0) + 1;
+        return 1 << numBits;
+    }
+
+    /**
+     * Checks for the valid qubit indices with different values each other
+     *
+     * @param qubits the qubit indices
+     */
+    private static void validateQubits(int... qubits) {
+        if (qubits.length == 0) {
+            throw new IllegalArgumentException("Expected at least one qubit");
+        }
+        for (int i = 0; i < qubits.length; i++) {
+            if (qubits[i] < 0) {
+                throw new IllegalArgumentException(format("Expected non negative indices %s", Arrays.toString(qubits)));
+            }
+            for (int j = i + 1; j < qubits.length; j++) {
+                if (qubits[i] == qubits[j]) {
+                    throw new IllegalArgumentException(format("Expected all different indices %s", Arrays.toString(qubits)));
+                }
+            }
+        }
+    }
+
+    private final Matrix gate;
+    private final int[] qubits;
+    private final int mask;
+    private final int[] offsets;
+    private final LazyValue<SparseMatrix> sparse;
+
+    /**
+     * Creates the gate operator
+     *
+     * @param size   the size of operator
+     * @param gate   the gate matrix
+     * @param qubits the qubit indices
+     */
+    protected GateMatrix(int size, Matrix gate, int[] qubits) {
+        super(size, size, null, null);
+        this.gate = gate;
+        this.qubits = qubits;
+        this.mask = GateKernels.qubitsMask(qubits);
+        this.offsets = GateKernels.stateOffsets(qubits);
+        this.sparse = new LazyValue<>(this::createSparse);
+    }
+
+    /**
+     * Returns the matrix transformed by the gate
+     *
+     * @param right the right matrix with number of rows multiple of operator size
+     */
+    private Matrix apply(Matrix right) {
+        int n = right.numRows() * right.numCols();
+        double[] real = new double[n];
+        double[] im = new double[n];
+        GateKernels.apply(real, im, right.real(), right.im(), right.numRows(), right.numCols(), gate, qubits);
+        return new Matrix(right.numRows(), right.numCols(), real, im);
+    }
+
+    @Override
+    public Complex at(int row, int col) {
+        index(row, col);
+        if ((row & ~mask) != (col & ~mask)) {
+            return Complex.zero();
+        }
+        return gate.at(gateState(row), gateState(col));
+    }
+
+    @Override
+    public GateMatrix conj() {
+        return new GateMatrix(numRows(), gate.conj(), qubits);
+    }
+
+    /**
+     * Returns the sparse matrix of operator
+     */
+    private SparseMatrix createSparse() {
+        int n = numRows();
+        int m = offsets.length;
+        double[] gateReal = gate.real();
+        double[] gateIm = gate.im();
+        // Gate column order by operator column (offsets are not sorted when qubits are not)
+        Integer[] colOrder = new Integer[m];
+        for (int s = 0; s < m; s++) {
+            colOrder[s] = s;
+        }
+        Arrays.sort(colOrder, (a, b) -> Integer.compare(offsets[a], offsets[b]));
+        int[] rowOffsets = new int[n + 1];
+        int[] cols = new int[n * m];
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        int k = 0;
+        for (int row = 0; row < n; row++) {
+            int base = row & ~mask;
+            int r = gateState(row);
+            for (int s : colOrder) {
+                int idx = r * m + s;
+                if (gateReal[idx] != 0 || gateIm[idx] != 0) {
+                    cols[k] = base + offsets[s];
+                    real[k] = gateReal[idx];
+                    im[k] = gateIm[idx];
+                    k++;
+                }
+            }
+            rowOffsets[row + 1] = k;
+        }
+        return new SparseMatrix(n, n, rowOffsets,
+                Arrays.copyOf(cols, k), Arrays.copyOf(real, k), Arrays.copyOf(im, k));
+    }
+
+    @Override
+    public GateMatrix dagger() {
+        return new GateMatrix(numRows(), gate.dagger(), qubits);
+    }
+
+    @Override
+    public Matrix extendsCrossSquare(int n) {
+        return n > numRows() && n % numRows() == 0
+                ? new GateMatrix(n, gate, qubits)
+                : super.extendsCrossSquare(n);
+    }
+
+    /**
+     * Returns the gate matrix (2^k x 2^k)
+     */
+    public Matrix gate() {
+        return gate;
+    }
+
+    /**
+     * Returns the gate internal state of the given state
+     *
+     * @param state the state
+     */
+    private int gateState(int state) {
+        return GateKernels.gateState(state, qubits);
+    }
+
+    @Override
+    public double[] im() {
+        return sparse.get().im();
+    }
+
+    @Override
+    boolean isDense() {
+        return false;
+    }
+
+    @Override
+    public Matrix mul(Matrix right) {
+        if (right.numRows() < numRows()) {
+            right = right.extendsCrossSquare(numRows());
+        }
+        return right.isDense() && right.numRows() % numRows() == 0
+                ? apply(right)
+                : super.mul(right);
+    }
+
+    @Override
+    public Matrix mul0(Matrix right) {
+        if (right.numRows() < numRows()) {
+            right = right.extendsRows(numRows());
+        }
+        return right.isDense() && right.numRows() == numRows()
+                ? apply(right)
+                : super.mul0(right);
+    }
+
+    /**
+     * Returns the qubit indices of gate internal bits
+     */
+    public int[] qubits() {
+        return qubits;
+    }
+
+    @Override
+    public double[] real() {
+        return sparse.get().real();
+    }
+
+    @Override
+    SparseMatrix sparse() {
+        return sparse.get();
+    }
+
+    @Override
+    public GateMatrix transpose() {
+        return new GateMatrix(numRows(), gate.transpose(), qubits);
+    }
+
+    @Override
+    Matrix unsafeLeftMul(Matrix left) {
+        return sparse.get().unsafeLeftMul(left);
+    }
+
+    @Override
+    Matrix unsafeMul(Matrix right) {
+        return sparse.get().unsafeMul(right);
+    }
+}
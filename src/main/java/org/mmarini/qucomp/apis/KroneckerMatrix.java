@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.mmarini.LazyValue;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Kronecker (cross) product of two matrices stored by its factors.
+ * <p>
+ * The products are computed by the mixed-product identity
+ * <pre>
+ *     (A x B) V = (I x B) (A x I) V
+ * </pre>
+ * applying each factor to the reshaped operand,
+ * the full matrix is materialised only on explicit demand.
+ * </p>
+ */
+public class KroneckerMatrix extends Matrix {
+
+    /**
+     * Returns the cross product of two matrices.
+     * The product of vectors is computed directly, the product of operators is lazy
+     *
+     * @param left  the left factor
+     * @param right the right factor
+     */
+    public static Matrix create(Matrix left, Matrix right) {
+        requireNonNull(left);
+        requireNonNull(right);
+        KroneckerMatrix result = new KroneckerMatrix(left, right);
+        return result.numRows() == 1 || result.numCols() == 1
+                ? result.materialise()
+                : result;
+    }
+
+    /**
+     * Returns the dense cross product of two matrices
+     * left[i, k] * right[j, l]
+     *
+     * @param left  the left factor
+     * @param right the right factor
+     */
+    private static Matrix denseCross(Matrix left, Matrix right) {
+        int numRows = left.numRows();
+        int numCols = left.numCols();
+        int rows = numRows * right.numRows();
+        int cols = numCols * right.numCols();
+        double[] aReal = left.real();
+        double[] aIm = left.im();
+        double[] bReal = right.real();
+        double[] bIm = right.im();
+        double[] real = new double[rows * cols];
+        double[] im = new double[rows * cols];
+        int m = right.numCols();
+        int idx = 0;
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < right.numRows(); j++) {
+                int jl = unsafeIndex(m, j, 0);
+                for (int k = 0; k < numCols; k++) {
+                    int ik = unsafeIndex(numCols, i, k);
+                    // Row j of right scaled by left[i, k]
+                    VectorUtils.mul(real, im, idx, bReal, bIm, jl, aReal[ik], aIm[ik], m);
+                    idx += m;
+                }
+            }
+        }
+        return new Matrix(rows, cols, real, im);
+    }
+
+    /**
+     * Returns the cells with swapped middle axes
+     * <pre>
+     *     dst[o][j][i][k] = src[o][i][j][k]
+     * </pre>
+     *
+     * @param src   the source cells
+     * @param outer the outer axis size
+     * @param a     the first middle axis size
+     * @param b     the second middle axis size
+     * @param inner the inner axis size
+     */
+    static double[] swapAxes(double[] src, int outer, int a, int b, int inner) {
+        double[] dst = new double[src.length];
+        int block = a * b * inner;
+        for (int o = 0; o < outer; o++) {
+            int base = o * block;
+            for (int i = 0; i < a; i++) {
+                for (int j = 0; j < b; j++) {
+                    System.arraycopy(src, base + (i * b + j) * inner,
+                            dst, base + (j * a + i) * inner, inner);
+                }
+            }
+        }
+        return dst;
+    }
+
+    private final Matrix left;
+    private final Matrix right;
+    private final LazyValue<Matrix> dense;
+    private final LazyValue<SparseMatrix> sparse;
+
+    /**
+     * Creates the cross product
+     *
+     * @param left  the left factor
+     * @param right the right factor
+     */
+    protected KroneckerMatrix(Matrix left, Matrix right) {
+        super(left.numRows() * right.numRows(), left.numCols() * right.numCols(), null, null);
+        this.left = left;
+        this.right = right;
+        this.dense = new LazyValue<>(() -> denseCross(left, right));
+        this.sparse = new LazyValue<>(this::createSparse);
+    }
+
+    @Override
+    public Complex at(int row, int col) {
+        index(row, col);
+        int r = right.numRows();
+        int s = right.numCols();
+        return left.at(row / r, col / s).mul(right.at(row % r, col % s));
+    }
+
+    @Override
+    public KroneckerMatrix conj() {
+        return new KroneckerMatrix(left.conj(), right.conj());
+    }
+
+    /**
+     * Returns the sparse matrix of the product
+     */
+    private SparseMatrix createSparse() {
+        SparseMatrix a = left.sparse();
+        SparseMatrix b = right.sparse();
+        int[] aOffsets = a.rowOffsets();
+        int[] aCols = a.colIndices();
+        double[] aReal = a.nonZeroReal();
+        double[] aIm = a.nonZeroIm();
+        int[] bOffsets = b.rowOffsets();
+        int[] bCols = b.colIndices();
+        double[] bReal = b.nonZeroReal();
+        double[] bIm = b.nonZeroIm();
+        int r = right.numRows();
+        int s = right.numCols();
+        int nnz = a.numNonZeros() * b.numNonZeros();
+        int[] offsets = new int[numRows() + 1];
+        int[] cols = new int[nnz];
+        double[] real = new double[nnz];
+        double[] im = new double[nnz];
+        int k = 0;
+        for (int ia = 0; ia < left.numRows(); ia++) {
+            for (int ib = 0; ib < r; ib++) {
+                // Columns ja * s + jb are sorted by ja then by jb
+                for (int ka = aOffsets[ia]; ka < aOffsets[ia + 1]; ka++) {
+                    int colBase = aCols[ka] * s;
+                    double ar = aReal[ka];
+                    double ai = aIm[ka];
+                    for (int kb = bOffsets[ib]; kb < bOffsets[ib + 1]; kb++) {
+                        cols[k] = colBase + bCols[kb];
+                        real[k] = ar * bReal[kb] - ai * bIm[kb];
+                        im[k] = ar * bIm[kb] + ai * bReal[kb];
+                        k++;
+                    }
+                }
+                offsets[ia * r + ib + 1] = k;
+            }
+        }
+        return new SparseMatrix(numRows(), numCols(), offsets, cols, real, im);
+    }
+
+    @Override
+    public KroneckerMatrix dagger() {
+        return new KroneckerMatrix(left.dagger(), right.dagger());
+    }
+
+    @Override
+    public double[] im() {
+        return dense.get().im();
+    }
+
+    @Override
+    boolean isDense() {
+        return false;
+    }
+
+    /**
+     * Returns the left factor
+     */
+    public Matrix left() {
+        return left;
+    }
+
+    /**
+     * Returns the dense matrix of the product
+     */
+    public Matrix materialise() {
+        return dense.get();
+    }
+
+    @Override
+    public KroneckerMatrix mul(double scale) {
+        return new KroneckerMatrix(left.mul(scale), right);
+    }
+
+    @Override
+    public KroneckerMatrix mul(Complex scale) {
+        return new KroneckerMatrix(left.mul(scale), right);
+    }
+
+    @Override
+    public KroneckerMatrix neg() {
+        return new KroneckerMatrix(left.neg(), right);
+    }
+
+    @Override
+    public KroneckerMatrix normalise() {
+        return new KroneckerMatrix(left.normalise(), right.normalise());
+    }
+
+    @Override
+    public double[] real() {
+        return dense.get().real();
+    }
+
+    /**
+     * Returns the right factor
+     */
+    public Matrix right() {
+        return right;
+    }
+
+    @Override
+    SparseMatrix sparse() {
+        return sparse.get();
+    }
+
+    @Override
+    public KroneckerMatrix transpose() {
+        return new KroneckerMatrix(left.transpose(), right.transpose());
+    }
+
+    @Override
+    Matrix unsafeLeftMul(Matrix other) {
+        if (!other.isDense()) {
+            return other.sparse().mulSparse(sparse.get());
+        }
+        // L (A x B): L is (n x p x r)
+        int n = other.numRows();
+        int p = left.numRows();
+        int q = left.numCols();
+        int s = right.numCols();
+        // Contracts r by B: (n p x r) B = (n x p x s)
+        Matrix t = new Matrix(n * p, right.numRows(), other.real(), other.im()).unsafeMul(right);
+        // Contracts p by A: (n s x p) A = (n x s x q)
+        Matrix u = new Matrix(n * s, p,
+                swapAxes(t.real(), n, p, s, 1),
+                swapAxes(t.im(), n, p, s, 1))
+                .unsafeMul(left);
+        return new Matrix(n, q * s,
+                swapAxes(u.real(), n, s, q, 1),
+                swapAxes(u.im(), n, s, q, 1));
+    }
+
+    @Override
+    Matrix unsafeMul(Matrix other) {
+        if (other instanceof KroneckerMatrix k
+                && left.numCols() == k.left.numRows()
+                && right.numCols() == k.right.numRows()) {
+            // Mixed product (A x B) (C x D) = AC x BD
+            return new KroneckerMatrix(left.unsafeMul(k.left), right.unsafeMul(k.right));
+        }
+        if (!other.isDense()) {
+            return sparse.get().mulSparse(other.sparse());
+        }
+        // (A x B) V: V is (q x s x m)
+        int p = left.numRows();
+        int q = left.numCols();
+        int r = right.numRows();
+        int s = right.numCols();
+        int m = other.numCols();
+        // Contracts q by A: A (q x s m) = (p x s x m)
+        Matrix u = left.unsafeMul(new Matrix(q, s * m, other.real(), other.im()));
+        // Contracts s by B: B (s x p m) = (r x p x m)
+        Matrix w = right.unsafeMul(new Matrix(s, p * m,
+                swapAxes(u.real(), 1, p, s, m),
+                swapAxes(u.im(), 1, p, s, m)));
+        return new Matrix(p * r, m,
+                swapAxes(w.real(), 1, r, p, m),
+                swapAxes(w.im(), 1, r, p, m));
+    }
+}
@@ -28,52 +28,48 @@
 
 package org.mmarini.qucomp.apis;
 
-import io.reactivex.rxjava3.functions.Action;
-import io.reactivex.rxjava3.schedulers.Schedulers;
-import org.mmarini.ParallelProcess;
-
 import java.util.Arrays;
-import java.util.function.Function;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import static java.lang.Math.*;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static org.mmarini.qucomp.apis.VectorUtils.numBitsByState;
-import static org.mmarini.qucomp.apis.VectorUtils.partMul;
 
 /**
  * Complex matrix
  */
 public class Matrix {
 
-    private static final long ORDER_BY_CORE_THRESHOLD = 64 * 64 * 64 * 64 / 12;
     private static final double HALF_SQRT2 = sqrt(2) / 2;
     private static final Matrix I_KET = ket(Complex.create(HALF_SQRT2), Complex.i(HALF_SQRT2));
     private static final Matrix MINUS_I_KET = ket(Complex.create(HALF_SQRT2), Complex.i(-HALF_SQRT2));
     private static final Matrix PLUS_KET = ket(HALF_SQRT2, HALF_SQRT2);
     private static final Matrix MINUS_KET = ket(HALF_SQRT2, -HALF_SQRT2);
+    private static final int MIN_PARALLEL_CELLS = 1 << 18;
+    /**
+     * The max number of qubits of joint marginal probabilities
+     */
+    static final int MAX_MARGINAL_QUBITS = 26;
+    /**
+     * The max size of the partial results accumulated in parallel (larger results are accumulated sequentially)
+     */
+    static final int MAX_PARTIAL_SIZE = 1 << 16;
     private static final Matrix CNOT_GATE = permute(0, 1, 3, 2);
     private static final Matrix CCNOT_GATE = permute(0, 1, 2, 3, 4, 5, 7, 6);
+    private static final Matrix SWAP_GATE = permute(0, 2, 1, 3);
     private static final Matrix H_GATE = create(2, 2,
             HALF_SQRT2, HALF_SQRT2,
             HALF_SQRT2, -HALF_SQRT2);
-    private static final Matrix S_GATE = create(2, 2,
-            Complex.one(), Complex.zero(),
-            Complex.zero(), Complex.i());
-    private static final Matrix T_GATE = create(2, 2,
-            Complex.one(), Complex.zero(),
-            Complex.zero(), new Complex(HALF_SQRT2, HALF_SQRT2));
+    private static final Matrix S_GATE = DiagonalMatrix.create(Complex.one(), Complex.i());
+    private static final Matrix T_GATE = DiagonalMatrix.create(Complex.one(), new Complex(HALF_SQRT2, HALF_SQRT2));
     private static final Matrix X_GATE = create(2, 2,
             0, 1,
             1, 0);
     private static final Matrix Y_GATE = create(2, 2,
             Complex.zero(), Complex.i(-1),
             Complex.i(), Complex.zero());
-    private static final Matrix Z_GATE = create(2, 2,
-            1, 0,
-            0, -1);
+    private static final Matrix Z_GATE = DiagonalMatrix.create(Complex.one(), Complex.create(-1));
 
     /**
      * Returns the matrix with all zero elements except the element at(row, col)
@@ -84,10 +80,7 @@ public class Matrix {
     public static Matrix ary(int row, int col) {
         int rows = 1 << numBitsByState(row);
         int cols = 1 << numBitsByState(col);
-        Complex[] cells = new Complex[rows * cols];
-        Arrays.fill(cells, Complex.zero());
-        cells[unsafeIndex(cols, row, col)] = Complex.one();
-        return new Matrix(rows, cols, cells);
+        return SparseMatrix.create(rows, cols, new int[]{row}, new int[]{col}, new double[]{1}, new double[1]);
     }
 
     /**
@@ -213,7 +206,13 @@ public class Matrix {
                     "expected %d cells (%d)",
                     size, cells.length));
         }
-        return new Matrix(numRows, numCols, cells);
+        double[] real = new double[size];
+        double[] im = new double[size];
+        for (int i = 0; i < size; i++) {
+            real[i] = cells[i].real();
+            im[i] = cells[i].im();
+        }
+        return new Matrix(numRows, numCols, real, im);
     }
 
     /**
@@ -224,7 +223,14 @@ public class Matrix {
      * @param values  cell values
      */
     public static Matrix create(int numRows, int numCols, double... values) {
-        return create(numRows, numCols, VectorUtils.create(values));
+        requireNonNull(values);
+        int size = numRows * numCols;
+        if (values.length != size) {
+            throw new IllegalArgumentException(format(
+                    "expected %d cells (%d)",
+                    size, values.length));
+        }
+        return new Matrix(numRows, numCols, values.clone(), new double[size]);
     }
 
     /**
@@ -232,27 +238,35 @@ public class Matrix {
      *
      * @param numRows the number of rows
      * @param numCols the number of cols
-     * @param f       the cell generator by index
+     * @param f       the cell generator by row and column indices
      */
-    public static Matrix create(int numRows, int numCols, Function<int[], Complex> f) {
-        Complex[] cells = new Complex[numRows * numCols];
-        indexStream(numRows, numCols).forEach(indices -> {
-            Complex cell = f.apply(indices);
-            cells[unsafeIndex(numCols, indices[0], indices[1])] = cell;
-        });
-        return new Matrix(numRows, numCols, cells);
+    public static Matrix create(int numRows, int numCols, CellGenerator f) {
+        double[] real = new double[numRows * numCols];
+        double[] im = new double[numRows * numCols];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                Complex cell = f.apply(i, j);
+                int idx = unsafeIndex(numCols, i, j);
+                real[idx] = cell.real();
+                im[idx] = cell.im();
+            }
+        }
+        return new Matrix(numRows, numCols, real, im);
     }
 
     /**
-     * Returns the matrix of cnot gate applied to the given bits
+     * Returns the operator of the base gate applied to the given bits.
+     * The operators of dense gates are shared by the {@link GateCache}
      *
      * @param baseGate the base gate matrix
      * @param bitMap   the bit map
      */
     private static Matrix createGate(Matrix baseGate, int... bitMap) {
-        int[] statePermuteIn = computeStatePermutation(computeBitsPermutation(bitMap));
-        int[] statePermuteOut = inversePermutation(statePermuteIn);
-        return permute(statePermuteOut).mul(baseGate).mul(permute(statePermuteIn));
+        return baseGate instanceof PermutationMatrix perm
+                ? PermutationMatrix.createGate(perm, bitMap)
+                : baseGate instanceof DiagonalMatrix diag
+                ? DiagonalMatrix.createGate(diag, bitMap)
+                : GateCache.instance().get(baseGate, bitMap);
     }
 
 
@@ -264,16 +278,14 @@ public class Matrix {
      */
     public static Matrix eps(int row, int col) {
         int size = 1 << numBitsByState(max(row, col));
-        Complex[] cells = new Complex[size * size];
-        Arrays.fill(cells, Complex.zero());
-        if (row != col) {
-            double val = (row + col) % 2 == 0
-                    ? 1 : -1;
-            val = row < col ? val : -val;
-            cells[unsafeIndex(size, row, col)] = Complex.create(val);
-            cells[unsafeIndex(size, col, row)] = Complex.create(-val);
+        if (row == col) {
+            return SparseMatrix.create(size, size, new int[0], new int[0], new double[0], new double[0]);
         }
-        return new Matrix(size, size, cells);
+        double val = (row + col) % 2 == 0
+                ? 1 : -1;
+        val = row < col ? val : -val;
+        return SparseMatrix.create(size, size, new int[]{row, col}, new int[]{col, row},
+                new double[]{val, -val}, new double[2]);
     }
 
     /**
@@ -298,20 +310,9 @@ public class Matrix {
      * @param size the size of matrix
      */
     public static Matrix identity(int size) {
-        return create(size, size, indices ->
-                indices[0] == indices[1] ? Complex.one() : Complex.zero());
-    }
-
-    /**
-     * Returns the stream of indices
-     */
-    static Stream<int[]> indexStream(int numRows, int numCols) {
-        return IntStream.range(0, numRows)
-                .boxed()
-                .flatMap(i ->
-                        IntStream.range(0, numCols)
-                                .mapToObj(j -> new int[]{i, j})
-                );
+        double[] ones = new double[size];
+        Arrays.fill(ones, 1);
+        return DiagonalMatrix.create(ones, new double[size]);
     }
 
     /**
@@ -333,7 +334,7 @@ public class Matrix {
      * @param values the state values
      */
     public static Matrix ket(Complex... values) {
-        return new Matrix(values.length, 1, values);
+        return create(values.length, 1, values);
     }
 
     /**
@@ -342,11 +343,7 @@ public class Matrix {
      * @param values the state values
      */
     public static Matrix ket(double... values) {
-        Complex[] cells = new Complex[values.length];
-        for (int i = 0; i < cells.length; i++) {
-            cells[i] = Complex.create(values[i]);
-        }
-        return ket(cells);
+        return create(values.length, 1, values);
     }
 
     /**
@@ -356,10 +353,9 @@ public class Matrix {
      */
     public static Matrix ketBase(int state) {
         int n = 1 << numBitsByState(state);
-        Complex[] cells = new Complex[n];
-        Arrays.fill(cells, Complex.zero());
-        cells[state] = Complex.one();
-        return new Matrix(n, 1, cells);
+        double[] real = new double[n];
+        real[state] = 1;
+        return new Matrix(n, 1, real, new double[n]);
     }
 
     /**
@@ -411,14 +407,24 @@ public class Matrix {
      * @param permutation the target mapping
      */
     public static Matrix permute(int... permutation) {
+        if (PermutationMatrix.isPermutation(permutation)) {
+            return PermutationMatrix.create(permutation);
+        }
         int n = permutation.length;
-        return create(n, permutation.length, indices -> {
-            int i = indices[0];
-            int j = indices[1];
-            return i == permutation[j]
-                    ? Complex.one()
-                    : Complex.zero();
-        });
+        int[] rows = new int[n];
+        int[] cols = new int[n];
+        int k = 0;
+        for (int j = 0; j < n; j++) {
+            // Mappings out of range leave the column empty
+            if (permutation[j] >= 0 && permutation[j] < n) {
+                rows[k] = permutation[j];
+                cols[k] = j;
+                k++;
+            }
+        }
+        double[] ones = new double[k];
+        Arrays.fill(ones, 1);
+        return SparseMatrix.create(n, n, Arrays.copyOf(rows, k), Arrays.copyOf(cols, k), ones, new double[k]);
     }
 
     /**
@@ -437,15 +443,7 @@ public class Matrix {
     public static Matrix qubit0(int index, int numQubits) {
         int nBits = max(index + 1, numQubits);
         int nStates = 1 << nBits;
-        int mask = 1 << index;
-        Complex[] cells = new Complex[nStates * nStates];
-        Arrays.fill(cells, Complex.zero());
-        for (int i = 0; i < nStates; i++) {
-            if ((i & mask) == 0) {
-                cells[unsafeIndex(nStates, i, i)] = Complex.one();
-            }
-        }
-        return new Matrix(nStates, nStates, cells);
+        return DiagonalMatrix.projector(nStates, 1 << index, 0);
     }
 
     /**
@@ -457,15 +455,7 @@ public class Matrix {
     public static Matrix qubit1(int index, int numQubits) {
         int nBits = max(index + 1, numQubits);
         int nStates = 1 << nBits;
-        int mask = 1 << index;
-        Complex[] cells = new Complex[nStates * nStates];
-        Arrays.fill(cells, Complex.zero());
-        for (int i = 0; i < nStates; i++) {
-            if ((i & mask) != 0) {
-                cells[unsafeIndex(nStates, i, i)] = Complex.one();
-            }
-        }
-        return new Matrix(nStates, nStates, cells);
+        return DiagonalMatrix.projector(nStates, 1 << index, 1 << index);
     }
 
     /**
@@ -476,11 +466,9 @@ public class Matrix {
      */
     public static Matrix sim(int row, int col) {
         int size = 1 << numBitsByState(max(row, col));
-        Complex[] cells = new Complex[size * size];
-        Arrays.fill(cells, Complex.zero());
-        cells[unsafeIndex(size, row, col)] = Complex.one();
-        cells[unsafeIndex(size, col, row)] = Complex.one();
-        return new Matrix(size, size, cells);
+        return row == col
+                ? SparseMatrix.create(size, size, new int[]{row}, new int[]{col}, new double[]{1}, new double[1])
+                : SparseMatrix.create(size, size, new int[]{row, col}, new int[]{col, row}, new double[]{1, 1}, new double[2]);
     }
 
     /**
@@ -510,6 +498,9 @@ public class Matrix {
      * @param b1 the second bit index
      */
     public static Matrix swap(int b0, int b1) {
+        if (b0 != b1) {
+            return createGate(SWAP_GATE, b0, b1);
+        }
         int nBits = max(max(b0, b1), 1) + 1;
         int[] bitPerm = IntStream.range(0, nBits).toArray();
         bitPerm[b0] = b1;
@@ -530,26 +521,13 @@ public class Matrix {
 
     /**
      * Returns the vector product of two matrices
-     * left[i, k] * right[j, l]
+     * left[i, k] * right[j, l].
+     * The product of two operators is computed lazily by the factors
      *
      * @param right the right matrices
      */
     public Matrix cross(Matrix right) {
-        int rows = numRows * right.numRows;
-        int cols = numCols * right.numCols;
-        Complex[] cells = new Complex[rows * cols];
-        int idx = 0;
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < right.numRows; j++) {
-                for (int k = 0; k < numCols; k++) {
-                    for (int l = 0; l < right.numCols; l++) {
-                        cells[idx] = at(i, k).mul(right.at(j, l));
-                        idx++;
-                    }
-                }
-            }
-        }
-        return new Matrix(rows, cols, cells);
+        return KroneckerMatrix.create(this, right);
     }
 
     /**
@@ -595,19 +573,22 @@ public class Matrix {
     }
     private final int numRows;
     private final int numCols;
-    private final Complex[] cells;
+    private final double[] real;
+    private final double[] im;
 
     /**
      * Creates the matrix
      *
      * @param numRows the number of rows
      * @param numCols the number of columns
-     * @param cells   the cells values
+     * @param real    the real parts of cells
+     * @param im      the imaginary parts of cells
      */
-    protected Matrix(int numRows, int numCols, Complex... cells) {
+    protected Matrix(int numRows, int numCols, double[] real, double[] im) {
         this.numRows = numRows;
         this.numCols = numCols;
-        this.cells = cells;
+        this.real = real;
+        this.im = im;
     }
 
     /**
@@ -620,8 +601,9 @@ public class Matrix {
         int m = max(numCols, other.numCols);
         Matrix left = extends0(n, m);
         Matrix right = other.extends0(n, m);
-        Complex[] cells = VectorUtils.add(left.cells, right.cells);
-        return new Matrix(n, m, cells);
+        return new Matrix(n, m,
+                VectorUtils.add(left.real(), right.real()),
+                VectorUtils.add(left.im(), right.im()));
     }
 
     /**
@@ -631,7 +613,8 @@ public class Matrix {
      * @param col the column index
      */
     public Complex at(int row, int col) {
-        return cells[index(row, col)];
+        int idx = index(row, col);
+        return new Complex(real()[idx], im()[idx]);
     }
 
     /**
@@ -640,13 +623,21 @@ public class Matrix {
      * @param index index
      */
     public Complex at(int index) {
-        return cells[index(index)];
+        int idx = index(index);
+        return new Complex(real()[idx], im()[idx]);
     }
 
     /**
-     * Returns the cells
+     * Returns the cells.
+     * The complex values are created from the primitive storage on each call
      */
     public Complex[] cells() {
+        double[] real = real();
+        double[] im = im();
+        Complex[] cells = new Complex[real.length];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Complex(real[i], im[i]);
+        }
         return cells;
     }
 
@@ -654,7 +645,7 @@ public class Matrix {
      * Returns the conjugated matrix
      */
     public Matrix conj() {
-        return new Matrix(numRows, numCols, Arrays.stream(cells).map(Complex::conj).toArray(Complex[]::new));
+        return new Matrix(numRows, numCols, real(), VectorUtils.neg(im()));
     }
 
     /**
@@ -664,14 +655,27 @@ public class Matrix {
         return conj().transpose();
     }
 
+    /**
+     * Returns the matrix multiplication (this x right) of dense cells without shape validation
+     *
+     * @param right the right matrix
+     */
+    Matrix denseMul(Matrix right) {
+        if (StrassenMul.isApplicable(numRows, numCols, right.numCols)) {
+            return mulStrassen(right);
+        }
+        return ParallelMul.isParallel(numRows, numCols, right.numCols)
+                ? mulConc(right)
+                : mulSeq(right);
+    }
+
     /**
      * Returns the division by divisor
      *
      * @param value the divisor
      */
     public Matrix div(double value) {
-        Complex[] cells = VectorUtils.divScalar(this.cells, value);
-        return new Matrix(numRows, numCols, cells);
+        return mul(1 / value);
     }
 
     /**
@@ -680,8 +684,7 @@ public class Matrix {
      * @param value the divisor
      */
     public Matrix div(Complex value) {
-        Complex[] cells = VectorUtils.divScalar(this.cells, value);
-        return new Matrix(numRows, numCols, cells);
+        return mul(value.inv());
     }
 
     /**
@@ -704,13 +707,15 @@ public class Matrix {
         if (this.numCols >= numCols) {
             return this;
         }
-        Complex[] cells = new Complex[numRows * numCols];
-
+        double[] srcReal = real();
+        double[] srcIm = im();
+        double[] real = new double[numRows * numCols];
+        double[] im = new double[numRows * numCols];
         for (int i = 0; i < numRows; i++) {
-            System.arraycopy(this.cells, i * this.numCols, cells, i * numCols, this.numCols);
-            Arrays.fill(cells, i * numCols + this.numCols, i * numCols + numCols, Complex.zero());
+            System.arraycopy(srcReal, i * this.numCols, real, i * numCols, this.numCols);
+            System.arraycopy(srcIm, i * this.numCols, im, i * numCols, this.numCols);
         }
-        return new Matrix(numRows, numCols, cells);
+        return new Matrix(numRows, numCols, real, im);
     }
 
     /**
@@ -737,7 +742,7 @@ public class Matrix {
             throw new IllegalArgumentException(format("Expected size multiple of %dx%d (%dx%d)", numRows, numRows, n, n));
         }
         int q = n / numRows;
-        return identity(q).cross(this);
+        return KroneckerMatrix.create(identity(q), this);
     }
 
     /**
@@ -749,10 +754,18 @@ public class Matrix {
         if (this.numRows >= numRows) {
             return this;
         }
-        Complex[] cells = new Complex[numRows * numCols];
-        System.arraycopy(this.cells, 0, cells, 0, this.cells.length);
-        Arrays.fill(cells, this.cells.length, cells.length, Complex.zero());
-        return new Matrix(numRows, numCols, cells);
+        int size = numRows * numCols;
+        return new Matrix(numRows, numCols,
+                Arrays.copyOf(real(), size),
+                Arrays.copyOf(im(), size));
+    }
+
+    /**
+     * Returns the imaginary parts of cells (row major order).
+     * The array is shared and must not be modified
+     */
+    public double[] im() {
+        return im;
     }
 
     /**
@@ -795,13 +808,62 @@ public class Matrix {
         return index;
     }
 
+    /**
+     * Returns true if the cells are stored in the dense arrays.
+     * The structured operators compute the products by their own structure
+     */
+    boolean isDense() {
+        return true;
+    }
+
+    /**
+     * Returns the number of qubits of the ket
+     */
+    private int ketQubits() {
+        if (numCols != 1 || Integer.bitCount(numRows) != 1) {
+            throw new IllegalArgumentException(format("Expected ket with power of 2 states (%dx%d)",
+                    numRows, numCols));
+        }
+        return Integer.numberOfTrailingZeros(numRows);
+    }
+
+    /**
+     * Returns the joint probabilities of the qubits of the ket computed in a single pass over the amplitudes.
+     * The bit m of the result index is the value of qubit <code>qubits[m]</code>,
+     * the number of qubits is at most 26 and
+     * the probabilities are not normalised (sum to the square norm of ket)
+     *
+     * @param qubits the qubit indices
+     */
+    public double[] marginal(int... qubits) {
+        int n = ketQubits();
+        if (qubits.length > MAX_MARGINAL_QUBITS) {
+            throw new IllegalArgumentException(format("Expected at most %d qubits (%d)",
+                    MAX_MARGINAL_QUBITS, qubits.length));
+        }
+        boolean[] used = new boolean[n];
+        for (int qubit : qubits) {
+            if (qubit < 0 || qubit >= n) {
+                throw new IllegalArgumentException(format("Expected qubit in range 0-%d (%d)", n - 1, qubit));
+            }
+            if (used[qubit]) {
+                throw new IllegalArgumentException(format("Expected all different indices %s", Arrays.toString(qubits)));
+            }
+            used[qubit] = true;
+        }
+        int size = 1 << qubits.length;
+        return reduceBands(size, (dst, from, to) -> VectorUtils.marginal(dst, real(), im(), qubits, from, to));
+    }
+
     /**
      * Returns the scaled matrix
      *
      * @param scale the scale
      */
     public Matrix mul(double scale) {
-        return new Matrix(numRows, numCols, Arrays.stream(cells).map(c -> c.mul(scale)).toArray(Complex[]::new));
+        return new Matrix(numRows, numCols,
+                VectorUtils.mul(real(), scale),
+                VectorUtils.mul(im(), scale));
     }
 
     /**
@@ -842,7 +904,13 @@ public class Matrix {
      * @param scale the scale
      */
     public Matrix mul(Complex scale) {
-        return new Matrix(numRows, numCols, Arrays.stream(cells).map(c -> c.mul(scale)).toArray(Complex[]::new));
+        double[] srcReal = real();
+        double[] srcIm = im();
+        int n = srcReal.length;
+        double[] real = new double[n];
+        double[] im = new double[n];
+        VectorUtils.mul(real, im, 0, srcReal, srcIm, 0, scale.real(), scale.im(), n);
+        return new Matrix(numRows, numCols, real, im);
     }
 
     /**
@@ -851,44 +919,11 @@ public class Matrix {
      * @param other the other matrix
      */
     Matrix mulConc(Matrix other) {
-        int cores = Runtime.getRuntime().availableProcessors();
         int m = other.numCols;
-        int numCells = numRows * m;
-        int numCellsPerThread = (2 * numCells + cores) / cores / 2;
-        // no partition
-        int rowsPerThread;
-        int colsPerThread;
-
-        if (m > numCellsPerThread) {
-            // horizontal partition
-            colsPerThread = numCellsPerThread;
-            rowsPerThread = 1;
-        } else {
-            // vertical partition
-            rowsPerThread = (numCellsPerThread + m - 1) / m;
-            colsPerThread = m;
-        }
-        Complex[] results = new Complex[numRows * m];
-        ParallelProcess.TaskScheduler tasks = ParallelProcess.scheduler(Schedulers.computation());
-
-        for (int i = 0; i < numRows; i += rowsPerThread) {
-            int dOffset = i * m;
-            int aOffset = i * numCols;
-            int numTaskRow = min(numRows - i, rowsPerThread);
-            for (int j = 0; j < m; j += colsPerThread) {
-                int bOffset = j;
-                int numTaskCols = min(m - j, colsPerThread);
-                Action task = () ->
-                        partMul(results, dOffset,
-                                numTaskRow, numTaskCols,
-                                cells, aOffset, numCols,
-                                other.cells, bOffset, m);
-                tasks.add(task);
-            }
-        }
-        // Execute
-        tasks.run();
-        return new Matrix(numRows, m, results);
+        double[] real = new double[numRows * m];
+        double[] im = new double[numRows * m];
+        ParallelMul.mul(real, im, real(), im(), other.real(), other.im(), numRows, numCols, m);
+        return new Matrix(numRows, m, real, im);
     }
 
     /**
@@ -898,16 +933,32 @@ public class Matrix {
      */
     Matrix mulSeq(Matrix other) {
         int n = numRows * other.numCols;
-        Complex[] cells = new Complex[n];
-        partMul(cells, 0, numRows, other.numCols, this.cells, 0, numCols, other.cells, 0, other.numCols);
-        return new Matrix(numRows, other.numCols, cells);
+        double[] real = new double[n];
+        double[] im = new double[n];
+        MulKernels.mul(real, im, 0, numRows, other.numCols,
+                real(), im(), 0, numCols,
+                other.real(), other.im(), 0, other.numCols);
+        return new Matrix(numRows, other.numCols, real, im);
+    }
+
+    /**
+     * Returns the matrix multiplication (this x other) by Strassen-Winograd recursion
+     *
+     * @param other the other matrix
+     */
+    Matrix mulStrassen(Matrix other) {
+        int n = numRows * numRows;
+        double[] real = new double[n];
+        double[] im = new double[n];
+        StrassenMul.mul(real, im, real(), im(), other.real(), other.im(), numRows);
+        return new Matrix(numRows, numRows, real, im);
     }
 
     /**
      * Returns the negated matrix (-this)
      */
     public Matrix neg() {
-        return new Matrix(numRows, numCols, Arrays.stream(cells).map(Complex::neg).toArray(Complex[]::new));
+        return new Matrix(numRows, numCols, VectorUtils.neg(real()), VectorUtils.neg(im()));
     }
 
     /**
@@ -924,6 +975,53 @@ public class Matrix {
         return numRows;
     }
 
+    /**
+     * Returns the probabilities of each qubit of the ket at 1 state computed in a single pass over the amplitudes.
+     * The probabilities are not normalised (the square norm of the projection of ket)
+     */
+    public double[] qubitProbabilities() {
+        int n = ketQubits();
+        return reduceBands(n, (dst, from, to) -> VectorUtils.qubitProbabilities(dst, real(), im(), from, to));
+    }
+
+    /**
+     * Returns the real parts of cells (row major order).
+     * The array is shared and must not be modified
+     */
+    public double[] real() {
+        return real;
+    }
+
+    /**
+     * Returns the sums of the partial results accumulated by bands of rows.
+     * The bands are accumulated in parallel for large matrices and small results
+     * (up to {@link #MAX_PARTIAL_SIZE}) and summed in band order
+     *
+     * @param size        the size of result
+     * @param accumulator the accumulator of a band of rows
+     */
+    private double[] reduceBands(int size, BandAccumulator accumulator) {
+        if (numRows < MIN_PARALLEL_CELLS || size > MAX_PARTIAL_SIZE || ParallelMul.parallelism() <= 1) {
+            double[] result = new double[size];
+            accumulator.accumulate(result, 0, numRows);
+            return result;
+        }
+        int numBands = ParallelMul.parallelism() * 4;
+        double[][] partials = new double[numBands][size];
+        ParallelMul.pool().submit(() -> IntStream.range(0, numBands).parallel().forEach(band -> {
+            int from = (int) ((long) numRows * band / numBands);
+            int to = (int) ((long) numRows * (band + 1) / numBands);
+            accumulator.accumulate(partials[band], from, to);
+        })).join();
+        double[] result = partials[0];
+        for (int band = 1; band < numBands; band++) {
+            for (int i = 0; i < size; i++) {
+                result[i] += partials[band][i];
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the matrix multiplication (this x right)
      *
@@ -937,11 +1035,14 @@ public class Matrix {
                     numRows, numCols,
                     right.numRows, right.numCols));
         }
-        long order = (long) numRows * numCols * numCols * right.numCols;
-        int cores = Runtime.getRuntime().availableProcessors();
-        return (order / cores) > ORDER_BY_CORE_THRESHOLD
-                ? mulConc(right)
-                : mulSeq(right);
+        return unsafeMul(right);
+    }
+
+    /**
+     * Returns the sparse matrix of the non-zero cells
+     */
+    SparseMatrix sparse() {
+        return SparseMatrix.create(this);
     }
 
     /**
@@ -954,14 +1055,16 @@ public class Matrix {
         int m = max(numCols, other.numCols);
         Matrix left = extends0(n, m);
         Matrix right = other.extends0(n, m);
-        Complex[] cells = VectorUtils.sub(left.cells, right.cells);
-        return new Matrix(n, m, cells);
+        return new Matrix(n, m,
+                VectorUtils.sub(left.real(), right.real()),
+                VectorUtils.sub(left.im(), right.im()));
     }
 
     /**
      * Returns the bra string
      */
     private String toBraString() {
+        Complex[] cells = cells();
         StringBuilder builder = new StringBuilder();
         boolean isZero = true;
         for (int i = 0; i < cells.length; i++) {
@@ -984,6 +1087,7 @@ public class Matrix {
      * Returns the ket string
      */
     private String toKetString() {
+        Complex[] cells = cells();
         StringBuilder builder = new StringBuilder();
         boolean isZero = true;
         for (int i = 0; i < cells.length; i++) {
@@ -1007,7 +1111,7 @@ public class Matrix {
         if (numCols == 1) {
             if (numRows == 1) {
                 // Scalar value
-                return String.valueOf(cells[0]);
+                return String.valueOf(cells()[0]);
             } else {
                 return toKetString();
             }
@@ -1015,7 +1119,7 @@ public class Matrix {
             return toBraString();
         }
         StringBuilder builder = new StringBuilder();
-        String[] cols = Arrays.stream(cells).map(Complex::toString).toArray(String[]::new);
+        String[] cols = Arrays.stream(cells()).map(Complex::toString).toArray(String[]::new);
         int[] colSize = IntStream.range(0, numCols)
                 .map(j ->
                         IntStream.range(0, numRows)
@@ -1043,14 +1147,84 @@ public class Matrix {
      * Returns the transpose matrix
      */
     public Matrix transpose() {
-        return create(numCols, numRows, indices ->
-                at(indices[1], indices[0]));
+        double[] real = real();
+        double[] im = im();
+        double[] tReal = new double[real.length];
+        double[] tIm = new double[im.length];
+        if (numCols == 1 || numRows == 1) {
+            System.arraycopy(real, 0, tReal, 0, real.length);
+            System.arraycopy(im, 0, tIm, 0, im.length);
+        } else if ((long) numRows * numCols >= MIN_PARALLEL_CELLS && ParallelMul.parallelism() > 1) {
+            // Parallel fill by bands of rows
+            int numBands = min(numRows, ParallelMul.parallelism() * 4);
+            ParallelMul.pool().submit(() -> IntStream.range(0, numBands).parallel().forEach(band -> {
+                int from = (int) ((long) numRows * band / numBands);
+                int to = (int) ((long) numRows * (band + 1) / numBands);
+                VectorUtils.transpose(tReal, real, numRows, numCols, from, to);
+                VectorUtils.transpose(tIm, im, numRows, numCols, from, to);
+            })).join();
+        } else {
+            VectorUtils.transpose(tReal, real, numRows, numCols, 0, numRows);
+            VectorUtils.transpose(tIm, im, numRows, numCols, 0, numRows);
+        }
+        return new Matrix(numCols, numRows, tReal, tIm);
+    }
+
+    /**
+     * Returns the matrix multiplication (left x this) without shape validation.
+     * The structured operators override it to compute the product of a dense left operand
+     *
+     * @param left the left matrix
+     */
+    Matrix unsafeLeftMul(Matrix left) {
+        return left.denseMul(this);
+    }
+
+    /**
+     * Returns the matrix multiplication (this x right) without shape validation.
+     * The structured operators override it to compute the product by their own structure,
+     * the default implementation dispatches the product to the right operand
+     *
+     * @param right the right matrix
+     */
+    Matrix unsafeMul(Matrix right) {
+        return right.unsafeLeftMul(this);
     }
 
     /**
      * Returns the normalised matrix
      */
     public Matrix normalise() {
-        return new Matrix(numRows, numCols, VectorUtils.normalise(cells));
+        double norm = sqrt(VectorUtils.normSquare(real(), im()));
+        return mul(1 / norm);
+    }
+
+    /**
+     * Accumulates the partial result of a band of rows
+     */
+    @FunctionalInterface
+    private interface BandAccumulator {
+        /**
+         * Accumulates the band
+         *
+         * @param dst  the partial result
+         * @param from the first row
+         * @param to   the last row (exclusive)
+         */
+        void accumulate(double[] dst, int from, int to);
+    }
+
+    /**
+     * Generates the matrix cells
+     */
+    @FunctionalInterface
+    public interface CellGenerator {
+        /**
+         * Returns the cell value
+         *
+         * @param row the row index
+         * @param col the column index
+         */
+        Complex apply(int row, int col);
     }
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static java.lang.Math.max;
+
+/**
+ * Matrix chain products evaluated in the cheapest parenthesisation.
+ * <p>
+ * The order is computed by the classic dynamic programming over the operand shapes,
+ * the cost of a product (n x k) x (k x m) is estimated as n k m.
+ * Chains of operators applied to a ket are so computed right to left as matrix vector products
+ * on a single mutable {@link StateVector}.
+ * </p>
+ * <p>
+ * The reordering is applied only to the chains whose result does not depend on the order:
+ * </p>
+ * <ul>
+ *     <li>chains with cross square extension ({@link Matrix#mul(Matrix)}) of square operators of size power of 2
+ *     optionally preceded by a bra and followed by a ket</li>
+ *     <li>chains with zero extension ({@link Matrix#mul0(Matrix)}) with no intermediate 1x1 products</li>
+ * </ul>
+ */
+public interface MatrixChain {
+
+    /**
+     * Returns the product of the chain of operators applied right to left to the ket (last operand).
+     * The trailing square operators are applied in place to a single mutable state vector,
+     * so the intermediate kets are not allocated, the runs of consecutive gate operators are fused
+     * ({@link GateFusion}) to reduce the state sweeps.
+     * The chains of Clifford gates applied to a basis state are simulated by the {@link StabilizerTableau},
+     * the other chains by the {@link MpsState} if enabled and all the operators are small gates
+     *
+     * @param zeroExtension true if zero extension
+     * @param operands      the operands
+     */
+    private static Matrix applyToKet(boolean zeroExtension, Matrix[] operands) {
+        int n = operands.length;
+        Matrix ket = operands[n - 1];
+        // Finds the trailing square operators applicable to the state vector
+        int first = n - 1;
+        int size = ket.numRows();
+        while (first > 0) {
+            Matrix op = operands[first - 1];
+            if (op.numRows() != op.numCols()
+                    || (zeroExtension && op.numRows() != ket.numRows())) {
+                break;
+            }
+            size = max(size, op.numRows());
+            first--;
+        }
+        Matrix result = ket;
+        if (n - 1 - first >= 2) {
+            List<Matrix> operators = new ArrayList<>();
+            for (int i = n - 2; i >= first; i--) {
+                operators.add(operands[i]);
+            }
+            Matrix input = ket.extendsRows(size);
+            Optional<List<QuGate>> clifford = StabilizerTableau.basisState(input) >= 0
+                    ? StabilizerTableau.cliffordGates(operators)
+                    : Optional.empty();
+            Optional<List<QuGate>> mpsGates = clifford.isEmpty() && MpsState.isEnabled() && isPowerOf2(size)
+                    ? mpsGates(operators)
+                    : Optional.empty();
+            if (clifford.isPresent()) {
+                result = StabilizerTableau.create(input).apply(clifford.get()).toKet();
+            } else if (mpsGates.isPresent()) {
+                result = MpsState.create(input).apply(mpsGates.get()).toKet();
+            } else {
+                // The extended ket is a private copy owned by the state vector
+                StateVector state = input != ket && Precision.getDefault() == Precision.DOUBLE
+                        ? DoubleStateVector.wrap(input)
+                        : StateVector.create(input);
+                for (Matrix op : GateFusion.fuseOperators(operators)) {
+                    if (op instanceof GateMatrix gate) {
+                        state.apply(gate.gate(), gate.qubits());
+                    } else {
+                        state.apply(op.numRows() < size ? op.extendsCrossSquare(size) : op);
+                    }
+                }
+                result = state.release();
+            }
+        } else {
+            first = n - 1;
+        }
+        for (int i = first - 1; i >= 0; i--) {
+            result = zeroExtension ? operands[i].mul0(result) : operands[i].mul(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the gates of the operators for the matrix product state or empty if any operator
+     * is not a gate up to {@link MpsState#MAX_GATE_QUBITS} qubits.
+     * The operators that are not gate operators act on the low qubits (I x op)
+     *
+     * @param operators the operators
+     */
+    private static Optional<List<QuGate>> mpsGates(List<Matrix> operators) {
+        List<QuGate> gates = new ArrayList<>();
+        for (Matrix op : operators) {
+            if (op instanceof GateMatrix gate) {
+                if (gate.qubits().length > MpsState.MAX_GATE_QUBITS) {
+                    return Optional.empty();
+                }
+                gates.add(QuGate.fused(gate.gate(), gate.qubits()));
+            } else {
+                Optional<QuGate> clifford = StabilizerTableau.cliffordGate(op);
+                if (clifford.isPresent()) {
+                    gates.add(clifford.get());
+                } else if (op.numRows() <= 1 << MpsState.MAX_GATE_QUBITS) {
+                    gates.add(QuGate.fused(op, IntStream.range(0, Integer.numberOfTrailingZeros(op.numRows())).toArray()));
+                } else {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(gates);
+    }
+
+    /**
+     * Returns the cost of product of the sub chain (from-to) split at the given operand
+     *
+     * @param rows          the number of rows of operands
+     * @param cols          the number of columns of operands
+     * @param zeroExtension true if zero extension
+     * @param from          the first operand index
+     * @param split         the last operand index of left sub chain
+     * @param to            the last operand index
+     */
+    private static long cost(int[] rows, int[] cols, boolean zeroExtension, int from, int split, int to) {
+        if (zeroExtension) {
+            return (long) rows[from] * max(cols[split], rows[split + 1]) * cols[to];
+        }
+        int size = 1;
+        for (int i = from; i <= to; i++) {
+            size = max(size, max(rows[i], cols[i]));
+        }
+        long n = rows[from] == 1 ? 1 : size;
+        long m = cols[to] == 1 ? 1 : size;
+        return n * size * m;
+    }
+
+    /**
+     * Returns true if the chain of operands can be computed in any order
+     *
+     * @param zeroExtension true if zero extension (mul0)
+     * @param operands      the operands
+     */
+    static boolean isReorderable(boolean zeroExtension, Matrix... operands) {
+        int n = operands.length;
+        if (n < 3) {
+            return false;
+        }
+        if (zeroExtension) {
+            // Any sub chain except the whole one must not result in a 1x1 matrix
+            for (int i = 0; i < n; i++) {
+                if (operands[i].numRows() == 1) {
+                    for (int j = i; j < n; j++) {
+                        if (operands[j].numCols() == 1 && !(i == 0 && j == n - 1)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < n; i++) {
+            Matrix op = operands[i];
+            int numRows = op.numRows();
+            int numCols = op.numCols();
+            boolean valid = (numRows == numCols && isPowerOf2(numRows))
+                    || (i == 0 && numRows == 1 && isPowerOf2(numCols))
+                    || (i == n - 1 && numCols == 1 && isPowerOf2(numRows));
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the value is a power of 2 greater than 1
+     *
+     * @param value the value
+     */
+    private static boolean isPowerOf2(int value) {
+        return value > 1 && (value & (value - 1)) == 0;
+    }
+
+    /**
+     * Returns true if the split table is the right to left order (A (B (C ...)))
+     *
+     * @param splits the split table
+     */
+    private static boolean isRightToLeft(int[][] splits) {
+        int n = splits.length;
+        for (int i = 0; i < n - 1; i++) {
+            if (splits[i][n - 1] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the product of the chain of operands in the cheapest order
+     *
+     * @param zeroExtension true if zero extension (mul0) else cross square extension (mul)
+     * @param operands      the operands
+     */
+    static Matrix mul(boolean zeroExtension, Matrix... operands) {
+        if (operands.length == 0) {
+            throw new IllegalArgumentException("Expected at least one operand (0)");
+        }
+        int n = operands.length;
+        int[] rows = new int[n];
+        int[] cols = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = operands[i].numRows();
+            cols[i] = operands[i].numCols();
+        }
+        int[][] splits = order(rows, cols, zeroExtension);
+        return isRightToLeft(splits) && cols[n - 1] == 1
+                ? applyToKet(zeroExtension, operands)
+                : mul(zeroExtension, operands, splits, 0, n - 1);
+    }
+
+    /**
+     * Returns the product of the sub chain of operands
+     *
+     * @param zeroExtension true if zero extension
+     * @param operands      the operands
+     * @param splits        the split table
+     * @param from          the first operand index
+     * @param to            the last operand index
+     */
+    private static Matrix mul(boolean zeroExtension, Matrix[] operands, int[][] splits, int from, int to) {
+        if (from == to) {
+            return operands[from];
+        }
+        int split = splits[from][to];
+        Matrix left = mul(zeroExtension, operands, splits, from, split);
+        Matrix right = mul(zeroExtension, operands, splits, split + 1, to);
+        return zeroExtension ? left.mul0(right) : left.mul(right);
+    }
+
+    /**
+     * Returns the split table of the cheapest parenthesisation.
+     * The element (i, j) is the index of last operand of the left sub chain of product (i-j)
+     *
+     * @param rows          the number of rows of operands
+     * @param cols          the number of columns of operands
+     * @param zeroExtension true if zero extension
+     */
+    static int[][] order(int[] rows, int[] cols, boolean zeroExtension) {
+        int n = rows.length;
+        long[][] costs = new long[n][n];
+        int[][] splits = new int[n][n];
+        for (int len = 2; len <= n; len++) {
+            for (int i = 0; i + len - 1 < n; i++) {
+                int j = i + len - 1;
+                long best = Long.MAX_VALUE;
+                // Ties resolved to the left to right order
+                for (int k = i; k < j; k++) {
+                    long c = costs[i][k] + costs[k + 1][j] + cost(rows, cols, zeroExtension, i, k, j);
+                    if (c <= best) {
+                        best = c;
+                        splits[i][j] = k;
+                    }
+                }
+                costs[i][j] = best;
+            }
+        }
+        return splits;
+    }
+}
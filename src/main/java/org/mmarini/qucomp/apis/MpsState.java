@@ -0,0 +1,769 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Matrix product state of n qubits (approximate simulation of low entanglement circuits).
+ * <p>
+ * The state is the chain of tensors A[l][s][r] (one for each site, s the qubit value),
+ * the amplitude of a basis state is the product of the matrices A[s] selected by the qubit values.
+ * A gate on k qubits routes the qubits to adjacent sites by swaps of neighbour sites,
+ * contracts the k sites, applies the gate and splits back the sites by singular value decompositions ({@link Svd}).
+ * The routing swaps are not undone, the qubit to site mapping is tracked instead.
+ * </p>
+ * <p>
+ * The bond dimensions are truncated to the max bond dimension and
+ * the smallest singular values are discarded while their relative weight is below the threshold.
+ * The discarded weights are accumulated in the truncation error and the state norm is preserved.
+ * The state is kept in mixed canonical form around the last modified site,
+ * so the truncations are optimal and the qubit probabilities are computed locally.
+ * </p>
+ * <p>
+ * The default max bond dimension and threshold are set by the system properties
+ * <code>qucomp.mpsMaxBond</code> (default 64) and <code>qucomp.mpsThreshold</code> (default 1e-16),
+ * the engine is selected for the Qu gate chains and the circuits by <code>qucomp.mps</code> or {@link #setEnabled(boolean)}.
+ * The Qu gate chains and the circuits take and return dense kets, so the engine runs there only up to
+ * {@link #MAX_KET_QUBITS} qubits and only for gates up to {@link #MAX_GATE_QUBITS} qubits
+ * (the other chains and circuits run on the state vector),
+ * larger states are simulated by the command line circuit runs that do not export the state.
+ * </p>
+ */
+public class MpsState {
+    public static final String ENABLED_PROPERTY = "qucomp.mps";
+    public static final String MAX_BOND_PROPERTY = "qucomp.mpsMaxBond";
+    public static final String THRESHOLD_PROPERTY = "qucomp.mpsThreshold";
+    public static final int DEFAULT_MAX_BOND = 64;
+    public static final double DEFAULT_THRESHOLD = 1e-16;
+    /**
+     * The max number of qubits of the exportable states
+     */
+    public static final int MAX_KET_QUBITS = 26;
+    /**
+     * The max number of qubits of the gates applied by the Qu gate chains and the circuits
+     */
+    public static final int MAX_GATE_QUBITS = 3;
+    private static final Matrix SWAP_GATE = QuGate.swap(0, 1).gate();
+    private static final DoubleAdder TOTAL_ERROR = new DoubleAdder();
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static volatile int defaultMaxBond = validateMaxBond(Integer.getInteger(MAX_BOND_PROPERTY, DEFAULT_MAX_BOND));
+    private static volatile double defaultThreshold = validateThreshold(
+            Double.parseDouble(System.getProperty(THRESHOLD_PROPERTY, String.valueOf(DEFAULT_THRESHOLD))));
+
+    /**
+     * Returns the |0...0&gt; state with the default max bond dimension and threshold
+     *
+     * @param numQubits the number of qubits
+     */
+    public static MpsState create(int numQubits) {
+        return create(numQubits, defaultMaxBond, defaultThreshold);
+    }
+
+    /**
+     * Returns the |0...0&gt; state
+     *
+     * @param numQubits the number of qubits
+     * @param maxBond   the max bond dimension
+     * @param threshold the max relative weight of discarded singular values
+     */
+    public static MpsState create(int numQubits, int maxBond, double threshold) {
+        if (numQubits < 1) {
+            throw new IllegalArgumentException(format("Expected at least one qubit (%d)", numQubits));
+        }
+        MpsState result = new MpsState(numQubits, validateMaxBond(maxBond), validateThreshold(threshold));
+        for (int i = 0; i < numQubits; i++) {
+            result.real[i] = new double[]{1, 0};
+            result.im[i] = new double[2];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the state of the ket with the default max bond dimension and threshold
+     *
+     * @param ket the ket
+     */
+    public static MpsState create(Matrix ket) {
+        return create(ket, defaultMaxBond, defaultThreshold);
+    }
+
+    /**
+     * Returns the state of the ket
+     *
+     * @param ket       the ket
+     * @param maxBond   the max bond dimension
+     * @param threshold the max relative weight of discarded singular values
+     */
+    public static MpsState create(Matrix ket, int maxBond, double threshold) {
+        int size = ket.numRows();
+        if (ket.numCols() != 1 || size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(format("Expected ket with power of 2 states (%dx%d)",
+                    size, ket.numCols()));
+        }
+        int n = Integer.numberOfTrailingZeros(size);
+        MpsState result = new MpsState(n, validateMaxBond(maxBond), validateThreshold(threshold));
+        // The first site is the most significant bit of the block index
+        double[] real = ket.real();
+        double[] im = ket.im();
+        double[] tr = new double[size];
+        double[] ti = new double[size];
+        for (int i = 0; i < size; i++) {
+            int t = Integer.reverse(i) >>> (32 - n);
+            tr[t] = real[i];
+            ti[t] = im[i];
+        }
+        result.split(tr, ti, 0, n);
+        return result;
+    }
+
+    /**
+     * Returns the default max bond dimension
+     */
+    public static int defaultMaxBond() {
+        return defaultMaxBond;
+    }
+
+    /**
+     * Returns the default max relative weight of discarded singular values
+     */
+    public static double defaultThreshold() {
+        return defaultThreshold;
+    }
+
+    /**
+     * Returns true if the MPS engine is selected for the Qu gate chains and the circuits
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the default max bond dimension
+     *
+     * @param maxBond the max bond dimension
+     */
+    public static void setDefaultMaxBond(int maxBond) {
+        MpsState.defaultMaxBond = validateMaxBond(maxBond);
+    }
+
+    /**
+     * Sets the default max relative weight of discarded singular values
+     *
+     * @param threshold the threshold
+     */
+    public static void setDefaultThreshold(double threshold) {
+        MpsState.defaultThreshold = validateThreshold(threshold);
+    }
+
+    /**
+     * Selects the MPS engine for the Qu gate chains and the circuits
+     *
+     * @param enabled true if MPS engine selected
+     */
+    public static void setEnabled(boolean enabled) {
+        MpsState.enabled = enabled;
+    }
+
+    /**
+     * Returns the truncation error accumulated by all the states
+     */
+    public static double totalTruncationError() {
+        return TOTAL_ERROR.sum();
+    }
+
+    /**
+     * Returns the validated max bond dimension
+     *
+     * @param maxBond the max bond dimension
+     */
+    private static int validateMaxBond(int maxBond) {
+        if (maxBond < 1) {
+            throw new IllegalArgumentException(format("Expected max bond dimension greater than 0 (%d)", maxBond));
+        }
+        return maxBond;
+    }
+
+    /**
+     * Returns the validated threshold
+     *
+     * @param threshold the threshold
+     */
+    private static double validateThreshold(double threshold) {
+        if (!(threshold >= 0 && threshold < 1)) {
+            throw new IllegalArgumentException(format("Expected threshold in range 0-1 (%g)", threshold));
+        }
+        return threshold;
+    }
+
+    /**
+     * Returns the square sum of the first singular values
+     *
+     * @param s   the singular values
+     * @param num the number of singular values
+     */
+    private static double weight(double[] s, int num) {
+        double result = 0;
+        for (int i = 0; i < num; i++) {
+            result += s[i] * s[i];
+        }
+        return result;
+    }
+
+    private final int numQubits;
+    private final int maxBond;
+    private final double threshold;
+    private final double[][] real;
+    private final double[][] im;
+    private final int[] bonds;
+    private final int[] qubitAt;
+    private final int[] siteOf;
+    private int center;
+    private double truncationError;
+
+    /**
+     * Creates the state with unit bonds
+     *
+     * @param numQubits the number of qubits
+     * @param maxBond   the max bond dimension
+     * @param threshold the max relative weight of discarded singular values
+     */
+    protected MpsState(int numQubits, int maxBond, double threshold) {
+        this.numQubits = numQubits;
+        this.maxBond = maxBond;
+        this.threshold = threshold;
+        this.real = new double[numQubits][];
+        this.im = new double[numQubits][];
+        this.bonds = new int[numQubits + 1];
+        this.qubitAt = new int[numQubits];
+        this.siteOf = new int[numQubits];
+        Arrays.fill(bonds, 1);
+        for (int i = 0; i < numQubits; i++) {
+            qubitAt[i] = siteOf[i] = i;
+        }
+    }
+
+    /**
+     * Returns the amplitude of the basis state
+     *
+     * @param state the basis state
+     */
+    public Complex amplitude(long state) {
+        double[] vr = {1};
+        double[] vi = {0};
+        for (int site = 0; site < numQubits; site++) {
+            int s = (int) (state >>> qubitAt[site]) & 1;
+            int dl = bonds[site];
+            int dr = bonds[site + 1];
+            double[] ar = real[site];
+            double[] ai = im[site];
+            double[] wr = new double[dr];
+            double[] wi = new double[dr];
+            for (int l = 0; l < dl; l++) {
+                int offset = (l * 2 + s) * dr;
+                for (int r = 0; r < dr; r++) {
+                    wr[r] += vr[l] * ar[offset + r] - vi[l] * ai[offset + r];
+                    wi[r] += vr[l] * ai[offset + r] + vi[l] * ar[offset + r];
+                }
+            }
+            vr = wr;
+            vi = wi;
+        }
+        return new Complex(vr[0], vi[0]);
+    }
+
+    /**
+     * Returns the state transformed by the gates applied in sequence
+     *
+     * @param gates the gates
+     */
+    public MpsState apply(List<QuGate> gates) {
+        for (QuGate gate : gates) {
+            apply(gate.gate(), gate.indices());
+        }
+        return this;
+    }
+
+    /**
+     * Returns the state transformed by the gate
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     */
+    public MpsState apply(Matrix gate, int... qubits) {
+        int k = qubits.length;
+        int m = 1 << k;
+        if (k == 0 || gate.numRows() != m || gate.numCols() != m) {
+            throw new IllegalArgumentException(format("Expected gate %dx%d (%dx%d)", m, m, gate.numRows(), gate.numCols()));
+        }
+        GateKernels.validateQubits(numQubits, qubits);
+        if (k == 1 && isUnitary(gate)) {
+            applySite(gate, siteOf[qubits[0]]);
+            return this;
+        }
+        // Routes the qubits to adjacent sites starting from the lowest site
+        int[] sites = new int[k];
+        for (int i = 0; i < k; i++) {
+            sites[i] = siteOf[qubits[i]];
+        }
+        Arrays.sort(sites);
+        int first = sites[0];
+        for (int j = 1; j < k; j++) {
+            for (int site = sites[j]; site > first + j; site--) {
+                swapSites(site - 1);
+            }
+        }
+        applyBlock(gate, qubits, first, k);
+        return this;
+    }
+
+    /**
+     * Applies the gate to the adjacent sites
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     * @param first  the first site
+     * @param k      the number of sites
+     */
+    private void applyBlock(Matrix gate, int[] qubits, int first, int k) {
+        moveCenter(first);
+        // Contracts the sites
+        double[] tr = real[first];
+        double[] ti = im[first];
+        int dl = bonds[first];
+        int width = 2;
+        for (int j = 1; j < k; j++) {
+            int site = first + j;
+            int d = bonds[site];
+            int dr = bonds[site + 1];
+            double[] cr = new double[dl * width * 2 * dr];
+            double[] ci = new double[cr.length];
+            MulKernels.mul(cr, ci, 0, dl * width, 2 * dr,
+                    tr, ti, 0, d,
+                    real[site], im[site], 0, 2 * dr);
+            tr = cr;
+            ti = ci;
+            width *= 2;
+        }
+        // Maps the block index to the gate index (the first site is the most significant bit)
+        int[] gateIndex = new int[width];
+        for (int t = 0; t < width; t++) {
+            int g = 0;
+            for (int j = 0; j < k; j++) {
+                if ((t & (1 << (k - 1 - j))) != 0) {
+                    g |= 1 << position(qubits, qubitAt[first + j]);
+                }
+            }
+            gateIndex[t] = g;
+        }
+        double[] gr = gate.real();
+        double[] gi = gate.im();
+        int dr = bonds[first + k];
+        double[] rr = new double[tr.length];
+        double[] ri = new double[ti.length];
+        for (int l = 0; l < dl; l++) {
+            for (int t = 0; t < width; t++) {
+                int row = gateIndex[t] * width;
+                int dst = (l * width + t) * dr;
+                for (int u = 0; u < width; u++) {
+                    double cr = gr[row + gateIndex[u]];
+                    double ci = gi[row + gateIndex[u]];
+                    if (cr == 0 && ci == 0) {
+                        continue;
+                    }
+                    int src = (l * width + u) * dr;
+                    for (int r = 0; r < dr; r++) {
+                        rr[dst + r] += cr * tr[src + r] - ci * ti[src + r];
+                        ri[dst + r] += cr * ti[src + r] + ci * tr[src + r];
+                    }
+                }
+            }
+        }
+        split(rr, ri, first, k);
+    }
+
+    /**
+     * Applies the single qubit unitary gate to the site
+     *
+     * @param gate the gate matrix (2x2)
+     * @param site the site
+     */
+    private void applySite(Matrix gate, int site) {
+        double[] gr = gate.real();
+        double[] gi = gate.im();
+        double[] ar = real[site];
+        double[] ai = im[site];
+        int dl = bonds[site];
+        int dr = bonds[site + 1];
+        for (int l = 0; l < dl; l++) {
+            int o0 = l * 2 * dr;
+            int o1 = o0 + dr;
+            for (int r = 0; r < dr; r++) {
+                double a0r = ar[o0 + r];
+                double a0i = ai[o0 + r];
+                double a1r = ar[o1 + r];
+                double a1i = ai[o1 + r];
+                ar[o0 + r] = gr[0] * a0r - gi[0] * a0i + gr[1] * a1r - gi[1] * a1i;
+                ai[o0 + r] = gr[0] * a0i + gi[0] * a0r + gr[1] * a1i + gi[1] * a1r;
+                ar[o1 + r] = gr[2] * a0r - gi[2] * a0i + gr[3] * a1r - gi[3] * a1i;
+                ai[o1 + r] = gr[2] * a0i + gi[2] * a0r + gr[3] * a1i + gi[3] * a1r;
+            }
+        }
+    }
+
+    /**
+     * Returns the max bond dimension of the chain
+     */
+    public int bondDimension() {
+        return Arrays.stream(bonds).max().orElse(1);
+    }
+
+    /**
+     * Returns true if the 2x2 gate is unitary
+     *
+     * @param gate the gate
+     */
+    private boolean isUnitary(Matrix gate) {
+        double[] gr = gate.real();
+        double[] gi = gate.im();
+        // Columns with unit norms and orthogonal
+        double n0 = gr[0] * gr[0] + gi[0] * gi[0] + gr[2] * gr[2] + gi[2] * gi[2];
+        double n1 = gr[1] * gr[1] + gi[1] * gi[1] + gr[3] * gr[3] + gi[3] * gi[3];
+        double dotRe = gr[0] * gr[1] + gi[0] * gi[1] + gr[2] * gr[3] + gi[2] * gi[3];
+        double dotIm = gr[0] * gi[1] - gi[0] * gr[1] + gr[2] * gi[3] - gi[2] * gr[3];
+        return Math.abs(n0 - 1) < 1e-12 && Math.abs(n1 - 1) < 1e-12
+                && Math.abs(dotRe) < 1e-12 && Math.abs(dotIm) < 1e-12;
+    }
+
+    /**
+     * Returns the max bond dimension
+     */
+    public int maxBond() {
+        return maxBond;
+    }
+
+    /**
+     * Moves the orthogonality center to the site
+     *
+     * @param site the site
+     */
+    private void moveCenter(int site) {
+        while (center < site) {
+            // A = U (S V^dagger), S V^dagger absorbed by the next site
+            int dl = bonds[center];
+            int dr = bonds[center + 1];
+            Svd svd = Svd.create(real[center], im[center], dl * 2, dr);
+            int chi = truncate(svd);
+            double[][] sv = weightedVDagger(svd, chi);
+            storeU(svd, center, chi);
+            int next = center + 1;
+            int dr1 = bonds[next + 1];
+            double[] cr = new double[chi * 2 * dr1];
+            double[] ci = new double[cr.length];
+            MulKernels.mul(cr, ci, 0, chi, 2 * dr1,
+                    sv[0], sv[1], 0, dr,
+                    real[next], im[next], 0, 2 * dr1);
+            real[next] = cr;
+            im[next] = ci;
+            bonds[next] = chi;
+            center = next;
+        }
+        while (center > site) {
+            // A = (U S) V^dagger, U S absorbed by the previous site
+            int dl = bonds[center];
+            int dr = bonds[center + 1];
+            Svd svd = Svd.create(real[center], im[center], dl, 2 * dr);
+            int chi = truncate(svd);
+            int prev = center - 1;
+            int dl1 = bonds[prev];
+            // U S (dl x chi)
+            int k = svd.rank();
+            double[] usr = new double[dl * chi];
+            double[] usi = new double[dl * chi];
+            double kept = weight(svd.s(), chi);
+            double scale = kept > 0 ? Math.sqrt(weight(svd.s(), k) / kept) : 1;
+            for (int i = 0; i < dl; i++) {
+                for (int j = 0; j < chi; j++) {
+                    double sj = svd.s()[j] * scale;
+                    usr[i * chi + j] = svd.uReal()[i * k + j] * sj;
+                    usi[i * chi + j] = svd.uIm()[i * k + j] * sj;
+                }
+            }
+            double[] cr = new double[dl1 * 2 * chi];
+            double[] ci = new double[cr.length];
+            MulKernels.mul(cr, ci, 0, dl1 * 2, chi,
+                    real[prev], im[prev], 0, dl,
+                    usr, usi, 0, chi);
+            // V^dagger without weights
+            double[] vr = new double[chi * 2 * dr];
+            double[] vi = new double[chi * 2 * dr];
+            for (int j = 0; j < chi; j++) {
+                for (int c = 0; c < 2 * dr; c++) {
+                    vr[j * 2 * dr + c] = svd.vReal()[c * k + j];
+                    vi[j * 2 * dr + c] = -svd.vIm()[c * k + j];
+                }
+            }
+            real[center] = vr;
+            im[center] = vi;
+            real[prev] = cr;
+            im[prev] = ci;
+            bonds[center] = chi;
+            center = prev;
+        }
+    }
+
+    /**
+     * Returns the square norm of the state
+     */
+    public double normSquare() {
+        return VectorUtils.normSquare(real[center], im[center]);
+    }
+
+    /**
+     * Returns the number of qubits
+     */
+    public int numQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Returns the position of the qubit in the gate qubits
+     *
+     * @param qubits the gate qubits
+     * @param qubit  the qubit
+     */
+    private int position(int[] qubits, int qubit) {
+        for (int i = 0; i < qubits.length; i++) {
+            if (qubits[i] == qubit) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the probability of the basis state
+     *
+     * @param state the basis state
+     */
+    public double probability(long state) {
+        Complex amplitude = amplitude(state);
+        return amplitude.real() * amplitude.real() + amplitude.im() * amplitude.im();
+    }
+
+    /**
+     * Returns the probability of qubit at 1 state (O(n D^3) to move the orthogonality center)
+     *
+     * @param qubit the qubit
+     */
+    public double qubitProbability(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        int site = siteOf[qubit];
+        moveCenter(site);
+        double[] ar = real[site];
+        double[] ai = im[site];
+        int dl = bonds[site];
+        int dr = bonds[site + 1];
+        double p1 = 0;
+        for (int l = 0; l < dl; l++) {
+            int offset = (l * 2 + 1) * dr;
+            for (int r = 0; r < dr; r++) {
+                p1 += ar[offset + r] * ar[offset + r] + ai[offset + r] * ai[offset + r];
+            }
+        }
+        double norm = normSquare();
+        return norm > 0 ? p1 / norm : 0;
+    }
+
+    /**
+     * Splits the contracted block of k sites (dl x 2^k x dr) into the sites by singular value decompositions.
+     * The orthogonality center is moved to the last site of block
+     *
+     * @param tr    the real parts of block
+     * @param ti    the imaginary parts of block
+     * @param first the first site
+     * @param k     the number of sites
+     */
+    private void split(double[] tr, double[] ti, int first, int k) {
+        int dl = bonds[first];
+        int dr = bonds[first + k];
+        int rest = 1 << k;
+        for (int j = 0; j < k - 1; j++) {
+            int cols = rest / 2 * dr;
+            Svd svd = Svd.create(tr, ti, dl * 2, cols);
+            int chi = truncate(svd);
+            storeU(svd, first + j, chi);
+            double[][] sv = weightedVDagger(svd, chi);
+            tr = sv[0];
+            ti = sv[1];
+            bonds[first + j + 1] = chi;
+            dl = chi;
+            rest /= 2;
+        }
+        real[first + k - 1] = tr;
+        im[first + k - 1] = ti;
+        center = first + k - 1;
+    }
+
+    /**
+     * Stores the first chi columns of U as the site tensor
+     *
+     * @param svd  the decomposition
+     * @param site the site
+     * @param chi  the number of kept singular values
+     */
+    private void storeU(Svd svd, int site, int chi) {
+        int rows = svd.numRows();
+        int k = svd.rank();
+        double[] ur = new double[rows * chi];
+        double[] ui = new double[rows * chi];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(svd.uReal(), i * k, ur, i * chi, chi);
+            System.arraycopy(svd.uIm(), i * k, ui, i * chi, chi);
+        }
+        real[site] = ur;
+        im[site] = ui;
+    }
+
+    /**
+     * Swaps the qubits of the site and the next site
+     *
+     * @param site the site
+     */
+    private void swapSites(int site) {
+        int q0 = qubitAt[site];
+        int q1 = qubitAt[site + 1];
+        applyBlock(SWAP_GATE, new int[]{q0, q1}, site, 2);
+        qubitAt[site] = q1;
+        qubitAt[site + 1] = q0;
+        siteOf[q0] = site + 1;
+        siteOf[q1] = site;
+    }
+
+    /**
+     * Returns the ket of the state
+     */
+    public Matrix toKet() {
+        if (numQubits > MAX_KET_QUBITS) {
+            throw new IllegalArgumentException(format("Expected at most %d qubits (%d)", MAX_KET_QUBITS, numQubits));
+        }
+        // Contracts the chain left to right: prefix states x right bond
+        double[] vr = {1};
+        double[] vi = {0};
+        int numStates = 1;
+        for (int site = 0; site < numQubits; site++) {
+            int dl = bonds[site];
+            int dr = bonds[site + 1];
+            double[] wr = new double[numStates * 2 * dr];
+            double[] wi = new double[wr.length];
+            MulKernels.mul(wr, wi, 0, numStates, 2 * dr,
+                    vr, vi, 0, dl,
+                    real[site], im[site], 0, 2 * dr);
+            vr = wr;
+            vi = wi;
+            numStates *= 2;
+        }
+        // Prefix index has the first site as most significant bit
+        double[] ketReal = new double[numStates];
+        double[] ketIm = new double[numStates];
+        for (int t = 0; t < numStates; t++) {
+            int state = 0;
+            for (int site = 0; site < numQubits; site++) {
+                if ((t & (1 << (numQubits - 1 - site))) != 0) {
+                    state |= 1 << qubitAt[site];
+                }
+            }
+            ketReal[state] = vr[t];
+            ketIm[state] = vi[t];
+        }
+        return new Matrix(numStates, 1, ketReal, ketIm);
+    }
+
+    /**
+     * Returns the accumulated relative weight of the discarded singular values
+     */
+    public double truncationError() {
+        return truncationError;
+    }
+
+    /**
+     * Returns the number of kept singular values and accumulates the truncation error
+     *
+     * @param svd the decomposition
+     */
+    private int truncate(Svd svd) {
+        double[] s = svd.s();
+        int k = s.length;
+        double total = weight(s, k);
+        if (total == 0) {
+            return 1;
+        }
+        int chi = Math.min(k, maxBond);
+        double discarded = total - weight(s, chi);
+        while (chi > 1 && discarded + s[chi - 1] * s[chi - 1] <= threshold * total) {
+            chi--;
+            discarded += s[chi] * s[chi];
+        }
+        double error = Math.max(discarded, 0) / total;
+        if (error > 0) {
+            truncationError += error;
+            TOTAL_ERROR.add(error);
+        }
+        return chi;
+    }
+
+    /**
+     * Returns the first chi rows of S V^dagger scaled to preserve the norm (real and imaginary parts)
+     *
+     * @param svd the decomposition
+     * @param chi the number of kept singular values
+     */
+    private double[][] weightedVDagger(Svd svd, int chi) {
+        double[] s = svd.s();
+        int k = s.length;
+        int cols = svd.numCols();
+        double kept = weight(s, chi);
+        double scale = kept > 0 ? Math.sqrt(weight(s, k) / kept) : 1;
+        double[] vr = new double[chi * cols];
+        double[] vi = new double[chi * cols];
+        for (int j = 0; j < chi; j++) {
+            double sj = s[j] * scale;
+            for (int c = 0; c < cols; c++) {
+                vr[j * cols + c] = sj * svd.vReal()[c * k + j];
+                vi[j * cols + c] = -sj * svd.vIm()[c * k + j];
+            }
+        }
+        return new double[][]{vr, vi};
+    }
+}
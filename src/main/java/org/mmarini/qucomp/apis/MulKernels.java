@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+
+import static java.lang.Math.min;
+
+/**
+ * Dense complex matrix multiplication kernels on primitive cells.
+ * <p>
+ * The blocked kernel splits the product in panels of BLOCK_INNER x BLOCK_COLS cells of the right matrix,
+ * packs each panel transposed in contiguous arrays and accumulates the dot products of two left rows
+ * at a time, so the inner loop reads both operands sequentially from cache.
+ * </p>
+ */
+public interface MulKernels {
+    /**
+     * Number of columns of packed panel
+     */
+    int BLOCK_COLS = 32;
+    /**
+     * Number of inner rows of packed panel
+     */
+    int BLOCK_INNER = 128;
+    /**
+     * Minimum inner and columns size to select the blocked kernel
+     */
+    int MIN_BLOCKED_SIZE = 32;
+
+    /**
+     * Partial blocked matrix multiplication on primitive cells
+     *
+     * @param dReal   the destination matrix real parts
+     * @param dIm     the destination matrix imaginary parts
+     * @param dOffset the destination matrix offset
+     * @param numRows the number of computation rows
+     * @param numCols the number of computation columns
+     * @param aReal   the left source matrix real parts
+     * @param aIm     the left source matrix imaginary parts
+     * @param aOffset the left source matrix offset
+     * @param aStride the left source matrix stride (number of columns)
+     * @param bReal   the right source matrix real parts
+     * @param bIm     the right source matrix imaginary parts
+     * @param bOffset the right source matrix offset
+     * @param bStride the right source matrix stride (number of columns)
+     */
+    static void blockMul(double[] dReal, double[] dIm, int dOffset, int numRows, int numCols,
+                         double[] aReal, double[] aIm, int aOffset, int aStride,
+                         double[] bReal, double[] bIm, int bOffset, int bStride) {
+        for (int i = 0; i < numRows; i++) {
+            int di = dOffset + i * bStride;
+            Arrays.fill(dReal, di, di + numCols, 0);
+            Arrays.fill(dIm, di, di + numCols, 0);
+        }
+        double[] packReal = new double[BLOCK_COLS * BLOCK_INNER];
+        double[] packIm = new double[BLOCK_COLS * BLOCK_INNER];
+        double[] dots = new double[4];
+        for (int jj = 0; jj < numCols; jj += BLOCK_COLS) {
+            int nj = min(BLOCK_COLS, numCols - jj);
+            for (int kk = 0; kk < aStride; kk += BLOCK_INNER) {
+                int nk = min(BLOCK_INNER, aStride - kk);
+                // Packs the transposed panel pack[j, k] = b[kk + k, jj + j]
+                for (int k = 0; k < nk; k++) {
+                    int bk = bOffset + (kk + k) * bStride + jj;
+                    for (int j = 0; j < nj; j++) {
+                        packReal[j * nk + k] = bReal[bk + j];
+                        packIm[j * nk + k] = bIm[bk + j];
+                    }
+                }
+                if (Simd.ENABLED) {
+                    for (int i = 0; i < numRows; i += 2) {
+                        int a0 = aOffset + i * aStride + kk;
+                        // The odd last row is paired with itself
+                        int a1 = i + 1 < numRows ? a0 + aStride : a0;
+                        int d0 = dOffset + i * bStride + jj;
+                        int d1 = d0 + bStride;
+                        for (int j = 0; j < nj; j++) {
+                            SimdKernels.dot2(aReal, aIm, a0, a1, packReal, packIm, j * nk, nk, dots);
+                            dReal[d0 + j] += dots[0];
+                            dIm[d0 + j] += dots[1];
+                            if (a1 != a0) {
+                                dReal[d1 + j] += dots[2];
+                                dIm[d1 + j] += dots[3];
+                            }
+                        }
+                    }
+                    continue;
+                }
+                int i = 0;
+                // Two rows at a time share the panel loads
+                for (; i + 1 < numRows; i += 2) {
+                    int a0 = aOffset + i * aStride + kk;
+                    int a1 = a0 + aStride;
+                    int d0 = dOffset + i * bStride + jj;
+                    int d1 = d0 + bStride;
+                    for (int j = 0; j < nj; j++) {
+                        int pj = j * nk;
+                        double re0 = 0;
+                        double im0 = 0;
+                        double re1 = 0;
+                        double im1 = 0;
+                        for (int k = 0; k < nk; k++) {
+                            double br = packReal[pj + k];
+                            double bi = packIm[pj + k];
+                            double ar0 = aReal[a0 + k];
+                            double ai0 = aIm[a0 + k];
+                            double ar1 = aReal[a1 + k];
+                            double ai1 = aIm[a1 + k];
+                            re0 += ar0 * br - ai0 * bi;
+                            im0 += ar0 * bi + ai0 * br;
+                            re1 += ar1 * br - ai1 * bi;
+                            im1 += ar1 * bi + ai1 * br;
+                        }
+                        dReal[d0 + j] += re0;
+                        dIm[d0 + j] += im0;
+                        dReal[d1 + j] += re1;
+                        dIm[d1 + j] += im1;
+                    }
+                }
+                if (i < numRows) {
+                    int a0 = aOffset + i * aStride + kk;
+                    int d0 = dOffset + i * bStride + jj;
+                    for (int j = 0; j < nj; j++) {
+                        int pj = j * nk;
+                        double re0 = 0;
+                        double im0 = 0;
+                        for (int k = 0; k < nk; k++) {
+                            double br = packReal[pj + k];
+                            double bi = packIm[pj + k];
+                            double ar0 = aReal[a0 + k];
+                            double ai0 = aIm[a0 + k];
+                            re0 += ar0 * br - ai0 * bi;
+                            im0 += ar0 * bi + ai0 * br;
+                        }
+                        dReal[d0 + j] += re0;
+                        dIm[d0 + j] += im0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Partial matrix multiplication on primitive cells selecting the kernel by the operand sizes
+     *
+     * @param dReal   the destination matrix real parts
+     * @param dIm     the destination matrix imaginary parts
+     * @param dOffset the destination matrix offset
+     * @param numRows the number of computation rows
+     * @param numCols the number of computation columns
+     * @param aReal   the left source matrix real parts
+     * @param aIm     the left source matrix imaginary parts
+     * @param aOffset the left source matrix offset
+     * @param aStride the left source matrix stride (number of columns)
+     * @param bReal   the right source matrix real parts
+     * @param bIm     the right source matrix imaginary parts
+     * @param bOffset the right source matrix offset
+     * @param bStride the right source matrix stride (number of columns)
+     */
+    static void mul(double[] dReal, double[] dIm, int dOffset, int numRows, int numCols,
+                    double[] aReal, double[] aIm, int aOffset, int aStride,
+                    double[] bReal, double[] bIm, int bOffset, int bStride) {
+        if (aStride >= MIN_BLOCKED_SIZE && numCols >= MIN_BLOCKED_SIZE) {
+            blockMul(dReal, dIm, dOffset, numRows, numCols,
+                    aReal, aIm, aOffset, aStride,
+                    bReal, bIm, bOffset, bStride);
+        } else {
+            VectorUtils.partMul(dReal, dIm, dOffset, numRows, numCols,
+                    aReal, aIm, aOffset, aStride,
+                    bReal, bIm, bOffset, bStride);
+        }
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Mutable state vector stored outside the garbage collected heap with long state indices.
+ * <p>
+ * The amplitudes are stored in chunks of direct buffers (interleaved real and imaginary parts)
+ * of 2^chunkBits amplitudes, so the state is not limited by the array indexing and
+ * the heap size and does not weigh on the garbage collector.
+ * The gates are applied in place by groups of 2^k amplitudes differing only by the gate qubits,
+ * the groups are visited in ascending state order so each chunk is read sequentially.
+ * The large vectors are processed in parallel in the fork/join pool of {@link ParallelMul}.
+ * </p>
+ * <p>
+ * The vectors larger than the memory can be mapped on a file ({@link #map(Path, int)}),
+ * the chunks are then paged in and out by the operating system while the kernels stream through them.
+ * </p>
+ * <p>
+ * The amplitudes are stored in double or single precision ({@link Precision}), the single precision
+ * halves the memory and the file size, the kernels and the norms are computed in double precision.
+ * </p>
+ * <p>
+ * The direct buffers and the file mappings have no explicit release, the memory is freed (and the file
+ * unmapped) by the garbage collector when the state vector is no longer reachable.
+ * </p>
+ */
+public class OffHeapStateVector {
+    public static final int MAX_QUBITS = 40;
+    static final int DEFAULT_CHUNK_BITS = 26;
+    private static final int MIN_PARALLEL_BITS = 16;
+    private static final int PARTS_BY_THREAD = 4;
+
+    private final int numQubits;
+    private final int chunkBits;
+    private final Precision precision;
+    private final DoubleBuffer[] chunks;
+    private final FloatBuffer[] floatChunks;
+    private final GateKernels.Amplitudes amplitudes;
+
+    /**
+     * Creates the state vector
+     *
+     * @param numQubits the number of qubits
+     * @param chunkBits the number of bits of chunk size
+     * @param precision the storage precision
+     * @param chunks    the chunk bytes
+     */
+    protected OffHeapStateVector(int numQubits, int chunkBits, Precision precision, ByteBuffer[] chunks) {
+        this.numQubits = numQubits;
+        this.chunkBits = chunkBits;
+        this.precision = requireNonNull(precision);
+        if (precision == Precision.FLOAT) {
+            this.chunks = null;
+            this.floatChunks = Arrays.stream(chunks)
+                    .map(chunk -> chunk.order(ByteOrder.nativeOrder()).asFloatBuffer())
+                    .toArray(FloatBuffer[]::new);
+        } else {
+            this.chunks = Arrays.stream(chunks)
+                    .map(chunk -> chunk.order(ByteOrder.nativeOrder()).asDoubleBuffer())
+                    .toArray(DoubleBuffer[]::new);
+            this.floatChunks = null;
+        }
+        this.amplitudes = new GateKernels.Amplitudes() {
+            @Override
+            public double im(long state) {
+                return OffHeapStateVector.this.im(state);
+            }
+
+            @Override
+            public double real(long state) {
+                return OffHeapStateVector.this.real(state);
+            }
+
+            @Override
+            public void set(long state, double real, double im) {
+                OffHeapStateVector.this.set(state, real, im);
+            }
+        };
+    }
+
+    /**
+     * Returns the number of bytes of an amplitude
+     *
+     * @param precision the storage precision
+     */
+    private static int amplitudeBytes(Precision precision) {
+        return precision == Precision.FLOAT ? 2 * Float.BYTES : 2 * Double.BYTES;
+    }
+
+    /**
+     * Returns the zero state vector (all amplitudes zero) with the default precision
+     *
+     * @param numQubits the number of qubits
+     */
+    public static OffHeapStateVector create(int numQubits) {
+        return create(numQubits, Precision.getDefault());
+    }
+
+    /**
+     * Returns the zero state vector (all amplitudes zero)
+     *
+     * @param numQubits the number of qubits
+     * @param precision the storage precision
+     */
+    public static OffHeapStateVector create(int numQubits, Precision precision) {
+        return create(numQubits, DEFAULT_CHUNK_BITS, precision);
+    }
+
+    /**
+     * Returns the zero state vector (all amplitudes zero)
+     *
+     * @param numQubits the number of qubits
+     * @param chunkBits the number of bits of chunk size
+     * @param precision the storage precision
+     */
+    static OffHeapStateVector create(int numQubits, int chunkBits, Precision precision) {
+        validateQubits(numQubits);
+        int bits = min(chunkBits, numQubits);
+        ByteBuffer[] chunks = new ByteBuffer[1 << (numQubits - bits)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(amplitudeBytes(precision) << bits);
+        }
+        return new OffHeapStateVector(numQubits, bits, precision, chunks);
+    }
+
+    /**
+     * Returns the state vector of the ket
+     *
+     * @param ket the ket
+     */
+    public static OffHeapStateVector create(Matrix ket) {
+        int n = ket.numRows();
+        if (ket.numCols() != 1 || Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException(format("Expected ket with power of 2 states (%dx%d)",
+                    n, ket.numCols()));
+        }
+        OffHeapStateVector result = create(Integer.numberOfTrailingZeros(n));
+        double[] real = ket.real();
+        double[] im = ket.im();
+        for (int i = 0; i < n; i++) {
+            result.set(i, real[i], im[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the base state vector |state>
+     *
+     * @param numQubits the number of qubits
+     * @param state     the state
+     */
+    public static OffHeapStateVector ketBase(int numQubits, long state) {
+        OffHeapStateVector result = create(numQubits);
+        result.validateState(state);
+        result.set(state, 1, 0);
+        return result;
+    }
+
+    /**
+     * Returns the zero state vector stored in a memory mapped file with the default precision.
+     * The file is created or truncated
+     *
+     * @param file      the file
+     * @param numQubits the number of qubits
+     * @throws IOException in case of error
+     */
+    public static OffHeapStateVector map(Path file, int numQubits) throws IOException {
+        return map(file, numQubits, Precision.getDefault());
+    }
+
+    /**
+     * Returns the zero state vector stored in a memory mapped file.
+     * The file is created or truncated
+     *
+     * @param file      the file
+     * @param numQubits the number of qubits
+     * @param precision the storage precision
+     * @throws IOException in case of error
+     */
+    public static OffHeapStateVector map(Path file, int numQubits, Precision precision) throws IOException {
+        return map(file, numQubits, DEFAULT_CHUNK_BITS, precision);
+    }
+
+    /**
+     * Returns the zero state vector stored in a memory mapped file.
+     * The file is created or truncated
+     *
+     * @param file      the file
+     * @param numQubits the number of qubits
+     * @param chunkBits the number of bits of chunk size
+     * @param precision the storage precision
+     * @throws IOException in case of error
+     */
+    static OffHeapStateVector map(Path file, int numQubits, int chunkBits, Precision precision) throws IOException {
+        return map(file, numQubits, chunkBits, precision, CREATE, TRUNCATE_EXISTING, READ, WRITE);
+    }
+
+    /**
+     * Returns the zero state vector stored in a memory mapped file
+     *
+     * @param file      the file
+     * @param numQubits the number of qubits
+     * @param chunkBits the number of bits of chunk size
+     * @param precision the storage precision
+     * @param options   the file open options
+     * @throws IOException in case of error
+     */
+    private static OffHeapStateVector map(Path file, int numQubits, int chunkBits, Precision precision,
+                                          OpenOption... options) throws IOException {
+        validateQubits(numQubits);
+        int bits = min(chunkBits, numQubits);
+        long chunkBytes = (long) amplitudeBytes(precision) << bits;
+        ByteBuffer[] chunks = new ByteBuffer[1 << (numQubits - bits)];
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * chunkBytes, chunkBytes);
+            }
+        }
+        return new OffHeapStateVector(numQubits, bits, precision, chunks);
+    }
+
+    /**
+     * Returns the zero state vector stored in a temporary memory mapped file with the default precision.
+     * The file is deleted by the operating system when the mapping is released
+     * (immediately unlinked on POSIX systems)
+     *
+     * @param numQubits the number of qubits
+     * @throws IOException in case of error
+     */
+    public static OffHeapStateVector mapTemporary(int numQubits) throws IOException {
+        validateQubits(numQubits);
+        Path file = Files.createTempFile("qucomp", ".state");
+        return map(file, numQubits, DEFAULT_CHUNK_BITS, Precision.getDefault(), DELETE_ON_CLOSE, READ, WRITE);
+    }
+
+    /**
+     * Returns the number of parallel parts of a range of indices
+     *
+     * @param n the number of indices
+     */
+    private static int numParts(long n) {
+        int parallelism = ParallelMul.parallelism();
+        return parallelism > 1 && n >= (1L << MIN_PARALLEL_BITS)
+                ? parallelism * PARTS_BY_THREAD
+                : 1;
+    }
+
+    /**
+     * Returns the sums of the partial results (summed in part order)
+     *
+     * @param partials the partial results
+     */
+    private static double[] sumParts(double[][] partials) {
+        double[] result = partials[0];
+        for (int part = 1; part < partials.length; part++) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] += partials[part][i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Validates the number of qubits
+     *
+     * @param numQubits the number of qubits
+     */
+    private static void validateQubits(int numQubits) {
+        if (numQubits < 0 || numQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException(format("Expected qubits in range 0-%d (%d)",
+                    MAX_QUBITS, numQubits));
+        }
+    }
+
+    /**
+     * Returns the state vector transformed by the gate (in place)
+     *
+     * @param gate the gate
+     */
+    public OffHeapStateVector apply(QuGate gate) {
+        return apply(gate.gate(), gate.indices());
+    }
+
+    /**
+     * Returns the state vector transformed by the gates applied in sequence (in place).
+     * The runs of consecutive small gates are fused ({@link GateFusion}) to reduce the state sweeps
+     *
+     * @param gates the gates
+     */
+    public OffHeapStateVector apply(List<QuGate> gates) {
+        for (QuGate gate : GateFusion.fuse(gates)) {
+            apply(gate);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the state vector transformed by the gate (in place)
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     */
+    public OffHeapStateVector apply(Matrix gate, int... qubits) {
+        int m = 1 << qubits.length;
+        if (gate.numRows() != m || gate.numCols() != m) {
+            throw new IllegalArgumentException(format("Expected gate %dx%d (%dx%d)",
+                    m, m, gate.numRows(), gate.numCols()));
+        }
+        GateKernels.validateQubits(numQubits, qubits);
+        double[] gReal = gate.real();
+        double[] gIm = gate.im();
+        long numGroups = size() >> qubits.length;
+        if (qubits.length == 1) {
+            forEachPart(numParts(numGroups), numGroups, (part, from, to) ->
+                    GateKernels.apply1(amplitudes, gReal, gIm, qubits[0], from, to));
+        } else {
+            long[] offsets = GateKernels.longStateOffsets(qubits);
+            int[] sorted = Arrays.stream(qubits).sorted().toArray();
+            forEachPart(numParts(numGroups), numGroups, (part, from, to) ->
+                    GateKernels.applyK(amplitudes, gReal, gIm, offsets, sorted, from, to));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the amplitude of the state
+     *
+     * @param state the state
+     */
+    public Complex at(long state) {
+        validateState(state);
+        return new Complex(real(state), im(state));
+    }
+
+    /**
+     * Runs the body over the parts of range of indices
+     *
+     * @param parts the number of parts
+     * @param n     the number of indices
+     * @param body  the body
+     */
+    private void forEachPart(int parts, long n, PartConsumer body) {
+        if (parts <= 1) {
+            body.accept(0, 0, n);
+            return;
+        }
+        ParallelMul.pool().submit(() ->
+                IntStream.range(0, parts).parallel().forEach(part ->
+                        body.accept(part, n * part / parts, n * (part + 1) / parts))
+        ).join();
+    }
+
+    /**
+     * Returns the imaginary part of the amplitude
+     *
+     * @param state the state
+     */
+    double im(long state) {
+        int index = (((int) state & ((1 << chunkBits) - 1)) << 1) + 1;
+        return chunks != null
+                ? chunks[(int) (state >>> chunkBits)].get(index)
+                : floatChunks[(int) (state >>> chunkBits)].get(index);
+    }
+
+    /**
+     * Returns the state vector normalised (in place)
+     */
+    public OffHeapStateVector normalise() {
+        double norm = Math.sqrt(normSquare());
+        if (norm != 0) {
+            double scale = 1 / norm;
+            forEachPart(numParts(size()), size(), (part, from, to) -> {
+                for (long i = from; i < to; i++) {
+                    set(i, real(i) * scale, im(i) * scale);
+                }
+            });
+        }
+        return this;
+    }
+
+    /**
+     * Returns the square norm of state vector
+     */
+    public double normSquare() {
+        long n = size();
+        int parts = numParts(n);
+        double[] sums = new double[parts];
+        forEachPart(parts, n, (part, from, to) -> {
+            double sum = 0;
+            for (long i = from; i < to; i++) {
+                double re = real(i);
+                double im = im(i);
+                sum += re * re + im * im;
+            }
+            sums[part] = sum;
+        });
+        return Arrays.stream(sums).sum();
+    }
+
+    /**
+     * Returns the number of qubits
+     */
+    public int numQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Returns the storage precision
+     */
+    public Precision precision() {
+        return precision;
+    }
+
+    /**
+     * Returns the joint probabilities of the qubits computed in a single pass over the amplitudes.
+     * The bit m of the result index is the value of qubit <code>qubits[m]</code>,
+     * the number of qubits is at most 26
+     *
+     * @param qubits the qubit indices
+     */
+    public double[] marginal(int... qubits) {
+        if (qubits.length > Matrix.MAX_MARGINAL_QUBITS) {
+            throw new IllegalArgumentException(format("Expected at most %d qubits (%d)",
+                    Matrix.MAX_MARGINAL_QUBITS, qubits.length));
+        }
+        boolean[] used = new boolean[numQubits];
+        for (int qubit : qubits) {
+            if (qubit < 0 || qubit >= numQubits) {
+                throw new IllegalArgumentException(format("Expected qubit in range 0-%d (%d)",
+                        numQubits - 1, qubit));
+            }
+            if (used[qubit]) {
+                throw new IllegalArgumentException(format("Expected all different indices %s", Arrays.toString(qubits)));
+            }
+            used[qubit] = true;
+        }
+        long n = size();
+        int numStates = 1 << qubits.length;
+        // Large results are accumulated sequentially to bound the memory of partial results
+        int parts = numStates <= Matrix.MAX_PARTIAL_SIZE ? numParts(n) : 1;
+        double[][] partials = new double[parts][numStates];
+        forEachPart(parts, n, (part, from, to) -> {
+            double[] dst = partials[part];
+            for (long i = from; i < to; i++) {
+                double re = real(i);
+                double im = im(i);
+                int j = 0;
+                for (int m = 0; m < qubits.length; m++) {
+                    j |= (int) ((i >>> qubits[m]) & 1) << m;
+                }
+                dst[j] += re * re + im * im;
+            }
+        });
+        return sumParts(partials);
+    }
+
+    /**
+     * Returns the probability of the state
+     *
+     * @param state the state
+     */
+    public double probability(long state) {
+        validateState(state);
+        double re = real(state);
+        double im = im(state);
+        return re * re + im * im;
+    }
+
+    /**
+     * Returns the probabilities of each qubit at 1 state computed in a single pass over the amplitudes
+     */
+    public double[] qubitProbabilities() {
+        long n = size();
+        int parts = numParts(n);
+        double[][] partials = new double[parts][numQubits];
+        forEachPart(parts, n, (part, from, to) -> {
+            double[] dst = partials[part];
+            for (long i = from; i < to; i++) {
+                double re = real(i);
+                double im = im(i);
+                double p = re * re + im * im;
+                for (long bits = i; bits != 0; bits &= bits - 1) {
+                    dst[Long.numberOfTrailingZeros(bits)] += p;
+                }
+            }
+        });
+        return sumParts(partials);
+    }
+
+    /**
+     * Returns the probability of qubit at 1 state
+     *
+     * @param qubit the qubit index
+     */
+    public double qubitProbability(int qubit) {
+        if (qubit < 0 || qubit >= numQubits) {
+            throw new IllegalArgumentException(format("Expected qubit in range 0-%d (%d)",
+                    numQubits - 1, qubit));
+        }
+        long n = size() >> 1;
+        long stride = 1L << qubit;
+        long lowMask = stride - 1;
+        int parts = numParts(n);
+        double[] sums = new double[parts];
+        forEachPart(parts, n, (part, from, to) -> {
+            double sum = 0;
+            for (long g = from; g < to; g++) {
+                long i = ((g & ~lowMask) << 1) | stride | (g & lowMask);
+                double re = real(i);
+                double im = im(i);
+                sum += re * re + im * im;
+            }
+            sums[part] = sum;
+        });
+        return Arrays.stream(sums).sum();
+    }
+
+    /**
+     * Returns the real part of the amplitude
+     *
+     * @param state the state
+     */
+    double real(long state) {
+        int index = ((int) state & ((1 << chunkBits) - 1)) << 1;
+        return chunks != null
+                ? chunks[(int) (state >>> chunkBits)].get(index)
+                : floatChunks[(int) (state >>> chunkBits)].get(index);
+    }
+
+    /**
+     * Sets the amplitude of the state
+     *
+     * @param state the state
+     * @param real  the real part
+     * @param im    the imaginary part
+     */
+    void set(long state, double real, double im) {
+        int index = ((int) state & ((1 << chunkBits) - 1)) << 1;
+        if (chunks != null) {
+            DoubleBuffer chunk = chunks[(int) (state >>> chunkBits)];
+            chunk.put(index, real);
+            chunk.put(index + 1, im);
+        } else {
+            FloatBuffer chunk = floatChunks[(int) (state >>> chunkBits)];
+            chunk.put(index, (float) real);
+            chunk.put(index + 1, (float) im);
+        }
+    }
+
+    /**
+     * Sets the amplitude of the state
+     *
+     * @param state the state
+     * @param value the amplitude
+     */
+    public OffHeapStateVector set(long state, Complex value) {
+        validateState(state);
+        set(state, value.real(), value.im());
+        return this;
+    }
+
+    /**
+     * Returns the number of states (2^numQubits)
+     */
+    public long size() {
+        return 1L << numQubits;
+    }
+
+    /**
+     * Returns the ket matrix of the state vector
+     */
+    public Matrix toMatrix() {
+        long n = size();
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(format("Expected at most %d states (%d)",
+                    Integer.MAX_VALUE - 8, n));
+        }
+        double[] real = new double[(int) n];
+        double[] im = new double[(int) n];
+        for (int i = 0; i < n; i++) {
+            real[i] = real(i);
+            im[i] = im(i);
+        }
+        return new Matrix((int) n, 1, real, im);
+    }
+
+    /**
+     * Validates the state index
+     *
+     * @param state the state
+     */
+    private void validateState(long state) {
+        if (state < 0 || state >= size()) {
+            throw new IllegalArgumentException(format("Expected state in range 0-%d (%d)",
+                    size() - 1, state));
+        }
+    }
+
+    /**
+     * Consumes a part of range of indices
+     */
+    @FunctionalInterface
+    private interface PartConsumer {
+        /**
+         * Consumes the part
+         *
+         * @param part the part index
+         * @param from the first index
+         * @param to   the last index (exclusive)
+         */
+        void accept(int part, long from, long to);
+    }
+}
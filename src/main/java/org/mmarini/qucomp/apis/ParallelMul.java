@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+
+/**
+ * Parallel dense matrix multiplication by recursive split in a fork/join pool.
+ * <p>
+ * The destination is split in halves along the largest dimension until each task has less
+ * than the minimum task work (number of complex multiply-add), the idle workers steal the pending halves.
+ * The minimum task work is calibrated at startup by a short probe of the sequential kernel
+ * (about 0.2 ms per task, bounded by {@link #MIN_TASK_WORK} and {@link #MAX_TASK_WORK})
+ * unless set by the system property <code>qucomp.mulTaskWork</code>,
+ * the parallelism level is set by the system property <code>qucomp.parallelism</code>
+ * (default the available processors) or by {@link #setParallelism(int)}.
+ * </p>
+ */
+public class ParallelMul {
+    public static final String PARALLELISM_PROPERTY = "qucomp.parallelism";
+    public static final String TASK_WORK_PROPERTY = "qucomp.mulTaskWork";
+    /**
+     * The lower bound of calibrated task work (32x32x32 complex multiply-add)
+     */
+    public static final long MIN_TASK_WORK = 1L << 15;
+    /**
+     * The upper bound of calibrated task work (256x256x256 complex multiply-add)
+     */
+    public static final long MAX_TASK_WORK = 1L << 24;
+    private static final Logger logger = LoggerFactory.getLogger(ParallelMul.class);
+    private static final int PROBE_SIZE = 32;
+    private static final int PROBE_WARMUP_RUNS = 10;
+    private static final int PROBE_RUNS = 20;
+    private static final long TARGET_TASK_NANOS = 200_000;
+    private static final long minTaskWork = taskWork(Long.getLong(TASK_WORK_PROPERTY, 0));
+    private static volatile ForkJoinPool pool = new ForkJoinPool(
+            max(1, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Returns the minimum task work calibrated by the sequential kernel speed.
+     * The probe is run a few times to warm up the kernel before timing the best run
+     */
+    static long calibrate() {
+        int n = PROBE_SIZE;
+        int size = n * n;
+        double[] aReal = new double[size];
+        double[] aIm = new double[size];
+        for (int i = 0; i < size; i++) {
+            aReal[i] = i;
+            aIm[i] = size - i;
+        }
+        double[] dReal = new double[size];
+        double[] dIm = new double[size];
+        for (int i = 0; i < PROBE_WARMUP_RUNS; i++) {
+            MulKernels.mul(dReal, dIm, 0, n, n, aReal, aIm, 0, n, aReal, aIm, 0, n);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_RUNS; i++) {
+            long t0 = System.nanoTime();
+            MulKernels.mul(dReal, dIm, 0, n, n, aReal, aIm, 0, n, aReal, aIm, 0, n);
+            best = min(best, System.nanoTime() - t0);
+        }
+        double nanosPerWork = (double) max(best, 1) / ((long) n * n * n);
+        long result = min(MAX_TASK_WORK, max(MIN_TASK_WORK, (long) (TARGET_TASK_NANOS / nanosPerWork)));
+        logger.atDebug().log("Calibrated minimum task work {} ({} ns per work)", result, nanosPerWork);
+        return result;
+    }
+
+    /**
+     * Returns true if the product should run in parallel
+     *
+     * @param numRows the number of rows
+     * @param inner   the inner dimension
+     * @param numCols the number of columns
+     */
+    public static boolean isParallel(int numRows, int inner, int numCols) {
+        return parallelism() > 1
+                && (long) numRows * inner * numCols >= 2 * minTaskWork;
+    }
+
+    /**
+     * Returns the minimum work (number of complex multiply-add) of a task
+     */
+    public static long minTaskWork() {
+        return minTaskWork;
+    }
+
+    /**
+     * Returns the minimum task work set by the override or calibrated if not set
+     *
+     * @param override the task work override (calibrated if not positive)
+     */
+    static long taskWork(long override) {
+        return override > 0 ? override : calibrate();
+    }
+
+    /**
+     * Computes the matrix product d = a x b in the fork/join pool
+     *
+     * @param dReal   the destination real parts
+     * @param dIm     the destination imaginary parts
+     * @param aReal   the left matrix real parts
+     * @param aIm     the left matrix imaginary parts
+     * @param bReal   the right matrix real parts
+     * @param bIm     the right matrix imaginary parts
+     * @param numRows the number of rows of left matrix
+     * @param inner   the number of columns of left matrix
+     * @param numCols the number of columns of right matrix
+     */
+    public static void mul(double[] dReal, double[] dIm,
+                           double[] aReal, double[] aIm,
+                           double[] bReal, double[] bIm,
+                           int numRows, int inner, int numCols) {
+        mul(dReal, dIm, aReal, aIm, bReal, bIm, numRows, inner, numCols, minTaskWork);
+    }
+
+    /**
+     * Computes the matrix product d = a x b in the fork/join pool
+     *
+     * @param dReal    the destination real parts
+     * @param dIm      the destination imaginary parts
+     * @param aReal    the left matrix real parts
+     * @param aIm      the left matrix imaginary parts
+     * @param bReal    the right matrix real parts
+     * @param bIm      the right matrix imaginary parts
+     * @param numRows  the number of rows of left matrix
+     * @param inner    the number of columns of left matrix
+     * @param numCols  the number of columns of right matrix
+     * @param taskWork the minimum work of task
+     */
+    static void mul(double[] dReal, double[] dIm,
+                    double[] aReal, double[] aIm,
+                    double[] bReal, double[] bIm,
+                    int numRows, int inner, int numCols, long taskWork) {
+        pool.invoke(new MulTask(dReal, dIm, aReal, aIm, bReal, bIm, inner, numCols, taskWork,
+                0, numRows, 0, numCols));
+    }
+
+    /**
+     * Returns the parallelism level
+     */
+    public static int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Returns the fork/join pool of products
+     */
+    static ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Sets the parallelism level
+     *
+     * @param parallelism the number of worker threads
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(format("Expected parallelism >= 1 (%d)", parallelism));
+        }
+        if (parallelism != pool.getParallelism()) {
+            ForkJoinPool old = pool;
+            pool = new ForkJoinPool(parallelism);
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Computes a block of the destination matrix splitting it in halves
+     */
+    private static class MulTask extends RecursiveAction {
+        private final double[] dReal;
+        private final double[] dIm;
+        private final double[] aReal;
+        private final double[] aIm;
+        private final double[] bReal;
+        private final double[] bIm;
+        private final int inner;
+        private final int stride;
+        private final long taskWork;
+        private final int row;
+        private final int numRows;
+        private final int col;
+        private final int numCols;
+
+        /**
+         * Creates the task
+         *
+         * @param dReal    the destination real parts
+         * @param dIm      the destination imaginary parts
+         * @param aReal    the left matrix real parts
+         * @param aIm      the left matrix imaginary parts
+         * @param bReal    the right matrix real parts
+         * @param bIm      the right matrix imaginary parts
+         * @param inner    the inner dimension
+         * @param stride   the number of columns of destination and right matrix
+         * @param taskWork the minimum work of task
+         * @param row      the first row of block
+         * @param numRows  the number of rows of block
+         * @param col      the first column of block
+         * @param numCols  the number of columns of block
+         */
+        MulTask(double[] dReal, double[] dIm, double[] aReal, double[] aIm, double[] bReal, double[] bIm,
+                int inner, int stride, long taskWork, int row, int numRows, int col, int numCols) {
+            this.dReal = dReal;
+            this.dIm = dIm;
+            this.aReal = aReal;
+            this.aIm = aIm;
+            this.bReal = bReal;
+            this.bIm = bIm;
+            this.inner = inner;
+            this.stride = stride;
+            this.taskWork = taskWork;
+            this.row = row;
+            this.numRows = numRows;
+            this.col = col;
+            this.numCols = numCols;
+        }
+
+        @Override
+        protected void compute() {
+            long work = (long) numRows * inner * numCols;
+            if (work < 2 * taskWork || (numRows == 1 && numCols == 1)) {
+                MulKernels.mul(dReal, dIm, row * stride + col, numRows, numCols,
+                        aReal, aIm, row * inner, inner,
+                        bReal, bIm, col, stride);
+            } else if (numRows >= numCols) {
+                int half = numRows / 2;
+                invokeAll(new MulTask(dReal, dIm, aReal, aIm, bReal, bIm, inner, stride, taskWork,
+                                row, half, col, numCols),
+                        new MulTask(dReal, dIm, aReal, aIm, bReal, bIm, inner, stride, taskWork,
+                                row + half, numRows - half, col, numCols));
+            } else {
+                int half = numCols / 2;
+                invokeAll(new MulTask(dReal, dIm, aReal, aIm, bReal, bIm, inner, stride, taskWork,
+                                row, numRows, col, half),
+                        new MulTask(dReal, dIm, aReal, aIm, bReal, bIm, inner, stride, taskWork,
+                                row, numRows, col + half, numCols - half));
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.mmarini.LazyValue;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Permutation operator m[p[j], j] = 1 stored only by the state mapping.
+ * <p>
+ * The products by kets and matrices are computed by moving rows or columns (gather/scatter)
+ * and the product of two permutations is the composition of mappings,
+ * the sparse and dense cells are materialised only on demand.
+ * </p>
+ */
+public class PermutationMatrix extends Matrix {
+
+    /**
+     * Returns the permutation operator
+     *
+     * @param mapping the state mapping (state j -> state mapping[j])
+     */
+    public static PermutationMatrix create(int... mapping) {
+        requireNonNull(mapping);
+        if (!isPermutation(mapping)) {
+            throw new IllegalArgumentException(format("Expected permutation %s", Arrays.toString(mapping)));
+        }
+        return new PermutationMatrix(mapping);
+    }
+
+    /**
+     * Returns the permutation operator of a permutation gate applied to the given qubits
+     *
+     * @param gate   the permutation gate (2^k x 2^k)
+     * @param qubits the qubit indices of gate internal bits
+     */
+    public static PermutationMatrix createGate(PermutationMatrix gate, int... qubits) {
+        int size = GateMatrix.operatorSize(gate, qubits);
+        int mask = GateKernels.qubitsMask(qubits);
+        int[] offsets = GateKernels.stateOffsets(qubits);
+        int[] gateMapping = gate.mapping;
+        int[] mapping = new int[size];
+        for (int j = 0; j < size; j++) {
+            mapping[j] = (j & ~mask) | offsets[gateMapping[GateKernels.gateState(j, qubits)]];
+        }
+        return new PermutationMatrix(mapping);
+    }
+
+    /**
+     * Returns true if the mapping is a bijection of 0 ... n-1
+     *
+     * @param mapping the mapping
+     */
+    static boolean isPermutation(int... mapping) {
+        boolean[] mapped = new boolean[mapping.length];
+        for (int state : mapping) {
+            if (state < 0 || state >= mapping.length || mapped[state]) {
+                return false;
+            }
+            mapped[state] = true;
+        }
+        return true;
+    }
+
+    private final int[] mapping;
+    private final LazyValue<int[]> inverse;
+    private final LazyValue<SparseMatrix> sparse;
+
+    /**
+     * Creates the permutation operator
+     *
+     * @param mapping the state mapping
+     */
+    protected PermutationMatrix(int[] mapping) {
+        super(mapping.length, mapping.length, null, null);
+        this.mapping = mapping;
+        this.inverse = new LazyValue<>(() -> Matrix.inversePermutation(mapping));
+        this.sparse = new LazyValue<>(this::createSparse);
+    }
+
+    @Override
+    public Complex at(int row, int col) {
+        index(row, col);
+        return mapping[col] == row ? Complex.one() : Complex.zero();
+    }
+
+    /**
+     * Returns the composed permutation (this x right)
+     *
+     * @param right the right permutation
+     */
+    PermutationMatrix compose(PermutationMatrix right) {
+        int[] result = new int[mapping.length];
+        for (int j = 0; j < result.length; j++) {
+            result[j] = mapping[right.mapping[j]];
+        }
+        return new PermutationMatrix(result);
+    }
+
+    @Override
+    public PermutationMatrix conj() {
+        return this;
+    }
+
+    /**
+     * Returns the sparse matrix of operator
+     */
+    private SparseMatrix createSparse() {
+        int n = mapping.length;
+        double[] ones = new double[n];
+        Arrays.fill(ones, 1);
+        return new SparseMatrix(n, n,
+                IntStream.rangeClosed(0, n).toArray(),
+                inverse.get(),
+                ones, new double[n]);
+    }
+
+    @Override
+    public PermutationMatrix dagger() {
+        return transpose();
+    }
+
+    @Override
+    public Matrix extendsCrossSquare(int n) {
+        int size = numRows();
+        if (n <= size || n % size != 0) {
+            return super.extendsCrossSquare(n);
+        }
+        // identity(q) x this
+        int[] result = new int[n];
+        for (int base = 0; base < n; base += size) {
+            for (int j = 0; j < size; j++) {
+                result[base + j] = base + mapping[j];
+            }
+        }
+        return new PermutationMatrix(result);
+    }
+
+    @Override
+    public double[] im() {
+        return sparse.get().im();
+    }
+
+    /**
+     * Returns the inverse state mapping (state i <- state inverse[i])
+     */
+    public int[] inverse() {
+        return inverse.get();
+    }
+
+    @Override
+    boolean isDense() {
+        return false;
+    }
+
+    /**
+     * Returns the state mapping (state j -> state mapping[j])
+     */
+    public int[] mapping() {
+        return mapping;
+    }
+
+    @Override
+    public Matrix mul(double scale) {
+        return sparse.get().mul(scale);
+    }
+
+    @Override
+    public Matrix mul(Complex scale) {
+        return sparse.get().mul(scale);
+    }
+
+    @Override
+    public Matrix neg() {
+        return sparse.get().neg();
+    }
+
+    @Override
+    public double[] real() {
+        return sparse.get().real();
+    }
+
+    @Override
+    SparseMatrix sparse() {
+        return sparse.get();
+    }
+
+    @Override
+    public PermutationMatrix transpose() {
+        return new PermutationMatrix(inverse.get());
+    }
+
+    @Override
+    Matrix unsafeLeftMul(Matrix left) {
+        if (!left.isDense()) {
+            return left.sparse().mulSparse(sparse.get());
+        }
+        // Gather the columns: result[:, j] = left[:, p[j]]
+        int n = left.numRows();
+        int m = numCols();
+        double[] srcReal = left.real();
+        double[] srcIm = left.im();
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            int offset = i * m;
+            for (int j = 0; j < m; j++) {
+                real[offset + j] = srcReal[offset + mapping[j]];
+                im[offset + j] = srcIm[offset + mapping[j]];
+            }
+        }
+        return new Matrix(n, m, real, im);
+    }
+
+    @Override
+    Matrix unsafeMul(Matrix right) {
+        if (right instanceof PermutationMatrix p) {
+            return compose(p);
+        }
+        if (!right.isDense()) {
+            return sparse.get().mulSparse(right.sparse());
+        }
+        // Scatter the rows: result[p[j], :] = right[j, :]
+        int n = numRows();
+        int m = right.numCols();
+        double[] srcReal = right.real();
+        double[] srcIm = right.im();
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        for (int j = 0; j < n; j++) {
+            System.arraycopy(srcReal, j * m, real, mapping[j] * m, m);
+            System.arraycopy(srcIm, j * m, im, mapping[j] * m, m);
+        }
+        return new Matrix(n, m, real, im);
+    }
+}
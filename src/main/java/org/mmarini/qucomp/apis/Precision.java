@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import static java.lang.String.format;
+
+/**
+ * Storage precision of state vectors.
+ * <p>
+ * The single precision halves the memory and the bandwidth of state vectors,
+ * the kernels compute in double precision and accumulate the norms in double precision.
+ * The default precision is set by the system property <code>qucomp.precision</code>
+ * (<code>double</code> or <code>float</code>) or by {@link #setDefault(Precision)}.
+ * </p>
+ */
+public enum Precision {
+    DOUBLE,
+    FLOAT;
+
+    public static final String PRECISION_PROPERTY = "qucomp.precision";
+    private static volatile Precision defaultPrecision = parse(System.getProperty(PRECISION_PROPERTY, "double"));
+
+    /**
+     * Returns the default precision
+     */
+    public static Precision getDefault() {
+        return defaultPrecision;
+    }
+
+    /**
+     * Returns the precision by name (double, float)
+     *
+     * @param name the name
+     */
+    public static Precision parse(String name) {
+        return switch (name.toLowerCase()) {
+            case "double" -> DOUBLE;
+            case "float" -> FLOAT;
+            default -> throw new IllegalArgumentException(format("Expected double or float (%s)", name));
+        };
+    }
+
+    /**
+     * Sets the default precision
+     *
+     * @param precision the precision
+     */
+    public static void setDefault(Precision precision) {
+        defaultPrecision = precision;
+    }
+}
@@ -8,6 +8,36 @@ import java.util.List;
  */
 public interface QuCircuitBuilder {
 
+    /**
+     * Returns the ket transformed by the gates applied in sequence.
+     * Each gate is applied in place to a single mutable state vector without building the circuit matrix,
+     * the runs of consecutive small gates are fused ({@link GateFusion}) to reduce the state sweeps.
+     * The Clifford circuits applied to a basis state are simulated by the {@link StabilizerTableau},
+     * the other circuits by the {@link MpsState} if enabled and all the gates are small
+     *
+     * @param gates the list of gate
+     * @param ket   the input ket
+     */
+    static Matrix apply(List<QuGate> gates, Matrix ket) {
+        int size = Math.max(ket.numRows(), 1 << numQuBits(gates));
+        Matrix input = ket.extendsRows(size);
+        if (StabilizerTableau.isClifford(gates) && StabilizerTableau.basisState(input) >= 0) {
+            return StabilizerTableau.create(input).apply(gates).toKet();
+        }
+        if (MpsState.isEnabled()
+                && gates.stream().allMatch(gate -> gate.indices().length <= MpsState.MAX_GATE_QUBITS)) {
+            return MpsState.create(input).apply(gates).toKet();
+        }
+        // The extended ket is a private copy owned by the state vector
+        StateVector state = input != ket && Precision.getDefault() == Precision.DOUBLE
+                ? DoubleStateVector.wrap(input)
+                : StateVector.create(input);
+        for (QuGate gate : GateFusion.fuse(gates)) {
+            state.apply(gate.gate(), gate.indices());
+        }
+        return state.release();
+    }
+
     /**
      * Returns the state transformation matrix
      *
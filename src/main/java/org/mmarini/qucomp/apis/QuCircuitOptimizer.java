@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Peephole optimiser of gate lists.
+ * <p>
+ * Each gate is moved back over the previous gates acting on disjoint qubits (they commute)
+ * up to the first gate sharing a qubit, then
+ * </p>
+ * <ul>
+ *     <li>the pairs of equal self-inverse gates (H, X, Y, Z, CNOT, SWAP, CCNOT) are cancelled</li>
+ *     <li>the pairs S S are merged in Z and T T are merged in S (the merged gate is optimised again)</li>
+ *     <li>the identity gates are removed</li>
+ * </ul>
+ * The optimised circuit has the same state transformation of the original one.
+ * The optimised gates may act on fewer qubits than the original ones (e.g. removed identity gates),
+ * the original circuit width is kept in {@link Result#numQubits()}.
+ */
+public interface QuCircuitOptimizer {
+    Set<String> SELF_INVERSE_TYPES = Set.of("h", "x", "y", "z", "cnot", "swap", "ccnot");
+
+    /**
+     * Returns the canonical indices of gate (the symmetric qubits sorted)
+     *
+     * @param gate the gate
+     */
+    private static int[] canonicalIndices(QuGate gate) {
+        int[] indices = gate.indices().clone();
+        switch (gate.type()) {
+            case "swap" -> Arrays.sort(indices);
+            // The controls of ccnot are symmetric
+            case "ccnot" -> Arrays.sort(indices, 1, indices.length);
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the gates not included (by identity) in the other gates
+     *
+     * @param gates  the gates
+     * @param others the other gates
+     */
+    private static List<QuGate> difference(List<QuGate> gates, List<QuGate> others) {
+        Map<QuGate, Integer> counts = new IdentityHashMap<>();
+        for (QuGate gate : others) {
+            counts.merge(gate, 1, Integer::sum);
+        }
+        List<QuGate> result = new ArrayList<>();
+        for (QuGate gate : gates) {
+            int count = counts.getOrDefault(gate, 0);
+            if (count > 0) {
+                counts.put(gate, count - 1);
+            } else {
+                result.add(gate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the gates act on at least a common qubit
+     *
+     * @param a the first gate
+     * @param b the second gate
+     */
+    private static boolean isOverlapped(QuGate a, QuGate b) {
+        for (int i : a.indices()) {
+            for (int j : b.indices()) {
+                if (i == j) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the merge of the gate applied after the previous gate
+     *
+     * @param previous the previous gate
+     * @param gate     the gate
+     */
+    private static Merge merge(QuGate previous, QuGate gate) {
+        if (!previous.type().equals(gate.type())
+                || !Arrays.equals(canonicalIndices(previous), canonicalIndices(gate))) {
+            return new Merge.Keep();
+        }
+        String type = gate.type();
+        if (SELF_INVERSE_TYPES.contains(type)) {
+            return new Merge.Cancel();
+        }
+        return switch (type) {
+            case "s" -> new Merge.Replace(QuGate.z(gate.indices()[0]));
+            case "t" -> new Merge.Replace(QuGate.s(gate.indices()[0]));
+            default -> new Merge.Keep();
+        };
+    }
+
+    /**
+     * Returns the optimisation of the gates
+     *
+     * @param gates the gates in application order
+     */
+    static Result optimize(List<QuGate> gates) {
+        requireNonNull(gates);
+        List<QuGate> result = new ArrayList<>();
+        for (QuGate gate : gates) {
+            push(result, gate);
+        }
+        List<QuGate> removed = difference(gates, result);
+        List<QuGate> added = difference(result, gates);
+        return new Result(List.copyOf(result), removed, added, QuCircuitBuilder.numQuBits(gates));
+    }
+
+    /**
+     * Appends the gate to the optimised gates cancelling or merging it with the previous commuting gates
+     *
+     * @param gates the optimised gates
+     * @param gate  the gate
+     */
+    private static void push(List<QuGate> gates, QuGate gate) {
+        if (gate.type().equals("i")) {
+            return;
+        }
+        for (int i = gates.size() - 1; i >= 0; i--) {
+            QuGate previous = gates.get(i);
+            if (isOverlapped(previous, gate)) {
+                // The gates after the previous one are disjoint from the merged gate
+                switch (merge(previous, gate)) {
+                    case Merge.Cancel cancel -> {
+                        gates.remove(i);
+                        return;
+                    }
+                    case Merge.Replace(QuGate merged) -> {
+                        gates.remove(i);
+                        push(gates, merged);
+                        return;
+                    }
+                    case Merge.Keep keep -> {
+                    }
+                }
+                break;
+            }
+        }
+        gates.add(gate);
+    }
+
+    /**
+     * The merge of a gate with the previous gate
+     */
+    sealed interface Merge {
+        /**
+         * The gates cancel each other
+         */
+        record Cancel() implements Merge {
+        }
+
+        /**
+         * The gates cannot be simplified
+         */
+        record Keep() implements Merge {
+        }
+
+        /**
+         * The gates are replaced by the merged gate
+         *
+         * @param gate the merged gate
+         */
+        record Replace(QuGate gate) implements Merge {
+            public Replace {
+                requireNonNull(gate);
+            }
+        }
+    }
+
+    /**
+     * The optimisation result
+     *
+     * @param gates     the optimised gates
+     * @param removed   the original gates removed
+     * @param added     the gates added by merging
+     * @param numQubits the number of qubits of the original circuit
+     */
+    record Result(List<QuGate> gates, List<QuGate> removed, List<QuGate> added, int numQubits) {
+        public Result {
+            requireNonNull(gates);
+            requireNonNull(removed);
+            requireNonNull(added);
+        }
+
+        /**
+         * Returns the number of removed gates by type
+         */
+        public Map<String, Long> removedByType() {
+            return removed.stream()
+                    .collect(Collectors.groupingBy(QuGate::type, TreeMap::new, Collectors.counting()));
+        }
+
+        /**
+         * Returns the text report of optimisation
+         */
+        public String report() {
+            String byType = removedByType().entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(", "));
+            return String.format("Removed %d gates (%s), added %d merged gates, %d -> %d gates",
+                    removed.size(), byType, added.size(),
+                    gates.size() - added.size() + removed.size(), gates.size());
+        }
+    }
+}
@@ -21,6 +21,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.ccnot(data, c0, c1);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.ccnot(0, 1, 2);
+            }
         };
     }
 
@@ -36,6 +41,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.cnot(data, control);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.cnot(0, 1);
+            }
         };
     }
 
@@ -77,6 +87,27 @@ public interface QuGate {
         return result;
     }
 
+    /**
+     * Returns the fused gate definition (the product of a run of gates)
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     */
+    static QuGate fused(Matrix gate, int... qubits) {
+        GateMatrix.operatorSize(gate, qubits);
+        return new QuGateImpl("fused", qubits) {
+            @Override
+            public Matrix build() {
+                return GateMatrix.create(gate, qubits);
+            }
+
+            @Override
+            public Matrix gate() {
+                return gate;
+            }
+        };
+    }
+
     /**
      * Returns the h gate (Hadamard) definition
      *
@@ -88,6 +119,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.h(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.h(0);
+            }
         };
     }
 
@@ -102,6 +138,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.identity(2 << qubit);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.identity(2);
+            }
         };
     }
 
@@ -129,6 +170,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.s(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.s(0);
+            }
         };
     }
 
@@ -144,10 +190,18 @@ public interface QuGate {
             throw new IllegalArgumentException(format("the state mapping should have %d element (%d)",
                     numStates, mapping.length));
         }
+        Matrix gate = Matrix.permute(mapping);
         return new QuGateImpl("map", qubits) {
             @Override
             public Matrix build() {
-                return Matrix.permute(mapping);
+                return gate instanceof PermutationMatrix perm
+                        ? PermutationMatrix.createGate(perm, qubits)
+                        : GateMatrix.create(gate, qubits);
+            }
+
+            @Override
+            public Matrix gate() {
+                return gate;
             }
         };
     }
@@ -164,6 +218,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.swap(data0, data1);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.swap(0, 1);
+            }
         };
     }
 
@@ -178,6 +237,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.t(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.t(0);
+            }
         };
     }
 
@@ -192,6 +256,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.x(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.x(0);
+            }
         };
     }
 
@@ -206,6 +275,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.y(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.y(0);
+            }
         };
     }
 
@@ -220,6 +294,11 @@ public interface QuGate {
             public Matrix build() {
                 return Matrix.z(data);
             }
+
+            @Override
+            public Matrix gate() {
+                return Matrix.z(0);
+            }
         };
     }
 
@@ -228,6 +307,11 @@ public interface QuGate {
      */
     Matrix build();
 
+    /**
+     * Returns the gate matrix (2^k x 2^k) whose i-th internal bit is mapped to the i-th index of bits
+     */
+    Matrix gate();
+
     /**
      * Returns the indices of bits
      */
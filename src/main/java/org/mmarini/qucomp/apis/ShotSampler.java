@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * Measurement shot sampler of a state (all qubits measured in the computational basis).
+ * <p>
+ * The sampler builds the alias table of the state probabilities once (Vose method, O(n))
+ * and then draws each shot in O(1) with a uniform state index and a uniform threshold.
+ * </p>
+ * <p>
+ * The shots are drawn in blocks, each block by its own {@link SplittableRandom} stream
+ * split in sequence from the seed generator, so the histogram depends only on the seed and
+ * not on the number of threads or on the block scheduling.
+ * </p>
+ */
+public class ShotSampler {
+    /**
+     * The max number of qubits of the sampled off heap states
+     */
+    public static final int MAX_QUBITS = 30;
+    /**
+     * Number of shots drawn by each random stream
+     */
+    static final int SHOTS_PER_STREAM = 1 << 16;
+    /**
+     * Max number of states of the per thread histograms (larger histograms are shared)
+     */
+    private static final int MAX_LOCAL_STATES = 1 << 16;
+    /**
+     * Number of random streams split and sampled at once (bounds the memory of streams)
+     */
+    private static final int STREAMS_PER_BATCH = 1 << 12;
+
+    /**
+     * Returns the sampler of the ket
+     *
+     * @param ket the ket
+     */
+    public static ShotSampler create(Matrix ket) {
+        if (ket.numCols() != 1) {
+            throw new IllegalArgumentException(format("Expected ket (%dx%d)", ket.numRows(), ket.numCols()));
+        }
+        double[] real = ket.real();
+        double[] im = ket.im();
+        double[] weights = new double[ket.numRows()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = real[i] * real[i] + im[i] * im[i];
+        }
+        return create(weights);
+    }
+
+    /**
+     * Returns the sampler of the state vector
+     *
+     * @param state the state vector
+     */
+    public static ShotSampler create(StateVector state) {
+        return create(state.probabilities());
+    }
+
+    /**
+     * Returns the sampler of the off heap state vector
+     *
+     * @param state the state vector
+     */
+    public static ShotSampler create(OffHeapStateVector state) {
+        if (state.numQubits() > MAX_QUBITS) {
+            throw new IllegalArgumentException(format("Expected at most %d qubits (%d)", MAX_QUBITS, state.numQubits()));
+        }
+        double[] weights = new double[(int) state.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = state.probability(i);
+        }
+        return create(weights);
+    }
+
+    /**
+     * Returns the sampler of the states with the given (not normalised) weights
+     *
+     * @param weights the non-negative weights of states
+     */
+    public static ShotSampler create(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            double w = weights[i];
+            if (!(w >= 0) || Double.isInfinite(w)) {
+                throw new IllegalArgumentException(format("Expected non negative weight at %d (%g)", i, w));
+            }
+            total += w;
+            if (w > weights[top]) {
+                top = i;
+            }
+        }
+        if (!(total > 0)) {
+            throw new IllegalArgumentException(format("Expected positive total weight (%g)", total));
+        }
+        double[] threshold = new double[n];
+        int[] alias = new int[n];
+        // Work lists of the states with scaled weight below and above the mean
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        double scale = n / total;
+        for (int i = 0; i < n; i++) {
+            threshold[i] = weights[i] * scale;
+            if (threshold[i] < 1) {
+                small[numSmall++] = i;
+            } else {
+                large[numLarge++] = i;
+            }
+        }
+        while (numSmall > 0 && numLarge > 0) {
+            int s = small[--numSmall];
+            int l = large[--numLarge];
+            alias[s] = l;
+            threshold[l] -= 1 - threshold[s];
+            if (threshold[l] < 1) {
+                small[numSmall++] = l;
+            } else {
+                large[numLarge++] = l;
+            }
+        }
+        // The remaining states have scaled weight 1 up to round off errors
+        while (numLarge > 0) {
+            int l = large[--numLarge];
+            threshold[l] = 1;
+            alias[l] = l;
+        }
+        while (numSmall > 0) {
+            int s = small[--numSmall];
+            threshold[s] = weights[s] > 0 ? 1 : 0;
+            alias[s] = top;
+        }
+        return new ShotSampler(threshold, alias);
+    }
+
+    private final double[] threshold;
+    private final int[] alias;
+
+    /**
+     * Creates the sampler
+     *
+     * @param threshold the probability to draw the state instead of its alias
+     * @param alias     the alias states
+     */
+    protected ShotSampler(double[] threshold, int[] alias) {
+        this.threshold = threshold;
+        this.alias = alias;
+    }
+
+    /**
+     * Returns the histogram of the measured states (the number of shots for each state)
+     *
+     * @param shots the number of shots
+     * @param seed  the seed of random streams
+     */
+    public long[] histogram(long shots, long seed) {
+        if (shots < 0) {
+            throw new IllegalArgumentException(format("Expected non negative number of shots (%d)", shots));
+        }
+        int n = alias.length;
+        long numStreams = Math.ceilDiv(shots, SHOTS_PER_STREAM);
+        boolean parallel = numStreams > 1 && ParallelMul.parallelism() > 1;
+        long[] result = new long[n];
+        // Parallel sampling on per thread histograms (merged at the end) or on a shared histogram
+        Map<Thread, long[]> locals = new ConcurrentHashMap<>();
+        AtomicLongArray counts = parallel && n > MAX_LOCAL_STATES ? new AtomicLongArray(n) : null;
+        SplittableRandom root = new SplittableRandom(seed);
+        for (long first = 0; first < numStreams; first += STREAMS_PER_BATCH) {
+            // The streams are split in sequence, so they do not depend on the batch scheduling
+            SplittableRandom[] streams = new SplittableRandom[(int) Math.min(STREAMS_PER_BATCH, numStreams - first)];
+            for (int i = 0; i < streams.length; i++) {
+                streams[i] = root.split();
+            }
+            long remaining = shots - first * SHOTS_PER_STREAM;
+            if (!parallel) {
+                for (int i = 0; i < streams.length; i++) {
+                    long count = Math.min(SHOTS_PER_STREAM, remaining - (long) i * SHOTS_PER_STREAM);
+                    for (long j = 0; j < count; j++) {
+                        result[sample(streams[i])]++;
+                    }
+                }
+            } else if (counts == null) {
+                ParallelMul.pool().submit(() -> IntStream.range(0, streams.length).parallel().forEach(i -> {
+                    long[] local = locals.computeIfAbsent(Thread.currentThread(), t -> new long[n]);
+                    long count = Math.min(SHOTS_PER_STREAM, remaining - (long) i * SHOTS_PER_STREAM);
+                    for (long j = 0; j < count; j++) {
+                        local[sample(streams[i])]++;
+                    }
+                })).join();
+            } else {
+                ParallelMul.pool().submit(() -> IntStream.range(0, streams.length).parallel().forEach(i -> {
+                    long count = Math.min(SHOTS_PER_STREAM, remaining - (long) i * SHOTS_PER_STREAM);
+                    for (long j = 0; j < count; j++) {
+                        counts.getAndIncrement(sample(streams[i]));
+                    }
+                })).join();
+            }
+        }
+        for (long[] local : locals.values()) {
+            for (int i = 0; i < n; i++) {
+                result[i] += local[i];
+            }
+        }
+        if (counts != null) {
+            for (int i = 0; i < n; i++) {
+                result[i] = counts.get(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the probability of the state
+     *
+     * @param state the state
+     */
+    public double probability(int state) {
+        if (state < 0 || state >= alias.length) {
+            throw new IllegalArgumentException(format("Expected state in range 0-%d (%d)", alias.length - 1, state));
+        }
+        // The state probability is its own column share plus the shares of the columns aliased to it
+        int n = alias.length;
+        double p = threshold[state];
+        for (int i = 0; i < n; i++) {
+            if (alias[i] == state && threshold[i] < 1) {
+                p += 1 - threshold[i];
+            }
+        }
+        return p / n;
+    }
+
+    /**
+     * Returns a measured state
+     *
+     * @param random the random generator
+     */
+    public int sample(RandomGenerator random) {
+        int i = random.nextInt(alias.length);
+        return random.nextDouble() < threshold[i] ? i : alias[i];
+    }
+
+    /**
+     * Returns the number of states
+     */
+    public int size() {
+        return alias.length;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Complex arithmetic kernels on primitive cells by the Java Vector API.
+ * <p>
+ * The methods must be called only if {@link Simd#ENABLED} is true,
+ * the tail of each loop shorter than the vector length is computed by scalar code.
+ * </p>
+ */
+public interface SimdKernels {
+    VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Computes d = a + b
+     *
+     * @param a the vector a
+     * @param b the vector b
+     * @param d the destination vector
+     */
+    static void add(double[] a, double[] b, double[] d) {
+        int n = a.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .add(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(d, i);
+        }
+        for (; i < n; i++) {
+            d[i] = a[i] + b[i];
+        }
+    }
+
+    /**
+     * Applies the single qubit gate to the run of cells a0[k], a1[k]
+     * <pre>
+     *     d0[k] = g00 a0[k] + g01 a1[k]
+     *     d1[k] = g10 a0[k] + g11 a1[k]
+     * </pre>
+     *
+     * @param dReal   the destination real parts
+     * @param dIm     the destination imaginary parts
+     * @param sReal   the source real parts
+     * @param sIm     the source imaginary parts
+     * @param offset0 the offset of the first cells
+     * @param offset1 the offset of the second cells
+     * @param n       the number of cells of run
+     * @param gReal   the gate real parts (2 x 2)
+     * @param gIm     the gate imaginary parts (2 x 2)
+     */
+    static void apply1(double[] dReal, double[] dIm, double[] sReal, double[] sIm,
+                       int offset0, int offset1, int n, double[] gReal, double[] gIm) {
+        double g00r = gReal[0];
+        double g00i = gIm[0];
+        double g01r = gReal[1];
+        double g01i = gIm[1];
+        double g10r = gReal[2];
+        double g10i = gIm[2];
+        double g11r = gReal[3];
+        double g11i = gIm[3];
+        int bound = SPECIES.loopBound(n);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector a0r = DoubleVector.fromArray(SPECIES, sReal, offset0 + k);
+            DoubleVector a0i = DoubleVector.fromArray(SPECIES, sIm, offset0 + k);
+            DoubleVector a1r = DoubleVector.fromArray(SPECIES, sReal, offset1 + k);
+            DoubleVector a1i = DoubleVector.fromArray(SPECIES, sIm, offset1 + k);
+            a0r.mul(g00r).sub(a0i.mul(g00i)).add(a1r.mul(g01r)).sub(a1i.mul(g01i))
+                    .intoArray(dReal, offset0 + k);
+            a0i.mul(g00r).add(a0r.mul(g00i)).add(a1i.mul(g01r)).add(a1r.mul(g01i))
+                    .intoArray(dIm, offset0 + k);
+            a0r.mul(g10r).sub(a0i.mul(g10i)).add(a1r.mul(g11r)).sub(a1i.mul(g11i))
+                    .intoArray(dReal, offset1 + k);
+            a0i.mul(g10r).add(a0r.mul(g10i)).add(a1i.mul(g11r)).add(a1r.mul(g11i))
+                    .intoArray(dIm, offset1 + k);
+        }
+        for (; k < n; k++) {
+            int i0 = offset0 + k;
+            int i1 = offset1 + k;
+            double a0r = sReal[i0];
+            double a0i = sIm[i0];
+            double a1r = sReal[i1];
+            double a1i = sIm[i1];
+            dReal[i0] = g00r * a0r - g00i * a0i + g01r * a1r - g01i * a1i;
+            dIm[i0] = g00r * a0i + g00i * a0r + g01r * a1i + g01i * a1r;
+            dReal[i1] = g10r * a0r - g10i * a0i + g11r * a1r - g11i * a1i;
+            dIm[i1] = g10r * a0i + g10i * a0r + g11r * a1i + g11i * a1r;
+        }
+    }
+
+    /**
+     * Computes the complex dot products of two rows a0, a1 by the row b
+     * and stores them in result (re0, im0, re1, im1)
+     *
+     * @param aReal   the rows real parts
+     * @param aIm     the rows imaginary parts
+     * @param a0      the offset of the first row
+     * @param a1      the offset of the second row
+     * @param bReal   the row b real parts
+     * @param bIm     the row b imaginary parts
+     * @param bOffset the offset of row b
+     * @param n       the length of rows
+     * @param result  the result (re0, im0, re1, im1)
+     */
+    static void dot2(double[] aReal, double[] aIm, int a0, int a1,
+                     double[] bReal, double[] bIm, int bOffset, int n, double[] result) {
+        DoubleVector re0 = DoubleVector.zero(SPECIES);
+        DoubleVector im0 = DoubleVector.zero(SPECIES);
+        DoubleVector re1 = DoubleVector.zero(SPECIES);
+        DoubleVector im1 = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector br = DoubleVector.fromArray(SPECIES, bReal, bOffset + k);
+            DoubleVector bi = DoubleVector.fromArray(SPECIES, bIm, bOffset + k);
+            DoubleVector ar0 = DoubleVector.fromArray(SPECIES, aReal, a0 + k);
+            DoubleVector ai0 = DoubleVector.fromArray(SPECIES, aIm, a0 + k);
+            DoubleVector ar1 = DoubleVector.fromArray(SPECIES, aReal, a1 + k);
+            DoubleVector ai1 = DoubleVector.fromArray(SPECIES, aIm, a1 + k);
+            re0 = ar0.fma(br, re0).sub(ai0.mul(bi));
+            im0 = ar0.fma(bi, ai0.fma(br, im0));
+            re1 = ar1.fma(br, re1).sub(ai1.mul(bi));
+            im1 = ar1.fma(bi, ai1.fma(br, im1));
+        }
+        double sr0 = re0.reduceLanes(VectorOperators.ADD);
+        double si0 = im0.reduceLanes(VectorOperators.ADD);
+        double sr1 = re1.reduceLanes(VectorOperators.ADD);
+        double si1 = im1.reduceLanes(VectorOperators.ADD);
+        for (; k < n; k++) {
+            double br = bReal[bOffset + k];
+            double bi = bIm[bOffset + k];
+            double ar0 = aReal[a0 + k];
+            double ai0 = aIm[a0 + k];
+            double ar1 = aReal[a1 + k];
+            double ai1 = aIm[a1 + k];
+            sr0 += ar0 * br - ai0 * bi;
+            si0 += ar0 * bi + ai0 * br;
+            sr1 += ar1 * br - ai1 * bi;
+            si1 += ar1 * bi + ai1 * br;
+        }
+        result[0] = sr0;
+        result[1] = si0;
+        result[2] = sr1;
+        result[3] = si1;
+    }
+
+    /**
+     * Computes d = a * alpha
+     *
+     * @param a     the vector
+     * @param alpha the scale
+     * @param d     the destination vector
+     */
+    static void mul(double[] a, double alpha, double[] d) {
+        int n = a.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .mul(alpha)
+                    .intoArray(d, i);
+        }
+        for (; i < n; i++) {
+            d[i] = a[i] * alpha;
+        }
+    }
+
+    /**
+     * Computes the complex scaled cells d[k] = s[k] * (alphaReal + i alphaIm)
+     *
+     * @param sReal     the source real parts
+     * @param sIm       the source imaginary parts
+     * @param sOffset   the source offset
+     * @param alphaReal the scale real part
+     * @param alphaIm   the scale imaginary part
+     * @param dReal     the destination real parts
+     * @param dIm       the destination imaginary parts
+     * @param dOffset   the destination offset
+     * @param n         the number of cells
+     */
+    static void mul(double[] sReal, double[] sIm, int sOffset, double alphaReal, double alphaIm,
+                    double[] dReal, double[] dIm, int dOffset, int n) {
+        int bound = SPECIES.loopBound(n);
+        int k = 0;
+        for (; k < bound; k += SPECIES.length()) {
+            DoubleVector sr = DoubleVector.fromArray(SPECIES, sReal, sOffset + k);
+            DoubleVector si = DoubleVector.fromArray(SPECIES, sIm, sOffset + k);
+            sr.mul(alphaReal).sub(si.mul(alphaIm)).intoArray(dReal, dOffset + k);
+            sr.mul(alphaIm).add(si.mul(alphaReal)).intoArray(dIm, dOffset + k);
+        }
+        for (; k < n; k++) {
+            double sr = sReal[sOffset + k];
+            double si = sIm[sOffset + k];
+            dReal[dOffset + k] = sr * alphaReal - si * alphaIm;
+            dIm[dOffset + k] = sr * alphaIm + si * alphaReal;
+        }
+    }
+
+    /**
+     * Computes d = -a
+     *
+     * @param a the vector
+     * @param d the destination vector
+     */
+    static void neg(double[] a, double[] d) {
+        int n = a.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .neg()
+                    .intoArray(d, i);
+        }
+        for (; i < n; i++) {
+            d[i] = -a[i];
+        }
+    }
+
+    /**
+     * Returns the square norm of complex vector (sum of |v_i|^2)
+     *
+     * @param real the real parts
+     * @param im   the imaginary parts
+     */
+    static double normSquare(double[] real, double[] im) {
+        int n = real.length;
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector r = DoubleVector.fromArray(SPECIES, real, i);
+            DoubleVector m = DoubleVector.fromArray(SPECIES, im, i);
+            acc = r.fma(r, m.fma(m, acc));
+        }
+        double result = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            result += real[i] * real[i] + im[i] * im[i];
+        }
+        return result;
+    }
+
+    /**
+     * Computes d = a - b
+     *
+     * @param a the vector a
+     * @param b the vector b
+     * @param d the destination vector
+     */
+    static void sub(double[] a, double[] b, double[] d) {
+        int n = a.length;
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i)
+                    .sub(DoubleVector.fromArray(SPECIES, b, i))
+                    .intoArray(d, i);
+        }
+        for (; i < n; i++) {
+            d[i] = a[i] - b[i];
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apis;
+
+import org.mmarini.LazyValue;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sparse complex matrix in compressed sparse row (CSR) format.
+ * <p>
+ * The non-zero cells of i-th row are stored in the range rowOffsets[i] ... rowOffsets[i+1]-1
+ * of column indices and values sorted by column.
+ * Memory and product costs scale with the number of non-zero cells,
+ * the dense cells are materialised only on demand.
+ * </p>
+ */
+public class SparseMatrix extends Matrix {
+
+    /**
+     * Returns the sparse matrix from the cell coordinates (COO format).
+     * The values of duplicated coordinates are summed
+     *
+     * @param numRows the number of rows
+     * @param numCols the number of columns
+     * @param rows    the row indices of cells
+     * @param cols    the column indices of cells
+     * @param real    the real parts of cells
+     * @param im      the imaginary parts of cells
+     */
+    public static SparseMatrix create(int numRows, int numCols, int[] rows, int[] cols, double[] real, double[] im) {
+        requireNonNull(rows);
+        requireNonNull(cols);
+        requireNonNull(real);
+        requireNonNull(im);
+        int n = rows.length;
+        if (cols.length != n || real.length != n || im.length != n) {
+            throw new IllegalArgumentException(format("Expected %d cells (%d, %d, %d)",
+                    n, cols.length, real.length, im.length));
+        }
+        int[] rowOffsets = new int[numRows + 1];
+        for (int i = 0; i < n; i++) {
+            if (rows[i] < 0 || rows[i] >= numRows || cols[i] < 0 || cols[i] >= numCols) {
+                throw new IllegalArgumentException(format(
+                        "index must have range (0-%d) x (0-%d) [%d, %d]",
+                        numRows, numCols, rows[i], cols[i]));
+            }
+            rowOffsets[rows[i] + 1]++;
+        }
+        for (int i = 0; i < numRows; i++) {
+            rowOffsets[i + 1] += rowOffsets[i];
+        }
+        int[] next = Arrays.copyOf(rowOffsets, numRows);
+        int[] colIndices = new int[n];
+        double[] nzReal = new double[n];
+        double[] nzIm = new double[n];
+        for (int i = 0; i < n; i++) {
+            int k = next[rows[i]]++;
+            // Insertion sort by column within the row
+            while (k > rowOffsets[rows[i]] && colIndices[k - 1] > cols[i]) {
+                colIndices[k] = colIndices[k - 1];
+                nzReal[k] = nzReal[k - 1];
+                nzIm[k] = nzIm[k - 1];
+                k--;
+            }
+            colIndices[k] = cols[i];
+            nzReal[k] = real[i];
+            nzIm[k] = im[i];
+        }
+        // Sums the adjacent cells of the same column within each row
+        int m = 0;
+        int from = 0;
+        for (int i = 0; i < numRows; i++) {
+            int to = rowOffsets[i + 1];
+            rowOffsets[i] = m;
+            for (int k = from; k < to; k++) {
+                if (m > rowOffsets[i] && colIndices[m - 1] == colIndices[k]) {
+                    nzReal[m - 1] += nzReal[k];
+                    nzIm[m - 1] += nzIm[k];
+                } else {
+                    colIndices[m] = colIndices[k];
+                    nzReal[m] = nzReal[k];
+                    nzIm[m] = nzIm[k];
+                    m++;
+                }
+            }
+            from = to;
+        }
+        rowOffsets[numRows] = m;
+        if (m < n) {
+            colIndices = Arrays.copyOf(colIndices, m);
+            nzReal = Arrays.copyOf(nzReal, m);
+            nzIm = Arrays.copyOf(nzIm, m);
+        }
+        return new SparseMatrix(numRows, numCols, rowOffsets, colIndices, nzReal, nzIm);
+    }
+
+    /**
+     * Returns the sparse matrix of the dense matrix
+     *
+     * @param matrix the matrix
+     */
+    public static SparseMatrix create(Matrix matrix) {
+        if (matrix instanceof SparseMatrix sparse) {
+            return sparse;
+        }
+        int numRows = matrix.numRows();
+        int numCols = matrix.numCols();
+        double[] real = matrix.real();
+        double[] im = matrix.im();
+        int[] rowOffsets = new int[numRows + 1];
+        for (int i = 0; i < real.length; i++) {
+            if (real[i] != 0 || im[i] != 0) {
+                rowOffsets[i / numCols + 1]++;
+            }
+        }
+        for (int i = 0; i < numRows; i++) {
+            rowOffsets[i + 1] += rowOffsets[i];
+        }
+        int n = rowOffsets[numRows];
+        int[] colIndices = new int[n];
+        double[] nzReal = new double[n];
+        double[] nzIm = new double[n];
+        int k = 0;
+        for (int i = 0; i < real.length; i++) {
+            if (real[i] != 0 || im[i] != 0) {
+                colIndices[k] = i % numCols;
+                nzReal[k] = real[i];
+                nzIm[k] = im[i];
+                k++;
+            }
+        }
+        return new SparseMatrix(numRows, numCols, rowOffsets, colIndices, nzReal, nzIm);
+    }
+
+    private final int[] rowOffsets;
+    private final int[] colIndices;
+    private final double[] nzReal;
+    private final double[] nzIm;
+    private final LazyValue<Matrix> dense;
+
+    /**
+     * Creates the sparse matrix
+     *
+     * @param numRows    the number of rows
+     * @param numCols    the number of columns
+     * @param rowOffsets the offsets of rows in the non-zero cells (numRows + 1)
+     * @param colIndices the column indices of non-zero cells sorted by row and column
+     * @param nzReal     the real parts of non-zero cells
+     * @param nzIm       the imaginary parts of non-zero cells
+     */
+    protected SparseMatrix(int numRows, int numCols, int[] rowOffsets, int[] colIndices, double[] nzReal, double[] nzIm) {
+        super(numRows, numCols, null, null);
+        this.rowOffsets = rowOffsets;
+        this.colIndices = colIndices;
+        this.nzReal = nzReal;
+        this.nzIm = nzIm;
+        this.dense = new LazyValue<>(this::createDense);
+    }
+
+    @Override
+    public Complex at(int row, int col) {
+        index(row, col);
+        int k = Arrays.binarySearch(colIndices, rowOffsets[row], rowOffsets[row + 1], col);
+        return k >= 0 ? new Complex(nzReal[k], nzIm[k]) : Complex.zero();
+    }
+
+    @Override
+    public Complex at(int index) {
+        index(index);
+        return numCols() == 1 ? at(index, 0) : at(0, index);
+    }
+
+    /**
+     * Returns the column indices of non-zero cells
+     */
+    public int[] colIndices() {
+        return colIndices;
+    }
+
+    @Override
+    public SparseMatrix conj() {
+        return new SparseMatrix(numRows(), numCols(), rowOffsets, colIndices, nzReal, VectorUtils.neg(nzIm));
+    }
+
+    /**
+     * Returns the dense matrix
+     */
+    private Matrix createDense() {
+        int numCols = numCols();
+        double[] real = new double[numRows() * numCols];
+        double[] im = new double[real.length];
+        for (int i = 0; i < numRows(); i++) {
+            for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+                int idx = unsafeIndex(numCols, i, colIndices[k]);
+                real[idx] = nzReal[k];
+                im[idx] = nzIm[k];
+            }
+        }
+        return new Matrix(numRows(), numCols, real, im);
+    }
+
+    @Override
+    public SparseMatrix extendsCols(int numCols) {
+        return numCols <= numCols()
+                ? this
+                : new SparseMatrix(numRows(), numCols, rowOffsets, colIndices, nzReal, nzIm);
+    }
+
+    @Override
+    public Matrix extendsCrossSquare(int n) {
+        int numRows = numRows();
+        if (numCols() == 1) {
+            // Extend ket
+            return extendsRows(n);
+        }
+        if (numRows == 1) {
+            // Extend Bra
+            return extendsCols(n);
+        }
+        if (numCols() != numRows) {
+            throw new IllegalArgumentException(format("Expected square matrix (%dx%d)", numRows, numCols()));
+        }
+        if (n == numRows) {
+            return this;
+        }
+        if ((n % numRows) > 0) {
+            throw new IllegalArgumentException(format("Expected size multiple of %dx%d (%dx%d)", numRows, numRows, n, n));
+        }
+        // Block diagonal matrix identity(q) x this
+        int q = n / numRows;
+        int nnz = numNonZeros();
+        int[] offsets = new int[n + 1];
+        int[] cols = new int[nnz * q];
+        double[] real = new double[nnz * q];
+        double[] im = new double[nnz * q];
+        for (int b = 0; b < q; b++) {
+            int rowBase = b * numRows;
+            int nzBase = b * nnz;
+            for (int i = 0; i < numRows; i++) {
+                offsets[rowBase + i + 1] = nzBase + rowOffsets[i + 1];
+            }
+            for (int k = 0; k < nnz; k++) {
+                cols[nzBase + k] = colIndices[k] + rowBase;
+            }
+            System.arraycopy(nzReal, 0, real, nzBase, nnz);
+            System.arraycopy(nzIm, 0, im, nzBase, nnz);
+        }
+        return new SparseMatrix(n, n, offsets, cols, real, im);
+    }
+
+    @Override
+    public SparseMatrix extendsRows(int numRows) {
+        if (numRows <= numRows()) {
+            return this;
+        }
+        int[] offsets = Arrays.copyOf(rowOffsets, numRows + 1);
+        Arrays.fill(offsets, numRows() + 1, numRows + 1, rowOffsets[numRows()]);
+        return new SparseMatrix(numRows, numCols(), offsets, colIndices, nzReal, nzIm);
+    }
+
+    @Override
+    public double[] im() {
+        return dense.get().im();
+    }
+
+    @Override
+    boolean isDense() {
+        return false;
+    }
+
+    @Override
+    public SparseMatrix mul(double scale) {
+        return new SparseMatrix(numRows(), numCols(), rowOffsets, colIndices,
+                VectorUtils.mul(nzReal, scale), VectorUtils.mul(nzIm, scale));
+    }
+
+    @Override
+    public SparseMatrix mul(Complex scale) {
+        int n = nzReal.length;
+        double[] real = new double[n];
+        double[] im = new double[n];
+        VectorUtils.mul(real, im, 0, nzReal, nzIm, 0, scale.real(), scale.im(), n);
+        return new SparseMatrix(numRows(), numCols(), rowOffsets, colIndices, real, im);
+    }
+
+    /**
+     * Returns the product of this by dense matrix (this x right)
+     *
+     * @param right the right matrix
+     */
+    private Matrix mulDense(Matrix right) {
+        int m = right.numCols();
+        double[] bReal = right.real();
+        double[] bIm = right.im();
+        double[] real = new double[numRows() * m];
+        double[] im = new double[real.length];
+        for (int i = 0; i < numRows(); i++) {
+            int di = i * m;
+            for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+                double ar = nzReal[k];
+                double ai = nzIm[k];
+                int bk = colIndices[k] * m;
+                for (int j = 0; j < m; j++) {
+                    double br = bReal[bk + j];
+                    double bi = bIm[bk + j];
+                    real[di + j] += ar * br - ai * bi;
+                    im[di + j] += ar * bi + ai * br;
+                }
+            }
+        }
+        return new Matrix(numRows(), m, real, im);
+    }
+
+    /**
+     * Returns the product of this by sparse matrix (this x right)
+     *
+     * @param right the right matrix
+     */
+    SparseMatrix mulSparse(SparseMatrix right) {
+        int numRows = numRows();
+        int m = right.numCols();
+        // Dense accumulator of row
+        double[] accReal = new double[m];
+        double[] accIm = new double[m];
+        int[] marker = new int[m];
+        Arrays.fill(marker, -1);
+        int[] rowCols = new int[m];
+        int[] offsets = new int[numRows + 1];
+        int capacity = max(nzReal.length, right.nzReal.length);
+        int[] cols = new int[capacity];
+        double[] real = new double[capacity];
+        double[] im = new double[capacity];
+        int nnz = 0;
+        for (int i = 0; i < numRows; i++) {
+            int rowNnz = 0;
+            for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+                double ar = nzReal[k];
+                double ai = nzIm[k];
+                int rk = colIndices[k];
+                for (int l = right.rowOffsets[rk]; l < right.rowOffsets[rk + 1]; l++) {
+                    int j = right.colIndices[l];
+                    if (marker[j] != i) {
+                        marker[j] = i;
+                        rowCols[rowNnz++] = j;
+                        accReal[j] = 0;
+                        accIm[j] = 0;
+                    }
+                    double br = right.nzReal[l];
+                    double bi = right.nzIm[l];
+                    accReal[j] += ar * br - ai * bi;
+                    accIm[j] += ar * bi + ai * br;
+                }
+            }
+            Arrays.sort(rowCols, 0, rowNnz);
+            if (nnz + rowNnz > cols.length) {
+                int newCapacity = max(nnz + rowNnz, cols.length * 2);
+                cols = Arrays.copyOf(cols, newCapacity);
+                real = Arrays.copyOf(real, newCapacity);
+                im = Arrays.copyOf(im, newCapacity);
+            }
+            for (int r = 0; r < rowNnz; r++) {
+                int j = rowCols[r];
+                cols[nnz] = j;
+                real[nnz] = accReal[j];
+                im[nnz] = accIm[j];
+                nnz++;
+            }
+            offsets[i + 1] = nnz;
+        }
+        return new SparseMatrix(numRows, m, offsets,
+                Arrays.copyOf(cols, nnz), Arrays.copyOf(real, nnz), Arrays.copyOf(im, nnz));
+    }
+
+    @Override
+    public SparseMatrix neg() {
+        return new SparseMatrix(numRows(), numCols(), rowOffsets, colIndices, VectorUtils.neg(nzReal), VectorUtils.neg(nzIm));
+    }
+
+    @Override
+    public SparseMatrix normalise() {
+        return mul(1 / sqrt(VectorUtils.normSquare(nzReal, nzIm)));
+    }
+
+    /**
+     * Returns the imaginary parts of non-zero cells
+     */
+    public double[] nonZeroIm() {
+        return nzIm;
+    }
+
+    /**
+     * Returns the real parts of non-zero cells
+     */
+    public double[] nonZeroReal() {
+        return nzReal;
+    }
+
+    /**
+     * Returns the number of non-zero cells
+     */
+    public int numNonZeros() {
+        return rowOffsets[numRows()];
+    }
+
+    @Override
+    public double[] real() {
+        return dense.get().real();
+    }
+
+    /**
+     * Returns the row offsets of non-zero cells
+     */
+    public int[] rowOffsets() {
+        return rowOffsets;
+    }
+
+    @Override
+    SparseMatrix sparse() {
+        return this;
+    }
+
+    @Override
+    public SparseMatrix transpose() {
+        int numRows = numRows();
+        int numCols = numCols();
+        int nnz = numNonZeros();
+        int[] offsets = new int[numCols + 1];
+        for (int k = 0; k < nnz; k++) {
+            offsets[colIndices[k] + 1]++;
+        }
+        for (int j = 0; j < numCols; j++) {
+            offsets[j + 1] += offsets[j];
+        }
+        int[] next = Arrays.copyOf(offsets, numCols);
+        int[] cols = new int[nnz];
+        double[] real = new double[nnz];
+        double[] im = new double[nnz];
+        // Rows are scanned in ascending order so the transposed columns are sorted
+        for (int i = 0; i < numRows; i++) {
+            for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; k++) {
+                int l = next[colIndices[k]]++;
+                cols[l] = i;
+                real[l] = nzReal[k];
+                im[l] = nzIm[k];
+            }
+        }
+        return new SparseMatrix(numCols, numRows, offsets, cols, real, im);
+    }
+
+    @Override
+    Matrix unsafeLeftMul(Matrix left) {
+        // Dense (left) x sparse (this): row i of result accumulates left[i, k] * this[k, :]
+        int n = left.numRows();
+        int inner = left.numCols();
+        int m = numCols();
+        double[] aReal = left.real();
+        double[] aIm = left.im();
+        double[] real = new double[n * m];
+        double[] im = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            int di = i * m;
+            for (int k = 0; k < inner; k++) {
+                double ar = aReal[i * inner + k];
+                double ai = aIm[i * inner + k];
+                if (ar != 0 || ai != 0) {
+                    for (int l = rowOffsets[k]; l < rowOffsets[k + 1]; l++) {
+                        int j = colIndices[l];
+                        real[di + j] += ar * nzReal[l] - ai * nzIm[l];
+                        im[di + j] += ar * nzIm[l] + ai * nzReal[l];
+                    }
+                }
+            }
+        }
+        return new Matrix(n, m, real, im);
+    }
+
+    @Override
+    Matrix unsafeMul(Matrix right) {
+        return right.isDense()
+                ? mulDense(right)
+                : mulSparse(right.sparse());
+    }
+}
@@ -0,0 +1,843 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+import static java.lang.String.format;
+
+/**
+ * Stabilizer state of n qubits evolved by Clifford gates (Aaronson-Gottesman tableau).
+ * <p>
+ * The tableau has n destabilizer rows, n stabilizer rows and a scratch row,
+ * each row is a Pauli operator with the x and z bits packed in long words and a sign bit.
+ * The gates H, S, X, Y, Z, CNOT and SWAP cost O(n) and the measurements O(n<sup>2</sup>),
+ * so the circuits with thousands of qubits can be simulated in polynomial time and memory.
+ * </p>
+ * <p>
+ * The tableau does not define the global phase of the state,
+ * up to {@link #MAX_KET_QUBITS} qubits the exact amplitude of a reference basis state is tracked along the gates,
+ * so the state can be exported to a ket equal to the one computed by the state vector simulation.
+ * </p>
+ */
+public class StabilizerTableau {
+    /**
+     * The max number of qubits of the exportable states
+     */
+    public static final int MAX_KET_QUBITS = 26;
+    /**
+     * The types of the Clifford gates
+     */
+    public static final Set<String> CLIFFORD_TYPES = Set.of("cnot", "h", "i", "s", "swap", "x", "y", "z");
+    private static final double HALF_SQRT2 = Math.sqrt(0.5);
+    private static final double SQRT2 = Math.sqrt(2);
+    private static final List<QuGate> SINGLE_QUBIT_GATES = List.of(
+            QuGate.h(0), QuGate.s(0), QuGate.x(0), QuGate.y(0), QuGate.z(0));
+    private static final List<QuGate> TWO_QUBITS_GATES = List.of(QuGate.cnot(0, 1), QuGate.swap(0, 1));
+
+    /**
+     * Returns the index of the only non-zero amplitude of ket or -1 if the ket is not a basis state
+     *
+     * @param ket the ket
+     */
+    static int basisState(Matrix ket) {
+        int n = ket.numRows();
+        if (ket.numCols() != 1 || n < 2 || Integer.bitCount(n) != 1) {
+            return -1;
+        }
+        double[] real = ket.real();
+        double[] im = ket.im();
+        int result = -1;
+        for (int i = 0; i < n; i++) {
+            if (real[i] != 0 || im[i] != 0) {
+                if (result >= 0) {
+                    return -1;
+                }
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Clifford gate equivalent to the operator if any
+     *
+     * @param operator the operator
+     */
+    static Optional<QuGate> cliffordGate(Matrix operator) {
+        if (operator instanceof GateMatrix gate) {
+            int[] qubits = gate.qubits();
+            List<QuGate> candidates = qubits.length == 1 ? SINGLE_QUBIT_GATES
+                    : qubits.length == 2 ? TWO_QUBITS_GATES
+                    : List.of();
+            Matrix base = gate.gate();
+            return candidates.stream()
+                    .filter(candidate -> Arrays.equals(base.real(), candidate.gate().real())
+                            && Arrays.equals(base.im(), candidate.gate().im()))
+                    .findFirst()
+                    .map(candidate -> gate(candidate.type(), qubits));
+        } else if (operator instanceof DiagonalMatrix diag) {
+            return diagonalGate(diag.diagReal(), diag.diagIm());
+        } else if (operator instanceof PermutationMatrix perm) {
+            return permutationGate(perm.mapping());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the Clifford gates equivalent to the operators if all the operators are Clifford gates
+     *
+     * @param operators the operators
+     */
+    static Optional<List<QuGate>> cliffordGates(List<Matrix> operators) {
+        List<QuGate> result = new ArrayList<>(operators.size());
+        for (Matrix operator : operators) {
+            Optional<QuGate> gate = cliffordGate(operator);
+            if (gate.isEmpty()) {
+                return Optional.empty();
+            }
+            result.add(gate.get());
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Returns the tableau of the |0...0&gt; state
+     *
+     * @param numQubits the number of qubits
+     */
+    public static StabilizerTableau create(int numQubits) {
+        if (numQubits < 1) {
+            throw new IllegalArgumentException(format("Expected at least one qubit (%d)", numQubits));
+        }
+        return new StabilizerTableau(numQubits, 0, 1, 0);
+    }
+
+    /**
+     * Returns the tableau of the basis state ket
+     *
+     * @param ket the ket with a single non-zero amplitude
+     */
+    public static StabilizerTableau create(Matrix ket) {
+        int state = basisState(ket);
+        if (state < 0) {
+            throw new IllegalArgumentException(format("Expected basis state ket (%dx%d)", ket.numRows(), ket.numCols()));
+        }
+        int numQubits = Integer.numberOfTrailingZeros(ket.numRows());
+        StabilizerTableau result = new StabilizerTableau(numQubits, state, ket.real()[state], ket.im()[state]);
+        // Flips the stabilizer signs of the qubits at 1
+        for (int i = 0; i < numQubits; i++) {
+            if ((state & (1 << i)) != 0) {
+                result.phases[numQubits + i] = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Clifford gate equivalent to the diagonal operator if any
+     *
+     * @param real the real part of the diagonal
+     * @param im   the imaginary part of diagonal
+     */
+    private static Optional<QuGate> diagonalGate(double[] real, double[] im) {
+        int n = real.length;
+        if (Integer.bitCount(n) != 1) {
+            return Optional.empty();
+        }
+        // Finds the qubit with non unit phase
+        int qubit = -1;
+        for (int i = 1; i < n; i <<= 1) {
+            if (real[i] != 1 || im[i] != 0) {
+                if (qubit >= 0) {
+                    return Optional.empty();
+                }
+                qubit = Integer.numberOfTrailingZeros(i);
+            }
+        }
+        if (qubit < 0) {
+            qubit = 0;
+        }
+        int bit = 1 << qubit;
+        double phaseReal = real[bit & (n - 1)];
+        double phaseIm = im[bit & (n - 1)];
+        for (int i = 0; i < n; i++) {
+            boolean valid = (i & bit) != 0
+                    ? real[i] == phaseReal && im[i] == phaseIm
+                    : real[i] == 1 && im[i] == 0;
+            if (!valid) {
+                return Optional.empty();
+            }
+        }
+        return phaseReal == 1 && phaseIm == 0 ? Optional.of(QuGate.i(qubit))
+                : phaseReal == -1 && phaseIm == 0 ? Optional.of(QuGate.z(qubit))
+                : phaseReal == 0 && phaseIm == 1 ? Optional.of(QuGate.s(qubit))
+                : Optional.empty();
+    }
+
+    /**
+     * Returns the Clifford gate of the given type
+     *
+     * @param type   the type
+     * @param qubits the qubits
+     */
+    private static QuGate gate(String type, int... qubits) {
+        return switch (type) {
+            case "h" -> QuGate.h(qubits[0]);
+            case "s" -> QuGate.s(qubits[0]);
+            case "x" -> QuGate.x(qubits[0]);
+            case "y" -> QuGate.y(qubits[0]);
+            case "z" -> QuGate.z(qubits[0]);
+            case "cnot" -> QuGate.cnot(qubits[0], qubits[1]);
+            case "swap" -> QuGate.swap(qubits[0], qubits[1]);
+            default -> QuGate.i(qubits[0]);
+        };
+    }
+
+    /**
+     * Returns true if all the gates are Clifford gates
+     *
+     * @param gates the gates
+     */
+    public static boolean isClifford(List<QuGate> gates) {
+        return gates.stream().allMatch(gate -> CLIFFORD_TYPES.contains(gate.type()));
+    }
+
+    /**
+     * Returns the power of i of the product of the Pauli operators (row 1 x row 2).
+     * The sum of the exponents g(x1, z1, x2, z2) of Aaronson-Gottesman computed word by word
+     *
+     * @param x1 the x bits of left operator
+     * @param z1 the z bits of left operator
+     * @param x2 the x bits of right operator
+     * @param z2 the z bits of right operator
+     */
+    private static int pauliPhase(long[] x1, long[] z1, long[] x2, long[] z2) {
+        int result = 0;
+        for (int w = 0; w < x1.length; w++) {
+            long a = x1[w];
+            long b = z1[w];
+            long c = x2[w];
+            long d = z2[w];
+            long plus = (a & b & ~c & d) | (a & ~b & c & d) | (~a & b & c & ~d);
+            long minus = (a & b & c & ~d) | (a & ~b & ~c & d) | (~a & b & c & d);
+            result += Long.bitCount(plus) - Long.bitCount(minus);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Clifford gate equivalent to the permutation if any
+     *
+     * @param mapping the state mapping
+     */
+    private static Optional<QuGate> permutationGate(int[] mapping) {
+        int n = mapping.length;
+        if (Integer.bitCount(n) != 1 || mapping[0] != 0) {
+            return Optional.empty();
+        }
+        // Verifies the linear map of bits
+        for (int i = 1; i < n; i++) {
+            int low = Integer.lowestOneBit(i);
+            if (mapping[i] != (mapping[low] ^ mapping[i ^ low])) {
+                return Optional.empty();
+            }
+        }
+        int changed = 0;
+        int first = -1;
+        int second = -1;
+        for (int i = 1; i < n; i <<= 1) {
+            if (mapping[i] != i) {
+                changed++;
+                if (first < 0) {
+                    first = i;
+                } else {
+                    second = i;
+                }
+            }
+        }
+        if (changed == 0) {
+            return Optional.of(QuGate.i(0));
+        }
+        if (changed == 1 && Integer.bitCount(mapping[first]) == 2 && (mapping[first] & first) != 0) {
+            int data = mapping[first] ^ first;
+            return Optional.of(QuGate.cnot(Integer.numberOfTrailingZeros(data), Integer.numberOfTrailingZeros(first)));
+        }
+        if (changed == 2 && mapping[first] == second && mapping[second] == first) {
+            return Optional.of(QuGate.swap(Integer.numberOfTrailingZeros(first), Integer.numberOfTrailingZeros(second)));
+        }
+        return Optional.empty();
+    }
+
+    private final int numQubits;
+    private final long[][] xs;
+    private final long[][] zs;
+    private final boolean[] phases;
+    private final boolean tracked;
+    private int reference;
+    private double amplitudeReal;
+    private double amplitudeIm;
+
+    /**
+     * Creates the tableau of |0...0&gt; state
+     *
+     * @param numQubits     the number of qubits
+     * @param reference     the reference basis state
+     * @param amplitudeReal the real part of reference amplitude
+     * @param amplitudeIm   the imaginary part of reference amplitude
+     */
+    protected StabilizerTableau(int numQubits, int reference, double amplitudeReal, double amplitudeIm) {
+        this.numQubits = numQubits;
+        int numWords = (numQubits + 63) >>> 6;
+        this.xs = new long[2 * numQubits + 1][numWords];
+        this.zs = new long[2 * numQubits + 1][numWords];
+        this.phases = new boolean[2 * numQubits + 1];
+        this.tracked = numQubits <= MAX_KET_QUBITS;
+        this.reference = reference;
+        this.amplitudeReal = amplitudeReal;
+        this.amplitudeIm = amplitudeIm;
+        for (int i = 0; i < numQubits; i++) {
+            xs[i][i >>> 6] = 1L << i;
+            zs[i + numQubits][i >>> 6] = 1L << i;
+        }
+    }
+
+    /**
+     * Returns the tableau transformed by the gate
+     *
+     * @param gate the Clifford gate
+     */
+    public StabilizerTableau apply(QuGate gate) {
+        int[] indices = gate.indices();
+        return switch (gate.type()) {
+            case "h" -> h(indices[0]);
+            case "s" -> s(indices[0]);
+            case "x" -> x(indices[0]);
+            case "y" -> y(indices[0]);
+            case "z" -> z(indices[0]);
+            case "cnot" -> cnot(indices[0], indices[1]);
+            case "swap" -> swap(indices[0], indices[1]);
+            case "i" -> this;
+            default -> throw new IllegalArgumentException(format("Expected Clifford gate (%s)", gate.type()));
+        };
+    }
+
+    /**
+     * Returns the tableau transformed by the gates applied in sequence
+     *
+     * @param gates the Clifford gates
+     */
+    public StabilizerTableau apply(List<QuGate> gates) {
+        for (QuGate gate : gates) {
+            apply(gate);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the tableau transformed by the CNOT gate
+     *
+     * @param data    the data qubit
+     * @param control the control qubit
+     */
+    public StabilizerTableau cnot(int data, int control) {
+        GateKernels.validateQubits(numQubits, data, control);
+        if (tracked && (reference & (1 << control)) != 0) {
+            reference ^= 1 << data;
+        }
+        int wa = control >>> 6;
+        int wb = data >>> 6;
+        int sa = control & 63;
+        int sb = data & 63;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            long xa = (xs[i][wa] >>> sa) & 1;
+            long za = (zs[i][wa] >>> sa) & 1;
+            long xb = (xs[i][wb] >>> sb) & 1;
+            long zb = (zs[i][wb] >>> sb) & 1;
+            if ((xa & zb & (xb ^ za ^ 1)) != 0) {
+                phases[i] = !phases[i];
+            }
+            xs[i][wb] ^= xa << sb;
+            zs[i][wa] ^= zb << sa;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the outcome of qubit measurement if deterministic
+     *
+     * @param qubit the qubit
+     */
+    private int deterministicOutcome(int qubit) {
+        int scratch = 2 * numQubits;
+        Arrays.fill(xs[scratch], 0);
+        Arrays.fill(zs[scratch], 0);
+        phases[scratch] = false;
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < numQubits; i++) {
+            if ((xs[i][w] & mask) != 0) {
+                rowsum(scratch, i + numQubits);
+            }
+        }
+        return phases[scratch] ? 1 : 0;
+    }
+
+    /**
+     * Returns the stabilizer rows in reduced row echelon form of x bits and the number of rows with x bits.
+     * The rows are copied into the given arrays
+     *
+     * @param x      the x bits of rows
+     * @param z      the z bits of rows
+     * @param signs  the signs of rows
+     * @param pivots the pivot qubits of rows
+     */
+    private int echelon(long[][] x, long[][] z, boolean[] signs, int[] pivots) {
+        for (int i = 0; i < numQubits; i++) {
+            x[i] = xs[i + numQubits].clone();
+            z[i] = zs[i + numQubits].clone();
+            signs[i] = phases[i + numQubits];
+        }
+        int rank = 0;
+        for (int q = 0; q < numQubits && rank < numQubits; q++) {
+            int w = q >>> 6;
+            long mask = 1L << q;
+            int row = rank;
+            while (row < numQubits && (x[row][w] & mask) == 0) {
+                row++;
+            }
+            if (row >= numQubits) {
+                continue;
+            }
+            swapRows(x, row, rank);
+            swapRows(z, row, rank);
+            boolean sign = signs[row];
+            signs[row] = signs[rank];
+            signs[rank] = sign;
+            for (int i = 0; i < numQubits; i++) {
+                if (i != rank && (x[i][w] & mask) != 0) {
+                    signs[i] = multiply(x[i], z[i], signs[i], x[rank], z[rank], signs[rank]);
+                }
+            }
+            pivots[rank++] = q;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the tableau transformed by the H gate
+     *
+     * @param qubit the qubit
+     */
+    public StabilizerTableau h(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        if (tracked) {
+            trackHadamard(qubit);
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            long x = xs[i][w] & mask;
+            long z = zs[i][w] & mask;
+            if (x != 0 && z != 0) {
+                phases[i] = !phases[i];
+            }
+            xs[i][w] = (xs[i][w] & ~mask) | z;
+            zs[i][w] = (zs[i][w] & ~mask) | x;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the outcome of the qubit measurement (0, 1) and projects the state
+     *
+     * @param qubit  the qubit
+     * @param random the random generator for the random outcomes
+     */
+    public int measure(int qubit, RandomGenerator random) {
+        GateKernels.validateQubits(numQubits, qubit);
+        int p = randomRow(qubit);
+        if (p < 0) {
+            return deterministicOutcome(qubit);
+        }
+        int outcome = random.nextBoolean() ? 1 : 0;
+        if (tracked) {
+            if (((reference >>> qubit) & 1) != outcome) {
+                // Moves the reference to the basis state mapped by the anti-commuting stabilizer
+                multiplyAmplitude(xs[p][0], zs[p][0], phases[p]);
+                reference ^= (int) xs[p][0];
+            }
+            amplitudeReal *= SQRT2;
+            amplitudeIm *= SQRT2;
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            if (i != p && (xs[i][w] & mask) != 0) {
+                rowsum(i, p);
+            }
+        }
+        int d = p - numQubits;
+        System.arraycopy(xs[p], 0, xs[d], 0, xs[p].length);
+        System.arraycopy(zs[p], 0, zs[d], 0, zs[p].length);
+        phases[d] = phases[p];
+        Arrays.fill(xs[p], 0);
+        Arrays.fill(zs[p], 0);
+        zs[p][w] = mask;
+        phases[p] = outcome != 0;
+        return outcome;
+    }
+
+    /**
+     * Multiplies the Pauli operator by the right operator (left = left x right) and returns the resulting sign
+     *
+     * @param x     the x bits of left operator
+     * @param z     the z bits of left operator
+     * @param sign  the sign of left operator
+     * @param x1    the x bits of right operator
+     * @param z1    the z bits of right operator
+     * @param sign1 the sign of right operator
+     */
+    private boolean multiply(long[] x, long[] z, boolean sign, long[] x1, long[] z1, boolean sign1) {
+        int exp = (sign ? 2 : 0) + (sign1 ? 2 : 0) + pauliPhase(x1, z1, x, z);
+        for (int w = 0; w < x.length; w++) {
+            x[w] ^= x1[w];
+            z[w] ^= z1[w];
+        }
+        return (exp & 3) == 2;
+    }
+
+    /**
+     * Multiplies the reference amplitude by the phase of Pauli operator applied to the reference state
+     * (P |b&gt; = phase |b xor x&gt;)
+     *
+     * @param x    the x bits of operator
+     * @param z    the z bits of operator
+     * @param sign the sign of operator
+     */
+    private void multiplyAmplitude(long x, long z, boolean sign) {
+        int exp = ((sign ? 2 : 0) + 2 * Long.bitCount(z & reference) + Long.bitCount(x & z)) & 3;
+        double re = amplitudeReal;
+        double im = amplitudeIm;
+        switch (exp) {
+            case 1 -> {
+                amplitudeReal = -im;
+                amplitudeIm = re;
+            }
+            case 2 -> {
+                amplitudeReal = -re;
+                amplitudeIm = -im;
+            }
+            case 3 -> {
+                amplitudeReal = im;
+                amplitudeIm = -re;
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Returns the number of qubits
+     */
+    public int numQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Returns the probability of qubit at 1 state (0, 0.5 or 1)
+     *
+     * @param qubit the qubit
+     */
+    public double qubitProbability(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        return randomRow(qubit) >= 0 ? 0.5 : deterministicOutcome(qubit);
+    }
+
+    /**
+     * Returns the index of the first stabilizer row anti-commuting with Z of the qubit
+     * or -1 if the measurement is deterministic
+     *
+     * @param qubit the qubit
+     */
+    private int randomRow(int qubit) {
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = numQubits; i < 2 * numQubits; i++) {
+            if ((xs[i][w] & mask) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Multiplies the row h by the row i (h = i x h)
+     *
+     * @param h the target row
+     * @param i the source row
+     */
+    private void rowsum(int h, int i) {
+        phases[h] = multiply(xs[h], zs[h], phases[h], xs[i], zs[i], phases[i]);
+    }
+
+    /**
+     * Returns the tableau transformed by the S gate
+     *
+     * @param qubit the qubit
+     */
+    public StabilizerTableau s(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        if (tracked && (reference & (1 << qubit)) != 0) {
+            double re = amplitudeReal;
+            amplitudeReal = -amplitudeIm;
+            amplitudeIm = re;
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            long x = xs[i][w] & mask;
+            if (x != 0 && (zs[i][w] & mask) != 0) {
+                phases[i] = !phases[i];
+            }
+            zs[i][w] ^= x;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the tableau transformed by the SWAP gate
+     *
+     * @param data0 the first qubit
+     * @param data1 the second qubit
+     */
+    public StabilizerTableau swap(int data0, int data1) {
+        GateKernels.validateQubits(numQubits, data0);
+        GateKernels.validateQubits(numQubits, data1);
+        if (data0 == data1) {
+            return this;
+        }
+        if (tracked && (((reference >>> data0) ^ (reference >>> data1)) & 1) != 0) {
+            reference ^= (1 << data0) | (1 << data1);
+        }
+        for (int i = 0; i < 2 * numQubits; i++) {
+            swapBits(xs[i], data0, data1);
+            swapBits(zs[i], data0, data1);
+        }
+        return this;
+    }
+
+    /**
+     * Swaps two bits of the packed row
+     *
+     * @param row the row
+     * @param a   the first bit
+     * @param b   the second bit
+     */
+    private void swapBits(long[] row, int a, int b) {
+        long bitA = (row[a >>> 6] >>> a) & 1;
+        long bitB = (row[b >>> 6] >>> b) & 1;
+        if (bitA != bitB) {
+            row[a >>> 6] ^= 1L << a;
+            row[b >>> 6] ^= 1L << b;
+        }
+    }
+
+    /**
+     * Swaps two rows
+     *
+     * @param rows the rows
+     * @param i    the first row
+     * @param j    the second row
+     */
+    private void swapRows(long[][] rows, int i, int j) {
+        long[] row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    /**
+     * Returns the ket of the state (O(2^k n) where 2^k is the number of non-zero amplitudes)
+     */
+    public Matrix toKet() {
+        if (!tracked) {
+            throw new IllegalArgumentException(format("Expected at most %d qubits (%d)", MAX_KET_QUBITS, numQubits));
+        }
+        long[][] x = new long[numQubits][];
+        long[][] z = new long[numQubits][];
+        boolean[] signs = new boolean[numQubits];
+        int[] pivots = new int[numQubits];
+        int rank = echelon(x, z, signs, pivots);
+        int size = 1 << numQubits;
+        double[] real = new double[size];
+        double[] im = new double[size];
+        double re0 = amplitudeReal;
+        double im0 = amplitudeIm;
+        int state0 = reference;
+        real[state0] = re0;
+        im[state0] = im0;
+        // Enumerates the stabilizer group elements with distinct x bits in gray code order
+        long[] px = new long[1];
+        long[] pz = new long[1];
+        boolean sign = false;
+        for (int g = 1; g < 1 << rank; g++) {
+            int k = Integer.numberOfTrailingZeros(g);
+            sign = multiply(px, pz, sign, x[k], z[k], signs[k]);
+            multiplyAmplitude(px[0], pz[0], sign);
+            int state = state0 ^ (int) px[0];
+            real[state] = amplitudeReal;
+            im[state] = amplitudeIm;
+            amplitudeReal = re0;
+            amplitudeIm = im0;
+        }
+        return new Matrix(size, 1, real, im);
+    }
+
+    /**
+     * Tracks the reference amplitude through the H gate
+     *
+     * @param qubit the qubit
+     */
+    private void trackHadamard(int qubit) {
+        int bit = 1 << qubit;
+        double re = amplitudeReal;
+        double im = amplitudeIm;
+        // Computes the amplitude of the basis state with flipped qubit
+        long[][] x = new long[numQubits][];
+        long[][] z = new long[numQubits][];
+        boolean[] signs = new boolean[numQubits];
+        int[] pivots = new int[numQubits];
+        int rank = echelon(x, z, signs, pivots);
+        long[] px = new long[1];
+        long[] pz = new long[1];
+        boolean sign = false;
+        for (int k = 0; k < rank; k++) {
+            if ((bit >>> pivots[k] & 1) != 0) {
+                sign = multiply(px, pz, sign, x[k], z[k], signs[k]);
+            }
+        }
+        double flippedRe = 0;
+        double flippedIm = 0;
+        if (px[0] == bit) {
+            multiplyAmplitude(px[0], pz[0], sign);
+            flippedRe = amplitudeReal;
+            flippedIm = amplitudeIm;
+        }
+        boolean one = (reference & bit) != 0;
+        double re0 = one ? flippedRe : re;
+        double im0 = one ? flippedIm : im;
+        double re1 = one ? re : flippedRe;
+        double im1 = one ? im : flippedIm;
+        double plusRe = (re0 + re1) * HALF_SQRT2;
+        double plusIm = (im0 + im1) * HALF_SQRT2;
+        double minusRe = (re0 - re1) * HALF_SQRT2;
+        double minusIm = (im0 - im1) * HALF_SQRT2;
+        if (plusRe * plusRe + plusIm * plusIm >= minusRe * minusRe + minusIm * minusIm) {
+            reference &= ~bit;
+            amplitudeReal = plusRe;
+            amplitudeIm = plusIm;
+        } else {
+            reference |= bit;
+            amplitudeReal = minusRe;
+            amplitudeIm = minusIm;
+        }
+    }
+
+    /**
+     * Returns the tableau transformed by the X gate
+     *
+     * @param qubit the qubit
+     */
+    public StabilizerTableau x(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        if (tracked) {
+            reference ^= 1 << qubit;
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            if ((zs[i][w] & mask) != 0) {
+                phases[i] = !phases[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the tableau transformed by the Y gate
+     *
+     * @param qubit the qubit
+     */
+    public StabilizerTableau y(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        if (tracked) {
+            // Y |0> = i |1>, Y |1> = -i |0>
+            boolean one = (reference & (1 << qubit)) != 0;
+            double re = amplitudeReal;
+            amplitudeReal = one ? amplitudeIm : -amplitudeIm;
+            amplitudeIm = one ? -re : re;
+            reference ^= 1 << qubit;
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            if (((xs[i][w] ^ zs[i][w]) & mask) != 0) {
+                phases[i] = !phases[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the tableau transformed by the Z gate
+     *
+     * @param qubit the qubit
+     */
+    public StabilizerTableau z(int qubit) {
+        GateKernels.validateQubits(numQubits, qubit);
+        if (tracked && (reference & (1 << qubit)) != 0) {
+            amplitudeReal = -amplitudeReal;
+            amplitudeIm = -amplitudeIm;
+        }
+        int w = qubit >>> 6;
+        long mask = 1L << qubit;
+        for (int i = 0; i < 2 * numQubits; i++) {
+            if ((xs[i][w] & mask) != 0) {
+                phases[i] = !phases[i];
+            }
+        }
+        return this;
+    }
+}
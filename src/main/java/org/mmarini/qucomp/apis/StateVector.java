@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import static java.lang.Math.sqrt;
+
+/**
+ * Mutable ket companion of the immutable {@link Matrix}.
+ * <p>
+ * The operations transform the state in place or through a single back buffer,
+ * so a sequence of operations allocates at most two vectors.
+ * The state is stored in double or single precision ({@link Precision}).
+ * </p>
+ */
+public interface StateVector {
+    /**
+     * Returns the state vector of the ket (the cells are copied) with the default precision
+     *
+     * @param ket the ket
+     */
+    static StateVector create(Matrix ket) {
+        return create(ket, Precision.getDefault());
+    }
+
+    /**
+     * Returns the state vector of the ket (the cells are copied)
+     *
+     * @param ket       the ket
+     * @param precision the storage precision
+     */
+    static StateVector create(Matrix ket, Precision precision) {
+        return precision == Precision.FLOAT
+                ? FloatStateVector.create(ket)
+                : DoubleStateVector.create(ket);
+    }
+
+    /**
+     * Returns the state vector transformed by the gate (in place)
+     *
+     * @param gate   the gate matrix (2^k x 2^k)
+     * @param qubits the qubit indices of the gate internal bits
+     */
+    StateVector apply(Matrix gate, int... qubits);
+
+    /**
+     * Returns the state vector transformed by the operator (operator x state)
+     *
+     * @param operator the square operator
+     */
+    StateVector apply(Matrix operator);
+
+    /**
+     * Returns the amplitude of the state
+     *
+     * @param state the state
+     */
+    Complex at(int state);
+
+    /**
+     * Returns the state vector scaled (in place)
+     *
+     * @param scale the scale
+     */
+    StateVector mul(Complex scale);
+
+    /**
+     * Returns the state vector scaled (in place)
+     *
+     * @param scale the scale
+     */
+    default StateVector mul(double scale) {
+        return mul(new Complex(scale, 0));
+    }
+
+    /**
+     * Returns the square norm of the state vector (accumulated in double precision)
+     */
+    double normSquare();
+
+    /**
+     * Returns the state vector normalised (in place)
+     */
+    default StateVector normalise() {
+        return mul(1 / sqrt(normSquare()));
+    }
+
+    /**
+     * Returns the storage precision
+     */
+    Precision precision();
+
+    /**
+     * Returns the probabilities of the states (square modulus of the amplitudes, not normalised)
+     */
+    double[] probabilities();
+
+    /**
+     * Returns the ket matrix of the state vector.
+     * The state vector is no more usable after the release
+     */
+    Matrix release();
+
+    /**
+     * Returns the number of states
+     */
+    int size();
+
+    /**
+     * Returns the ket matrix copy of the state vector
+     */
+    Matrix toMatrix();
+}
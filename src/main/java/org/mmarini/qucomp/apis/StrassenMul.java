@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static java.lang.String.format;
+
+/**
+ * Sub-cubic dense matrix multiplication by the Strassen-Winograd recursion.
+ * <p>
+ * The square matrices of size power of 2 are split in quadrants and multiplied by 7 quadrant products
+ * and 15 quadrant additions, the recursion stops at the cutoff size and falls back to the blocked kernel.
+ * The quadrant products run in parallel in the fork/join pool of {@link ParallelMul} while their work
+ * is above the minimum task work.
+ * The cutoff is set by the system property <code>qucomp.strassenCutoff</code> (0 disables the recursion).
+ * </p>
+ */
+public class StrassenMul {
+    public static final String CUTOFF_PROPERTY = "qucomp.strassenCutoff";
+    public static final int DEFAULT_CUTOFF = 512;
+    private static final int cutoff = Integer.getInteger(CUTOFF_PROPERTY, DEFAULT_CUTOFF);
+
+    /**
+     * Returns the sum of matrices (a + b) as real and imaginary parts
+     *
+     * @param a the left matrix
+     * @param b the right matrix
+     */
+    private static double[][] add(double[][] a, double[][] b) {
+        return new double[][]{
+                VectorUtils.add(a[0], b[0]),
+                VectorUtils.add(a[1], b[1])
+        };
+    }
+
+    /**
+     * Returns the matrix composed by quadrants
+     *
+     * @param c11  the top left quadrant
+     * @param c12  the top right quadrant
+     * @param c21  the bottom left quadrant
+     * @param c22  the bottom right quadrant
+     * @param half the quadrant size
+     */
+    private static double[][] compose(double[][] c11, double[][] c12, double[][] c21, double[][] c22, int half) {
+        int n = half * 2;
+        double[][] result = new double[][]{new double[n * n], new double[n * n]};
+        for (int k = 0; k < 2; k++) {
+            for (int i = 0; i < half; i++) {
+                System.arraycopy(c11[k], i * half, result[k], i * n, half);
+                System.arraycopy(c12[k], i * half, result[k], i * n + half, half);
+                System.arraycopy(c21[k], i * half, result[k], (i + half) * n, half);
+                System.arraycopy(c22[k], i * half, result[k], (i + half) * n + half, half);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cutoff size
+     */
+    public static int cutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Returns true if the product is computed by the Strassen-Winograd recursion
+     *
+     * @param numRows the number of rows
+     * @param inner   the inner dimension
+     * @param numCols the number of columns
+     */
+    public static boolean isApplicable(int numRows, int inner, int numCols) {
+        return cutoff > 0
+                && numRows == inner && inner == numCols
+                && numRows > cutoff
+                && (numRows & (numRows - 1)) == 0;
+    }
+
+    /**
+     * Computes the matrix product d = a x b of square matrices of size power of 2
+     *
+     * @param dReal the destination real parts
+     * @param dIm   the destination imaginary parts
+     * @param aReal the left matrix real parts
+     * @param aIm   the left matrix imaginary parts
+     * @param bReal the right matrix real parts
+     * @param bIm   the right matrix imaginary parts
+     * @param size  the matrix size
+     */
+    public static void mul(double[] dReal, double[] dIm,
+                           double[] aReal, double[] aIm,
+                           double[] bReal, double[] bIm,
+                           int size) {
+        mul(dReal, dIm, aReal, aIm, bReal, bIm, size, Math.max(cutoff, 1), ParallelMul.minTaskWork());
+    }
+
+    /**
+     * Computes the matrix product d = a x b of square matrices of size power of 2
+     *
+     * @param dReal    the destination real parts
+     * @param dIm      the destination imaginary parts
+     * @param aReal    the left matrix real parts
+     * @param aIm      the left matrix imaginary parts
+     * @param bReal    the right matrix real parts
+     * @param bIm      the right matrix imaginary parts
+     * @param size     the matrix size
+     * @param cutoff   the size at which the recursion stops
+     * @param taskWork the minimum work of parallel task
+     */
+    static void mul(double[] dReal, double[] dIm,
+                    double[] aReal, double[] aIm,
+                    double[] bReal, double[] bIm,
+                    int size, int cutoff, long taskWork) {
+        if (size <= 0 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException(format("Expected size power of 2 (%d)", size));
+        }
+        MulTask task = new MulTask(new double[][]{aReal, aIm}, new double[][]{bReal, bIm}, size, cutoff, taskWork);
+        double[][] result = ParallelMul.parallelism() > 1
+                ? ParallelMul.pool().invoke(task)
+                : task.compute();
+        System.arraycopy(result[0], 0, dReal, 0, size * size);
+        System.arraycopy(result[1], 0, dIm, 0, size * size);
+    }
+
+    /**
+     * Returns the quadrant of matrix
+     *
+     * @param src  the matrix
+     * @param size the matrix size
+     * @param row  the first row of quadrant
+     * @param col  the first column of quadrant
+     */
+    private static double[][] quadrant(double[][] src, int size, int row, int col) {
+        int half = size / 2;
+        double[][] result = new double[][]{new double[half * half], new double[half * half]};
+        for (int k = 0; k < 2; k++) {
+            for (int i = 0; i < half; i++) {
+                System.arraycopy(src[k], (row + i) * size + col, result[k], i * half, half);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the difference of matrices (a - b) as real and imaginary parts
+     *
+     * @param a the left matrix
+     * @param b the right matrix
+     */
+    private static double[][] sub(double[][] a, double[][] b) {
+        return new double[][]{
+                VectorUtils.sub(a[0], b[0]),
+                VectorUtils.sub(a[1], b[1])
+        };
+    }
+
+    /**
+     * Computes the product of square matrices by Strassen-Winograd recursion
+     */
+    private static class MulTask extends RecursiveTask<double[][]> {
+        private final double[][] a;
+        private final double[][] b;
+        private final int size;
+        private final int cutoff;
+        private final long taskWork;
+
+        /**
+         * Creates the task
+         *
+         * @param a        the left matrix real and imaginary parts
+         * @param b        the right matrix real and imaginary parts
+         * @param size     the matrix size
+         * @param cutoff   the size at which the recursion stops
+         * @param taskWork the minimum work of parallel task
+         */
+        MulTask(double[][] a, double[][] b, int size, int cutoff, long taskWork) {
+            this.a = a;
+            this.b = b;
+            this.size = size;
+            this.cutoff = cutoff;
+            this.taskWork = taskWork;
+        }
+
+        @Override
+        protected double[][] compute() {
+            if (size <= cutoff || size < 2) {
+                double[][] result = new double[][]{new double[size * size], new double[size * size]};
+                MulKernels.mul(result[0], result[1], 0, size, size,
+                        a[0], a[1], 0, size,
+                        b[0], b[1], 0, size);
+                return result;
+            }
+            int half = size / 2;
+            double[][] a11 = quadrant(a, size, 0, 0);
+            double[][] a12 = quadrant(a, size, 0, half);
+            double[][] a21 = quadrant(a, size, half, 0);
+            double[][] a22 = quadrant(a, size, half, half);
+            double[][] b11 = quadrant(b, size, 0, 0);
+            double[][] b12 = quadrant(b, size, 0, half);
+            double[][] b21 = quadrant(b, size, half, 0);
+            double[][] b22 = quadrant(b, size, half, half);
+
+            double[][] s1 = add(a21, a22);
+            double[][] s2 = sub(s1, a11);
+            double[][] s3 = sub(a11, a21);
+            double[][] s4 = sub(a12, s2);
+            double[][] t1 = sub(b12, b11);
+            double[][] t2 = sub(b22, t1);
+            double[][] t3 = sub(b22, b12);
+            double[][] t4 = sub(t2, b21);
+
+            MulTask[] tasks = new MulTask[]{
+                    new MulTask(a11, b11, half, cutoff, taskWork),
+                    new MulTask(a12, b21, half, cutoff, taskWork),
+                    new MulTask(s4, b22, half, cutoff, taskWork),
+                    new MulTask(a22, t4, half, cutoff, taskWork),
+                    new MulTask(s1, t1, half, cutoff, taskWork),
+                    new MulTask(s2, t2, half, cutoff, taskWork),
+                    new MulTask(s3, t3, half, cutoff, taskWork)
+            };
+            double[][][] p = new double[tasks.length][][];
+            if (inForkJoinPool() && (long) half * half * half >= taskWork) {
+                ForkJoinTask.invokeAll(tasks);
+                for (int i = 0; i < tasks.length; i++) {
+                    p[i] = tasks[i].join();
+                }
+            } else {
+                for (int i = 0; i < tasks.length; i++) {
+                    p[i] = tasks[i].compute();
+                }
+            }
+
+            double[][] u2 = add(p[0], p[5]);
+            double[][] u3 = add(u2, p[6]);
+            double[][] u4 = add(u2, p[4]);
+            double[][] c11 = add(p[0], p[1]);
+            double[][] c12 = add(u4, p[2]);
+            double[][] c21 = sub(u3, p[3]);
+            double[][] c22 = add(u3, p[4]);
+            return compose(c11, c12, c21, c22, half);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.qucomp.apis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Singular value decomposition of a complex matrix M = U S V<sup>&dagger;</sup> (one-sided Jacobi).
+ * <p>
+ * The columns of M are orthogonalised by complex Jacobi rotations accumulated in V,
+ * the singular values are the norms of the resulting columns and U the normalised columns.
+ * The wide matrices are decomposed by transposition, so the cost is O(m n min(m, n)) for each sweep.
+ * </p>
+ *
+ * @param numRows the number of rows of M (m)
+ * @param numCols the number of columns of M (n)
+ * @param uReal   the real parts of U (m x k row major, k = min(m, n))
+ * @param uIm     the imaginary parts of U
+ * @param s       the singular values in descending order (k)
+ * @param vReal   the real parts of V (n x k row major)
+ * @param vIm     the imaginary parts of V
+ */
+public record Svd(int numRows, int numCols,
+                  double[] uReal, double[] uIm,
+                  double[] s,
+                  double[] vReal, double[] vIm) {
+    public static final int MAX_SWEEPS = 60;
+    private static final double EPSILON = 1e-15;
+
+    /**
+     * Returns the singular value decomposition of the matrix
+     *
+     * @param matrix the matrix
+     */
+    public static Svd create(Matrix matrix) {
+        return create(matrix.real(), matrix.im(), matrix.numRows(), matrix.numCols());
+    }
+
+    /**
+     * Returns the singular value decomposition of the matrix
+     *
+     * @param real    the real parts of matrix (row major)
+     * @param im      the imaginary parts of matrix
+     * @param numRows the number of rows
+     * @param numCols the number of columns
+     */
+    public static Svd create(double[] real, double[] im, int numRows, int numCols) {
+        if (numRows < numCols) {
+            // M^dagger = U S V^dagger => M = V S U^dagger
+            double[] hReal = new double[real.length];
+            double[] hIm = new double[im.length];
+            for (int i = 0; i < numRows; i++) {
+                for (int j = 0; j < numCols; j++) {
+                    hReal[j * numRows + i] = real[i * numCols + j];
+                    hIm[j * numRows + i] = -im[i * numCols + j];
+                }
+            }
+            Svd svd = create(hReal, hIm, numCols, numRows);
+            return new Svd(numRows, numCols, svd.vReal, svd.vIm, svd.s, svd.uReal, svd.uIm);
+        }
+        int m = numRows;
+        int n = numCols;
+        // Column major copies
+        double[][] aReal = new double[n][m];
+        double[][] aIm = new double[n][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                aReal[j][i] = real[i * n + j];
+                aIm[j][i] = im[i * n + j];
+            }
+        }
+        double[][] vr = new double[n][n];
+        double[][] vi = new double[n][n];
+        for (int j = 0; j < n; j++) {
+            vr[j][j] = 1;
+        }
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            boolean rotated = false;
+            for (int p = 0; p < n - 1; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    double alpha = 0;
+                    double beta = 0;
+                    double gr = 0;
+                    double gi = 0;
+                    double[] pr = aReal[p];
+                    double[] pi = aIm[p];
+                    double[] qr = aReal[q];
+                    double[] qi = aIm[q];
+                    for (int i = 0; i < m; i++) {
+                        alpha += pr[i] * pr[i] + pi[i] * pi[i];
+                        beta += qr[i] * qr[i] + qi[i] * qi[i];
+                        // conj(a_p) a_q
+                        gr += pr[i] * qr[i] + pi[i] * qi[i];
+                        gi += pr[i] * qi[i] - pi[i] * qr[i];
+                    }
+                    double gamma = Math.hypot(gr, gi);
+                    if (gamma == 0 || gamma <= EPSILON * Math.sqrt(alpha * beta)) {
+                        continue;
+                    }
+                    rotated = true;
+                    double zeta = (beta - alpha) / (2 * gamma);
+                    double t = zeta == 0
+                            ? 1
+                            : Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+                    double c = 1 / Math.sqrt(1 + t * t);
+                    double sn = c * t;
+                    // Rotates a_p and a_q exp(-i phi) where exp(i phi) = g / |g|
+                    double er = gr / gamma;
+                    double ei = gi / gamma;
+                    rotate(pr, pi, qr, qi, c, sn, er, ei);
+                    rotate(vr[p], vi[p], vr[q], vi[q], c, sn, er, ei);
+                }
+            }
+            if (!rotated) {
+                break;
+            }
+        }
+        double[] norms = new double[n];
+        for (int j = 0; j < n; j++) {
+            double acc = 0;
+            for (int i = 0; i < m; i++) {
+                acc += aReal[j][i] * aReal[j][i] + aIm[j][i] * aIm[j][i];
+            }
+            norms[j] = Math.sqrt(acc);
+        }
+        int[] order = IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingDouble(j -> -norms[j]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        double[] s = new double[n];
+        double[] uReal = new double[m * n];
+        double[] uIm = new double[m * n];
+        double[] vReal = new double[n * n];
+        double[] vIm = new double[n * n];
+        for (int k = 0; k < n; k++) {
+            int j = order[k];
+            double sigma = norms[j];
+            s[k] = sigma;
+            if (sigma > 0) {
+                for (int i = 0; i < m; i++) {
+                    uReal[i * n + k] = aReal[j][i] / sigma;
+                    uIm[i * n + k] = aIm[j][i] / sigma;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                vReal[i * n + k] = vr[j][i];
+                vIm[i * n + k] = vi[j][i];
+            }
+        }
+        return new Svd(m, n, uReal, uIm, s, vReal, vIm);
+    }
+
+    /**
+     * Rotates the columns p, q: p' = c p - s q exp(-i phi), q' = s p + c q exp(-i phi)
+     *
+     * @param pr the real parts of column p
+     * @param pi the imaginary parts of column p
+     * @param qr the real parts of column q
+     * @param qi the imaginary parts of column q
+     * @param c  the cosine of rotation
+     * @param s  the sine of rotation
+     * @param er the real part of exp(i phi)
+     * @param ei the imaginary part of exp(i phi)
+     */
+    private static void rotate(double[] pr, double[] pi, double[] qr, double[] qi,
+                               double c, double s, double er, double ei) {
+        for (int i = 0; i < pr.length; i++) {
+            double bqr = qr[i] * er + qi[i] * ei;
+            double bqi = qi[i] * er - qr[i] * ei;
+            double apr = pr[i];
+            double api = pi[i];
+            pr[i] = c * apr - s * bqr;
+            pi[i] = c * api - s * bqi;
+            qr[i] = s * apr + c * bqr;
+            qi[i] = s * api + c * bqi;
+        }
+    }
+
+    /**
+     * Returns the number of singular values (min(m, n))
+     */
+    public int rank() {
+        return s.length;
+    }
+
+    /**
+     * Returns the matrix U
+     */
+    public Matrix u() {
+        return new Matrix(numRows, s.length, uReal, uIm);
+    }
+
+    /**
+     * Returns the matrix V
+     */
+    public Matrix v() {
+        return new Matrix(numCols, s.length, vReal, vIm);
+    }
+
+    @Override
+    public String toString() {
+        return "Svd[" + numRows + "x" + numCols + ", s=" + Arrays.toString(s) + "]";
+    }
+}
@@ -29,10 +29,8 @@
 package org.mmarini.qucomp.apis;
 
 import java.util.Arrays;
-import java.util.function.UnaryOperator;
 
 import static java.lang.Math.max;
-import static java.lang.Math.sqrt;
 import static java.lang.String.format;
 
 /**
@@ -46,95 +44,122 @@ public interface VectorUtils {
      * @param a the vector a
      * @param b the vector b
      */
-    static Complex[] add(Complex[] a, Complex[] b) {
+    static double[] add(double[] a, double[] b) {
         if (a.length != b.length) {
             throw new IllegalArgumentException(format("Expected %d states (%d)",
                     a.length, b.length));
         }
-        Complex[] states = new Complex[a.length];
-        for (int i = 0; i < a.length; i++) {
-            states[i] = a[i].add(b[i]);
+        double[] result = new double[a.length];
+        if (Simd.ENABLED) {
+            SimdKernels.add(a, b, result);
+        } else {
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] + b[i];
+            }
         }
-        return states;
+        return result;
     }
 
     /**
-     * Returns a complex list of reals
+     * Accumulates the joint probabilities of the qubits for a range of states (single pass over the amplitudes).
+     * The bit m of the destination index is the value of qubit <code>qubits[m]</code>
      *
-     * @param values the real values
+     * @param dst    the destination probabilities (2^k)
+     * @param real   the real parts of amplitudes
+     * @param im     the imaginary parts of amplitudes
+     * @param qubits the qubit indices
+     * @param from   the first state
+     * @param to     the last state (exclusive)
      */
-    static Complex[] create(double... values) {
-        Complex[] cells = new Complex[values.length];
-        for (int i = 0; i < values.length; i++) {
-            cells[i] = Complex.create(values[i]);
-        }
-        return cells;
-    }
-
-    /**
-     * Returns the tensor product
-     *
-     * @param a the vector a
-     * @param b the vector b
-     */
-    static Complex[] cross(Complex[] a, Complex[] b) {
-        int n = a.length;
-        int m = b.length;
-        Complex[] cells = new Complex[n * m];
-        int idx = 0;
-        for (Complex complex : a) {
-            for (Complex value : b) {
-                cells[idx] = complex.mul(value);
-                idx++;
+    static void marginal(double[] dst, double[] real, double[] im, int[] qubits, int from, int to) {
+        int k = qubits.length;
+        for (int i = from; i < to; i++) {
+            double p = real[i] * real[i] + im[i] * im[i];
+            int j = 0;
+            for (int m = 0; m < k; m++) {
+                j |= ((i >> qubits[m]) & 1) << m;
             }
+            dst[j] += p;
         }
-        return cells;
     }
 
     /**
-     * Returns the ket scaled by real factor
+     * Returns the vector scaled by real factor
      *
      * @param vector the vector
      * @param alpha  scale
      */
-    static Complex[] divScalar(Complex[] vector, double alpha) {
-        return Arrays.stream(vector)
-                .map(v -> v.div(alpha))
-                .toArray(Complex[]::new);
+    static double[] mul(double[] vector, double alpha) {
+        double[] result = new double[vector.length];
+        if (Simd.ENABLED) {
+            SimdKernels.mul(vector, alpha, result);
+        } else {
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = vector[i] * alpha;
+            }
+        }
+        return result;
     }
 
     /**
-     * Returns the values mapped by complex operator
+     * Stores the complex cells scaled by complex factor d[dOffset + k] = s[sOffset + k] * alpha
      *
-     * @param values values
-     * @param op     the operator
+     * @param dReal     the destination real parts
+     * @param dIm       the destination imaginary parts
+     * @param dOffset   the destination offset
+     * @param sReal     the source real parts
+     * @param sIm       the source imaginary parts
+     * @param sOffset   the source offset
+     * @param alphaReal the scale real part
+     * @param alphaIm   the scale imaginary part
+     * @param n         the number of cells
      */
-    static Complex[] map(Complex[] values, UnaryOperator<Complex> op) {
-        return Arrays.stream(values).map(op).toArray(Complex[]::new);
+    static void mul(double[] dReal, double[] dIm, int dOffset, double[] sReal, double[] sIm, int sOffset,
+                    double alphaReal, double alphaIm, int n) {
+        if (Simd.ENABLED) {
+            SimdKernels.mul(sReal, sIm, sOffset, alphaReal, alphaIm, dReal, dIm, dOffset, n);
+        } else {
+            for (int k = 0; k < n; k++) {
+                double sr = sReal[sOffset + k];
+                double si = sIm[sOffset + k];
+                dReal[dOffset + k] = sr * alphaReal - si * alphaIm;
+                dIm[dOffset + k] = sr * alphaIm + si * alphaReal;
+            }
+        }
     }
 
     /**
-     * Returns the ket scaled by real factor
+     * Returns the negated vector (-a)
      *
-     * @param vector the vector
-     * @param alpha  scale
+     * @param a the vector
      */
-    static Complex[] divScalar(Complex[] vector, Complex alpha) {
-        return Arrays.stream(vector)
-                .map(v -> v.div(alpha))
-                .toArray(Complex[]::new);
+    static double[] neg(double[] a) {
+        double[] result = new double[a.length];
+        if (Simd.ENABLED) {
+            SimdKernels.neg(a, result);
+        } else {
+            for (int i = 0; i < a.length; i++) {
+                result[i] = -a[i];
+            }
+        }
+        return result;
     }
 
     /**
-     * Returns the normalised cells
+     * Returns the square norm of complex vector (sum of |v_i|^2)
      *
-     * @param cells the cells
+     * @param real the real parts
+     * @param im   the imaginary parts
      */
-    static Complex[] normalise(Complex[] cells) {
-        double norm = sqrt(Arrays.stream(cells)
-                .mapToDouble(Complex::normSquare)
-                .sum());
-        return Arrays.stream(cells).map(c -> c.div(norm)).toArray(Complex[]::new);
+    static double normSquare(double[] real, double[] im) {
+        if (Simd.ENABLED) {
+            return SimdKernels.normSquare(real, im);
+        }
+        double result = 0;
+        for (int i = 0; i < real.length; i++) {
+            result += real[i] * real[i] + im[i] * im[i];
+        }
+        return result;
     }
 
     /**
@@ -160,66 +185,179 @@ public interface VectorUtils {
     }
 
     /**
-     * Partial matrix multiplication
+     * Partial matrix multiplication on primitive cells
      *
-     * @param d       the destination matrix
+     * @param dReal   the destination matrix real parts
+     * @param dIm     the destination matrix imaginary parts
      * @param dOffset the destination matrix offset
      * @param numRow  the number of computation rows
      * @param numCols the number of computation columns
-     * @param a       the left source matrix
+     * @param aReal   the left source matrix real parts
+     * @param aIm     the left source matrix imaginary parts
      * @param aOffset the left source matrix offset
      * @param aStride the left source matrix stride (number of columns)
-     * @param b       the right source matrix
+     * @param bReal   the right source matrix real parts
+     * @param bIm     the right source matrix imaginary parts
      * @param bOffset the right source matrix offset
      * @param bStride the right source matrix stride (number of columns)
      */
-    static Complex[] partMul(Complex[] d, int dOffset, int numRow, int numCols,
-                             Complex[] a, int aOffset, int aStride,
-                             Complex[] b, int bOffset, int bStride) {
+    static void partMul(double[] dReal, double[] dIm, int dOffset, int numRow, int numCols,
+                        double[] aReal, double[] aIm, int aOffset, int aStride,
+                        double[] bReal, double[] bIm, int bOffset, int bStride) {
         int di = dOffset;
         int ai = aOffset;
         for (int i = 0; i < numRow; i++) {
             int dij = di;
             int bj = bOffset;
             for (int j = 0; j < numCols; j++) {
-                Complex cell = Complex.zero();
+                double re = 0;
+                double im = 0;
                 int aik = ai;
                 int bkj = bj;
                 for (int k = 0; k < aStride; k++) {
-                    cell = cell.add(a[aik].mul(b[bkj]));
+                    double ar = aReal[aik];
+                    double aim = aIm[aik];
+                    double br = bReal[bkj];
+                    double bim = bIm[bkj];
+                    re += ar * br - aim * bim;
+                    im += ar * bim + aim * br;
                     aik++;
                     bkj += bStride;
                 }
-                d[dij] = cell;
+                dReal[dij] = re;
+                dIm[dij] = im;
                 dij++;
                 bj++;
             }
             di += bStride;
             ai += aStride;
         }
-        return d;
+    }
+
+    /**
+     * Accumulates the probabilities of each qubit at 1 state for a range of states (single pass over the amplitudes).
+     * The states are scanned by blocks of 2^8 states sharing the high bits,
+     * the block probabilities are distributed to the high qubits once per block
+     *
+     * @param dst  the destination probabilities (number of qubits)
+     * @param real the real parts of amplitudes
+     * @param im   the imaginary parts of amplitudes
+     * @param from the first state
+     * @param to   the last state (exclusive)
+     */
+    static void qubitProbabilities(double[] dst, double[] real, double[] im, int from, int to) {
+        int lowBits = Math.min(8, dst.length);
+        int i = from;
+        while (i < to) {
+            int blockEnd = Math.min(((i >> lowBits) + 1) << lowBits, to);
+            double block = 0;
+            for (; i < blockEnd; i++) {
+                double p = real[i] * real[i] + im[i] * im[i];
+                block += p;
+                for (int bits = i & ((1 << lowBits) - 1); bits != 0; bits &= bits - 1) {
+                    dst[Integer.numberOfTrailingZeros(bits)] += p;
+                }
+            }
+            for (int bits = (blockEnd - 1) >>> lowBits; bits != 0; bits &= bits - 1) {
+                dst[lowBits + Integer.numberOfTrailingZeros(bits)] += block;
+            }
+        }
     }
 
     static int qubitValue(int state, int index) {
         return (state >> index) & 1;
     }
 
+    /**
+     * Returns the indices of the states selected by probability (the probabilities are not copied).
+     * The states are filtered by the min probability and limited to the most probable ones,
+     * the ranking compares the probabilities in single precision and breaks the ties by state index
+     *
+     * @param probabilities the probabilities of states
+     * @param threshold     the min probability of the selected states
+     * @param maxStates     the max number of selected states (0 for no limit)
+     * @param sorted        true if the states are sorted by descending probability (state order otherwise)
+     */
+    static int[] selectStates(double[] probabilities, double threshold, int maxStates, boolean sorted) {
+        int n = 0;
+        for (double p : probabilities) {
+            if (p >= threshold) {
+                n++;
+            }
+        }
+        int[] states = new int[n];
+        for (int i = 0, j = 0; j < n; i++) {
+            if (probabilities[i] >= threshold) {
+                states[j++] = i;
+            }
+        }
+        boolean limited = maxStates > 0 && n > maxStates;
+        if (!limited && !sorted) {
+            return states;
+        }
+        // Sorts the keys with the complement of probability bits in the high word and the state in the low word
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int bits = Float.floatToIntBits((float) probabilities[states[i]]);
+            keys[i] = ((long) (Integer.MAX_VALUE - bits) << 32) | states[i];
+        }
+        Arrays.parallelSort(keys);
+        int[] result = new int[limited ? maxStates : n];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) keys[i];
+        }
+        if (!sorted) {
+            Arrays.sort(result);
+        }
+        return result;
+    }
+
     /**
      * Returns the vector subtracted by other (a - b)
      *
      * @param a the vector a
      * @param b the vector b
      */
-    static Complex[] sub(Complex[] a, Complex[] b) {
+    static double[] sub(double[] a, double[] b) {
         if (a.length != b.length) {
             throw new IllegalArgumentException(format("Expected %d states (%d)",
                     a.length, b.length));
         }
-        Complex[] states = new Complex[a.length];
-        for (int i = 0; i < a.length; i++) {
-            states[i] = a[i].sub(b[i]);
+        double[] result = new double[a.length];
+        if (Simd.ENABLED) {
+            SimdKernels.sub(a, b, result);
+        } else {
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] - b[i];
+            }
         }
-        return states;
+        return result;
     }
 
+    /**
+     * Transposes the rows from-to of the source matrix into the destination columns.
+     * The cells are copied by square tiles to keep both the source and the destination accesses in cache
+     *
+     * @param dst     the destination (numCols x numRows)
+     * @param src     the source (numRows x numCols)
+     * @param numRows the number of source rows
+     * @param numCols the number of source columns
+     * @param from    the first source row
+     * @param to      the last source row (exclusive)
+     */
+    static void transpose(double[] dst, double[] src, int numRows, int numCols, int from, int to) {
+        int tile = 32;
+        for (int i0 = from; i0 < to; i0 += tile) {
+            int i1 = Math.min(i0 + tile, to);
+            for (int j0 = 0; j0 < numCols; j0 += tile) {
+                int j1 = Math.min(j0 + tile, numCols);
+                for (int i = i0; i < i1; i++) {
+                    int si = i * numCols;
+                    for (int j = j0; j < j1; j++) {
+                        dst[j * numRows + i] = src[si + j];
+                    }
+                }
+            }
+        }
+    }
 }
@@ -7,6 +7,19 @@ import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.mmarini.MapStream;
 import org.mmarini.Tuple2;
+import org.mmarini.qucomp.apis.Complex;
+import org.mmarini.qucomp.apis.GateCache;
+import org.mmarini.qucomp.apis.GateFusion;
+import org.mmarini.qucomp.apis.MpsState;
+import org.mmarini.qucomp.apis.OffHeapStateVector;
+import org.mmarini.qucomp.apis.ParallelMul;
+import org.mmarini.qucomp.apis.Precision;
+import org.mmarini.qucomp.apis.QuCircuitBuilder;
+import org.mmarini.qucomp.apis.QuCircuitOptimizer;
+import org.mmarini.qucomp.apis.QuGate;
+import org.mmarini.qucomp.apis.QuParser;
+import org.mmarini.qucomp.apis.ShotSampler;
+import org.mmarini.qucomp.apis.StabilizerTableau;
 import org.mmarini.qucomp.compiler.Compiler;
 import org.mmarini.qucomp.compiler.Processor;
 import org.mmarini.qucomp.compiler.Syntax;
@@ -17,7 +30,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.String.format;
 
 /**
  * Computes the quantum state
@@ -29,7 +46,7 @@ public class Compute {
     /**
      * Returns the command line argument parser
      */
-    private static ArgumentParser createParser() {
+    static ArgumentParser createParser() {
         ArgumentParser parser = ArgumentParsers.newFor(Compute.class.getName()).build()
                 .defaultHelp(true)
                 .version(Messages.getString("Compute.title"))
@@ -43,6 +60,51 @@ public class Compute {
         parser.addArgument("-f", "--file")
                 .setDefault("qucomp.qu")
                 .help("specify qu source file");
+        parser.addArgument("-p", "--parallelism")
+                .type(Integer.class)
+                .help("specify the number of threads of matrix products");
+        parser.addArgument("-g", "--fusion")
+                .type(Integer.class)
+                .choices(Arguments.range(0, GateFusion.MAX_QUBITS))
+                .help("specify the max number of qubits of fused gates (0 disables the gate fusion)");
+        parser.addArgument("--precision")
+                .choices("double", "float")
+                .help("specify the state vector precision (float halves the state memory, default qucomp.precision property or double)");
+        parser.addArgument("--mps")
+                .action(Arguments.storeTrue())
+                .help("specify the matrix product state engine for gate chains and circuits (low entanglement, default qucomp.mps property)");
+        parser.addArgument("--bond")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .help("specify the max bond dimension of matrix product states");
+        parser.addArgument("--truncation")
+                .type(Double.class)
+                .choices(Arguments.range(0.0, 0.5))
+                .help("specify the max relative weight of discarded singular values of matrix product states");
+        parser.addArgument("-c", "--circuit")
+                .help("specify qg circuit file to simulate on a state vector (stabilizer tableau for Clifford circuits) instead of qu source");
+        parser.addArgument("-n", "--qubits")
+                .type(Integer.class)
+                .help("specify the number of qubits of circuit state (default the circuit qubits)");
+        parser.addArgument("--state")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("specify the initial base state of circuit");
+        parser.addArgument("--shots")
+                .type(Long.class)
+                .choices(Arguments.range(0L, Long.MAX_VALUE))
+                .help("specify the number of measurement shots of circuit state (prints the histogram of measured states)");
+        parser.addArgument("--seed")
+                .type(Long.class)
+                .help("specify the random seed of measurement shots (default random)");
+        parser.addArgument("-O", "--optimize")
+                .action(Arguments.storeTrue())
+                .help("specify the peephole optimisation of circuit (cancels and merges gates)");
+        parser.addArgument("-s", "--storage")
+                .choices("direct", "mapped")
+                .help("specify the circuit state vector storage (direct memory or memory mapped file, default direct)");
+        parser.addArgument("-m", "--map-file")
+                .help("specify the memory mapped file of circuit state vector (default temporary file)");
         return parser;
     }
 
@@ -55,6 +117,181 @@ public class Compute {
         new Compute().start(args);
     }
 
+    /**
+     * Applies the engine options
+     *
+     * @param parser the argument parser
+     * @param args   the arguments
+     * @throws ArgumentParserException in case of option values out of the engine limits
+     */
+    private void applyOptions(ArgumentParser parser, Namespace args) throws ArgumentParserException {
+        try {
+            Integer parallelism = args.getInt("parallelism");
+            if (parallelism != null) {
+                ParallelMul.setParallelism(parallelism);
+            }
+            Integer fusion = args.getInt("fusion");
+            if (fusion != null) {
+                GateFusion.setMaxQubits(fusion);
+            }
+            String precision = args.getString("precision");
+            if (precision != null) {
+                Precision.setDefault(Precision.parse(precision));
+            }
+            if (args.getBoolean("mps")) {
+                MpsState.setEnabled(true);
+            }
+            Integer bond = args.getInt("bond");
+            if (bond != null) {
+                MpsState.setDefaultMaxBond(bond);
+            }
+            Double truncation = args.getDouble("truncation");
+            if (truncation != null) {
+                MpsState.setDefaultThreshold(truncation);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ArgumentParserException(e.getMessage(), e, parser);
+        }
+    }
+
+    /**
+     * Samples the measurement shots and prints the histogram of measured states
+     *
+     * @param sampler the shot sampler
+     * @param args    the arguments
+     */
+    private void printShots(ShotSampler sampler, Namespace args) {
+        long shots = args.getLong("shots");
+        Long seed = args.getLong("seed");
+        long seed1 = seed != null ? seed : System.nanoTime();
+        long t0 = System.nanoTime();
+        long[] histogram = sampler.histogram(shots, seed1);
+        logger.atInfo().log("Sampled {} shots on {} states in {} ms",
+                shots, sampler.size(), (System.nanoTime() - t0) / 1000000);
+        System.out.printf("%d shots with seed %d%n", shots, seed1);
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                System.out.printf("|%d> %d%n", i, histogram[i]);
+            }
+        }
+    }
+
+    /**
+     * Simulates the circuit on a state vector (or on a stabilizer tableau if Clifford) and prints the qubit probabilities
+     *
+     * @param parser the argument parser
+     * @param args   the arguments
+     * @throws IOException             in case of error
+     * @throws ArgumentParserException in case of arguments out of the engine limits
+     */
+    private void runCircuit(ArgumentParser parser, Namespace args) throws IOException, ArgumentParserException {
+        QuParser quParser = QuParser.create(new File(args.getString("circuit")));
+        List<QuGate> gates;
+        try {
+            gates = quParser.parse();
+        } catch (IllegalArgumentException e) {
+            quParser.fullErrorMessages().forEach(System.err::println);
+            System.exit(1);
+            return;
+        }
+        int circuitQubits = QuCircuitBuilder.numQuBits(gates);
+        Integer qubits = args.getInt("qubits");
+        int numQubits = qubits != null ? qubits : circuitQubits;
+        if (args.getBoolean("optimize")) {
+            QuCircuitOptimizer.Result result = QuCircuitOptimizer.optimize(gates);
+            System.out.println(result.report());
+            gates = result.gates();
+        }
+        if (StabilizerTableau.isClifford(gates)) {
+            validateCircuitArgs(parser, args, circuitQubits, numQubits, Integer.MAX_VALUE, StabilizerTableau.MAX_KET_QUBITS,
+                    "stabilizer tableau");
+            runStabilizer(gates, numQubits, args);
+            return;
+        }
+        if (MpsState.isEnabled()) {
+            validateCircuitArgs(parser, args, circuitQubits, numQubits, Integer.MAX_VALUE, MpsState.MAX_KET_QUBITS,
+                    "matrix product state");
+            runMps(gates, numQubits, args);
+            return;
+        }
+        validateCircuitArgs(parser, args, circuitQubits, numQubits, OffHeapStateVector.MAX_QUBITS, ShotSampler.MAX_QUBITS,
+                null);
+        String mapFile = args.getString("map_file");
+        // The temporary file is deleted by the operating system when the mapping is released
+        OffHeapStateVector state = !"mapped".equals(args.getString("storage"))
+                ? OffHeapStateVector.create(numQubits)
+                : mapFile != null
+                ? OffHeapStateVector.map(Path.of(mapFile), numQubits)
+                : OffHeapStateVector.mapTemporary(numQubits);
+        state.set(args.getLong("state"), Complex.one());
+        long t0 = System.nanoTime();
+        state.apply(gates);
+        logger.atInfo().log("Applied {} gates on {} qubits in {} ms",
+                gates.size(), numQubits, (System.nanoTime() - t0) / 1000000);
+        double[] probabilities = state.qubitProbabilities();
+        for (int i = 0; i < numQubits; i++) {
+            System.out.printf("qubit %d = 1 with probability %.6f%n", i, probabilities[i]);
+        }
+        if (args.get("shots") != null) {
+            printShots(ShotSampler.create(state), args);
+        }
+    }
+
+    /**
+     * Simulates the circuit on a matrix product state and prints the qubit probabilities and the truncation error
+     *
+     * @param gates     the gates
+     * @param numQubits the number of qubits
+     * @param args      the arguments
+     */
+    private void runMps(List<QuGate> gates, int numQubits, Namespace args) {
+        long state = args.getLong("state");
+        MpsState mps = MpsState.create(numQubits);
+        for (int i = 0; i < Math.min(numQubits, Long.SIZE); i++) {
+            if ((state & (1L << i)) != 0) {
+                mps.apply(QuGate.x(i).gate(), i);
+            }
+        }
+        long t0 = System.nanoTime();
+        mps.apply(gates);
+        logger.atInfo().log("Applied {} gates on {} qubits with matrix product state (bond dimension {}) in {} ms",
+                gates.size(), numQubits, mps.bondDimension(), (System.nanoTime() - t0) / 1000000);
+        for (int i = 0; i < numQubits; i++) {
+            System.out.printf("qubit %d = 1 with probability %.6f%n", i, mps.qubitProbability(i));
+        }
+        System.out.printf("truncation error %g%n", mps.truncationError());
+        if (args.get("shots") != null) {
+            printShots(ShotSampler.create(mps.toKet()), args);
+        }
+    }
+
+    /**
+     * Simulates the Clifford circuit on a stabilizer tableau and prints the qubit probabilities
+     *
+     * @param gates     the gates
+     * @param numQubits the number of qubits
+     * @param args      the arguments
+     */
+    private void runStabilizer(List<QuGate> gates, int numQubits, Namespace args) {
+        long state = args.getLong("state");
+        StabilizerTableau tableau = StabilizerTableau.create(numQubits);
+        for (int i = 0; i < Math.min(numQubits, Long.SIZE); i++) {
+            if ((state & (1L << i)) != 0) {
+                tableau.x(i);
+            }
+        }
+        long t0 = System.nanoTime();
+        tableau.apply(gates);
+        logger.atInfo().log("Applied {} Clifford gates on {} qubits with stabilizer tableau in {} ms",
+                gates.size(), numQubits, (System.nanoTime() - t0) / 1000000);
+        for (int i = 0; i < numQubits; i++) {
+            System.out.printf("qubit %d = 1 with probability %.6f%n", i, tableau.qubitProbability(i));
+        }
+        if (args.get("shots") != null) {
+            printShots(ShotSampler.create(tableau.toKet()), args);
+        }
+    }
+
     /**
      * Starts the computatino app
      *
@@ -64,6 +301,11 @@ public class Compute {
         ArgumentParser parser = createParser();
         try {
             Namespace args1 = parser.parseArgs(args);
+            applyOptions(parser, args1);
+            if (args1.getString("circuit") != null) {
+                runCircuit(parser, args1);
+                return;
+            }
             File file = new File(args1.getString("file"));
             Tokenizer tokenizer = Tokenizer.create(file).open();
 
@@ -73,6 +315,12 @@ public class Compute {
             Syntax.rule("<code-unit>")
                     .parse(compiler.createParseContext(tokenizer));
             Object results = compiler.pop().evaluate(processor);
+            GateCache cache = GateCache.instance();
+            logger.atDebug().log("Gate cache hits {}, misses {}, {} gates, {} bytes",
+                    cache.hits(), cache.misses(), cache.size(), cache.bytes());
+            if (MpsState.isEnabled()) {
+                logger.atInfo().log("Matrix product state truncation error {}", MpsState.totalTruncationError());
+            }
             if (results instanceof Object[] outs) {
                 for (Object out : outs) {
                     if (out != null) {
@@ -99,4 +347,42 @@ public class Compute {
             System.exit(1);
         }
     }
+
+    /**
+     * Validates the circuit arguments against the engine limits
+     *
+     * @param parser        the argument parser
+     * @param args          the arguments
+     * @param circuitQubits the number of qubits of circuit gates
+     * @param numQubits     the number of qubits of circuit state
+     * @param maxQubits     the max number of qubits of the engine
+     * @param maxShotQubits the max number of qubits of measurement shots
+     * @param engine        the name of the in memory engine (null for the state vector with storage options)
+     * @throws ArgumentParserException in case of arguments out of the limits or not supported by the engine
+     */
+    static void validateCircuitArgs(ArgumentParser parser, Namespace args, int circuitQubits, int numQubits,
+                                    int maxQubits, int maxShotQubits, String engine) throws ArgumentParserException {
+        if (engine != null && args.getString("storage") != null) {
+            throw new ArgumentParserException(format("argument -s/--storage: not supported by the %s engine",
+                    engine), parser);
+        }
+        if (engine != null && args.getString("map_file") != null) {
+            throw new ArgumentParserException(format("argument -m/--map-file: not supported by the %s engine",
+                    engine), parser);
+        }
+        int minQubits = Math.max(1, circuitQubits);
+        if (numQubits < minQubits || numQubits > maxQubits) {
+            throw new ArgumentParserException(format("argument -n/--qubits: expected qubits in range %d-%d (%d)",
+                    minQubits, maxQubits, numQubits), parser);
+        }
+        long state = args.getLong("state");
+        if (state < 0 || (numQubits < Long.SIZE - 1 && state >= 1L << numQubits)) {
+            throw new ArgumentParserException(format("argument --state: expected state in range 0-%d (%d)",
+                    numQubits < Long.SIZE - 1 ? (1L << numQubits) - 1 : Long.MAX_VALUE, state), parser);
+        }
+        if (args.get("shots") != null && numQubits > maxShotQubits) {
+            throw new ArgumentParserException(format("argument --shots: expected at most %d qubits (%d)",
+                    maxShotQubits, numQubits), parser);
+        }
+    }
 }
@@ -35,6 +35,8 @@ import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import org.mmarini.qucomp.apis.MpsState;
+import org.mmarini.qucomp.apis.Precision;
 import org.mmarini.qucomp.compiler.*;
 import org.mmarini.qucomp.swing.Messages;
 import org.mmarini.qucomp.swing.VariablePanel;
@@ -105,6 +107,8 @@ public class QuCompGUI {
     private final JMenuItem saveMenu;
     private final JMenuItem saveAsMenu;
     private final JMenuItem runMenu;
+    private final JCheckBoxMenuItem floatPrecisionMenu;
+    private final JCheckBoxMenuItem mpsEngineMenu;
     private final JFileChooser fileChooser;
     private final Namespace args;
     private final JEditorPane codeEditor;
@@ -130,6 +134,8 @@ public class QuCompGUI {
         this.saveAsMenu = SwingUtils.createMenuItem("ComputeGUI.saveAsMenu");
         this.runMenu = SwingUtils.createMenuItem("QuCompGUI.runMenu");
         this.exitMenu = SwingUtils.createMenuItem("ComputeGUI.exitMenu");
+        this.floatPrecisionMenu = SwingUtils.createCheckBoxMenuItem("QuCompGUI.floatPrecisionMenu");
+        this.mpsEngineMenu = SwingUtils.createCheckBoxMenuItem("QuCompGUI.mpsEngineMenu");
         this.fileChooser = new JFileChooser();
         this.codeEditor = new JEditorPane();
         this.errorPanel = new JTextArea();
@@ -166,6 +172,8 @@ public class QuCompGUI {
 
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setTitle(Messages.getString("ComputeGUI.title"));
+        floatPrecisionMenu.setSelected(Precision.getDefault() == Precision.FLOAT);
+        mpsEngineMenu.setSelected(MpsState.isEnabled());
         frame.setJMenuBar(createMenu());
         frame.setResizable(true);
         frame.setSize(1024, 700);
@@ -196,6 +204,8 @@ public class QuCompGUI {
         saveAsMenu.addActionListener(this::onSaveAs);
         exitMenu.addActionListener(this::onExit);
         runMenu.addActionListener(this::onRun);
+        floatPrecisionMenu.addActionListener(this::onFloatPrecision);
+        mpsEngineMenu.addActionListener(this::onMpsEngine);
         frame.addWindowListener(new WindowAdapter() {
             @Override
             public void windowOpened(WindowEvent e) {
@@ -220,11 +230,34 @@ public class QuCompGUI {
         JMenu execMenu = SwingUtils.createMenu("QuCompGUI.execMenu");
         execMenu.add(runMenu);
 
+        JMenu settingsMenu = SwingUtils.createMenu("QuCompGUI.settingsMenu");
+        settingsMenu.add(floatPrecisionMenu);
+        settingsMenu.add(mpsEngineMenu);
+
         menuBar.add(fileMenu);
         menuBar.add(execMenu);
+        menuBar.add(settingsMenu);
         return menuBar;
     }
 
+    /**
+     * Handles the float precision action
+     *
+     * @param actionEvent the event
+     */
+    private void onFloatPrecision(ActionEvent actionEvent) {
+        Precision.setDefault(floatPrecisionMenu.isSelected() ? Precision.FLOAT : Precision.DOUBLE);
+    }
+
+    /**
+     * Handles the MPS engine action
+     *
+     * @param actionEvent the event
+     */
+    private void onMpsEngine(ActionEvent actionEvent) {
+        MpsState.setEnabled(mpsEngineMenu.isSelected());
+    }
+
     /**
      * Handles the open action
      *
@@ -115,7 +115,7 @@ public class QuGatesGUI {
     private final JSplitPane gateOutSplitPanel;
     private final Namespace args;
     private Matrix input;
-    private Matrix matrix;
+    private List<QuGate> gates;
 
     /**
      * Creates the application
@@ -142,12 +142,12 @@ public class QuGatesGUI {
      * Computes the result
      */
     private void compute() {
-        if (matrix != null && input != null) {
+        if (gates != null && input != null) {
             Matrix currentInput = this.input;
-            Matrix currentMatrix = this.matrix;
+            List<QuGate> currentGates = this.gates;
             computation().scheduleDirect(() -> {
                 try {
-                    outputPanel.setKet(currentMatrix.mul(currentInput));
+                    outputPanel.setKet(QuCircuitBuilder.apply(currentGates, currentInput));
                     frame.validate();
                     frame.repaint();
                 } catch (Exception e) {
@@ -245,7 +245,7 @@ public class QuGatesGUI {
      * @param gates the gates
      */
     private void onGatesChanged(List<QuGate> gates) {
-        this.matrix = QuCircuitBuilder.build(gates);
+        this.gates = gates;
         this.input = null;
         gatesPanel.setGates(gates);
         inputEditor.setNumQuBits(QuCircuitBuilder.numQuBits(gates));
@@ -294,7 +294,8 @@ public interface CommandNode {
     }
 
     /**
-     * Commands to multiply two arguments
+     * Commands to multiply two arguments.
+     * The chains of products are flattened and computed in the cheapest order
      *
      * @param context the command source reference
      * @param left    the left argument
@@ -304,12 +305,33 @@ public interface CommandNode {
 
         @Override
         public Value evaluate(ExecutionContext context) throws QuExecException {
-            return context.mul0(this.context, left.evaluate(context), right.evaluate(context));
+            List<SourceContext> contexts = new ArrayList<>();
+            List<Value> operands = new ArrayList<>();
+            evaluateChain(context, contexts, operands);
+            return context.mulChain(contexts, operands, true);
+        }
+
+        /**
+         * Evaluates the operands of the chain of zero extension products
+         *
+         * @param context  the execution context
+         * @param contexts the source context of operations
+         * @param operands the operands
+         */
+        private void evaluateChain(ExecutionContext context, List<SourceContext> contexts, List<Value> operands) throws QuExecException {
+            if (left instanceof Mul0 leftChain) {
+                leftChain.evaluateChain(context, contexts, operands);
+            } else {
+                operands.add(left.evaluate(context));
+            }
+            contexts.add(this.context);
+            operands.add(right.evaluate(context));
         }
     }
 
     /**
-     * Commands to multiply two arguments
+     * Commands to multiply two arguments.
+     * The chains of products are flattened and computed in the cheapest order
      *
      * @param context the command source reference
      * @param left    the left argument
@@ -319,7 +341,27 @@ public interface CommandNode {
 
         @Override
         public Value evaluate(ExecutionContext context) throws QuExecException {
-            return context.mul(this.context, left.evaluate(context), right.evaluate(context));
+            List<SourceContext> contexts = new ArrayList<>();
+            List<Value> operands = new ArrayList<>();
+            evaluateChain(context, contexts, operands);
+            return context.mulChain(contexts, operands, false);
+        }
+
+        /**
+         * Evaluates the operands of the chain of cross square extension products
+         *
+         * @param context  the execution context
+         * @param contexts the source context of operations
+         * @param operands the operands
+         */
+        private void evaluateChain(ExecutionContext context, List<SourceContext> contexts, List<Value> operands) throws QuExecException {
+            if (left instanceof Mul leftChain) {
+                leftChain.evaluateChain(context, contexts, operands);
+            } else {
+                operands.add(left.evaluate(context));
+            }
+            contexts.add(this.context);
+            operands.add(right.evaluate(context));
         }
     }
 
@@ -28,6 +28,8 @@
 
 package org.mmarini.qucomp.compiler;
 
+import java.util.List;
+
 /**
  * Computes the result of operations
  */
@@ -106,6 +108,16 @@ public interface ExecutionContext {
 
     Value mul0(SourceContext context, Value left, Value right) throws QuExecException;
 
+    /**
+     * Returns the product of a chain of operands (op0 op1 ... opn)
+     * The products may be computed in any order preserving the result
+     *
+     * @param contexts      the source positions of the operations (one less than operands)
+     * @param operands      the operands
+     * @param zeroExtension true if zero extension products (mul0) else cross square extension products (mul)
+     */
+    Value mulChain(List<SourceContext> contexts, List<Value> operands, boolean zeroExtension) throws QuExecException;
+
     /**
      * Returns the negation of argument
      *
@@ -30,6 +30,7 @@ package org.mmarini.qucomp.compiler;
 
 import org.mmarini.Function2Throws;
 import org.mmarini.Function3Throws;
+import org.mmarini.Function4Throws;
 import org.mmarini.qucomp.apis.Complex;
 import org.mmarini.qucomp.apis.Matrix;
 
@@ -54,6 +55,13 @@ public interface Operator {
         }
     };
 
+    ChainTernaryValueOp ternaryOp = new ChainTernaryValueOp(null) {
+        @Override
+        public Value apply(SourceContext source, Value first, Value second, Value third) throws QuExecException {
+            throw source.execException("Unexpected %s, %s, %s arguments", first.type(), second.type(), third.type());
+        }
+    };
+
     /**
      * Transforms a single value
      */
@@ -81,6 +89,21 @@ public interface Operator {
         Value apply(SourceContext source, Value left, Value right) throws QuExecException;
     }
 
+    /**
+     * Transforms a triple of value
+     */
+    interface TernaryValueOp {
+        /**
+         * Returns the transformed value
+         *
+         * @param source the source context
+         * @param first  the first argument
+         * @param second the second argument
+         * @param third  the third argument
+         */
+        Value apply(SourceContext source, Value first, Value second, Value third) throws QuExecException;
+    }
+
     /**
      * Chains the operators and specific type operation
      */
@@ -313,4 +336,38 @@ public interface Operator {
             };
         }
     }
+
+    /**
+     * Chains the operators and specific type operation
+     */
+    abstract class ChainTernaryValueOp implements TernaryValueOp {
+        protected final TernaryValueOp other;
+
+        /**
+         * Creates the chain ternary operator
+         *
+         * @param other the other operator
+         */
+        protected ChainTernaryValueOp(TernaryValueOp other) {
+            this.other = other;
+        }
+
+        /**
+         * Returns the operator with (matrix, integer, integer) map
+         *
+         * @param mapper the mapper
+         */
+        public ChainTernaryValueOp mapMatrixIntInt(Function4Throws<SourceContext, Matrix, Integer, Integer, Value, QuExecException> mapper) {
+            return new ChainTernaryValueOp(this) {
+                @Override
+                public Value apply(SourceContext source, Value first, Value second, Value third) throws QuExecException {
+                    return first instanceof Value.MatrixValue firstV
+                            && second instanceof Value.IntValue secondV
+                            && third instanceof Value.IntValue thirdV
+                            ? mapper.apply(source, firstV.value(), secondV.value(), thirdV.value())
+                            : other.apply(source, first, second, third);
+                }
+            };
+        }
+    }
 }
@@ -30,15 +30,21 @@ package org.mmarini.qucomp.compiler;
 
 import org.mmarini.Function2Throws;
 import org.mmarini.qucomp.apis.Complex;
+import org.mmarini.qucomp.apis.DensityMatrix;
 import org.mmarini.qucomp.apis.Matrix;
+import org.mmarini.qucomp.apis.MatrixChain;
+import org.mmarini.qucomp.apis.ShotSampler;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.lang.String.format;
 import static org.mmarini.qucomp.compiler.Operator.binaryOp;
+import static org.mmarini.qucomp.compiler.Operator.ternaryOp;
 import static org.mmarini.qucomp.compiler.Operator.unaryOp;
 
 /**
@@ -137,6 +143,32 @@ public class Processor implements ExecutionContext {
             .mapIntInt((ctx, left, right) -> new Value.MatrixValue(ctx, Matrix.qubit0(left, right)));
     private static final Operator.BinaryValueOp QUBIT1_OP = binaryOp
             .mapIntInt((ctx, left, right) -> new Value.MatrixValue(ctx, Matrix.qubit1(left, right)));
+    private static final Operator.UnaryValueOp RHO_OP = unaryOp
+            .mapMatrix((ctx, value) -> new Value.MatrixValue(ctx, DensityMatrix.of(value)));
+    private static final Operator.BinaryValueOp EVOLVE_OP = binaryOp
+            .mapMatrixMatrix((ctx, left, right) -> new Value.MatrixValue(ctx, DensityMatrix.of(left).apply(right)));
+    private static final Operator.BinaryValueOp PTRACE_OP = binaryOp
+            .mapMatrixInt((ctx, left, right) -> new Value.MatrixValue(ctx, DensityMatrix.of(left).partialTrace(right)));
+    private static final Operator.BinaryValueOp MEASURE_OP = binaryOp
+            .mapMatrixInt((ctx, left, right) -> new Value.MatrixValue(ctx, DensityMatrix.of(left).measure(right)));
+    private static final Operator.UnaryValueOp MARGINALS_OP = unaryOp
+            .mapMatrix((ctx, value) -> new Value.MatrixValue(ctx, column(value.qubitProbabilities())));
+    private static final Operator.BinaryValueOp MARGINAL_OP = binaryOp
+            .mapMatrixInt((ctx, left, right) -> new Value.MatrixValue(ctx, column(left.marginal(maskQubits(right)))));
+    private static final Operator.BinaryValueOp EXPECT_OP = binaryOp
+            .mapMatrixMatrix((ctx, left, right) -> new Value.ComplexValue(ctx, DensityMatrix.of(left).expectation(right)));
+    private static final Operator.TernaryValueOp SAMPLE_OP = ternaryOp
+            .mapMatrixIntInt((ctx, ket, shots, seed) -> {
+                if (shots < 0) {
+                    throw ctx.execException("Expected non negative number of shots (%d)", shots);
+                }
+                long[] histogram = ShotSampler.create(ket).histogram(shots, seed);
+                double[] counts = new double[histogram.length];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = histogram[i];
+                }
+                return new Value.MatrixValue(ctx, column(counts));
+            });
     /**
      * The implemented function definitions
      */
@@ -157,7 +189,15 @@ public class Processor implements ExecutionContext {
             new FunctionDef("CCNOT", 3, Processor::ccnot),
             new FunctionDef("qubit0", 2, Processor::qubit0),
             new FunctionDef("qubit1", 2, Processor::qubit1),
-            new FunctionDef("normalise", 1, Processor::normalise)
+            new FunctionDef("normalise", 1, Processor::normalise),
+            new FunctionDef("rho", 1, Processor::rho),
+            new FunctionDef("evolve", 2, Processor::evolve),
+            new FunctionDef("ptrace", 2, Processor::ptrace),
+            new FunctionDef("measure", 2, Processor::measure),
+            new FunctionDef("expect", 2, Processor::expect),
+            new FunctionDef("sample", 3, Processor::sample),
+            new FunctionDef("marginals", 1, Processor::marginals),
+            new FunctionDef("marginal", 2, Processor::marginal)
     ).collect(Collectors.toMap(FunctionDef::id, f -> f));
 
     /**
@@ -199,6 +239,15 @@ public class Processor implements ExecutionContext {
         return CNOT_OP.apply(context, args.value()[0], args.value()[1]);
     }
 
+    /**
+     * Returns the column matrix of the values
+     *
+     * @param values the values
+     */
+    private static Matrix column(double[] values) {
+        return Matrix.create(values.length, 1, values);
+    }
+
     /**
      * Returns the antisymmetric matrix for the element at(i,j)
      *
@@ -209,6 +258,26 @@ public class Processor implements ExecutionContext {
         return EPS_OP.apply(context, args.value()[0], args.value()[1]);
     }
 
+    /**
+     * Returns the density matrix evolved by the operator (U rho U<sup>&dagger;</sup>)
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value evolve(SourceContext context, Value.ListValue args) throws QuExecException {
+        return EVOLVE_OP.apply(context, args.value()[0], args.value()[1]);
+    }
+
+    /**
+     * Returns the expectation value of the observable in the density matrix (Tr(O rho))
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value expect(SourceContext context, Value.ListValue args) throws QuExecException {
+        return EXPECT_OP.apply(context, args.value()[0], args.value()[1]);
+    }
+
     /**
      * Returns the matrix of H gate for the given qu-bit
      *
@@ -229,6 +298,52 @@ public class Processor implements ExecutionContext {
         return I_OP.apply(context, args.value()[0]);
     }
 
+    /**
+     * Returns the joint probabilities of the ket qubits selected by the bit mask
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value marginal(SourceContext context, Value.ListValue args) throws QuExecException {
+        return MARGINAL_OP.apply(context, args.value()[0], args.value()[1]);
+    }
+
+    /**
+     * Returns the probabilities of each ket qubit at 1 state
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value marginals(SourceContext context, Value.ListValue args) throws QuExecException {
+        return MARGINALS_OP.apply(context, args.value()[0]);
+    }
+
+    /**
+     * Returns the qubit indices of the bit mask (ascending order)
+     *
+     * @param mask the bit mask of qubits
+     */
+    private static int[] maskQubits(int mask) {
+        if (mask < 0) {
+            throw new IllegalArgumentException(format("Expected non negative qubit mask (%d)", mask));
+        }
+        int[] qubits = new int[Integer.bitCount(mask)];
+        for (int i = 0, bits = mask; bits != 0; i++, bits &= bits - 1) {
+            qubits[i] = Integer.numberOfTrailingZeros(bits);
+        }
+        return qubits;
+    }
+
+    /**
+     * Returns the density matrix after the non selective measurement of the qubit
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value measure(SourceContext context, Value.ListValue args) throws QuExecException {
+        return MEASURE_OP.apply(context, args.value()[0], args.value()[1]);
+    }
+
     /**
      * Return the normalised value
      *
@@ -239,6 +354,16 @@ public class Processor implements ExecutionContext {
         return NORM_OP.apply(context, args.value()[0]);
     }
 
+    /**
+     * Returns the reduced density matrix tracing out the qubit
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value ptrace(SourceContext context, Value.ListValue args) throws QuExecException {
+        return PTRACE_OP.apply(context, args.value()[0], args.value()[1]);
+    }
+
     /**
      * Returns the matrix for 0-value qubit projection
      *
@@ -259,6 +384,16 @@ public class Processor implements ExecutionContext {
         return QUBIT1_OP.apply(context, args.value()[0], args.value()[1]);
     }
 
+    /**
+     * Returns the density matrix of the ket or of the square matrix
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value rho(SourceContext context, Value.ListValue args) throws QuExecException {
+        return RHO_OP.apply(context, args.value()[0]);
+    }
+
     /**
      * Returns the matrix of S gate for the given qu-bit
      *
@@ -269,6 +404,16 @@ public class Processor implements ExecutionContext {
         return S_OP.apply(context, args.value()[0]);
     }
 
+    /**
+     * Returns the histogram of measured states of the ket (the number of shots for each state)
+     *
+     * @param context the source context
+     * @param args    the arguments
+     */
+    private static Value sample(SourceContext context, Value.ListValue args) throws QuExecException {
+        return SAMPLE_OP.apply(context, args.value()[0], args.value()[1], args.value()[2]);
+    }
+
     /**
      * Returns the matrix with all zero elements except the element at(i,j)
      *
@@ -430,6 +575,35 @@ public class Processor implements ExecutionContext {
         }
     }
 
+    @Override
+    public Value mulChain(List<SourceContext> contexts, List<Value> operands, boolean zeroExtension) throws QuExecException {
+        if (operands.stream().allMatch(v -> v instanceof Value.MatrixValue)) {
+            Matrix[] matrices = operands.stream()
+                    .map(v -> ((Value.MatrixValue) v).value())
+                    .toArray(Matrix[]::new);
+            if (MatrixChain.isReorderable(zeroExtension, matrices)) {
+                SourceContext context = contexts.getLast();
+                try {
+                    Matrix result = MatrixChain.mul(zeroExtension, matrices);
+                    return result.numRows() == 1 && result.numCols() == 1
+                            ? new Value.ComplexValue(context, result.at(0, 0))
+                            : new Value.MatrixValue(context, result);
+                } catch (IllegalArgumentException ex) {
+                    // Computes left to right to report the error at the failing product
+                }
+            }
+        }
+        // Computes left to right
+        Value result = operands.getFirst();
+        for (int i = 1; i < operands.size(); i++) {
+            SourceContext context = contexts.get(i - 1);
+            result = zeroExtension
+                    ? mul0(context, result, operands.get(i))
+                    : mul(context, result, operands.get(i));
+        }
+        return result;
+    }
+
     @Override
     public Value negate(SourceContext context, Value arg) throws QuExecException {
         return NEGATE_OP.apply(context, arg);
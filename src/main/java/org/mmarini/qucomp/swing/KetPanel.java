@@ -30,6 +30,8 @@ package org.mmarini.qucomp.swing;
 
 import org.mmarini.qucomp.apis.Complex;
 import org.mmarini.qucomp.apis.Matrix;
+import org.mmarini.qucomp.apis.VectorUtils;
+import org.mmarini.swing.SwingUtils;
 
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
@@ -38,7 +40,6 @@ import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 
 import static java.lang.String.format;
-import static org.mmarini.qucomp.apis.VectorUtils.numBits;
 
 /**
  * Shows the ket information: states, probabilities, bit probabilities
@@ -48,6 +49,11 @@ import static org.mmarini.qucomp.apis.VectorUtils.numBits;
  * s
  * - bit id
  * - bit probabilities
+ * <p>
+ * The state rows are formatted on demand for the visible rows only.
+ * The probabilities are computed once when the ket is set and the rows shown
+ * (filtered by min probability and top states, sorted by probability) are mapped to the states by an index.
+ * </p>
  */
 public class KetPanel extends JPanel {
     /**
@@ -120,7 +126,13 @@ public class KetPanel extends JPanel {
     private final JTable bitTable;
     private final AbstractTableModel stateModel;
     private final AbstractTableModel bitModel;
+    private final JCheckBox sortByProbability;
+    private final JSpinner topStates;
+    private final JSpinner threshold;
+    private final JLabel numStatesLabel;
     private double[] bitProbabilities;
+    private double[] probabilities;
+    private int[] rowStates;
     private Matrix ket;
 
     /**
@@ -129,7 +141,12 @@ public class KetPanel extends JPanel {
     public KetPanel() {
         this.stateTable = new JTable();
         this.bitTable = new JTable();
+        this.sortByProbability = SwingUtils.createCheckBox("KetPanel.sortByProbability");
+        this.topStates = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1));
+        this.threshold = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 1.0, 0.01));
+        this.numStatesLabel = new JLabel();
         this.bitProbabilities = new double[0];
+        this.probabilities = new double[0];
         this.bitModel = new AbstractTableModel() {
 
             @Override
@@ -189,21 +206,22 @@ public class KetPanel extends JPanel {
 
             @Override
             public int getRowCount() {
-                return ket != null ? ket.numRows() : 0;
+                return rowStates != null ? rowStates.length : probabilities.length;
             }
 
             @Override
             public String getValueAt(int rowIndex, int columnIndex) {
-                Complex complex = ket.at(rowIndex);
+                int state = rowStates != null ? rowStates[rowIndex] : rowIndex;
                 return switch (columnIndex) {
-                    case 0 -> Messages.format("KetPanel.stateId.title", rowIndex);
-                    case 1 -> complexString(complex);
-                    case 2 -> probString(complex.normSquare());
+                    case 0 -> Messages.format("KetPanel.stateId.title", state);
+                    case 1 -> complexString(ket.at(state));
+                    case 2 -> probString(probabilities[state]);
                     default -> "?";
                 };
             }
         };
         createContent();
+        createFlow();
     }
 
     /**
@@ -221,9 +239,19 @@ public class KetPanel extends JPanel {
         bitTable.getColumnModel().getColumn(0).setPreferredWidth(40);
         bitTable.setDefaultRenderer(String.class, centerRenderer);
 
+        JPanel filterPanel = new JPanel();
+        filterPanel.setLayout(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel(Messages.getString("KetPanel.topStates.label")));
+        filterPanel.add(topStates);
+        filterPanel.add(new JLabel(Messages.getString("KetPanel.threshold.label")));
+        filterPanel.add(threshold);
+        filterPanel.add(sortByProbability);
+        filterPanel.add(numStatesLabel);
+
         JPanel statePanel = new JPanel();
         statePanel.setBorder(BorderFactory.createTitledBorder(Messages.getString("KetPanel.statesPanel.title")));
         statePanel.setLayout(new BorderLayout());
+        statePanel.add(filterPanel, BorderLayout.NORTH);
         statePanel.add(new JScrollPane(stateTable), BorderLayout.CENTER);
 
         JPanel bitPanel = new JPanel();
@@ -242,6 +270,15 @@ public class KetPanel extends JPanel {
         add(splitPanel, BorderLayout.CENTER);
     }
 
+    /**
+     * Creates the flow
+     */
+    private void createFlow() {
+        sortByProbability.addActionListener(ev -> updateRows());
+        topStates.addChangeListener(ev -> updateRows());
+        threshold.addChangeListener(ev -> updateRows());
+    }
+
     /**
      *
      * Sets the ket to show
@@ -250,13 +287,30 @@ public class KetPanel extends JPanel {
      */
     public void setKet(Matrix ket) {
         this.ket = ket;
-        int n = numBits(ket.numRows());
-        this.bitProbabilities = new double[n];
-        for (int i = 0; i < n; i++) {
-            bitProbabilities[i] = ket.dagger().mul(Matrix.qubit1(i, n).mul(ket)).at(0, 0).norm();
+        double[] real = ket.real();
+        double[] im = ket.im();
+        this.probabilities = new double[ket.numRows()];
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] = real[i] * real[i] + im[i] * im[i];
         }
-        stateModel.fireTableChanged(new TableModelEvent(stateModel));
-        bitModel.fireTableChanged(new TableModelEvent(stateModel));
+        this.bitProbabilities = ket.qubitProbabilities();
+        bitModel.fireTableChanged(new TableModelEvent(bitModel));
+        updateRows();
         invalidate();
     }
+
+    /**
+     * Updates the index of the shown states
+     */
+    private void updateRows() {
+        int maxStates = ((Number) topStates.getValue()).intValue();
+        double minProbability = ((Number) threshold.getValue()).doubleValue();
+        boolean sorted = sortByProbability.isSelected();
+        this.rowStates = maxStates > 0 || minProbability > 0 || sorted
+                ? VectorUtils.selectStates(probabilities, minProbability, maxStates, sorted)
+                : null;
+        numStatesLabel.setText(Messages.format("KetPanel.numStates.text",
+                stateModel.getRowCount(), probabilities.length));
+        stateModel.fireTableChanged(new TableModelEvent(stateModel));
+    }
 }
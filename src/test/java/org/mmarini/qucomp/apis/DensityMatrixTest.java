@@ -0,0 +1,224 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.PermutationMatrixTest.randomPermutation;
+import static org.mmarini.qucomp.apis.SparseMatrixTest.randomSparse;
+
+class DensityMatrixTest {
+    public static final double EPSILON = 1e-9;
+
+    @ParameterizedTest
+    @CsvSource({
+            "gate,1234",
+            "diagonal,1234",
+            "permutation,1234",
+            "kronecker,1234",
+            "dense,1234",
+            "sparse,1234",
+            "small,1234",
+            "qubit1,1234",
+            "gate,2345",
+            "permutation,2345",
+            "small,2345",
+    })
+    void apply(String type, long seed) {
+        Random random = new Random(seed);
+        Matrix rho = randomMatrix(random, 16, 16);
+        Matrix operator = switch (type) {
+            case "gate" -> GateMatrix.create(randomMatrix(random, 4, 4), 3, 1);
+            case "diagonal" -> DiagonalMatrix.create(randomMatrix(random, 16, 1).real(), randomMatrix(random, 16, 1).im());
+            case "permutation" -> randomPermutation(random, 16);
+            case "kronecker" -> randomMatrix(random, 4, 4).extendsCrossSquare(16);
+            case "sparse" -> randomSparse(random, 16, 16, 0.3);
+            case "small" -> randomMatrix(random, 4, 4);
+            case "qubit1" -> Matrix.qubit1(2, 3);
+            default -> randomMatrix(random, 16, 16);
+        };
+        Matrix full = operator.extendsCrossSquare(16);
+        Matrix expected = full.mul(rho).mul(full.dagger());
+
+        DensityMatrix result = DensityMatrix.of(rho).apply(operator);
+
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void applyError() {
+        DensityMatrix rho = DensityMatrix.create(Matrix.ketBase(0).extendsRows(4));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> rho.apply(Matrix.identity(3)));
+        assertEquals("Expected square operator with power of 2 size (3x3)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> rho.apply(Matrix.ketBase(0).dagger()));
+        assertEquals("Expected square operator with power of 2 size (1x2)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> rho.apply(Matrix.identity(2), 2));
+        assertEquals("Expected qubit in range 0-1 (2)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> rho.apply(Matrix.identity(4), 1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> DensityMatrix.of(Matrix.identity(3)));
+        assertEquals("Expected square matrix with power of 2 size (3x3)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "gate,1234",
+            "dense,1234",
+            "gate,2345",
+            "dense,2345",
+    })
+    void applyExtended(String type, long seed) {
+        Random random = new Random(seed);
+        Matrix ket = randomMatrix(random, 4, 1).normalise();
+        Matrix operator = type.equals("gate")
+                ? GateMatrix.create(randomMatrix(random, 2, 2), 3)
+                : randomMatrix(random, 16, 16);
+
+        DensityMatrix result = DensityMatrix.create(ket).apply(operator);
+
+        // The density matrix is extended as the ket by |0><0| on the higher qubits
+        Matrix expected = DensityMatrix.create(operator.mul(ket));
+        assertEquals(4, result.numQubits());
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,0",
+            "1234,1",
+            "1234,2",
+            "2345,3",
+    })
+    void applyGate(long seed, int qubit) {
+        Random random = new Random(seed);
+        Matrix ket = randomMatrix(random, 16, 1).normalise();
+        Matrix gate = randomMatrix(random, 2, 2);
+
+        DensityMatrix result = DensityMatrix.create(ket).apply(gate, qubit);
+
+        Matrix expected = DensityMatrix.create(GateMatrix.create(gate, qubit).mul(ket));
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void create() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1).normalise();
+
+        DensityMatrix rho = DensityMatrix.create(ket);
+
+        assertEquals(3, rho.numQubits());
+        assertThat(rho, matrixCloseTo(ket.mul(ket.dagger()), EPSILON));
+        assertThat(rho.trace(), complexClose(Complex.one(), EPSILON));
+        assertEquals(1, rho.purity(), EPSILON);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "diagonal,1234",
+            "dense,1234",
+            "small,1234",
+            "dense,2345",
+    })
+    void expectation(String type, long seed) {
+        Random random = new Random(seed);
+        Matrix rho = randomMatrix(random, 8, 8);
+        Matrix observable = switch (type) {
+            case "diagonal" -> DiagonalMatrix.create(randomMatrix(random, 8, 1).real(), randomMatrix(random, 8, 1).im());
+            case "small" -> randomMatrix(random, 2, 2);
+            default -> randomMatrix(random, 8, 8);
+        };
+        Matrix product = observable.extendsCrossSquare(8).mul(rho);
+        Complex expected = Complex.zero();
+        for (int i = 0; i < 8; i++) {
+            expected = expected.add(product.at(i, i));
+        }
+
+        Complex result = DensityMatrix.of(rho).expectation(observable);
+
+        assertThat(result, complexClose(expected, EPSILON));
+    }
+
+    @Test
+    void expectationExtended() {
+        DensityMatrix rho = DensityMatrix.create(Matrix.ketBase(1));
+
+        assertThat(rho.expectation(Matrix.z(1)), complexClose(Complex.one(), EPSILON));
+        assertThat(rho.expectation(Matrix.qubit1(0, 2)), complexClose(Complex.one(), EPSILON));
+        assertThat(rho.expectation(Matrix.qubit1(1, 2)), complexClose(Complex.zero(), EPSILON));
+    }
+
+    @Test
+    void extendsStates() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 4, 1).normalise();
+
+        DensityMatrix result = DensityMatrix.create(ket).extendsStates(16);
+
+        assertThat(result, matrixCloseTo(DensityMatrix.create(ket.extendsRows(16)), EPSILON));
+    }
+
+    @Test
+    void measure() {
+        Matrix bell = Matrix.cnot(1, 0).mul(Matrix.h(0).extendsCrossSquare(4)).mul(Matrix.ketBase(0).extendsRows(4));
+
+        DensityMatrix result = DensityMatrix.create(bell).measure(0);
+
+        Matrix expected = DensityMatrix.create(Matrix.ketBase(0).extendsRows(4)).mul(0.5)
+                .add(DensityMatrix.create(Matrix.ketBase(3)).mul(0.5));
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+        assertEquals(0.5, result.purity(), EPSILON);
+        assertEquals(0.5, result.qubitProbability(1), EPSILON);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,0",
+            "1234,1",
+            "1234,2",
+            "2345,0",
+    })
+    void partialTrace(long seed, int qubit) {
+        Random random = new Random(seed);
+        Matrix a = randomMatrix(random, 2, 2);
+        Matrix b = randomMatrix(random, 2, 2);
+        Matrix c = randomMatrix(random, 2, 2);
+        Matrix[] factors = {c, b, a};
+        // rho = a x b x c with qubit 0 at c
+        Matrix rho = a.cross(b).cross(c);
+        Matrix traced = factors[qubit];
+        Complex trace = traced.at(0, 0).add(traced.at(1, 1));
+        Matrix expected = switch (qubit) {
+            case 0 -> a.cross(b);
+            case 1 -> a.cross(c);
+            default -> b.cross(c);
+        };
+
+        DensityMatrix result = DensityMatrix.of(rho).partialTrace(qubit);
+
+        assertThat(result, matrixCloseTo(expected.mul(trace), EPSILON));
+    }
+
+    @Test
+    void partialTraceBell() {
+        Matrix bell = Matrix.cnot(1, 0).mul(Matrix.h(0).extendsCrossSquare(4)).mul(Matrix.ketBase(0).extendsRows(4));
+
+        DensityMatrix result = DensityMatrix.create(bell).partialTrace(1);
+
+        assertThat(result, matrixCloseTo(Matrix.identity(2).mul(0.5), EPSILON));
+        assertEquals(0.5, result.purity(), EPSILON);
+    }
+}
@@ -0,0 +1,142 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.expectedOperator;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.GateMatrixTest.toDense;
+import static org.mmarini.qucomp.apis.PermutationMatrixTest.randomPermutation;
+
+class DiagonalMatrixTest {
+    public static final double EPSILON = 1e-6;
+
+    static DiagonalMatrix randomDiagonal(Random random, int n) {
+        double[] real = new double[n];
+        double[] im = new double[n];
+        for (int i = 0; i < n; i++) {
+            real[i] = random.nextGaussian();
+            im[i] = random.nextGaussian();
+        }
+        return DiagonalMatrix.create(real, im);
+    }
+
+    @Test
+    void testAt() {
+        DiagonalMatrix m = DiagonalMatrix.create(Complex.one(), Complex.i(), new Complex(2, 3));
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                Complex exp = i == j
+                        ? new Complex(m.diagReal()[i], m.diagIm()[i])
+                        : Complex.zero();
+                assertThat(m.at(i, j), complexClose(exp, EPSILON));
+            }
+        }
+    }
+
+    @Test
+    void testCreateError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> DiagonalMatrix.create(new double[2], new double[3]));
+        assertEquals("Expected 2 imaginary parts (3)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1", "1,0", "2,0", "1,3"
+    })
+    void testCreateGate(int q0, int q1) {
+        DiagonalMatrix gate = randomDiagonal(new Random(1234), 4);
+        DiagonalMatrix m = DiagonalMatrix.createGate(gate, q0, q1);
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(toDense(gate), q0, q1), EPSILON));
+    }
+
+    @Test
+    void testGates() {
+        assertThat(Matrix.z(1), instanceOf(DiagonalMatrix.class));
+        assertThat(Matrix.s(0), instanceOf(DiagonalMatrix.class));
+        assertThat(Matrix.t(2), instanceOf(DiagonalMatrix.class));
+        assertThat(Matrix.qubit0(1, 3), instanceOf(DiagonalMatrix.class));
+        assertThat(Matrix.qubit1(0, 2), instanceOf(DiagonalMatrix.class));
+        assertThat(Matrix.z(1).mul(Matrix.s(1)).mul(Matrix.t(0)), instanceOf(DiagonalMatrix.class));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,4", "2345,4,16", "3456,8,8"
+    })
+    void testExtendsCrossSquare(long seed, int size, int n) {
+        DiagonalMatrix m = randomDiagonal(new Random(seed), size);
+        Matrix result = m.extendsCrossSquare(n);
+        assertThat(result, instanceOf(DiagonalMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(m).extendsCrossSquare(n), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8,3", "2345,16,1"
+    })
+    void testMulDenseByDiagonal(long seed, int n, int m) {
+        Random random = new Random(seed);
+        Matrix left = randomMatrix(random, m, n);
+        DiagonalMatrix right = randomDiagonal(random, n);
+        assertThat(left.mul(right), matrixCloseTo(left.mul(toDense(right)), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8,8", "2345,16,4", "3456,2,8"
+    })
+    void testMulDiagonalByDiagonal(long seed, int n, int m) {
+        Random random = new Random(seed);
+        DiagonalMatrix left = randomDiagonal(random, n);
+        DiagonalMatrix right = randomDiagonal(random, m);
+        Matrix result = left.mul(right);
+        assertThat(result, instanceOf(DiagonalMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(left).mul(toDense(right)), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8,1", "2345,16,1", "3456,8,3"
+    })
+    void testMulDiagonalByDense(long seed, int n, int m) {
+        Random random = new Random(seed);
+        DiagonalMatrix left = randomDiagonal(random, n);
+        Matrix right = randomMatrix(random, n, m);
+        assertThat(left.mul(right), matrixCloseTo(toDense(left).mul(right), EPSILON));
+    }
+
+    @Test
+    void testMulStructured() {
+        Random random = new Random(1234);
+        DiagonalMatrix diag = randomDiagonal(random, 8);
+        PermutationMatrix perm = randomPermutation(random, 8);
+        Matrix gate = GateMatrix.create(randomMatrix(random, 2, 2), 1);
+        assertThat(toDense(diag.mul(perm)), matrixCloseTo(toDense(diag).mul(toDense(perm)), EPSILON));
+        assertThat(toDense(perm.mul(diag)), matrixCloseTo(toDense(perm).mul(toDense(diag)), EPSILON));
+        assertThat(toDense(diag.mul(gate)), matrixCloseTo(toDense(diag).mul(toDense(gate)), EPSILON));
+        assertThat(toDense(gate.mul(diag)), matrixCloseTo(toDense(gate).mul(toDense(diag)), EPSILON));
+    }
+
+    @Test
+    void testTransformations() {
+        DiagonalMatrix m = randomDiagonal(new Random(1234), 8);
+        Matrix dense = toDense(m);
+        assertThat(toDense(m.transpose()), matrixCloseTo(dense.transpose(), EPSILON));
+        assertThat(toDense(m.dagger()), matrixCloseTo(dense.dagger(), EPSILON));
+        assertThat(toDense(m.conj()), matrixCloseTo(dense.conj(), EPSILON));
+        assertThat(toDense(m.neg()), matrixCloseTo(dense.neg(), EPSILON));
+        assertThat(toDense(m.normalise()), matrixCloseTo(dense.normalise(), EPSILON));
+        assertThat(toDense(m.mul(new Complex(1, 2))), matrixCloseTo(dense.mul(new Complex(1, 2)), EPSILON));
+    }
+}
@@ -0,0 +1,152 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+
+class GateCacheTest {
+
+    // Retained bytes of 1 qubit gate operators with 2^(q+1) states
+    private static final long BYTES_Q0 = 224;
+    private static final long BYTES_Q1 = 504;
+
+    private static Matrix base() {
+        return Matrix.create(2, 2,
+                0, 1,
+                1, 0);
+    }
+
+    @Test
+    void byteSize() {
+        Matrix base = base();
+        assertEquals(BYTES_Q0, GateCache.byteSize(GateMatrix.create(base, 0)));
+        assertEquals(BYTES_Q1, GateCache.byteSize(GateMatrix.create(base, 1)));
+        Matrix base2 = Matrix.create(4, 4,
+                1, 0, 0, 0,
+                0, 1, 0, 0,
+                0, 0, 0, 1,
+                0, 0, 1, 0);
+        assertEquals(860, GateCache.byteSize(GateMatrix.create(base2, 1, 0)));
+    }
+
+    @Test
+    void clear() {
+        GateCache cache = new GateCache(1000);
+        Matrix base = base();
+        cache.get(base, 0);
+        cache.get(base, 0);
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    void concurrent() {
+        GateCache cache = new GateCache(1 << 20);
+        Matrix base = base();
+        IntStream.range(0, 10000).parallel()
+                .forEach(i -> {
+                    int q = i % 8;
+                    Matrix gate = cache.get(base, q);
+                    assertEquals(2 << q, gate.numRows());
+                });
+
+        assertEquals(8, cache.size());
+        assertEquals(10000, cache.hits() + cache.misses());
+        assertSame(cache.get(base, 3), cache.get(base, 3));
+    }
+
+    @Test
+    void disabled() {
+        GateCache cache = new GateCache(0);
+        Matrix base = base();
+
+        GateMatrix gate = cache.get(base, 0);
+
+        assertNotSame(gate, cache.get(base, 0));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    void error() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new GateCache(-1));
+        assertEquals("Expected non negative max bytes (-1)", ex.getMessage());
+    }
+
+    @Test
+    void evict() {
+        Matrix base = base();
+        Matrix other = base.transpose();
+        GateCache cache = new GateCache(2 * BYTES_Q0 + BYTES_Q1);
+        GateMatrix q0 = cache.get(base, 0);
+        cache.get(base, 1);
+        cache.get(other, 0);
+        assertEquals(3, cache.size());
+        assertEquals(2 * BYTES_Q0 + BYTES_Q1, cache.bytes());
+
+        // Touches q0 so the q1 operator is the least recently used
+        assertSame(q0, cache.get(base, 0));
+        cache.get(other, 1);
+
+        assertEquals(3, cache.size());
+        assertEquals(2 * BYTES_Q0 + BYTES_Q1, cache.bytes());
+        assertSame(q0, cache.get(base, 0));
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+        cache.get(base, 1);
+        assertEquals(5, cache.misses());
+    }
+
+    @Test
+    void hit() {
+        GateCache cache = new GateCache(1 << 20);
+        Matrix base = base();
+        GateMatrix gate = cache.get(base, 2);
+        // Materialises the sparse and dense views of the cached operator
+        double[] real = gate.real();
+        SparseMatrix sparse = gate.sparse();
+
+        GateMatrix hit = cache.get(base, new int[]{2});
+
+        assertSame(gate, hit);
+        assertSame(sparse, hit.sparse());
+        assertSame(real, hit.real());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+        assertEquals(GateCache.byteSize(gate), cache.bytes());
+        assertThat(hit, matrixCloseTo(GateMatrix.create(base, 2), 0));
+    }
+
+    @Test
+    void notCached() {
+        // Permutation and diagonal operators are built directly
+        assertNotSame(Matrix.cnot(3, 1), Matrix.cnot(3, 1));
+        assertInstanceOf(PermutationMatrix.class, Matrix.cnot(3, 1));
+        assertNotSame(Matrix.t(3), Matrix.t(3));
+        assertInstanceOf(DiagonalMatrix.class, Matrix.t(3));
+    }
+
+    @Test
+    void shared() {
+        Matrix h = Matrix.h(2);
+        long hits = GateCache.instance().hits();
+
+        assertSame(h, Matrix.h(2));
+        assertNotSame(h, Matrix.h(3));
+        assertSame(((GateMatrix) Matrix.h(2)).sparse(), ((GateMatrix) Matrix.h(2)).sparse());
+        assertThat(hits + 3, lessThanOrEqualTo(GateCache.instance().hits()));
+    }
+}
@@ -0,0 +1,118 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class GateFusionTest {
+    public static final double EPSILON = 1e-9;
+
+    /**
+     * Returns a random circuit of 1 and 2 qubits gates
+     */
+    static List<QuGate> randomCircuit(Random random, int numQubits, int numGates) {
+        List<QuGate> gates = new ArrayList<>();
+        for (int i = 0; i < numGates; i++) {
+            int q0 = random.nextInt(numQubits);
+            int q1 = (q0 + 1 + random.nextInt(numQubits - 1)) % numQubits;
+            gates.add(switch (random.nextInt(5)) {
+                case 0 -> QuGate.h(q0);
+                case 1 -> QuGate.t(q0);
+                case 2 -> QuGate.cnot(q0, q1);
+                case 3 -> QuGate.swap(q0, q1);
+                default -> QuGate.fused(randomMatrix(random, 4, 4), q0, q1);
+            });
+        }
+        return gates;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,5,30,1",
+            "1234,5,30,2",
+            "1234,5,30,3",
+            "2345,6,40,4",
+            "3456,6,40,5",
+            "3456,6,40,0",
+    })
+    void fuse(long seed, int numQubits, int numGates, int maxQubits) {
+        Random random = new Random(seed);
+        List<QuGate> gates = randomCircuit(random, numQubits, numGates);
+        Matrix ket = randomMatrix(random, 1 << numQubits, 1);
+
+        List<QuGate> fused = GateFusion.fuse(gates, maxQubits);
+
+        StateVector expected = StateVector.create(ket);
+        for (QuGate gate : gates) {
+            expected.apply(gate.gate(), gate.indices());
+        }
+        StateVector actual = StateVector.create(ket);
+        for (QuGate gate : fused) {
+            assertTrue(gate.indices().length <= Math.max(maxQubits, 2));
+            actual.apply(gate.gate(), gate.indices());
+        }
+        assertThat(actual.toMatrix(), matrixCloseTo(expected.toMatrix(), EPSILON));
+        if (maxQubits >= 2) {
+            assertThat(fused.size(), lessThan(gates.size()));
+        } else if (maxQubits == 0) {
+            assertSame(gates, fused);
+        }
+    }
+
+    @Test
+    void fuseError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> GateFusion.fuse(List.of(QuGate.h(0)), 11));
+        assertEquals("Expected max qubits in range 0-10 (11)", ex.getMessage());
+    }
+
+    @Test
+    void fuseOperators() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 16, 1);
+        Matrix diag = DiagonalMatrix.create(randomMatrix(random, 16, 1).real(), randomMatrix(random, 16, 1).im());
+        List<Matrix> operators = List.of(
+                Matrix.h(0), GateMatrix.create(randomMatrix(random, 4, 4), 1, 0), Matrix.h(2),
+                diag,
+                Matrix.h(3), Matrix.y(3), GateMatrix.create(randomMatrix(random, 4, 4), 3, 2));
+
+        List<Matrix> fused = GateFusion.fuseOperators(operators, 3);
+
+        assertEquals(3, fused.size());
+        assertThat(fused.get(0), instanceOf(GateMatrix.class));
+        assertArrayEquals(new int[]{0, 1, 2}, ((GateMatrix) fused.get(0)).qubits());
+        assertSame(diag, fused.get(1));
+        assertArrayEquals(new int[]{3, 2}, ((GateMatrix) fused.get(2)).qubits());
+        Matrix expected = ket;
+        for (Matrix op : operators) {
+            expected = op.mul(expected);
+        }
+        Matrix actual = ket;
+        for (Matrix op : fused) {
+            actual = op.mul(actual);
+        }
+        assertThat(actual, matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void fuseSingle() {
+        QuGate h = QuGate.h(0);
+        QuGate cnot = QuGate.cnot(2, 1);
+
+        List<QuGate> fused = GateFusion.fuse(List.of(h, cnot), 2);
+
+        assertEquals(List.of(h, cnot), fused);
+        assertSame(h, fused.get(0));
+    }
+}
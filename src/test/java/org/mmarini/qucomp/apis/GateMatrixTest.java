@@ -0,0 +1,183 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+
+class GateMatrixTest {
+    public static final double EPSILON = 1e-6;
+
+    /**
+     * Returns the dense matrix built by permuting the extended base gate
+     *
+     * @param gate   the base gate
+     * @param qubits the qubits
+     */
+    static Matrix expectedOperator(Matrix gate, int... qubits) {
+        int[] statePermuteIn = Matrix.computeStatePermutation(Matrix.computeBitsPermutation(qubits));
+        int[] statePermuteOut = Matrix.inversePermutation(statePermuteIn);
+        Matrix permOut = Matrix.permute(statePermuteOut);
+        Matrix extGate = Matrix.identity(permOut.numRows() / gate.numRows()).cross(gate);
+        return permOut.mul(extGate).mul(Matrix.permute(statePermuteIn));
+    }
+
+    static Matrix randomMatrix(Random random, int numRows, int numCols) {
+        Complex[] cells = new Complex[numRows * numCols];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Complex(random.nextGaussian(), random.nextGaussian());
+        }
+        return Matrix.create(numRows, numCols, cells);
+    }
+
+    static Matrix toDense(Matrix matrix) {
+        return Matrix.create(matrix.numRows(), matrix.numCols(), matrix.cells());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0", "1", "3"
+    })
+    void testAt1(int q) {
+        Matrix gate = randomMatrix(new Random(1234), 2, 2);
+        GateMatrix m = GateMatrix.create(gate, q);
+        Matrix exp = expectedOperator(gate, q);
+        for (int i = 0; i < exp.numRows(); i++) {
+            for (int j = 0; j < exp.numCols(); j++) {
+                assertThat(m.at(i, j), complexClose(exp.at(i, j), EPSILON));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0", "1", "3"
+    })
+    void testCells1(int q) {
+        Matrix gate = randomMatrix(new Random(1234), 2, 2);
+        GateMatrix m = GateMatrix.create(gate, q);
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(gate, q), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1", "1,0", "0,3", "3,1", "2,3"
+    })
+    void testCells2(int q0, int q1) {
+        Matrix gate = randomMatrix(new Random(1234), 4, 4);
+        GateMatrix m = GateMatrix.create(gate, q0, q1);
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(gate, q0, q1), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1,2", "2,0,1", "3,0,2", "1,3,0"
+    })
+    void testCells3(int q0, int q1, int q2) {
+        Matrix gate = randomMatrix(new Random(1234), 8, 8);
+        GateMatrix m = GateMatrix.create(gate, q0, q1, q2);
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(gate, q0, q1, q2), EPSILON));
+    }
+
+    @Test
+    void testDagger() {
+        Matrix gate = randomMatrix(new Random(1234), 4, 4);
+        GateMatrix m = GateMatrix.create(gate, 2, 0);
+        assertThat(toDense(m.dagger()), matrixCloseTo(toDense(m).dagger(), EPSILON));
+    }
+
+    @Test
+    void testError() {
+        Matrix gate = randomMatrix(new Random(1234), 4, 4);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> GateMatrix.create(gate, 1));
+        assertEquals("Expected gate 2x2 (4x4)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> GateMatrix.create(gate, 1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+    }
+
+    @Test
+    void testExtendsCrossSquare() {
+        Matrix gate = randomMatrix(new Random(1234), 2, 2);
+        GateMatrix m = GateMatrix.create(gate, 1);
+        Matrix ext = m.extendsCrossSquare(16);
+        assertThat(ext, org.hamcrest.Matchers.isA(GateMatrix.class));
+        assertThat(toDense(ext), matrixCloseTo(toDense(m).extendsCrossSquare(16), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,4", "1,4", "3,4", "1,5", "0,1"
+    })
+    void testMul1Ket(int q, int numQubits) {
+        Random random = new Random(1234);
+        Matrix gate = randomMatrix(random, 2, 2);
+        Matrix ket = randomMatrix(random, 1 << numQubits, 1);
+        GateMatrix m = GateMatrix.create(gate, q);
+        assertThat(m.mul(ket), matrixCloseTo(toDense(m).mul(ket), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1,4", "1,0,4", "3,1,4", "2,0,2"
+    })
+    void testMul2Ket(int q0, int q1, int numQubits) {
+        Random random = new Random(1234);
+        Matrix gate = randomMatrix(random, 4, 4);
+        Matrix ket = randomMatrix(random, 1 << numQubits, 1);
+        GateMatrix m = GateMatrix.create(gate, q0, q1);
+        assertThat(m.mul(ket), matrixCloseTo(toDense(m).mul(ket), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1,2,4", "3,1,0,4", "1,3,2,5"
+    })
+    void testMul3Ket(int q0, int q1, int q2, int numQubits) {
+        Random random = new Random(1234);
+        Matrix gate = randomMatrix(random, 8, 8);
+        Matrix ket = randomMatrix(random, 1 << numQubits, 1);
+        GateMatrix m = GateMatrix.create(gate, q0, q1, q2);
+        assertThat(m.mul(ket), matrixCloseTo(toDense(m).mul(ket), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1,2", "2,0,3", "1,2,2"
+    })
+    void testMulMatrix(int q0, int q1, int numQubits) {
+        Random random = new Random(1234);
+        Matrix gate = randomMatrix(random, 4, 4);
+        int n = 1 << numQubits;
+        Matrix right = randomMatrix(random, n, n);
+        GateMatrix m = GateMatrix.create(gate, q0, q1);
+        assertThat(m.mul(right), matrixCloseTo(toDense(m).mul(right), EPSILON));
+    }
+
+    @Test
+    void testMul0Ket() {
+        Random random = new Random(1234);
+        Matrix gate = randomMatrix(random, 4, 4);
+        Matrix ket = randomMatrix(random, 2, 1);
+        GateMatrix m = GateMatrix.create(gate, 1, 0);
+        assertThat(m.mul0(ket), matrixCloseTo(toDense(m).mul0(ket), EPSILON));
+    }
+
+    @Test
+    void testStateOffsets() {
+        int[] offsets = GateKernels.stateOffsets(3, 0, 2);
+        assertEquals("[0, 8, 1, 9, 4, 12, 5, 13]", Arrays.toString(offsets));
+        assertEquals(0b10110, GateKernels.insertZeroBits(0b111, 0, 3));
+        assertEquals("[0, 1099511627776, 1, 1099511627777]", Arrays.toString(GateKernels.longStateOffsets(40, 0)));
+        assertEquals((1L << 40) | 0b10, GateKernels.insertZeroBits(1L << 38 | 0b1, 0, 38));
+    }
+}
@@ -0,0 +1,142 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.GateMatrixTest.toDense;
+import static org.mmarini.qucomp.apis.PermutationMatrixTest.randomPermutation;
+
+class KroneckerMatrixTest {
+    public static final double EPSILON = 1e-6;
+
+    /**
+     * Returns the expected dense cross product
+     */
+    static Matrix expectedCross(Matrix left, Matrix right) {
+        int r = right.numRows();
+        int s = right.numCols();
+        return Matrix.create(left.numRows() * r, left.numCols() * s, (i, j) ->
+                left.at(i / r, j / s).mul(right.at(i % r, j % s)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,2,2,2", "2345,3,2,2,4", "3456,4,4,1,3"
+    })
+    void testAt(long seed, int p, int q, int r, int s) {
+        Random random = new Random(seed);
+        Matrix a = randomMatrix(random, p, q);
+        Matrix b = randomMatrix(random, r, s);
+        Matrix m = new KroneckerMatrix(a, b);
+        Matrix exp = expectedCross(a, b);
+        for (int i = 0; i < exp.numRows(); i++) {
+            for (int j = 0; j < exp.numCols(); j++) {
+                assertThat(m.at(i, j), complexClose(exp.at(i, j), EPSILON));
+            }
+        }
+        assertThat(toDense(m), matrixCloseTo(exp, EPSILON));
+    }
+
+    @Test
+    void testCreateVectors() {
+        Matrix ket = Matrix.ket(1, 2).cross(Matrix.ket(0, 1));
+        assertThat(ket, not(instanceOf(KroneckerMatrix.class)));
+        assertThat(ket, matrixCloseTo(Matrix.ket(0, 1, 0, 2), EPSILON));
+        assertThat(Matrix.h(0).cross(Matrix.x(0)), instanceOf(KroneckerMatrix.class));
+    }
+
+    @Test
+    void testExtendsCrossSquareLarge() {
+        Matrix gate = randomMatrix(new Random(1234), 2, 2);
+        int n = 1 << 16;
+        Matrix m = gate.extendsCrossSquare(n);
+        assertThat(m, instanceOf(KroneckerMatrix.class));
+        Matrix ket = Matrix.ketBase(n - 1).extendsRows(n);
+        Matrix result = m.mul(ket);
+        assertThat(result.at(n - 2), complexClose(gate.at(0, 1), EPSILON));
+        assertThat(result.at(n - 1), complexClose(gate.at(1, 1), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,2,2,2,3", "2345,3,2,2,4,4", "3456,4,4,1,3,2"
+    })
+    void testMulDenseByKronecker(long seed, int p, int q, int r, int s, int n) {
+        Random random = new Random(seed);
+        Matrix a = randomMatrix(random, p, q);
+        Matrix b = randomMatrix(random, r, s);
+        Matrix left = randomMatrix(random, n, p * r);
+        assertThat(left.mul(new KroneckerMatrix(a, b)), matrixCloseTo(left.mul(expectedCross(a, b)), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,2,2,2,1", "2345,3,2,2,4,3", "3456,4,4,1,3,2"
+    })
+    void testMulKroneckerByDense(long seed, int p, int q, int r, int s, int m) {
+        Random random = new Random(seed);
+        Matrix a = randomMatrix(random, p, q);
+        Matrix b = randomMatrix(random, r, s);
+        Matrix right = randomMatrix(random, q * s, m);
+        assertThat(new KroneckerMatrix(a, b).mul(right), matrixCloseTo(expectedCross(a, b).mul(right), EPSILON));
+    }
+
+    @Test
+    void testMulKroneckerByKronecker() {
+        Random random = new Random(1234);
+        Matrix a = randomMatrix(random, 2, 2);
+        Matrix b = randomMatrix(random, 4, 4);
+        Matrix c = randomMatrix(random, 2, 2);
+        Matrix d = randomMatrix(random, 4, 4);
+        Matrix result = a.cross(b).mul(c.cross(d));
+        assertThat(result, instanceOf(KroneckerMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(expectedCross(a, b).mul(expectedCross(c, d)), EPSILON));
+    }
+
+    @Test
+    void testMulStructured() {
+        Random random = new Random(1234);
+        Matrix kron = Matrix.identity(2).cross(randomMatrix(random, 4, 4));
+        PermutationMatrix perm = randomPermutation(random, 8);
+        Matrix dense = expectedCross(Matrix.identity(2), ((KroneckerMatrix) kron).right());
+        assertThat(toDense(kron.mul(perm)), matrixCloseTo(dense.mul(toDense(perm)), EPSILON));
+        assertThat(toDense(perm.mul(kron)), matrixCloseTo(toDense(perm).mul(dense), EPSILON));
+        assertThat(toDense(kron.mul(Matrix.z(1))), matrixCloseTo(dense.mul(toDense(Matrix.z(1))), EPSILON));
+    }
+
+    @Test
+    void testSwapAxes() {
+        double[] src = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+        assertArrayEquals(new double[]{0, 3, 1, 4, 2, 5, 6, 9, 7, 10, 8, 11},
+                KroneckerMatrix.swapAxes(src, 2, 2, 3, 1));
+        assertArrayEquals(new double[]{0, 1, 6, 7, 2, 3, 8, 9, 4, 5, 10, 11},
+                KroneckerMatrix.swapAxes(src, 1, 2, 3, 2));
+    }
+
+    @Test
+    void testTransformations() {
+        Random random = new Random(1234);
+        Matrix a = randomMatrix(random, 2, 3);
+        Matrix b = randomMatrix(random, 2, 2);
+        KroneckerMatrix m = new KroneckerMatrix(a, b);
+        Matrix dense = expectedCross(a, b);
+        assertThat(toDense(m.transpose()), matrixCloseTo(dense.transpose(), EPSILON));
+        assertThat(toDense(m.dagger()), matrixCloseTo(dense.dagger(), EPSILON));
+        assertThat(toDense(m.conj()), matrixCloseTo(dense.conj(), EPSILON));
+        assertThat(toDense(m.neg()), matrixCloseTo(dense.neg(), EPSILON));
+        assertThat(toDense(m.normalise()), matrixCloseTo(dense.normalise(), EPSILON));
+        assertThat(toDense(m.mul(new Complex(1, 2))), matrixCloseTo(dense.mul(new Complex(1, 2)), EPSILON));
+        assertThat(toDense(m.sparse()), matrixCloseTo(dense, EPSILON));
+        assertThat(m.materialise(), matrixCloseTo(dense, EPSILON));
+    }
+}
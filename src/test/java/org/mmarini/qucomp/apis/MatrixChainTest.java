@@ -0,0 +1,125 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class MatrixChainTest {
+    public static final double EPSILON = 1e-6;
+
+    @ParameterizedTest
+    @CsvSource({
+            "false,4:4 4:4 4:1,true",
+            "false,1:4 4:4 4:4,true",
+            "false,1:4 2:2 8:8 4:1,true",
+            "false,4:4 4:1 1:4,false",
+            "false,4:4 1:4 4:4,false",
+            "false,4:4 4:4,false",
+            "false,3:3 3:3 3:1,false",
+            "false,4:4 4:2 2:1,false",
+            "true,4:4 4:2 2:1,true",
+            "true,1:4 4:4 4:1,true",
+            "true,4:1 1:4 4:4,true",
+            "true,1:4 4:1 1:4,false",
+            "true,4:4 1:1 4:4,false",
+    })
+    void testIsReorderable(boolean zeroExtension, String shapes, boolean expected) {
+        Random random = new Random(1234);
+        String[] dims = shapes.split(" ");
+        Matrix[] operands = new Matrix[dims.length];
+        for (int i = 0; i < dims.length; i++) {
+            String[] rc = dims[i].split(":");
+            operands[i] = randomMatrix(random, Integer.parseInt(rc[0]), Integer.parseInt(rc[1]));
+        }
+        assertEquals(expected, MatrixChain.isReorderable(zeroExtension, operands));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "false,1234",
+            "true,1234",
+            "false,4321",
+            "true,4321",
+    })
+    void testMul(boolean zeroExtension, long seed) {
+        Random random = new Random(seed);
+        Matrix[] operands = new Matrix[]{
+                randomMatrix(random, 4, 4),
+                randomMatrix(random, 8, 8),
+                randomMatrix(random, 2, 2),
+                randomMatrix(random, 8, 1)
+        };
+        Matrix expected = operands[0];
+        for (int i = 1; i < operands.length; i++) {
+            expected = zeroExtension ? expected.mul0(operands[i]) : expected.mul(operands[i]);
+        }
+
+        Matrix result = MatrixChain.mul(zeroExtension, operands);
+
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "false,1234",
+            "true,1234",
+    })
+    void testMulKet(boolean zeroExtension, long seed) {
+        Random random = new Random(seed);
+        Matrix[] operands = new Matrix[]{
+                randomMatrix(random, 1, 8),
+                Matrix.h(1).extendsCrossSquare(8),
+                PermutationMatrixTest.randomPermutation(random, 8),
+                Matrix.cnot(2, 0),
+                randomMatrix(random, 8, 8),
+                randomMatrix(random, 8, 1)
+        };
+        Matrix expected = operands[operands.length - 1];
+        for (int i = operands.length - 2; i >= 0; i--) {
+            expected = zeroExtension ? operands[i].mul0(expected) : operands[i].mul(expected);
+        }
+
+        Matrix result = MatrixChain.mul(zeroExtension, operands);
+
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void testOrderBra() {
+        int[][] splits = MatrixChain.order(
+                new int[]{1, 64, 64},
+                new int[]{64, 64, 64},
+                true);
+        // (<a| A) B
+        assertEquals(1, splits[0][2]);
+    }
+
+    @Test
+    void testOrderKet() {
+        int[][] splits = MatrixChain.order(
+                new int[]{64, 64, 64, 64},
+                new int[]{64, 64, 64, 1},
+                true);
+        // A (B (C |a>))
+        assertEquals(0, splits[0][3]);
+        assertEquals(1, splits[1][3]);
+        assertEquals(2, splits[2][3]);
+    }
+
+    @Test
+    void testOrderMixedSizes() {
+        int[][] splits = MatrixChain.order(
+                new int[]{2, 64, 64},
+                new int[]{2, 64, 1},
+                false);
+        // A (B |a>)
+        assertEquals(0, splits[0][2]);
+    }
+}
@@ -8,7 +8,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -225,6 +226,24 @@ public class MatrixTest {
             0, 0, 0, 1
     );
 
+    /**
+     * Returns the joint probabilities of the qubits computed by the projections of the ket
+     *
+     * @param ket    the ket
+     * @param qubits the qubits
+     */
+    static double[] marginal(Matrix ket, int... qubits) {
+        double[] result = new double[1 << qubits.length];
+        for (int i = 0; i < ket.numRows(); i++) {
+            int j = 0;
+            for (int m = 0; m < qubits.length; m++) {
+                j |= VectorUtils.qubitValue(i, qubits[m]) << m;
+            }
+            result[j] += ket.at(i).normSquare();
+        }
+        return result;
+    }
+
     public static Stream<Arguments> testAddArgs() {
         Matrix x22 = Matrix.create(2, 2,
                 0, 1,
@@ -1324,18 +1343,6 @@ public class MatrixTest {
         assertEquals(3, m.index(1, 1));
     }
 
-    @Test
-    void testIndexStream() {
-        List<int[]> indices = Matrix.indexStream(2, 3).toList();
-        assertEquals(6, indices.size());
-        assertArrayEquals(new int[]{0, 0}, indices.get(0));
-        assertArrayEquals(new int[]{0, 1}, indices.get(1));
-        assertArrayEquals(new int[]{0, 2}, indices.get(2));
-        assertArrayEquals(new int[]{1, 0}, indices.get(3));
-        assertArrayEquals(new int[]{1, 1}, indices.get(4));
-        assertArrayEquals(new int[]{1, 2}, indices.get(5));
-    }
-
     @ParameterizedTest
     @MethodSource("testKetBaseArgs")
     void testKetBase(int state, Matrix exp) {
@@ -1553,6 +1560,51 @@ public class MatrixTest {
                 HALF_SQRT2, HALF_SQRT2), EPSILON));
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,''",
+            "1234,1,0",
+            "1234,3,2",
+            "1234,3,'2,0'",
+            "2345,5,'1,3,4'",
+            "2345,19,'18,0,7'",
+            "3456,18,'16,15,14,13,12,11,10,9,8,7,6,5,4,3,2,1,0'",
+    })
+    void testMarginal(long seed, int numQubits, String qubitsText) {
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(2);
+            int[] qubits = qubitsText.isEmpty()
+                    ? new int[0]
+                    : Arrays.stream(qubitsText.split(",")).mapToInt(Integer::parseInt).toArray();
+            Matrix ket = GateMatrixTest.randomMatrix(new Random(seed), 1 << numQubits, 1);
+
+            assertArrayEquals(marginal(ket, qubits), ket.marginal(qubits), 1e-6);
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void testMarginalError() {
+        Matrix ket = Matrix.ketBase(7);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ket.marginal(0, 3));
+        assertEquals("Expected qubit in range 0-2 (3)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ket.marginal(1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ket.marginal(new int[27]));
+        assertEquals("Expected at most 26 qubits (27)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> Matrix.create(3, 1, 1, 0, 0).marginal(0));
+        assertEquals("Expected ket with power of 2 states (3x1)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> Matrix.identity(2).qubitProbabilities());
+        assertEquals("Expected ket with power of 2 states (2x2)", ex.getMessage());
+    }
+
     @ParameterizedTest
     @MethodSource("testQubit0Args")
     void testQubit0(int index, int size, Matrix expected) {
@@ -1565,6 +1617,36 @@ public class MatrixTest {
         assertThat(Matrix.qubit1(index, size), matrixCloseTo(expected, EPSILON));
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1",
+            "1234,3",
+            "2345,9",
+            "2345,12",
+            "3456,19",
+    })
+    void testQubitProbabilities(long seed, int numQubits) {
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(2);
+            Matrix ket = GateMatrixTest.randomMatrix(new Random(seed), 1 << numQubits, 1);
+
+            double[] result = ket.qubitProbabilities();
+
+            assertEquals(numQubits, result.length);
+            for (int q = 0; q < numQubits; q++) {
+                assertEquals(marginal(ket, q)[1], result[q], 1e-6);
+            }
+            if (numQubits <= 9) {
+                for (int q = 0; q < numQubits; q++) {
+                    assertEquals(ket.dagger().mul(Matrix.qubit1(q, numQubits).mul(ket)).at(0, 0).real(), result[q], 1e-6);
+                }
+            }
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("testSArgs")
     void testS(int index, Matrix exp) {
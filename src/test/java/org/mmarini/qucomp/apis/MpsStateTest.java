@@ -0,0 +1,186 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class MpsStateTest {
+    public static final double EPSILON = 1e-9;
+
+    static List<QuGate> randomCircuit(Random random, int numQubits, int numGates) {
+        List<QuGate> gates = new ArrayList<>();
+        for (int i = 0; i < numGates; i++) {
+            int a = random.nextInt(numQubits);
+            int b = (a + 1 + random.nextInt(numQubits - 1)) % numQubits;
+            int c = (b + 1 + random.nextInt(numQubits - 2)) % numQubits;
+            if (c == a) {
+                c = (c + 1) % numQubits;
+                if (c == b) {
+                    c = (c + 1) % numQubits;
+                }
+            }
+            gates.add(switch (random.nextInt(8)) {
+                case 0 -> QuGate.h(a);
+                case 1 -> QuGate.t(a);
+                case 2 -> QuGate.y(a);
+                case 3 -> QuGate.cnot(a, b);
+                case 4 -> QuGate.swap(a, b);
+                case 5 -> QuGate.ccnot(a, b, c);
+                case 6 -> QuGate.fused(randomMatrix(random, 4, 4), a, b);
+                default -> QuGate.s(a);
+            });
+        }
+        return gates;
+    }
+
+    static double normSquare(Matrix ket) {
+        return VectorUtils.normSquare(ket.real(), ket.im());
+    }
+
+    static Matrix simulate(List<QuGate> gates, Matrix ket) {
+        StateVector state = DoubleStateVector.create(ket);
+        for (QuGate gate : gates) {
+            state.apply(gate.gate(), gate.indices());
+        }
+        return state.toMatrix();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,3",
+            "1234,5",
+            "2345,6",
+            "3456,7",
+    })
+    void apply(long seed, int numQubits) {
+        Random random = new Random(seed);
+        List<QuGate> gates = randomCircuit(random, numQubits, 40);
+        Matrix ket = randomMatrix(random, 1 << numQubits, 1);
+
+        MpsState state = MpsState.create(ket, 1 << numQubits, 0).apply(gates);
+
+        Matrix expected = simulate(gates, ket);
+        assertThat(state.toKet(), matrixCloseTo(expected, EPSILON * normSquare(expected)));
+        assertEquals(0, state.truncationError(), 1e-20);
+        assertEquals(1, state.normSquare() / normSquare(expected), EPSILON);
+    }
+
+    @Test
+    void applyError() {
+        MpsState state = MpsState.create(3);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(4), 0));
+        assertEquals("Expected gate 2x2 (4x4)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(2), 3));
+        assertEquals("Expected qubit in range 0-2 (3)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(4), 1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> MpsState.create(3, 0, 0));
+        assertEquals("Expected max bond dimension greater than 0 (0)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> MpsState.create(3, 4, 1));
+        assertEquals("Expected threshold in range 0-1 (1.00000)", ex.getMessage());
+    }
+
+    @Test
+    void ghz() {
+        int n = 200;
+        MpsState state = MpsState.create(n, 4, 1e-12).apply(QuGate.h(0).gate(), 0);
+        for (int i = 1; i < n; i++) {
+            state.apply(QuGate.cnot(i, i - 1).gate(), i, i - 1);
+        }
+        // Long range gates routed by swaps
+        state.apply(QuGate.swap(0, n - 1).gate(), 0, n - 1);
+
+        assertEquals(2, state.bondDimension());
+        assertEquals(0, state.truncationError(), 1e-12);
+        assertThat(state.amplitude(0), complexClose(new Complex(Math.sqrt(0.5), 0), EPSILON));
+        for (int i = 0; i < n; i += 37) {
+            assertEquals(0.5, state.qubitProbability(i), EPSILON);
+        }
+        assertEquals(1, state.normSquare(), EPSILON);
+    }
+
+    @Test
+    void enabled() {
+        Matrix ket = Matrix.ketBase(1).extendsRows(8);
+        Matrix[] operands = {Matrix.t(2), Matrix.ccnot(0, 1, 2), Matrix.h(2), Matrix.h(1), ket};
+        List<QuGate> gates = List.of(QuGate.h(1), QuGate.h(2), QuGate.ccnot(0, 1, 2), QuGate.t(2));
+        Matrix expected = simulate(gates, ket);
+        MpsState.setEnabled(true);
+        try {
+            assertThat(MatrixChain.mul(false, operands), matrixCloseTo(expected, EPSILON));
+            assertThat(QuCircuitBuilder.apply(gates, ket), matrixCloseTo(expected, EPSILON));
+        } finally {
+            MpsState.setEnabled(false);
+        }
+    }
+
+    @Test
+    void enabledFallback() {
+        // The 16 qubits projector is not a small gate, the chain runs on the state vector
+        Matrix ket = Matrix.ketBase(0).extendsRows(1 << 16);
+        Matrix[] operands = {Matrix.qubit1(0, 16), Matrix.h(0), Matrix.x(3), ket};
+        Matrix expected = Matrix.ketBase(9).extendsRows(1 << 16).mul(Math.sqrt(0.5));
+        MpsState.setEnabled(true);
+        try {
+            assertThat(MatrixChain.mul(false, operands), matrixCloseTo(expected, EPSILON));
+        } finally {
+            MpsState.setEnabled(false);
+        }
+    }
+
+    @Test
+    void probability() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 16, 1).normalise();
+        List<QuGate> gates = randomCircuit(random, 4, 20);
+        MpsState state = MpsState.create(ket).apply(gates);
+        Matrix expected = simulate(gates, ket);
+
+        for (int i = 0; i < 16; i++) {
+            assertThat(state.amplitude(i), complexClose(expected.at(i), EPSILON));
+            assertEquals(expected.at(i).normSquare(), state.probability(i), EPSILON);
+        }
+        for (int q = 0; q < 4; q++) {
+            double p1 = 0;
+            for (int i = 0; i < 16; i++) {
+                if ((i & (1 << q)) != 0) {
+                    p1 += expected.at(i).normSquare();
+                }
+            }
+            assertEquals(p1 / normSquare(expected), state.qubitProbability(q), EPSILON);
+        }
+    }
+
+    @Test
+    void truncation() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 64, 1).normalise();
+
+        MpsState exact = MpsState.create(ket, 64, 0);
+        MpsState truncated = MpsState.create(ket, 2, 0);
+
+        assertEquals(8, exact.bondDimension());
+        assertEquals(2, truncated.bondDimension());
+        assertEquals(0, exact.truncationError(), 1e-20);
+        assertTrue(truncated.truncationError() > 0);
+        assertEquals(1, truncated.normSquare(), EPSILON);
+        // The fidelity loss is bounded by the discarded weight
+        Complex overlap = exact.toKet().dagger().mul(truncated.toKet()).at(0, 0);
+        assertTrue(1 - overlap.normSquare() <= 2 * truncated.truncationError());
+    }
+}
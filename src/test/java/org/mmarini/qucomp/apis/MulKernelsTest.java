@@ -0,0 +1,90 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class MulKernelsTest {
+    public static final double EPSILON = 1e-9;
+
+    static double[] randomArray(Random random, int n) {
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = random.nextGaussian();
+        }
+        return result;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,1,1",
+            "1234,3,5,7",
+            "2345,33,129,31",
+            "3456,64,64,64",
+            "3456,65,300,70",
+            "4567,1,256,40",
+    })
+    void blockMul(long seed, int n, int inner, int m) {
+        Random random = new Random(seed);
+        double[] aReal = randomArray(random, n * inner);
+        double[] aIm = randomArray(random, n * inner);
+        double[] bReal = randomArray(random, inner * m);
+        double[] bIm = randomArray(random, inner * m);
+        double[] expReal = new double[n * m];
+        double[] expIm = new double[n * m];
+        VectorUtils.partMul(expReal, expIm, 0, n, m, aReal, aIm, 0, inner, bReal, bIm, 0, m);
+        // Destination with garbage to check the cleaning
+        double[] dReal = randomArray(random, n * m);
+        double[] dIm = randomArray(random, n * m);
+        MulKernels.blockMul(dReal, dIm, 0, n, m, aReal, aIm, 0, inner, bReal, bIm, 0, m);
+        assertArrayEquals(expReal, dReal, EPSILON);
+        assertArrayEquals(expIm, dIm, EPSILON);
+    }
+
+    @Test
+    void blockMulPartition() {
+        // Computes the sub block rows 3-9 and columns 40-79 only
+        Random random = new Random(1234);
+        int n = 12;
+        int inner = 150;
+        int m = 100;
+        double[] aReal = randomArray(random, n * inner);
+        double[] aIm = randomArray(random, n * inner);
+        double[] bReal = randomArray(random, inner * m);
+        double[] bIm = randomArray(random, inner * m);
+        double[] expReal = new double[n * m];
+        double[] expIm = new double[n * m];
+        double[] dReal = new double[n * m];
+        double[] dIm = new double[n * m];
+        VectorUtils.partMul(expReal, expIm, 3 * m + 40, 7, 40, aReal, aIm, 3 * inner, inner, bReal, bIm, 40, m);
+        MulKernels.blockMul(dReal, dIm, 3 * m + 40, 7, 40, aReal, aIm, 3 * inner, inner, bReal, bIm, 40, m);
+        assertArrayEquals(expReal, dReal, EPSILON);
+        assertArrayEquals(expIm, dIm, EPSILON);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,64", "2345,100"
+    })
+    void matrixMul(long seed, int n) {
+        Random random = new Random(seed);
+        Matrix a = randomMatrix(random, n, n);
+        Matrix b = randomMatrix(random, n, n);
+        Matrix exp = Matrix.create(n, n, (i, j) -> {
+            Complex sum = Complex.zero();
+            for (int k = 0; k < n; k++) {
+                sum = sum.add(a.at(i, k).mul(b.at(k, j)));
+            }
+            return sum;
+        });
+        assertThat(a.mulSeq(b), matrixCloseTo(exp, 1e-6));
+        assertThat(a.mulConc(b), matrixCloseTo(exp, 1e-6));
+    }
+}
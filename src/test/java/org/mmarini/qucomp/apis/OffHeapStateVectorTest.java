@@ -0,0 +1,298 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class OffHeapStateVectorTest {
+    public static final double EPSILON = 1e-9;
+
+    static Matrix randomKet(Random random, int numQubits) {
+        return randomMatrix(random, 1 << numQubits, 1);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,30,0",
+            "1234,3,1,0",
+            "1234,3,1,2",
+            "2345,5,2,4",
+            "2345,5,2,0",
+            "3456,6,3,5",
+    })
+    void apply1(long seed, int numQubits, int chunkBits, int qubit) {
+        Random random = new Random(seed);
+        Matrix ket = randomKet(random, numQubits);
+        Matrix gate = randomMatrix(random, 2, 2);
+        OffHeapStateVector state = OffHeapStateVector.create(numQubits, chunkBits, Precision.DOUBLE);
+        for (int i = 0; i < ket.numRows(); i++) {
+            state.set(i, ket.at(i, 0));
+        }
+
+        state.apply(gate, qubit);
+
+        Matrix expected = GateMatrix.create(gate, qubit).extendsCrossSquare(ket.numRows()).mul(ket);
+        assertThat(state.toMatrix(), matrixCloseTo(expected, EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,3,1,0,1",
+            "1234,3,1,2,0",
+            "2345,5,2,4,1",
+            "3456,6,3,1,5",
+    })
+    void apply2(long seed, int numQubits, int chunkBits, int q0, int q1) {
+        Random random = new Random(seed);
+        Matrix ket = randomKet(random, numQubits);
+        Matrix gate = randomMatrix(random, 4, 4);
+        OffHeapStateVector state = OffHeapStateVector.create(numQubits, chunkBits, Precision.DOUBLE);
+        for (int i = 0; i < ket.numRows(); i++) {
+            state.set(i, ket.at(i, 0));
+        }
+
+        state.apply(gate, q0, q1);
+
+        Matrix expected = GateMatrix.create(gate, q0, q1).extendsCrossSquare(ket.numRows()).mul(ket);
+        assertThat(state.toMatrix(), matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void applyError() {
+        OffHeapStateVector state = OffHeapStateVector.create(3);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(4), 0));
+        assertEquals("Expected gate 2x2 (4x4)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(2), 3));
+        assertEquals("Expected qubit in range 0-2 (3)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(4), 1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+    }
+
+    @Test
+    void applyGates() {
+        List<QuGate> gates = List.of(
+                QuGate.h(0),
+                QuGate.cnot(1, 0),
+                QuGate.ccnot(2, 0, 1),
+                QuGate.t(2),
+                QuGate.swap(0, 2),
+                QuGate.y(1));
+        Matrix ket = Matrix.ketBase(0).extendsRows(8);
+        OffHeapStateVector state = OffHeapStateVector.create(ket);
+
+        state.apply(gates);
+
+        Matrix expected = QuCircuitBuilder.build(gates).mul(ket);
+        assertThat(state.toMatrix(), matrixCloseTo(expected, EPSILON));
+    }
+
+    @Test
+    void applyParallel() {
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(2);
+            Random random = new Random(1234);
+            Matrix ket = randomKet(random, 17);
+            Matrix gate = randomMatrix(random, 4, 4);
+            OffHeapStateVector state = OffHeapStateVector.create(17, 10, Precision.DOUBLE);
+            for (int i = 0; i < ket.numRows(); i++) {
+                state.set(i, ket.at(i, 0));
+            }
+
+            state.apply(gate, 16, 3).apply(Matrix.h(0), 7);
+
+            Matrix expected = Matrix.h(7).mul(GateMatrix.create(gate, 16, 3).mul(ket));
+            assertThat(state.toMatrix(), matrixCloseTo(expected, EPSILON));
+            assertThat(state.normSquare(), closeTo(VectorUtils.normSquare(expected.real(), expected.im()), 1e-6));
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void create() {
+        OffHeapStateVector state = OffHeapStateVector.create(4);
+        assertEquals(4, state.numQubits());
+        assertEquals(16L, state.size());
+        assertEquals(0.0, state.normSquare());
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> OffHeapStateVector.create(41));
+        assertEquals("Expected qubits in range 0-40 (41)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> OffHeapStateVector.create(Matrix.ketBase(0).extendsRows(3)));
+        assertEquals("Expected ket with power of 2 states (3x1)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,5,2",
+            "2345,6,30",
+    })
+    void floatPrecision(long seed, int numQubits, int chunkBits) {
+        Random random = new Random(seed);
+        Matrix ket = randomKet(random, numQubits);
+        Matrix gate = randomMatrix(random, 4, 4);
+        OffHeapStateVector state = OffHeapStateVector.create(numQubits, chunkBits, Precision.FLOAT);
+        for (int i = 0; i < ket.numRows(); i++) {
+            state.set(i, ket.at(i, 0));
+        }
+
+        state.apply(gate, 3, 1).apply(QuGate.h(4));
+
+        Matrix expected = QuGate.h(4).build().extendsCrossSquare(ket.numRows())
+                .mul(GateMatrix.create(gate, 3, 1).extendsCrossSquare(ket.numRows()).mul(ket));
+        assertEquals(Precision.FLOAT, state.precision());
+        assertThat(state.toMatrix(), matrixCloseTo(expected, 1e-5));
+        assertThat(state.normSquare(), closeTo(VectorUtils.normSquare(expected.real(), expected.im()), 1e-4));
+    }
+
+    @Test
+    void ketBase() {
+        OffHeapStateVector state = OffHeapStateVector.ketBase(3, 5);
+        assertThat(state.toMatrix(), matrixCloseTo(Matrix.ketBase(5).extendsRows(8), EPSILON));
+        assertThat(state.at(5), complexClose(Complex.one(), EPSILON));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> OffHeapStateVector.ketBase(3, 1L << 33));
+        assertEquals("Expected state in range 0-7 (8589934592)", ex.getMessage());
+    }
+
+    @Test
+    void map(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("state.bin");
+        Files.writeString(file, "garbage");
+        List<QuGate> gates = List.of(
+                QuGate.h(0),
+                QuGate.cnot(3, 0),
+                QuGate.ccnot(4, 0, 3),
+                QuGate.s(4),
+                QuGate.swap(1, 4));
+        Matrix ket = Matrix.ketBase(2).extendsRows(32);
+        Matrix expected = QuCircuitBuilder.build(gates).mul(ket);
+        OffHeapStateVector state = OffHeapStateVector.map(file, 5, 2, Precision.DOUBLE);
+        assertEquals(0.0, state.normSquare());
+        state.set(2, Complex.one());
+
+        state.apply(gates);
+
+        assertThat(state.toMatrix(), matrixCloseTo(expected, EPSILON));
+        assertEquals(32L * 2 * Double.BYTES, Files.size(file));
+    }
+
+    @Test
+    void mapFloat(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("state.bin");
+        OffHeapStateVector state = OffHeapStateVector.map(file, 5, 2, Precision.FLOAT);
+        state.set(2, Complex.one()).apply(QuGate.h(0));
+
+        assertThat(state.probability(3), closeTo(0.5, 1e-6));
+        assertEquals(32L * 2 * Float.BYTES, Files.size(file));
+    }
+
+    @Test
+    void mapTemporary() throws IOException {
+        OffHeapStateVector state = OffHeapStateVector.mapTemporary(5);
+        state.set(2, Complex.one()).apply(QuGate.h(0));
+
+        assertThat(state.probability(3), closeTo(0.5, 1e-6));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,3,1,''",
+            "1234,3,1,0",
+            "1234,3,1,'2,0'",
+            "2345,5,2,'1,3,4'",
+            "2345,17,12,'16,0,5'",
+            "3456,17,12,'16,15,14,13,12,11,10,9,8,7,6,5,4,3,2,1,0'",
+    })
+    void marginal(long seed, int numQubits, int chunkBits, String qubitsText) {
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(2);
+            int[] qubits = qubitsText.isEmpty()
+                    ? new int[0]
+                    : Arrays.stream(qubitsText.split(",")).mapToInt(Integer::parseInt).toArray();
+            Matrix ket = randomKet(new Random(seed), numQubits);
+            OffHeapStateVector state = OffHeapStateVector.create(numQubits, chunkBits, Precision.DOUBLE);
+            for (int i = 0; i < ket.numRows(); i++) {
+                state.set(i, ket.at(i, 0));
+            }
+
+            double[] result = state.marginal(qubits);
+
+            assertArrayEquals(MatrixTest.marginal(ket, qubits), result, 1e-6);
+            assertArrayEquals(ket.qubitProbabilities(), state.qubitProbabilities(), 1e-6);
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void marginalError() {
+        OffHeapStateVector state = OffHeapStateVector.create(3);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> state.marginal(0, 3));
+        assertEquals("Expected qubit in range 0-2 (3)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.marginal(1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.marginal(new int[27]));
+        assertEquals("Expected at most 26 qubits (27)", ex.getMessage());
+    }
+
+    @Test
+    void normalise() {
+        Random random = new Random(1234);
+        Matrix ket = randomKet(random, 4);
+        OffHeapStateVector state = OffHeapStateVector.create(ket);
+        state.normalise();
+        assertThat(state.normSquare(), closeTo(1, EPSILON));
+        assertThat(state.toMatrix(), matrixCloseTo(ket.normalise(), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,3,1",
+            "2345,5,2",
+    })
+    void probabilities(long seed, int numQubits, int chunkBits) {
+        Random random = new Random(seed);
+        Matrix ket = randomKet(random, numQubits).normalise();
+        OffHeapStateVector state = OffHeapStateVector.create(numQubits, chunkBits, Precision.DOUBLE);
+        for (int i = 0; i < ket.numRows(); i++) {
+            state.set(i, ket.at(i, 0));
+        }
+        for (int q = 0; q < numQubits; q++) {
+            double expected = 0;
+            for (int i = 0; i < ket.numRows(); i++) {
+                if ((i & (1 << q)) != 0) {
+                    expected += ket.at(i, 0).normSquare();
+                }
+            }
+            assertThat(state.qubitProbability(q), closeTo(expected, EPSILON));
+            assertThat(state.qubitProbabilities()[q], closeTo(expected, EPSILON));
+        }
+        for (int i = 0; i < ket.numRows(); i++) {
+            assertThat(state.probability(i), closeTo(ket.at(i, 0).normSquare(), EPSILON));
+        }
+    }
+}
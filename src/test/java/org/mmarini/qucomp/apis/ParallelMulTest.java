@@ -0,0 +1,84 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.apis.MulKernelsTest.randomArray;
+
+class ParallelMulTest {
+    public static final double EPSILON = 1e-9;
+
+    @Test
+    void calibrate() {
+        assertThat(ParallelMul.calibrate(), allOf(
+                greaterThanOrEqualTo(ParallelMul.MIN_TASK_WORK),
+                lessThanOrEqualTo(ParallelMul.MAX_TASK_WORK)));
+    }
+
+    @Test
+    void minTaskWork() {
+        long override = Long.getLong(ParallelMul.TASK_WORK_PROPERTY, 0);
+        if (override > 0) {
+            assertEquals(override, ParallelMul.minTaskWork());
+        } else {
+            assertThat(ParallelMul.minTaskWork(), allOf(
+                    greaterThanOrEqualTo(ParallelMul.MIN_TASK_WORK),
+                    lessThanOrEqualTo(ParallelMul.MAX_TASK_WORK)));
+        }
+        assertThat(ParallelMul.parallelism(), greaterThan(0));
+        assertFalse(ParallelMul.isParallel(2, 2, 2));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,1,1,1",
+            "1234,7,5,3,1",
+            "2345,64,64,64,100",
+            "3456,33,70,1,10",
+            "3456,1,70,100,10",
+            "4567,100,40,90,1000",
+    })
+    void mul(long seed, int n, int inner, int m, long taskWork) {
+        Random random = new Random(seed);
+        double[] aReal = randomArray(random, n * inner);
+        double[] aIm = randomArray(random, n * inner);
+        double[] bReal = randomArray(random, inner * m);
+        double[] bIm = randomArray(random, inner * m);
+        double[] expReal = new double[n * m];
+        double[] expIm = new double[n * m];
+        VectorUtils.partMul(expReal, expIm, 0, n, m, aReal, aIm, 0, inner, bReal, bIm, 0, m);
+        double[] dReal = new double[n * m];
+        double[] dIm = new double[n * m];
+        ParallelMul.mul(dReal, dIm, aReal, aIm, bReal, bIm, n, inner, m, taskWork);
+        assertArrayEquals(expReal, dReal, EPSILON);
+        assertArrayEquals(expIm, dIm, EPSILON);
+    }
+
+    @Test
+    void setParallelism() {
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(2);
+            assertEquals(2, ParallelMul.parallelism());
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                    () -> ParallelMul.setParallelism(0));
+            assertEquals("Expected parallelism >= 1 (0)", ex.getMessage());
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void taskWork() {
+        assertEquals(1000, ParallelMul.taskWork(1000));
+        assertThat(ParallelMul.taskWork(0), allOf(
+                greaterThanOrEqualTo(ParallelMul.MIN_TASK_WORK),
+                lessThanOrEqualTo(ParallelMul.MAX_TASK_WORK)));
+    }
+}
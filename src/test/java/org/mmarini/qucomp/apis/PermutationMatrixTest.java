@@ -0,0 +1,146 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.expectedOperator;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.GateMatrixTest.toDense;
+import static org.mmarini.qucomp.apis.SparseMatrixTest.randomSparse;
+
+class PermutationMatrixTest {
+    public static final double EPSILON = 1e-6;
+
+    static PermutationMatrix randomPermutation(Random random, int n) {
+        int[] mapping = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            mapping[i] = mapping[j];
+            mapping[j] = i;
+        }
+        return PermutationMatrix.create(mapping);
+    }
+
+    @Test
+    void testAt() {
+        PermutationMatrix m = PermutationMatrix.create(2, 0, 1, 3);
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                Complex exp = i == m.mapping()[j] ? Complex.one() : Complex.zero();
+                assertThat(m.at(i, j), complexClose(exp, EPSILON));
+            }
+        }
+        assertArrayEquals(new int[]{1, 2, 0, 3}, m.inverse());
+    }
+
+    @Test
+    void testCnot() {
+        Matrix m = Matrix.cnot(2, 0);
+        assertThat(m, instanceOf(PermutationMatrix.class));
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(Matrix.permute(0, 1, 3, 2), 2, 0), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,1,2", "2,1,0", "3,0,1", "1,3,2"
+    })
+    void testCreateGate(int q0, int q1, int q2) {
+        PermutationMatrix gate = randomPermutation(new Random(1234), 8);
+        PermutationMatrix m = PermutationMatrix.createGate(gate, q0, q1, q2);
+        assertThat(toDense(m), matrixCloseTo(expectedOperator(gate, q0, q1, q2), EPSILON));
+    }
+
+    @Test
+    void testCreateError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> PermutationMatrix.create(0, 1, 1));
+        assertEquals("Expected permutation [0, 1, 1]", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,4", "2345,4,16", "3456,8,8"
+    })
+    void testExtendsCrossSquare(long seed, int size, int n) {
+        PermutationMatrix m = randomPermutation(new Random(seed), size);
+        Matrix result = m.extendsCrossSquare(n);
+        assertThat(result, instanceOf(PermutationMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(m).extendsCrossSquare(n), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8", "2345,16"
+    })
+    void testMulDenseByPermutation(long seed, int n) {
+        Random random = new Random(seed);
+        Matrix left = randomMatrix(random, 3, n);
+        PermutationMatrix right = randomPermutation(random, n);
+        assertThat(left.mul(right), matrixCloseTo(left.mul(toDense(right)), EPSILON));
+    }
+
+    @Test
+    void testMulGate() {
+        Random random = new Random(1234);
+        PermutationMatrix perm = randomPermutation(random, 8);
+        Matrix gate = GateMatrix.create(randomMatrix(random, 2, 2), 1);
+        assertThat(toDense(perm.mul(gate)), matrixCloseTo(toDense(perm).mul(toDense(gate)), EPSILON));
+        assertThat(toDense(gate.mul(perm)), matrixCloseTo(toDense(gate).mul(toDense(perm)), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8,1", "2345,16,1", "3456,8,3", "3456,4,8"
+    })
+    void testMulPermutationByDense(long seed, int n, int m) {
+        Random random = new Random(seed);
+        PermutationMatrix left = randomPermutation(random, n);
+        Matrix right = randomMatrix(random, n, m);
+        assertThat(left.mul(right), matrixCloseTo(toDense(left).mul(right), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,8,8", "2345,16,16", "3456,4,16", "3456,16,2"
+    })
+    void testMulPermutationByPermutation(long seed, int n, int m) {
+        Random random = new Random(seed);
+        PermutationMatrix left = randomPermutation(random, n);
+        PermutationMatrix right = randomPermutation(random, m);
+        Matrix result = left.mul(right);
+        assertThat(result, instanceOf(PermutationMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(left).mul(toDense(right)), EPSILON));
+    }
+
+    @Test
+    void testMulSparse() {
+        Random random = new Random(1234);
+        PermutationMatrix perm = randomPermutation(random, 8);
+        SparseMatrix sparse = randomSparse(random, 8, 8, 0.3);
+        assertThat(toDense(perm.mul(sparse)), matrixCloseTo(toDense(perm).mul(toDense(sparse)), EPSILON));
+        assertThat(toDense(sparse.mul(perm)), matrixCloseTo(toDense(sparse).mul(toDense(perm)), EPSILON));
+    }
+
+    @Test
+    void testTransformations() {
+        PermutationMatrix m = randomPermutation(new Random(1234), 8);
+        Matrix dense = toDense(m);
+        assertThat(toDense(m.transpose()), matrixCloseTo(dense.transpose(), EPSILON));
+        assertThat(toDense(m.dagger()), matrixCloseTo(dense.dagger(), EPSILON));
+        assertThat(toDense(m.conj()), matrixCloseTo(dense.conj(), EPSILON));
+        assertThat(toDense(m.neg()), matrixCloseTo(dense.neg(), EPSILON));
+        assertThat(toDense(m.mul(new Complex(1, 2))), matrixCloseTo(dense.mul(new Complex(1, 2)), EPSILON));
+        assertThat(m.mul(m.dagger()), instanceOf(PermutationMatrix.class));
+        assertThat(toDense(m.mul(m.dagger())), matrixCloseTo(Matrix.identity(8), EPSILON));
+    }
+}
@@ -0,0 +1,27 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrecisionTest {
+    @ParameterizedTest
+    @CsvSource({
+            "double,DOUBLE",
+            "float,FLOAT",
+            "Float,FLOAT",
+    })
+    void parse(String name, Precision expected) {
+        assertEquals(expected, Precision.parse(name));
+    }
+
+    @Test
+    void parseError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> Precision.parse("half"));
+        assertEquals("Expected double or float (half)", ex.getMessage());
+    }
+}
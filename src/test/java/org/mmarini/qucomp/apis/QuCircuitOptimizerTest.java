@@ -0,0 +1,112 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+
+class QuCircuitOptimizerTest {
+    public static final double EPSILON = 1e-9;
+
+    @Test
+    void cancel() {
+        List<QuGate> gates = List.of(
+                QuGate.x(0),
+                QuGate.h(1),
+                QuGate.cnot(2, 3),
+                QuGate.x(0),
+                QuGate.swap(1, 4),
+                QuGate.swap(4, 1),
+                QuGate.ccnot(5, 0, 2),
+                QuGate.ccnot(5, 2, 0),
+                QuGate.cnot(2, 3),
+                QuGate.i(3),
+                QuGate.h(1));
+
+        QuCircuitOptimizer.Result result = QuCircuitOptimizer.optimize(gates);
+
+        assertEquals(List.of(), result.gates());
+        assertEquals(6, result.numQubits());
+        assertEquals(gates, result.removed());
+        assertEquals(List.of(), result.added());
+        assertEquals(Map.of("ccnot", 2L, "cnot", 2L, "h", 2L, "i", 1L, "swap", 2L, "x", 2L),
+                result.removedByType());
+        assertEquals("Removed 11 gates (ccnot=2, cnot=2, h=2, i=1, swap=2, x=2), added 0 merged gates, 11 -> 0 gates",
+                result.report());
+    }
+
+    @Test
+    void keepNotCommuting() {
+        List<QuGate> gates = List.of(
+                QuGate.h(0),
+                QuGate.cnot(1, 0),
+                QuGate.h(0),
+                QuGate.cnot(0, 1),
+                QuGate.cnot(1, 0));
+
+        QuCircuitOptimizer.Result result = QuCircuitOptimizer.optimize(gates);
+
+        assertEquals(gates, result.gates());
+        assertEquals(List.of(), result.removed());
+    }
+
+    @Test
+    void merge() {
+        List<QuGate> gates = List.of(
+                QuGate.t(0),
+                QuGate.h(1),
+                QuGate.t(0),
+                QuGate.s(0),
+                QuGate.z(0),
+                QuGate.s(2),
+                QuGate.s(2));
+
+        QuCircuitOptimizer.Result result = QuCircuitOptimizer.optimize(gates);
+
+        // t t s z = s s z = z z = i on qubit 0
+        assertEquals(List.of(QuGate.h(1), QuGate.z(2)), result.gates());
+        assertEquals(3, result.numQubits());
+        assertEquals(List.of(QuGate.z(2)), result.added());
+        assertEquals(6, result.removed().size());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,50",
+            "2345,5,100",
+            "3456,3,100",
+    })
+    void optimize(long seed, int numQubits, int numGates) {
+        Random random = new Random(seed);
+        List<QuGate> gates = new ArrayList<>();
+        for (int i = 0; i < numGates; i++) {
+            int q0 = random.nextInt(numQubits);
+            int q1 = (q0 + 1 + random.nextInt(numQubits - 1)) % numQubits;
+            gates.add(switch (random.nextInt(6)) {
+                case 0 -> QuGate.h(q0);
+                case 1 -> QuGate.x(q0);
+                case 2 -> QuGate.s(q0);
+                case 3 -> QuGate.t(q0);
+                case 4 -> QuGate.swap(q0, q1);
+                default -> QuGate.cnot(q0, q1);
+            });
+        }
+
+        QuCircuitOptimizer.Result result = QuCircuitOptimizer.optimize(gates);
+
+        Matrix expected = QuCircuitBuilder.build(gates);
+        Matrix actual = result.gates().isEmpty()
+                ? Matrix.identity(expected.numRows())
+                : QuCircuitBuilder.build(result.gates()).extendsCrossSquare(expected.numRows());
+        assertThat(actual, matrixCloseTo(expected.extendsCrossSquare(actual.numRows()), EPSILON));
+        assertEquals(gates.size(), result.gates().size() - result.added().size() + result.removed().size());
+    }
+}
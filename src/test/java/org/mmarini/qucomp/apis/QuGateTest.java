@@ -16,6 +16,40 @@ class QuGateTest {
     public static final double EPSILON = 1e-6F;
     private static final Logger logger = LoggerFactory.getLogger(QuGateTest.class);
 
+    @ParameterizedTest
+    @CsvSource({
+            "h,2,0,0",
+            "x,0,0,0",
+            "y,3,0,0",
+            "z,1,0,0",
+            "s,2,0,0",
+            "t,0,0,0",
+            "cnot,2,0,0",
+            "cnot,0,3,0",
+            "swap,1,3,0",
+            "ccnot,3,0,2",
+            "ccnot,0,2,1",
+    })
+    void gate(String type, int i0, int i1, int i2) {
+        // Given
+        QuGate gate = switch (type) {
+            case "h" -> QuGate.h(i0);
+            case "x" -> QuGate.x(i0);
+            case "y" -> QuGate.y(i0);
+            case "z" -> QuGate.z(i0);
+            case "s" -> QuGate.s(i0);
+            case "t" -> QuGate.t(i0);
+            case "cnot" -> QuGate.cnot(i0, i1);
+            case "swap" -> QuGate.swap(i0, i1);
+            default -> QuGate.ccnot(i0, i1, i2);
+        };
+        Matrix expected = gate.build();
+        // When
+        Matrix m = GateMatrix.create(gate.gate(), gate.indices());
+        // Then
+        assertThat(m.extendsCrossSquare(expected.numRows()), matrixCloseTo(expected, EPSILON));
+    }
+
     @ParameterizedTest
     @CsvSource({
             "0, 0",
@@ -4,16 +4,47 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mmarini.qucomp.Matchers.matrixCloseTo;
-import static org.mmarini.qucomp.apis.QuGate.swap;
-import static org.mmarini.qucomp.apis.QuGate.x;
+import static org.mmarini.qucomp.apis.QuGate.*;
 
 class QuStateBuilderTest {
 
     public static final double EPSILON = 1e-6;
 
+    @ParameterizedTest
+    @CsvSource({
+            "0", "1", "2", "3", "4", "5", "6", "7"
+    })
+    void apply(int in) {
+        // Given
+        List<QuGate> gates = List.of(h(0), cnot(1, 0), ccnot(2, 1, 0), t(2), swap(0, 2), y(1));
+        Matrix ket0 = Matrix.ketBase(in);
+        // When
+        Matrix ket1 = QuCircuitBuilder.apply(gates, ket0);
+        // Then
+        Matrix expKet = QuCircuitBuilder.build(gates).mul(ket0);
+        assertThat(ket1, matrixCloseTo(expKet, EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15"
+    })
+    void applyStateMap(int in) {
+        // Given
+        List<QuGate> gates = List.of(h(0), stateMap(new int[]{2, 3}, 1, 2, 3, 0), cnot(3, 0));
+        Matrix ket0 = Matrix.ketBase(in);
+        // When
+        Matrix ket1 = QuCircuitBuilder.apply(gates, ket0);
+        // Then
+        Matrix expKet = QuCircuitBuilder.build(gates).mul(ket0);
+        assertThat(ket1, matrixCloseTo(expKet, EPSILON));
+    }
+
     @ParameterizedTest
     @CsvSource({
             "0,3", // 00 -> 11
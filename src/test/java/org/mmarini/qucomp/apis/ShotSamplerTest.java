@@ -0,0 +1,163 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class ShotSamplerTest {
+    public static final double EPSILON = 1e-12;
+
+    /**
+     * Asserts the histogram is compatible with the probabilities (within 6 standard deviations)
+     *
+     * @param histogram the histogram
+     * @param ket       the ket
+     * @param shots     the number of shots
+     */
+    private static void assertHistogram(long[] histogram, Matrix ket, long shots) {
+        double norm = VectorUtils.normSquare(ket.real(), ket.im());
+        assertEquals(shots, Arrays.stream(histogram).sum());
+        for (int i = 0; i < histogram.length; i++) {
+            double p = ket.at(i, 0).normSquare() / norm;
+            double sigma = Math.sqrt(shots * p * (1 - p));
+            assertThat((double) histogram[i], closeTo(shots * p, 6 * sigma + 1e-9));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1",
+            "1234,2",
+            "1234,5",
+            "2345,64",
+            "3456,1000",
+    })
+    void create(long seed, int size) {
+        Matrix ket = randomMatrix(new Random(seed), size, 1);
+        double norm = VectorUtils.normSquare(ket.real(), ket.im());
+
+        ShotSampler sampler = ShotSampler.create(ket);
+
+        assertEquals(size, sampler.size());
+        for (int i = 0; i < size; i++) {
+            assertThat(sampler.probability(i), closeTo(ket.at(i, 0).normSquare() / norm, EPSILON));
+        }
+    }
+
+    @Test
+    void createError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ShotSampler.create(new double[]{1, -1}));
+        assertEquals("Expected non negative weight at 1 (-1.00000)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ShotSampler.create(new double[]{0, 0}));
+        assertEquals("Expected positive total weight (0.00000)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> ShotSampler.create(Matrix.ketBase(1).dagger()));
+        assertEquals("Expected ket (1x2)", ex.getMessage());
+    }
+
+    @Test
+    void createStateVector() {
+        Matrix ket = randomMatrix(new Random(1234), 16, 1);
+
+        ShotSampler sampler = ShotSampler.create(StateVector.create(ket));
+        ShotSampler offHeap = ShotSampler.create(OffHeapStateVector.create(ket));
+
+        double norm = VectorUtils.normSquare(ket.real(), ket.im());
+        for (int i = 0; i < 16; i++) {
+            double p = ket.at(i, 0).normSquare() / norm;
+            assertThat(sampler.probability(i), closeTo(p, EPSILON));
+            assertThat(offHeap.probability(i), closeTo(p, 1e-6));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,0",
+            "1234,4,1",
+            "1234,4,1000",
+            "2345,64,1000000",
+            "3456,1000,200000",
+    })
+    void histogram(long seed, int size, long shots) {
+        Matrix ket = randomMatrix(new Random(seed), size, 1);
+        ShotSampler sampler = ShotSampler.create(ket);
+
+        long[] histogram = sampler.histogram(shots, seed);
+
+        assertEquals(size, histogram.length);
+        assertHistogram(histogram, ket, shots);
+    }
+
+    @Test
+    void histogramError() {
+        ShotSampler sampler = ShotSampler.create(Matrix.ketBase(0));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> sampler.histogram(-1, 1234));
+        assertEquals("Expected non negative number of shots (-1)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "4,300000",
+            "17,300000",
+    })
+    void histogramReproducible(int numQubits, long shots) {
+        Matrix ket = randomMatrix(new Random(1234), 1 << numQubits, 1);
+        ShotSampler sampler = ShotSampler.create(ket);
+        int parallelism = ParallelMul.parallelism();
+        try {
+            ParallelMul.setParallelism(1);
+            long[] expected = sampler.histogram(shots, 1234);
+            ParallelMul.setParallelism(4);
+            long[] histogram = sampler.histogram(shots, 1234);
+            long[] other = sampler.histogram(shots, 2345);
+
+            assertArrayEquals(expected, histogram);
+            assertEquals(shots, Arrays.stream(other).sum());
+            assertEquals(false, Arrays.equals(expected, other));
+        } finally {
+            ParallelMul.setParallelism(parallelism);
+        }
+    }
+
+    @Test
+    void histogramZeroWeights() {
+        // GHZ state |000> + |111>
+        Matrix ket = Matrix.ketBase(0).add(Matrix.ketBase(7)).normalise();
+
+        long[] histogram = ShotSampler.create(ket).histogram(1000000, 1234);
+
+        assertEquals(8, histogram.length);
+        for (int i = 1; i < 7; i++) {
+            assertEquals(0, histogram[i]);
+        }
+        assertHistogram(histogram, ket, 1000000);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,0",
+            "1,1",
+            "5,5",
+    })
+    void sample(int state, int expected) {
+        ShotSampler sampler = ShotSampler.create(Matrix.ketBase(state));
+        SplittableRandom random = new SplittableRandom(1234);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected, sampler.sample(random));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mmarini.qucomp.apis.MulKernelsTest.randomArray;
+
+class SimdKernelsTest {
+    public static final double EPSILON = 1e-9;
+
+    @BeforeAll
+    static void checkSimd() {
+        assumeTrue(Simd.ENABLED, "SIMD disabled");
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1", "7", "16", "33"})
+    void addSubNegMul(int n) {
+        Random random = new Random(1234);
+        double[] a = randomArray(random, n);
+        double[] b = randomArray(random, n);
+        double[] d = new double[n];
+        SimdKernels.add(a, b, d);
+        for (int i = 0; i < n; i++) {
+            assertEquals(a[i] + b[i], d[i], EPSILON);
+        }
+        SimdKernels.sub(a, b, d);
+        for (int i = 0; i < n; i++) {
+            assertEquals(a[i] - b[i], d[i], EPSILON);
+        }
+        SimdKernels.neg(a, d);
+        for (int i = 0; i < n; i++) {
+            assertEquals(-a[i], d[i], EPSILON);
+        }
+        SimdKernels.mul(a, 2.5, d);
+        for (int i = 0; i < n; i++) {
+            assertEquals(a[i] * 2.5, d[i], EPSILON);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1", "5", "16", "33"})
+    void apply1(int n) {
+        Random random = new Random(1234);
+        double[] sReal = randomArray(random, 2 * n);
+        double[] sIm = randomArray(random, 2 * n);
+        double[] gReal = randomArray(random, 4);
+        double[] gIm = randomArray(random, 4);
+        double[] dReal = new double[2 * n];
+        double[] dIm = new double[2 * n];
+        int off1 = n;
+        SimdKernels.apply1(dReal, dIm, sReal, sIm, 0, off1, n, gReal, gIm);
+        for (int k = 0; k < n; k++) {
+            Complex a0 = new Complex(sReal[k], sIm[k]);
+            Complex a1 = new Complex(sReal[off1 + k], sIm[off1 + k]);
+            Complex d0 = new Complex(gReal[0], gIm[0]).mul(a0).add(new Complex(gReal[1], gIm[1]).mul(a1));
+            Complex d1 = new Complex(gReal[2], gIm[2]).mul(a0).add(new Complex(gReal[3], gIm[3]).mul(a1));
+            assertEquals(d0.real(), dReal[k], EPSILON);
+            assertEquals(d0.im(), dIm[k], EPSILON);
+            assertEquals(d1.real(), dReal[off1 + k], EPSILON);
+            assertEquals(d1.im(), dIm[off1 + k], EPSILON);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1", "7", "16", "129"})
+    void dot2(int n) {
+        Random random = new Random(1234);
+        double[] aReal = randomArray(random, 2 * n);
+        double[] aIm = randomArray(random, 2 * n);
+        double[] bReal = randomArray(random, n);
+        double[] bIm = randomArray(random, n);
+        double[] exp = new double[4];
+        for (int k = 0; k < n; k++) {
+            exp[0] += aReal[k] * bReal[k] - aIm[k] * bIm[k];
+            exp[1] += aReal[k] * bIm[k] + aIm[k] * bReal[k];
+            exp[2] += aReal[n + k] * bReal[k] - aIm[n + k] * bIm[k];
+            exp[3] += aReal[n + k] * bIm[k] + aIm[n + k] * bReal[k];
+        }
+        double[] result = new double[4];
+        SimdKernels.dot2(aReal, aIm, 0, n, bReal, bIm, 0, n, result);
+        assertArrayEquals(exp, result, EPSILON);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1", "7", "16", "33"})
+    void mulComplex(int n) {
+        Random random = new Random(1234);
+        double[] sReal = randomArray(random, n + 3);
+        double[] sIm = randomArray(random, n + 3);
+        double[] dReal = new double[n + 2];
+        double[] dIm = new double[n + 2];
+        SimdKernels.mul(sReal, sIm, 3, 1.5, -0.5, dReal, dIm, 2, n);
+        for (int k = 0; k < n; k++) {
+            Complex exp = new Complex(sReal[3 + k], sIm[3 + k]).mul(new Complex(1.5, -0.5));
+            assertEquals(exp.real(), dReal[2 + k], EPSILON);
+            assertEquals(exp.im(), dIm[2 + k], EPSILON);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"1", "7", "16", "33"})
+    void normSquare(int n) {
+        Random random = new Random(1234);
+        double[] real = randomArray(random, n);
+        double[] im = randomArray(random, n);
+        double exp = 0;
+        for (int i = 0; i < n; i++) {
+            exp += real[i] * real[i] + im[i] * im[i];
+        }
+        assertEquals(exp, SimdKernels.normSquare(real, im), EPSILON);
+    }
+}
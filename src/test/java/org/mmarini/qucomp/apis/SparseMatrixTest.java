@@ -0,0 +1,187 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.GateMatrixTest.toDense;
+
+class SparseMatrixTest {
+    public static final double EPSILON = 1e-6;
+
+    /**
+     * Returns a random sparse matrix
+     *
+     * @param random  the random generator
+     * @param numRows the number of rows
+     * @param numCols the number of columns
+     * @param density the probability of non-zero cells
+     */
+    static SparseMatrix randomSparse(Random random, int numRows, int numCols, double density) {
+        Complex[] cells = new Complex[numRows * numCols];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = random.nextDouble() < density
+                    ? new Complex(random.nextGaussian(), random.nextGaussian())
+                    : Complex.zero();
+        }
+        return SparseMatrix.create(Matrix.create(numRows, numCols, cells));
+    }
+
+    @Test
+    void testAt() {
+        SparseMatrix m = SparseMatrix.create(3, 4,
+                new int[]{2, 0, 0, 1},
+                new int[]{3, 2, 0, 1},
+                new double[]{1, 2, 3, 4},
+                new double[]{-1, -2, -3, -4});
+        assertEquals(4, m.numNonZeros());
+        assertThat(m.at(0, 0), complexClose(new Complex(3, -3), EPSILON));
+        assertThat(m.at(0, 1), complexClose(Complex.zero(), EPSILON));
+        assertThat(m.at(0, 2), complexClose(new Complex(2, -2), EPSILON));
+        assertThat(m.at(1, 1), complexClose(new Complex(4, -4), EPSILON));
+        assertThat(m.at(2, 3), complexClose(new Complex(1, -1), EPSILON));
+        assertThat(m.at(2, 2), complexClose(Complex.zero(), EPSILON));
+        assertThrows(IllegalArgumentException.class, () -> m.at(3, 0));
+    }
+
+    @Test
+    void testCreateDuplicates() {
+        SparseMatrix m = SparseMatrix.create(3, 4,
+                new int[]{2, 0, 2, 0, 1, 0},
+                new int[]{3, 2, 3, 0, 1, 2},
+                new double[]{1, 2, 3, 4, 5, 6},
+                new double[]{-1, -2, -3, -4, -5, -6});
+        assertEquals(4, m.numNonZeros());
+        assertThat(m.at(0, 0), complexClose(new Complex(4, -4), EPSILON));
+        assertThat(m.at(0, 2), complexClose(new Complex(8, -8), EPSILON));
+        assertThat(m.at(1, 1), complexClose(new Complex(5, -5), EPSILON));
+        assertThat(m.at(2, 3), complexClose(new Complex(4, -4), EPSILON));
+        assertThat(m.mul0(Matrix.identity(4)), matrixCloseTo(Matrix.create(3, 4,
+                new Complex(4, -4), Complex.zero(), new Complex(8, -8), Complex.zero(),
+                Complex.zero(), new Complex(5, -5), Complex.zero(), Complex.zero(),
+                Complex.zero(), Complex.zero(), Complex.zero(), new Complex(4, -4)), EPSILON));
+    }
+
+    @Test
+    void testCreateError() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> SparseMatrix.create(2, 2, new int[]{2}, new int[]{0}, new double[]{1}, new double[1]));
+        assertEquals("index must have range (0-2) x (0-2) [2, 0]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> SparseMatrix.create(2, 2, new int[]{0}, new int[]{0, 1}, new double[]{1}, new double[1]));
+        assertEquals("Expected 1 cells (2, 1, 1)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,2", "1234,4,4", "2345,8,8", "3456,4,1", "3456,1,4"
+    })
+    void testCreateFromDense(long seed, int numRows, int numCols) {
+        SparseMatrix m = randomSparse(new Random(seed), numRows, numCols, 0.3);
+        assertThat(SparseMatrix.create(toDense(m)), matrixCloseTo(toDense(m), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,4", "2345,4,8", "3456,8,16", "3456,2,2"
+    })
+    void testExtendsCrossSquare(long seed, int size, int n) {
+        SparseMatrix m = randomSparse(new Random(seed), size, size, 0.4);
+        Matrix result = m.extendsCrossSquare(n);
+        assertThat(result, instanceOf(SparseMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(m).extendsCrossSquare(n), EPSILON));
+    }
+
+    @Test
+    void testExtendsRowsCols() {
+        SparseMatrix m = randomSparse(new Random(1234), 2, 2, 0.5);
+        assertThat(toDense(m.extendsRows(4)), matrixCloseTo(toDense(m).extendsRows(4), EPSILON));
+        assertThat(toDense(m.extendsCols(4)), matrixCloseTo(toDense(m).extendsCols(4), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,4,4", "2345,8,8,1", "3456,4,2,3", "3456,2,8,1"
+    })
+    void testMulDenseBySparse(long seed, int n, int inner, int m) {
+        Random random = new Random(seed);
+        Matrix left = randomMatrix(random, n, inner);
+        SparseMatrix right = randomSparse(random, inner, m, 0.3);
+        assertThat(left.mul(right), matrixCloseTo(left.mul(toDense(right)), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,4,4", "2345,8,8,1", "3456,4,2,3", "3456,2,8,1"
+    })
+    void testMulSparseByDense(long seed, int n, int inner, int m) {
+        Random random = new Random(seed);
+        SparseMatrix left = randomSparse(random, n, inner, 0.3);
+        Matrix right = randomMatrix(random, inner, m);
+        assertThat(left.mul(right), matrixCloseTo(toDense(left).mul(right), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,4,4", "2345,8,8,8", "3456,4,2,3", "3456,16,16,16"
+    })
+    void testMulSparseBySparse(long seed, int n, int inner, int m) {
+        Random random = new Random(seed);
+        SparseMatrix left = randomSparse(random, n, inner, 0.3);
+        SparseMatrix right = randomSparse(random, inner, m, 0.3);
+        Matrix result = left.mul(right);
+        assertThat(result, instanceOf(SparseMatrix.class));
+        assertThat(toDense(result), matrixCloseTo(toDense(left).mul(toDense(right)), EPSILON));
+    }
+
+    @Test
+    void testMulGate() {
+        Matrix gate = randomMatrix(new Random(1234), 4, 4);
+        GateMatrix op = GateMatrix.create(gate, 2, 0);
+        Matrix perm = Matrix.permute(3, 0, 5, 2, 7, 4, 1, 6);
+        assertThat(toDense(perm.mul(op)), matrixCloseTo(toDense(perm).mul(toDense(op)), EPSILON));
+    }
+
+    @Test
+    void testMul0() {
+        Matrix ket = Matrix.ket(1, 2);
+        Matrix proj = Matrix.qubit0(2, 3);
+        assertThat(proj.mul0(ket), matrixCloseTo(toDense(proj).mul0(ket), EPSILON));
+        assertThat(ket.dagger().mul0(proj), matrixCloseTo(ket.dagger().mul0(toDense(proj)), EPSILON));
+    }
+
+    @Test
+    void testPermute() {
+        // Not bijective mapping
+        Matrix m = Matrix.permute(2, 0, 2, 3);
+        assertThat(m, instanceOf(SparseMatrix.class));
+        assertEquals(4, ((SparseMatrix) m).numNonZeros());
+        assertThat(m.mul(Matrix.ketBase(0)), matrixCloseTo(Matrix.ketBase(2).extendsRows(4), EPSILON));
+        assertThat(m.mul(Matrix.ketBase(1)), matrixCloseTo(Matrix.ketBase(0).extendsRows(4), EPSILON));
+        assertThat(m.mul(Matrix.ketBase(2)), matrixCloseTo(Matrix.ketBase(2).extendsRows(4), EPSILON));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,4,4", "2345,8,2", "3456,1,4"
+    })
+    void testTransformations(long seed, int numRows, int numCols) {
+        SparseMatrix m = randomSparse(new Random(seed), numRows, numCols, 0.4);
+        Matrix dense = toDense(m);
+        assertThat(toDense(m.transpose()), matrixCloseTo(dense.transpose(), EPSILON));
+        assertThat(toDense(m.conj()), matrixCloseTo(dense.conj(), EPSILON));
+        assertThat(toDense(m.dagger()), matrixCloseTo(dense.dagger(), EPSILON));
+        assertThat(toDense(m.neg()), matrixCloseTo(dense.neg(), EPSILON));
+        assertThat(toDense(m.mul(new Complex(1, 2))), matrixCloseTo(dense.mul(new Complex(1, 2)), EPSILON));
+        assertThat(toDense(m.mul(2.5)), matrixCloseTo(dense.mul(2.5), EPSILON));
+    }
+}
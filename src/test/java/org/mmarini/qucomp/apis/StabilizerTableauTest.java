@@ -0,0 +1,177 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+
+class StabilizerTableauTest {
+    public static final double EPSILON = 1e-9;
+
+    static List<QuGate> randomClifford(Random random, int numQubits, int numGates) {
+        List<QuGate> gates = new ArrayList<>();
+        for (int i = 0; i < numGates; i++) {
+            int a = random.nextInt(numQubits);
+            int b = (a + 1 + random.nextInt(numQubits - 1)) % numQubits;
+            gates.add(switch (random.nextInt(7)) {
+                case 0 -> QuGate.h(a);
+                case 1 -> QuGate.s(a);
+                case 2 -> QuGate.x(a);
+                case 3 -> QuGate.y(a);
+                case 4 -> QuGate.z(a);
+                case 5 -> QuGate.cnot(a, b);
+                default -> QuGate.swap(a, b);
+            });
+        }
+        return gates;
+    }
+
+    static Matrix simulate(List<QuGate> gates, Matrix ket) {
+        StateVector state = DoubleStateVector.create(ket);
+        for (QuGate gate : gates) {
+            state.apply(gate.gate(), gate.indices());
+        }
+        return state.toMatrix();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,2,0",
+            "1234,3,5",
+            "1234,5,17",
+            "2345,5,31",
+            "3456,6,0",
+            "4567,6,63",
+    })
+    void apply(long seed, int numQubits, int state) {
+        Random random = new Random(seed);
+        List<QuGate> gates = randomClifford(random, numQubits, 60);
+        Matrix ket = Matrix.ketBase(state).extendsRows(1 << numQubits).mul(new Complex(0.6, -0.8));
+
+        Matrix result = StabilizerTableau.create(ket).apply(gates).toKet();
+
+        assertThat(result, matrixCloseTo(simulate(gates, ket), EPSILON));
+    }
+
+    @Test
+    void applyCircuitBuilder() {
+        List<QuGate> gates = List.of(QuGate.h(0), QuGate.cnot(1, 0), QuGate.y(1), QuGate.s(0));
+        Matrix ket = Matrix.ketBase(0).extendsRows(4);
+
+        Matrix result = QuCircuitBuilder.apply(gates, ket);
+
+        assertThat(result, matrixCloseTo(QuCircuitBuilder.build(gates).mul(ket), EPSILON));
+    }
+
+    @Test
+    void applyError() {
+        StabilizerTableau tableau = StabilizerTableau.create(2);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> tableau.apply(QuGate.t(0)));
+        assertEquals("Expected Clifford gate (t)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> tableau.h(2));
+        assertEquals("Expected qubit in range 0-1 (2)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> tableau.cnot(1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> StabilizerTableau.create(Matrix.plus()));
+        assertEquals("Expected basis state ket (2x1)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> StabilizerTableau.create(StabilizerTableau.MAX_KET_QUBITS + 1).toKet());
+        assertEquals("Expected at most 26 qubits (27)", ex.getMessage());
+    }
+
+    @Test
+    void cliffordGate() {
+        assertEquals(Optional.of("h[2]"), describe(Matrix.h(2)));
+        assertEquals(Optional.of("x[1]"), describe(Matrix.x(1)));
+        assertEquals(Optional.of("y[0]"), describe(Matrix.y(0)));
+        assertEquals(Optional.of("s[3]"), describe(Matrix.s(3)));
+        assertEquals(Optional.of("z[1]"), describe(Matrix.z(1)));
+        assertEquals(Optional.of("cnot[2, 0]"), describe(Matrix.cnot(2, 0)));
+        assertEquals(Optional.of("cnot[0, 3]"), describe(Matrix.cnot(0, 3)));
+        assertEquals(Optional.of("swap[1, 3]"), describe(Matrix.swap(3, 1)));
+        assertEquals(Optional.empty(), describe(Matrix.t(0)));
+        assertEquals(Optional.empty(), describe(Matrix.ccnot(0, 1, 2)));
+        assertEquals(Optional.empty(), describe(Matrix.identity(4).mul(2)));
+    }
+
+    private Optional<String> describe(Matrix operator) {
+        return StabilizerTableau.cliffordGate(operator)
+                .map(gate -> gate.type() + Arrays.toString(gate.indices()));
+    }
+
+    @Test
+    void ghz1000() {
+        int n = 1000;
+        StabilizerTableau tableau = StabilizerTableau.create(n).h(0);
+        for (int i = 1; i < n; i++) {
+            tableau.cnot(i, i - 1);
+        }
+        for (int i = 0; i < n; i += 99) {
+            assertEquals(0.5, tableau.qubitProbability(i));
+        }
+
+        int outcome = tableau.measure(500, new Random(1234));
+
+        for (int i = 0; i < n; i += 99) {
+            assertEquals(outcome, tableau.qubitProbability(i));
+            assertEquals(outcome, tableau.measure(i, new Random(i)));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,3",
+            "2345,4",
+            "3456,5",
+    })
+    void measure(long seed, int numQubits) {
+        Random random = new Random(seed);
+        List<QuGate> gates = randomClifford(random, numQubits, 40);
+        Matrix ket = Matrix.ketBase(0).extendsRows(1 << numQubits);
+        StabilizerTableau tableau = StabilizerTableau.create(ket).apply(gates);
+        Matrix expected = simulate(gates, ket);
+
+        for (int q = 0; q < numQubits; q++) {
+            Matrix projector1 = Matrix.qubit1(q, numQubits).extendsCrossSquare(1 << numQubits);
+            double p1 = projector1.mul(expected).dagger().mul(projector1.mul(expected)).at(0, 0).real();
+            assertEquals(p1, tableau.qubitProbability(q), EPSILON);
+
+            int outcome = tableau.measure(q, random);
+
+            Matrix projector = outcome == 1
+                    ? projector1
+                    : Matrix.qubit0(q, numQubits).extendsCrossSquare(1 << numQubits);
+            double p = outcome == 1 ? p1 : 1 - p1;
+            assertTrue(p > 0);
+            expected = projector.mul(expected).mul(1 / Math.sqrt(p));
+            assertThat(tableau.toKet(), matrixCloseTo(expected, EPSILON));
+            assertEquals(outcome, tableau.qubitProbability(q));
+        }
+    }
+
+    @Test
+    void matrixChain() {
+        Matrix ket = Matrix.ketBase(1).extendsRows(8);
+        Matrix[] operands = {Matrix.s(2), Matrix.cnot(2, 0), Matrix.h(0), Matrix.y(1), ket};
+
+        Matrix result = MatrixChain.mul(false, operands);
+
+        Matrix expected = Matrix.s(2).extendsCrossSquare(8)
+                .mul(Matrix.cnot(2, 0).extendsCrossSquare(8))
+                .mul(Matrix.h(0).extendsCrossSquare(8))
+                .mul(Matrix.y(1).extendsCrossSquare(8))
+                .mul(ket);
+        assertThat(result, matrixCloseTo(expected, EPSILON));
+    }
+}
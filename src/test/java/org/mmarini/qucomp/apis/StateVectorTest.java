@@ -0,0 +1,259 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.qucomp.Matchers.complexClose;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+import static org.mmarini.qucomp.apis.PermutationMatrixTest.randomPermutation;
+import static org.mmarini.qucomp.apis.SparseMatrixTest.randomSparse;
+
+class StateVectorTest {
+    /**
+     * Returns the tolerance of the precision
+     *
+     * @param precision the precision
+     */
+    static double epsilon(Precision precision) {
+        return precision == Precision.FLOAT ? 1e-5 : 1e-9;
+    }
+
+    /**
+     * Returns the product of operator by the single precision ket accumulated in double precision
+     * in the column order of the state vector kernels and rounded to single precision
+     *
+     * @param operator the operator
+     * @param ket      the ket
+     */
+    static float[][] floatProduct(Matrix operator, Matrix ket) {
+        int n = ket.numRows();
+        float[][] result = new float[2][n];
+        for (int i = 0; i < n; i++) {
+            double accReal = 0;
+            double accIm = 0;
+            for (int j = 0; j < n; j++) {
+                Complex cell = operator.at(i, j);
+                double sr = (float) ket.real()[j];
+                double si = (float) ket.im()[j];
+                accReal += cell.real() * sr - cell.im() * si;
+                accIm += cell.real() * si + cell.im() * sr;
+            }
+            result[0][i] = (float) accReal;
+            result[1][i] = (float) accIm;
+        }
+        return result;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "DOUBLE,gate,1234",
+            "DOUBLE,diagonal,1234",
+            "DOUBLE,permutation,1234",
+            "DOUBLE,kronecker,1234",
+            "DOUBLE,dense,1234",
+            "DOUBLE,sparse,1234",
+            "DOUBLE,gate,2345",
+            "DOUBLE,permutation,2345",
+            "DOUBLE,dense,2345",
+            "FLOAT,gate,1234",
+            "FLOAT,diagonal,1234",
+            "FLOAT,permutation,1234",
+            "FLOAT,kronecker,1234",
+            "FLOAT,dense,1234",
+            "FLOAT,sparse,1234",
+            "FLOAT,gate,2345",
+            "FLOAT,permutation,2345",
+            "FLOAT,dense,2345",
+    })
+    void apply(Precision precision, String type, long seed) {
+        Random random = new Random(seed);
+        Matrix ket = randomMatrix(random, 16, 1);
+        Matrix operator = switch (type) {
+            case "gate" -> GateMatrix.create(randomMatrix(random, 4, 4), 3, 1);
+            case "diagonal" -> DiagonalMatrix.create(randomMatrix(random, 16, 1).real(), randomMatrix(random, 16, 1).im());
+            case "permutation" -> randomPermutation(random, 16);
+            case "kronecker" -> randomMatrix(random, 4, 4).extendsCrossSquare(16);
+            case "sparse" -> randomSparse(random, 16, 16, 0.3);
+            default -> randomMatrix(random, 16, 16);
+        };
+        Matrix expected = operator.mul(ket);
+        double[] ketReal = ket.real().clone();
+        StateVector state = StateVector.create(ket, precision);
+
+        state.apply(operator);
+
+        assertThat(state.toMatrix(), matrixCloseTo(expected, epsilon(precision)));
+        assertArrayEquals(ketReal, ket.real());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void applyError(Precision precision) {
+        StateVector state = StateVector.create(Matrix.ketBase(0).extendsRows(4), precision);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(8)));
+        assertEquals("Expected operator 4x4 (8x8)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(2), -1));
+        assertEquals("Expected qubit in range 0-1 (-1)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(2), 2));
+        assertEquals("Expected qubit in range 0-1 (2)", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> state.apply(Matrix.identity(4), 1, 1));
+        assertEquals("Expected all different indices [1, 1]", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class,
+                () -> StateVector.create(Matrix.identity(2), precision));
+        assertEquals("Expected ket (2x2)", ex.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void applyGate(Precision precision) {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1);
+        Matrix gate = randomMatrix(random, 2, 2);
+        StateVector state = StateVector.create(ket, precision);
+
+        state.apply(gate, 2).apply(Matrix.x(0).extendsCrossSquare(8)).apply(Matrix.cnot(1, 0).extendsCrossSquare(8));
+
+        Matrix expected = Matrix.cnot(1, 0).mul(Matrix.x(0).mul(GateMatrix.create(gate, 2).mul(ket)));
+        assertThat(state.toMatrix(), matrixCloseTo(expected, epsilon(precision)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "DOUBLE,org.mmarini.qucomp.apis.DoubleStateVector",
+            "FLOAT,org.mmarini.qucomp.apis.FloatStateVector",
+    })
+    void create(Precision precision, Class<?> type) {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1);
+
+        StateVector state = StateVector.create(ket, precision);
+
+        assertThat(state, instanceOf(type));
+        assertEquals(precision, state.precision());
+        assertEquals(VectorUtils.normSquare(ket.real(), ket.im()), state.normSquare(), epsilon(precision));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "dense,1234",
+            "dense,2345",
+            "sparse,1234",
+            "sparse,2345",
+    })
+    void floatRounding(String type, long seed) {
+        Random random = new Random(seed);
+        Matrix ket = randomMatrix(random, 16, 1);
+        Matrix operator = type.equals("sparse")
+                ? randomSparse(random, 16, 16, 0.3)
+                : randomMatrix(random, 16, 16);
+        float[][] expected = floatProduct(operator, ket);
+        StateVector state = StateVector.create(ket, Precision.FLOAT);
+
+        state.apply(operator);
+
+        // The products are accumulated in double precision and rounded only once when stored
+        for (int i = 0; i < 16; i++) {
+            Complex cell = state.at(i);
+            assertEquals(expected[0][i], (float) cell.real());
+            assertEquals(expected[1][i], (float) cell.im());
+        }
+    }
+
+    @Test
+    void floatNormSquare() {
+        // A unit amplitude and 4095 amplitudes of 1e-4 whose squares are below the float resolution of 1
+        double[] real = new double[4096];
+        real[0] = 1;
+        double expected = 1;
+        for (int i = 1; i < real.length; i++) {
+            real[i] = 1e-4;
+            double stored = (float) 1e-4;
+            expected += stored * stored;
+        }
+        StateVector state = StateVector.create(new Matrix(4096, 1, real, new double[4096]), Precision.FLOAT);
+
+        double result = state.normSquare();
+
+        assertEquals(expected, result, 1e-12);
+        assertNotEquals(1.0, result);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void mul(Precision precision) {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1);
+        StateVector state = StateVector.create(ket, precision);
+
+        state.mul(Complex.i()).mul(2);
+
+        assertThat(state.toMatrix(), matrixCloseTo(ket.mul(Complex.i()).mul(2), epsilon(precision)));
+        assertThat(state.at(3), complexClose(ket.at(3, 0).mul(Complex.i()).mul(2), epsilon(precision)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void normalise(Precision precision) {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1);
+        StateVector state = StateVector.create(ket, precision);
+
+        state.normalise();
+
+        assertThat(state.toMatrix(), matrixCloseTo(ket.normalise(), epsilon(precision)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void probabilities(Precision precision) {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1);
+        double[] probabilities = StateVector.create(ket, precision).probabilities();
+        assertEquals(8, probabilities.length);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(ket.at(i, 0).normSquare(), probabilities[i], epsilon(precision));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DOUBLE", "FLOAT"})
+    void release(Precision precision) {
+        Matrix ket = Matrix.ketBase(2).extendsRows(4);
+        StateVector state = StateVector.create(ket, precision).apply(Matrix.x(1));
+
+        Matrix result = state.release();
+
+        assertThat(result, matrixCloseTo(Matrix.ketBase(0).extendsRows(4), epsilon(precision)));
+        IllegalStateException ex = assertThrows(IllegalStateException.class, state::toMatrix);
+        assertEquals("State vector released", ex.getMessage());
+    }
+
+    @Test
+    void wrap() {
+        Random random = new Random(1234);
+        Matrix ket = randomMatrix(random, 8, 1).extendsRows(16);
+        double[] real = ket.real();
+        double[] im = ket.im();
+
+        Matrix result = DoubleStateVector.wrap(ket).mul(Complex.i()).release();
+
+        // The cells of the owned ket are transformed in place
+        assertSame(real, result.real());
+        assertSame(im, result.im());
+    }
+}
@@ -0,0 +1,56 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mmarini.qucomp.apis.MulKernelsTest.randomArray;
+
+class StrassenMulTest {
+    public static final double EPSILON = 1e-9;
+
+    @Test
+    void isApplicable() {
+        int cutoff = StrassenMul.cutoff();
+        assertFalse(StrassenMul.isApplicable(cutoff, cutoff, cutoff));
+        assertEquals(cutoff > 0, StrassenMul.isApplicable(cutoff * 2, cutoff * 2, cutoff * 2));
+        assertFalse(StrassenMul.isApplicable(cutoff * 2, cutoff * 2, 1));
+        assertFalse(StrassenMul.isApplicable(cutoff * 3, cutoff * 3, cutoff * 3));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,1,1",
+            "1234,2,1,1",
+            "2345,8,2,1000000",
+            "3456,16,4,64",
+            "4567,64,8,512",
+            "5678,64,32,1000000",
+    })
+    void mul(long seed, int n, int cutoff, long taskWork) {
+        Random random = new Random(seed);
+        double[] aReal = randomArray(random, n * n);
+        double[] aIm = randomArray(random, n * n);
+        double[] bReal = randomArray(random, n * n);
+        double[] bIm = randomArray(random, n * n);
+        double[] expReal = new double[n * n];
+        double[] expIm = new double[n * n];
+        VectorUtils.partMul(expReal, expIm, 0, n, n, aReal, aIm, 0, n, bReal, bIm, 0, n);
+        double[] dReal = new double[n * n];
+        double[] dIm = new double[n * n];
+        StrassenMul.mul(dReal, dIm, aReal, aIm, bReal, bIm, n, cutoff, taskWork);
+        assertArrayEquals(expReal, dReal, EPSILON);
+        assertArrayEquals(expIm, dIm, EPSILON);
+    }
+
+    @Test
+    void mulError() {
+        double[] a = new double[9];
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> StrassenMul.mul(a, a, a, a, a, a, 3, 1, 1));
+        assertEquals("Expected size power of 2 (3)", ex.getMessage());
+    }
+}
@@ -0,0 +1,62 @@
+package org.mmarini.qucomp.apis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mmarini.qucomp.Matchers.matrixCloseTo;
+import static org.mmarini.qucomp.apis.GateMatrixTest.randomMatrix;
+
+class SvdTest {
+    public static final double EPSILON = 1e-9;
+
+    @ParameterizedTest
+    @CsvSource({
+            "1234,1,1",
+            "1234,4,4",
+            "1234,8,3",
+            "1234,3,8",
+            "2345,16,16",
+            "2345,32,8",
+            "3456,8,32",
+    })
+    void create(long seed, int numRows, int numCols) {
+        Matrix m = randomMatrix(new Random(seed), numRows, numCols);
+
+        Svd svd = Svd.create(m);
+
+        int k = Math.min(numRows, numCols);
+        assertEquals(k, svd.rank());
+        double[] s = svd.s();
+        for (int i = 1; i < k; i++) {
+            assertTrue(s[i - 1] >= s[i]);
+        }
+        Matrix sigma = DiagonalMatrix.create(s, new double[k]);
+        assertThat(svd.u().mul0(sigma).mul0(svd.v().dagger()), matrixCloseTo(m, EPSILON));
+        assertThat(svd.u().dagger().mul0(svd.u()), matrixCloseTo(Matrix.identity(k), EPSILON));
+        assertThat(svd.v().dagger().mul0(svd.v()), matrixCloseTo(Matrix.identity(k), EPSILON));
+    }
+
+    @Test
+    void createRankDeficient() {
+        Random random = new Random(1234);
+        Matrix a = randomMatrix(random, 6, 2);
+        Matrix b = randomMatrix(random, 2, 5);
+        Matrix m = a.mul0(b);
+
+        Svd svd = Svd.create(m);
+
+        assertEquals(5, svd.rank());
+        assertTrue(svd.s()[1] > 1e-6);
+        assertArrayEquals(new double[3], Arrays.copyOfRange(svd.s(), 2, 5), 1e-12);
+        Matrix sigma = DiagonalMatrix.create(svd.s(), new double[5]);
+        assertThat(svd.u().mul0(sigma).mul0(svd.v().dagger()), matrixCloseTo(m, EPSILON));
+    }
+}
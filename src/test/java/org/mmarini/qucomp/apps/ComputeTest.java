@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2025 Marco Marini, marco.marini@mmarini.org
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.qucomp.apps;
+
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ComputeTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "'-s,direct',stabilizer tableau,argument -s/--storage: not supported by the stabilizer tableau engine",
+            "'-s,mapped',matrix product state,argument -s/--storage: not supported by the matrix product state engine",
+            "'-m,state.bin',stabilizer tableau,argument -m/--map-file: not supported by the stabilizer tableau engine",
+            "'-m,state.bin',matrix product state,argument -m/--map-file: not supported by the matrix product state engine",
+    })
+    void validateStorageOnMemoryEngine(String options, String engine, String expected) throws ArgumentParserException {
+        ArgumentParser parser = Compute.createParser();
+        String[] optionArgs = options.split(",");
+        Namespace args = parser.parseArgs(new String[]{"-c", "circuit.qg", optionArgs[0], optionArgs[1]});
+
+        ArgumentParserException ex = assertThrows(ArgumentParserException.class,
+                () -> Compute.validateCircuitArgs(parser, args, 2, 2, Integer.MAX_VALUE, 30, engine));
+
+        assertEquals(expected, ex.getMessage());
+    }
+
+    @Test
+    void validateStorageOnStateVector() throws ArgumentParserException {
+        ArgumentParser parser = Compute.createParser();
+        Namespace args = parser.parseArgs(new String[]{"-c", "circuit.qg", "-s", "mapped", "-m", "state.bin"});
+
+        assertDoesNotThrow(() -> Compute.validateCircuitArgs(parser, args, 2, 2, 40, 30, null));
+    }
+}
@@ -188,7 +188,30 @@ class ProcessorTest {
                 Arguments.of("<0| . i;", Matrix.ket(1, 0).dagger().mul(Complex.i())),
                 Arguments.of("i . <0|;", Matrix.ket(1, 0).dagger().mul(Complex.i())),
                 Arguments.of("<0| . 2;", Matrix.ket(1, 0).dagger().mul(2)),
-                Arguments.of("2 . <0|;", Matrix.ket(1, 0).dagger().mul(2))
+                Arguments.of("2 . <0|;", Matrix.ket(1, 0).dagger().mul(2)),
+                Arguments.of("H(0) * X(0) * |0>;", Matrix.h(0).mul(Matrix.x(0)).mul(Matrix.ketBase(0))),
+                Arguments.of("CNOT(0,1) * H(0) * |0>;", Matrix.cnot(0, 1).mul(Matrix.h(0)).mul(Matrix.ketBase(0))),
+                Arguments.of("H(0) * CNOT(0,2) * H(1) * |1>;",
+                        Matrix.h(0).mul(Matrix.cnot(0, 2)).mul(Matrix.h(1)).mul(Matrix.ketBase(1))),
+                Arguments.of("<1| * H(1) * X(0);", Matrix.ketBase(1).dagger().mul(Matrix.h(1)).mul(Matrix.x(0))),
+                Arguments.of("H(0) * |0> * <0|;", Matrix.h(0).mul(Matrix.ketBase(0)).mul(Matrix.ketBase(0).dagger())),
+                Arguments.of("H(1) . X(0) . |1>;", Matrix.h(1).mul0(Matrix.x(0)).mul0(Matrix.ketBase(1))),
+                Arguments.of("ary(2,3) . H(0) . |1>;", Matrix.ary(2, 3).mul0(Matrix.h(0)).mul0(Matrix.ketBase(1))),
+                Arguments.of("H(1) * X(0) . |1>;", Matrix.h(1).mul(Matrix.x(0)).mul0(Matrix.ketBase(1))),
+                Arguments.of("<0| * |0> * <1|;", Matrix.ketBase(1).dagger()),
+                Arguments.of("rho(|+>);", Matrix.plus().mul(Matrix.plus().dagger())),
+                Arguments.of("evolve(rho(|0>), H(0));", Matrix.plus().mul(Matrix.plus().dagger())),
+                Arguments.of("evolve(rho(|0>), H(1));", Matrix.h(1).mul(Matrix.ketBase(0).extendsRows(4))
+                        .mul(Matrix.ketBase(0).extendsRows(4).dagger().mul(Matrix.h(1)))),
+                Arguments.of("ptrace(rho(CNOT(1,0) * H(0) * |0>), 1);", Matrix.identity(2).mul(0.5)),
+                Arguments.of("measure(rho(|+>), 0);", Matrix.identity(2).mul(0.5)),
+                Arguments.of("evolve(rho(|+>), qubit1(0,1));", Matrix.ary(1, 1).mul(0.5)),
+                Arguments.of("sample(|1>, 100, 1234);", Matrix.create(2, 1, 0, 100)),
+                Arguments.of("sample(|0>+|3>, 0, 1234);", Matrix.create(4, 1, 0, 0, 0, 0)),
+                Arguments.of("marginals(|5>);", Matrix.create(3, 1, 1, 0, 1)),
+                Arguments.of("marginals(H(0) * |2>);", Matrix.create(2, 1, 0.5, 1)),
+                Arguments.of("marginal(|5>, 6);", Matrix.create(4, 1, 0, 0, 1, 0)),
+                Arguments.of("marginal(CNOT(1,0) * H(0) * |0>, 3);", Matrix.create(4, 1, 0.5, 0, 0, 0.5))
         );
     }
 
@@ -265,6 +288,9 @@ class ProcessorTest {
             "<0| * |2>;, 0,0",
             "<2| * |3>;, 0,0",
             "<3| * |3>;, 1,0",
+            "<3| * H(0) * H(1) * |3>;, 0.5,0",
+            "<0| * H(0) * X(1) * H(0) * |2>;, 1,0",
+            "<1| . H(0) . |1>;, -0.70711,0",
             "i * i;, -1,0",
             "i * 2;, 0,2",
             "2 * i;, 0,2",
@@ -274,6 +300,10 @@ class ProcessorTest {
             "i / 2;, 0, 0.5",
             "i / i;, 1, 0",
             "normalise(i);, 1, 0",
+            "'expect(rho(|+>), X(0));', 1, 0",
+            "'expect(rho(|+>), Z(0));', 0, 0",
+            "'expect(rho(|1>), qubit1(0,1));', 1, 0",
+            "'expect(rho(|1>), Z(1));', 1, 0",
     })
     void testComplex(String text, double re, double im) {
         Complex expected = new Complex(re, im);
@@ -373,12 +403,43 @@ class ProcessorTest {
             "'qubit0(i,1);','Unexpected complex, integer arguments'",
             "'qubit1(1,i);','Unexpected integer, complex arguments'",
             "'qubit1(i,1);','Unexpected complex, integer arguments'",
+            "'rho(1);','Unexpected integer argument'",
+            "'ptrace(rho(|0>),i);','Unexpected matrix, complex arguments'",
+            "'ptrace(rho(|0>),1);','Expected qubit in range 0-0 (1)'",
+            "'measure(rho(|0>),1);','Expected qubit in range 0-0 (1)'",
+            "'evolve(rho(|0>),<0|);','Expected square operator with power of 2 size (1x2)'",
+            "'sample(1, 10, 1);','Unexpected integer, integer, integer arguments'",
+            "'sample(|0>, -1, 1);','Expected non negative number of shots (-1)'",
+            "'sample(<0|, 10, 1);','Expected ket (1x2)'",
+            "'sample(|0>-|0>, 10, 1);','Expected positive total weight (0.00000)'",
+            "'marginals(1);','Unexpected integer argument'",
+            "'marginals(<0|);','Expected ket with power of 2 states (1x2)'",
+            "'marginal(|1>, 2);','Expected qubit in range 0-0 (1)'",
+            "'marginal(|1>, -1);','Expected non negative qubit mask (-1)'",
+            "'marginal(|1>, i);','Unexpected matrix, complex arguments'",
     })
     void testError(String text, String msg) {
         QuException ex = assertThrows(QuException.class, () -> execute(text));
         assertEquals(msg, ex.getMessage());
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "'sample(|0>, -1, 0);','Expected non negative number of shots (-1)',sample,0",
+            "'sample(|0>, 1.5, 0);','Unexpected matrix, complex, integer arguments',sample,0",
+            "'2 * sample(|0>, -1, 0);','Expected non negative number of shots (-1)',sample,4",
+            "'2 * sample(|0>, 1, 1.5);','Unexpected matrix, integer, complex arguments',sample,4",
+            "'|0> * |0> * H(0) * |1>;','Invalid product operands shapes 2x1 by 2x1',*,4",
+            "'H(0) * X(0) * |0> * |0>;','Invalid product operands shapes 2x1 by 2x1',*,18",
+            "'<0| * H(0) * X(1) * <1|;','Invalid product operands shapes 1x4 by 1x4',*,18",
+    })
+    void testErrorPosition(String text, String msg, String token, int position) {
+        QuSourceException ex = assertThrows(QuSourceException.class, () -> execute(text));
+        assertEquals(msg, ex.getMessage());
+        assertEquals(token, ex.context().token());
+        assertEquals(position, ex.context().position());
+    }
+
     @ParameterizedTest
     @CsvSource({
             "1; , 1",